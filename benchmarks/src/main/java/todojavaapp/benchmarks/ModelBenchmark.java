@@ -0,0 +1,121 @@
+//This file benchmarks filtering and cell access on the task table model.
+package todojavaapp.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import todojavaapp.model.DateFilter;
+import todojavaapp.model.Priority;
+import todojavaapp.storage.SnapshotFormat;
+import todojavaapp.ui.TaskTableModel;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+//This class measures applying each priority and date filter combination and reading every cell of the view.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs ={"-Xmx4g", "-Djava.awt.headless=true"})
+public class ModelBenchmark{
+    @Param({"1000", "100000"})
+    public int size;
+
+    @Param({"ALL", "HIGH", "MEDIUM", "LOW"})
+    public String priority;
+
+    @Param({"ALL", "TODAY", "THIS_WEEK", "OVERDUE"})
+    public DateFilter dateFilter;
+
+    private Path dir;
+    private TaskTableModel model;
+    private Priority priorityFilter;
+
+    //This method loads generated tasks into a model through the normal background loader.
+    @Setup(Level.Trial)
+    public void setUp() throws Exception{
+        dir = Files.createTempDirectory("todo-bench");
+        Path file = dir.resolve("tasks.bin");
+        TaskGenerator.write(file, size, 42, SnapshotFormat.BINARY);
+        System.setProperty("todo.dataFile", file.toString());
+        model = new TaskTableModel();
+
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        model.load(new TaskTableModel.LoadListener(){
+            @Override
+            public void loadProgress(int tasksLoaded){
+            }
+
+            @Override
+            public void loadFinished(IOException error){
+                failure.set(error);
+                done.countDown();
+            }
+        });
+        done.await();
+        if (failure.get() != null){
+            throw failure.get();
+        }
+        priorityFilter = "ALL".equals(priority) ? null : Priority.valueOf(priority);
+        model.setPriorityFilter(priorityFilter);
+        model.setDateFilter(dateFilter);
+    }
+
+    //This method closes the model, which stops its worker threads and releases its files, and deletes the temporary files.
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException{
+        model.close();
+        try (Stream<Path> files = Files.walk(dir)){
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    //This method reapplies the filters, which queries the indexes and diffs the view.
+    @Benchmark
+    public int applyFilters(){
+        model.setDateFilter(dateFilter);
+        return model.getRowCount();
+    }
+
+    //This method switches from showing every task to the filtered view and back, firing row events both ways.
+    @Benchmark
+    public int toggleFilters(){
+        model.setPriorityFilter(null);
+        model.setDateFilter(DateFilter.ALL);
+        model.setPriorityFilter(priorityFilter);
+        model.setDateFilter(dateFilter);
+        return model.getRowCount();
+    }
+
+    //This method reads every cell of the filtered view like a full table repaint.
+    @Benchmark
+    public void getValueAtFullTable(Blackhole bh){
+        int rows = model.getRowCount();
+        int cols = model.getColumnCount();
+        for (int r = 0; r < rows; r++){
+            for (int c = 0; c < cols; c++){
+                bh.consume(model.getValueAt(r, c));
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+//This file benchmarks loading and saving whole task files.
+package todojavaapp.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import todojavaapp.model.Task;
+import todojavaapp.storage.SnapshotFormat;
+import todojavaapp.storage.TaskStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+//This class measures TaskStorage.loadTasks and saveTasks for each snapshot format and list size.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs ={"-Xmx4g"})
+public class StorageBenchmark{
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"JSON", "BINARY"})
+    public SnapshotFormat format;
+
+    private Path dir;
+    private List<Task> tasks;
+    private TaskStorage loadStorage;
+    private TaskStorage saveStorage;
+
+    //This method writes the file that the load benchmark reads.
+    @Setup(Level.Trial)
+    public void setUp() throws IOException{
+        dir = Files.createTempDirectory("todo-bench");
+        tasks = TaskGenerator.generate(size, 42);
+        loadStorage = new TaskStorage(dir.resolve("load.json"), format);
+        loadStorage.saveTasks(tasks);
+        saveStorage = new TaskStorage(dir.resolve("save.json"), format);
+    }
+
+    //This method releases the task files and deletes the temporary files.
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException{
+        loadStorage.close();
+        saveStorage.close();
+        try (Stream<Path> files = Files.walk(dir)){
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    //This method loads the whole task file.
+    @Benchmark
+    public List<Task> loadTasks() throws IOException{
+        return loadStorage.loadTasks();
+    }
+
+    //This method writes the whole task list as a new snapshot.
+    @Benchmark
+    public void saveTasks() throws IOException{
+        saveStorage.saveTasks(tasks);
+    }
+}
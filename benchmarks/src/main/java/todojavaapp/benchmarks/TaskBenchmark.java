@@ -0,0 +1,71 @@
+//This file benchmarks the hashing and equality of tasks.
+package todojavaapp.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import todojavaapp.model.Task;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//This class measures Task.hashCode and Task.equals over a batch of generated tasks.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskBenchmark{
+    private static final int COUNT = 1024;
+
+    private Task[] tasks;
+    private Task[] copies;
+    private Task[] others;
+
+    //This method prepares equal copies and different tasks to compare against.
+    @Setup
+    public void setUp(){
+        List<Task> generated = TaskGenerator.generate(COUNT * 2, 42);
+        tasks = new Task[COUNT];
+        copies = new Task[COUNT];
+        others = new Task[COUNT];
+        for (int i = 0; i < COUNT; i++){
+            tasks[i] = generated.get(i);
+            copies[i] = generated.get(i).copy();
+            others[i] = generated.get(COUNT + i);
+        }
+    }
+
+    //This method hashes every task of the batch.
+    @Benchmark
+    public void hashCodes(Blackhole bh){
+        for (Task t : tasks){
+            bh.consume(t.hashCode());
+        }
+    }
+
+    //This method compares every task with an equal copy.
+    @Benchmark
+    public void equalsSame(Blackhole bh){
+        for (int i = 0; i < COUNT; i++){
+            bh.consume(tasks[i].equals(copies[i]));
+        }
+    }
+
+    //This method compares every task with a different task.
+    @Benchmark
+    public void equalsDifferent(Blackhole bh){
+        for (int i = 0; i < COUNT; i++){
+            bh.consume(tasks[i].equals(others[i]));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+//This file generates synthetic task lists for benchmarks and manual load testing.
+package todojavaapp.benchmarks;
+
+import todojavaapp.model.Priority;
+import todojavaapp.model.Task;
+import todojavaapp.storage.SnapshotFormat;
+import todojavaapp.storage.TaskStorage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+//This class builds repeatable task lists with realistic descriptions, priorities and due dates around today.
+public class TaskGenerator{
+    private static final String[] VERBS ={"Buy", "Call", "Email", "Fix", "Review", "Write", "Book", "Pay", "Clean", "Plan", "Send", "Update"};
+    private static final String[] OBJECTS ={"groceries", "the dentist", "quarterly report", "bike tyre", "pull request", "birthday card",
+        "flight tickets", "electricity bill", "garage", "team offsite", "invoice", "project notes", "insurance forms", "car service"};
+    private static final String[] EXTRAS ={"", "", "", " before lunch", " for Monday", " with Alex", " (urgent)", " again", ", see notes", " \"ASAP\""};
+
+    //This method returns count tasks with ids 1 to count, the same for the same seed.
+    //About one task in five has no due date and the rest fall between 60 days ago and 120 days ahead.
+    public static List<Task> generate(int count, long seed){
+        Random random = new Random(seed);
+        LocalDate today = LocalDate.now();
+        Priority[] priorities = Priority.values();
+        List<Task> tasks = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++){
+            String description = VERBS[random.nextInt(VERBS.length)] + " " + OBJECTS[random.nextInt(OBJECTS.length)]
+                + EXTRAS[random.nextInt(EXTRAS.length)] + " #" + i;
+            Priority priority = priorities[random.nextInt(priorities.length)];
+            LocalDate due = random.nextInt(5) == 0 ? null : today.plusDays(random.nextInt(181) - 60);
+            tasks.add(new Task(i, description, priority, due));
+        }
+        return tasks;
+    }
+
+    //This method writes generated tasks to a task file in the given format.
+    public static void write(Path target, int count, long seed, SnapshotFormat format) throws IOException{
+        TaskStorage storage = new TaskStorage(target, format);
+        try{
+            storage.saveTasks(generate(count, seed));
+        } finally{
+            storage.close();
+        }
+    }
+
+    //This method runs the generator from the command line.
+    public static void main(String[] args){
+        if (args.length < 2 || args.length > 4){
+            System.err.println("Usage: TaskGenerator <count> <target> [json|binary] [seed]");
+            System.exit(2);
+        }
+        try{
+            int count = Integer.parseInt(args[0]);
+            Path target = Paths.get(args[1]);
+            SnapshotFormat format = args.length > 2 ? SnapshotFormat.valueOf(args[2].toUpperCase(Locale.ROOT)) : SnapshotFormat.JSON;
+            long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+            write(target, count, seed, format);
+            System.out.println("Wrote " + count + " tasks to " + target + " as " + format);
+        } catch (IllegalArgumentException e){
+            System.err.println("Invalid argument: " + e.getMessage());
+            System.exit(2);
+        } catch (IOException e){
+            System.err.println("Failed to write tasks: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
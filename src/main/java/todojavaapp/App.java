@@ -7,8 +7,18 @@ import javax.swing.*;
 
 //This class contains the main method that launches the to do application.
 public class App{
-    //This method launches the main frame on the event dispatch thread.
+    //This method launches the main frame on the event dispatch thread, or runs a bulk command or the server when one is given.
     public static void main(String[] args){
+        if (BulkCommand.handles(args)){
+            System.exit(BulkCommand.run(args));
+        }
+        if (ServeCommand.handles(args)){
+            int code = ServeCommand.run(args);
+            if (code != 0){
+                System.exit(code);
+            }
+            return;
+        }
         SwingUtilities.invokeLater(() ->{
             try{
                 UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -0,0 +1,302 @@
+//This file implements the headless import and export commands of the application.
+package todojavaapp;
+
+import todojavaapp.model.Task;
+import todojavaapp.model.TaskValidator;
+import todojavaapp.storage.TaskChange;
+import todojavaapp.storage.TaskCsvReader;
+import todojavaapp.storage.TaskCsvWriter;
+import todojavaapp.storage.TaskJsonReader;
+import todojavaapp.storage.TaskJsonWriter;
+import todojavaapp.storage.TaskListCatalog;
+import todojavaapp.storage.TaskStorage;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+//This class streams CSV or newline delimited JSON into and out of the task store without opening a window.
+//Imported rows are checked with the same rules as the task dialog and committed to the journal in batches.
+public class BulkCommand{
+    public static final int DEFAULT_BATCH_SIZE = 5000;
+
+    //This enum lists the supported file formats.
+    public enum Format{ CSV, NDJSON }
+
+    //This method returns whether the command line asks for a bulk command instead of the window.
+    public static boolean handles(String[] args){
+        return args.length > 0 && ("import".equals(args[0]) || "export".equals(args[0]));
+    }
+
+    //This method runs a bulk command against the task store and returns the process exit code.
+    public static int run(String[] args){
+        if (args.length < 2){
+            return usage();
+        }
+        String file = args[1];
+        Format format = null;
+        int batchSize = DEFAULT_BATCH_SIZE;
+        String list = TaskListCatalog.DEFAULT_LIST;
+        try{
+            for (int i = 2; i < args.length; i++){
+                if ("--format".equals(args[i]) && i + 1 < args.length){
+                    format = Format.valueOf(args[++i].toUpperCase(Locale.ROOT));
+                } else if ("--batch".equals(args[i]) && i + 1 < args.length){
+                    batchSize = Integer.parseInt(args[++i]);
+                    if (batchSize < 1) return usage();
+                } else if ("--list".equals(args[i]) && i + 1 < args.length){
+                    list = TaskListCatalog.checkName(args[++i]);
+                } else{
+                    return usage();
+                }
+            }
+        } catch (IllegalArgumentException e){
+            return usage();
+        }
+        if (format == null){
+            format = formatFromName(file);
+            if (format == null){
+                System.err.println("Cannot tell the format of " + file + ", add --format csv or --format ndjson");
+                return 2;
+            }
+        }
+
+        try{
+            TaskStorage storage = openList(list, "import".equals(args[0]));
+            if (storage == null){
+                System.err.println("No task list named " + list);
+                return 1;
+            }
+            try{
+                storage.lock();
+                if ("import".equals(args[0])){
+                    try (Reader in = "-".equals(file) ? new InputStreamReader(System.in, StandardCharsets.UTF_8) : Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)){
+                        new Importer(storage, batchSize).run(in, format);
+                    }
+                } else{
+                    try (Writer out = "-".equals(file) ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)) : Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8)){
+                        int count = export(storage, out, format);
+                        out.flush();
+                        System.err.println("Exported " + count + " tasks from " + storage.getDataFile());
+                    }
+                }
+            } finally{
+                storage.close();
+            }
+            return 0;
+        } catch (IOException | UncheckedIOException e){
+            System.err.println("Failed to " + args[0] + " tasks: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    //This method returns the storage of a named list, creating a missing list for an import and returning null otherwise.
+    static TaskStorage openList(String name, boolean create) throws IOException{
+        TaskListCatalog catalog = new TaskListCatalog();
+        for (String existing : catalog.listNames()){
+            if (existing.equalsIgnoreCase(name)){
+                return catalog.open(existing);
+            }
+        }
+        return create ? catalog.create(name) : null;
+    }
+
+    //This method writes every stored task to the output and returns how many were written.
+    private static int export(TaskStorage storage, Writer out, Format format) throws IOException{
+        int[] count ={0};
+        if (format == Format.CSV){
+            TaskCsvWriter csv = new TaskCsvWriter(out);
+            csv.writeHeader();
+            storage.forEachTask(task ->{
+                try{
+                    csv.writeTask(task);
+                    count[0]++;
+                } catch (IOException e){
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } else{
+            storage.forEachTask(task ->{
+                try{
+                    out.write(TaskJsonWriter.toJsonLine(task));
+                    out.write('\n');
+                    count[0]++;
+                } catch (IOException e){
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        return count[0];
+    }
+
+    //This method picks a format from the file extension or returns null.
+    private static Format formatFromName(String file){
+        String name = file.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".csv")){
+            return Format.CSV;
+        }
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl")){
+            return Format.NDJSON;
+        }
+        return null;
+    }
+
+    //This method prints how to call the bulk commands and returns the usage exit code.
+    private static int usage(){
+        System.err.println("Usage: import <file|-> [--format csv|ndjson] [--batch <rows>] [--list <name>]");
+        System.err.println("       export <file|-> [--format csv|ndjson] [--list <name>]");
+        System.err.println("Tasks are read from and written to tasks.json unless -Dtodo.dataFile names another file.");
+        System.err.println("Other lists are kept in the lists folder next to it, and importing into a new list creates it.");
+        System.err.println("A list the application window or another command has open is refused.");
+        return 2;
+    }
+
+    //This class validates imported rows, gives them fresh ids and appends them to the journal in batches.
+    private static final class Importer{
+        private final TaskStorage storage;
+        private final int batchSize;
+        private final List<TaskChange> batch = new ArrayList<>();
+        private long nextId;
+        private int imported;
+        private int skipped;
+
+        //This constructor keeps the target storage and the commit size.
+        Importer(TaskStorage storage, int batchSize){
+            this.storage = storage;
+            this.batchSize = batchSize;
+        }
+
+        //This method imports every record of the input and folds the journal into the snapshot once at the end,
+        //streaming the old snapshot and the journal into the new one.
+        void run(Reader in, Format format) throws IOException{
+            long[] maxId ={0};
+            if (storage.forEachTask(t -> maxId[0] = Math.max(maxId[0], t.getId()))){
+                //Ids given to an older file only last once a snapshot with them is written.
+                storage.saveTasks(storage.loadTasks());
+            }
+            nextId = maxId[0] + 1;
+
+            //Each batch would pass the journal size that starts a background fold, so folding waits for the end.
+            storage.setBackgroundCompaction(false);
+            try{
+                if (format == Format.CSV){
+                    readCsv(in);
+                } else{
+                    readNdjson(in);
+                }
+            } finally{
+                //Rows read before a failure are kept, matching what the dialog would have saved one by one.
+                try{
+                    commit();
+                } finally{
+                    storage.setBackgroundCompaction(true);
+                }
+            }
+            storage.compact();
+            System.err.println("Imported " + imported + " tasks into " + storage.getDataFile() + ", skipped " + skipped + " invalid rows");
+        }
+
+        //This method imports CSV records, using the header row to find the columns when there is one.
+        private void readCsv(Reader in) throws IOException{
+            TaskCsvReader csv = new TaskCsvReader(in);
+            int description = 0;
+            int priority = 1;
+            int dueDate = 2;
+            int recurrence = 3;
+            List<String> fields = csv.next();
+            if (fields != null && isHeader(fields)){
+                description = priority = dueDate = recurrence = -1;
+                for (int i = 0; i < fields.size(); i++){
+                    switch (fields.get(i).trim().toLowerCase(Locale.ROOT).replace(" ", "").replace("_", "")){
+                        case "description": description = i; break;
+                        case "priority": priority = i; break;
+                        case "duedate": case "due": dueDate = i; break;
+                        case "recurrence": case "repeats": recurrence = i; break;
+                        default: break;
+                    }
+                }
+                fields = csv.next();
+            }
+            while (fields != null){
+                add(csv.getRecordLine(), field(fields, description), field(fields, priority), field(fields, dueDate), field(fields, recurrence));
+                fields = csv.next();
+            }
+        }
+
+        //This method imports one JSON object per line and reports lines that are not valid JSON.
+        private void readNdjson(Reader in) throws IOException{
+            BufferedReader lines = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+            String line;
+            int lineNo = 0;
+            while ((line = lines.readLine()) != null){
+                lineNo++;
+                if (line.isBlank()){
+                    continue;
+                }
+                Map<String, String> fields;
+                try{
+                    TaskJsonReader reader = TaskJsonReader.forLine(line, lineNo);
+                    fields = reader.readObject();
+                    if (!reader.atEnd()){
+                        throw new IOException("Unexpected text after the object at line " + lineNo);
+                    }
+                } catch (IOException e){
+                    //Syntax errors already name the line.
+                    reject(e.getMessage());
+                    continue;
+                }
+                add(lineNo, fields.get("description"), fields.get("priority"), fields.get("dueDate"), fields.get("recurrence"));
+            }
+        }
+
+        //This method validates one row and queues it, committing once the batch is full.
+        private void add(int line, String description, String priority, String dueDate, String recurrence) throws IOException{
+            Task task;
+            try{
+                task = TaskValidator.validate(description, priority, dueDate, recurrence);
+            } catch (IllegalArgumentException e){
+                reject("Line " + line + ": " + e.getMessage());
+                return;
+            }
+            task.setId(nextId++);
+            batch.add(TaskChange.added(task));
+            imported++;
+            if (batch.size() >= batchSize){
+                commit();
+            }
+        }
+
+        //This method appends the queued rows to the journal with one write.
+        private void commit() throws IOException{
+            storage.appendChanges(batch);
+            batch.clear();
+        }
+
+        //This method reports a bad row and carries on.
+        private void reject(String problem){
+            skipped++;
+            System.err.println(problem);
+        }
+
+        //This method returns whether a CSV record names the columns.
+        private static boolean isHeader(List<String> fields){
+            for (String f : fields){
+                if ("description".equalsIgnoreCase(f.trim())){
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        //This method returns a field by column index or null when the row is shorter.
+        private static String field(List<String> fields, int index){
+            return index >= 0 && index < fields.size() ? fields.get(index) : null;
+        }
+    }
+}
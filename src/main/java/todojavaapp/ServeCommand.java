@@ -0,0 +1,116 @@
+//This file implements the headless command that serves a task list over local HTTP.
+package todojavaapp;
+
+import todojavaapp.repository.TaskRepository;
+import todojavaapp.server.TaskServer;
+import todojavaapp.storage.TaskListCatalog;
+import todojavaapp.storage.TaskStorage;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+//This class loads a task list into a repository and answers the local API until the process is stopped.
+//Changes are saved through the same journal as the window, so the list opens with them afterwards.
+public class ServeCommand{
+    //This method returns whether the command line asks for the server instead of the window.
+    public static boolean handles(String[] args){
+        return args.length > 0 && "serve".equals(args[0]);
+    }
+
+    //This method starts the server and returns 0 while it keeps running on its own threads, or the exit code of a failure.
+    public static int run(String[] args){
+        int port = TaskServer.DEFAULT_PORT;
+        String list = TaskListCatalog.DEFAULT_LIST;
+        try{
+            for (int i = 1; i < args.length; i++){
+                if ("--port".equals(args[i]) && i + 1 < args.length){
+                    port = Integer.parseInt(args[++i]);
+                    if (port < 0 || port > 65535) return usage();
+                } else if ("--list".equals(args[i]) && i + 1 < args.length){
+                    list = TaskListCatalog.checkName(args[++i]);
+                } else{
+                    return usage();
+                }
+            }
+        } catch (IllegalArgumentException e){
+            return usage();
+        }
+
+        TaskRepository repository;
+        try{
+            TaskStorage storage = BulkCommand.openList(list, false);
+            if (storage == null){
+                System.err.println("No task list named " + list);
+                return 1;
+            }
+            storage.lock();
+            repository = new TaskRepository(storage);
+        } catch (IOException e){
+            System.err.println("Failed to open tasks: " + e.getMessage());
+            return 1;
+        }
+
+        CountDownLatch loaded = new CountDownLatch(1);
+        AtomicReference<IOException> loadError = new AtomicReference<>();
+        repository.load(new TaskRepository.LoadListener(){
+            @Override
+            public void loadProgress(int tasksLoaded){
+            }
+
+            @Override
+            public void loadFinished(IOException error){
+                loadError.set(error);
+                loaded.countDown();
+            }
+        });
+        try{
+            loaded.await();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            closeQuietly(repository);
+            return 1;
+        }
+        if (loadError.get() != null){
+            System.err.println("Failed to load tasks: " + loadError.get().getMessage());
+            closeQuietly(repository);
+            return 1;
+        }
+
+        TaskServer server;
+        try{
+            server = new TaskServer(repository, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        } catch (IOException e){
+            System.err.println("Failed to listen on port " + port + ": " + e.getMessage());
+            closeQuietly(repository);
+            return 1;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() ->{
+            server.close();
+            closeQuietly(repository);
+        }, "task-server-shutdown"));
+        server.start();
+        InetSocketAddress address = server.getAddress();
+        System.err.println("Serving " + repository.snapshot().size() + " tasks at http://" + address.getHostString() + ":" + address.getPort() + "/tasks, press Ctrl+C to stop");
+        return 0;
+    }
+
+    //This method saves and releases a repository, reporting rather than throwing a failure.
+    private static void closeQuietly(TaskRepository repository){
+        try{
+            repository.close();
+        } catch (IOException e){
+            System.err.println("Failed to save tasks: " + e.getMessage());
+        }
+    }
+
+    //This method prints how to start the server and returns the exit code for bad arguments.
+    private static int usage(){
+        System.err.println("Usage: serve [--port <number>] [--list <name>]");
+        System.err.println("Serves the list at http://127.0.0.1:" + TaskServer.DEFAULT_PORT + "/tasks unless another port is given.");
+        System.err.println("A list the application window or another command has open is refused.");
+        return 2;
+    }
+}
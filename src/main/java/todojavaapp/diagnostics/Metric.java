@@ -0,0 +1,150 @@
+//This file defines a named timing histogram with two running counters.
+package todojavaapp.diagnostics;
+
+import java.util.Arrays;
+
+//This class records how long an operation took in a log linear histogram so percentiles stay accurate to a few
+//percent in fixed memory, and adds up two sizes per call such as records and bytes.
+public class Metric{
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final String name;
+    private final String firstCounter;
+    private final String secondCounter;
+    private final long[] buckets = new long[BUCKETS];
+
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+    private long firstTotal;
+    private long secondTotal;
+    private long firstLast;
+    private long secondLast;
+
+    //This constructor names the metric and its two counters, either of which may be null when unused.
+    public Metric(String name, String firstCounter, String secondCounter){
+        this.name = name;
+        this.firstCounter = firstCounter;
+        this.secondCounter = secondCounter;
+    }
+
+    //This method returns the name of the metric.
+    public String getName(){
+        return name;
+    }
+
+    //This method returns the name of the first counter or null.
+    public String getFirstCounter(){
+        return firstCounter;
+    }
+
+    //This method returns the name of the second counter or null.
+    public String getSecondCounter(){
+        return secondCounter;
+    }
+
+    //This method records one call with its duration and the two sizes it handled.
+    public synchronized void record(long nanos, long first, long second){
+        nanos = Math.max(0, nanos);
+        buckets[bucketOf(nanos)]++;
+        count++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+        firstTotal += first;
+        secondTotal += second;
+        firstLast = first;
+        secondLast = second;
+    }
+
+    //This method forgets everything recorded so far.
+    public synchronized void reset(){
+        Arrays.fill(buckets, 0);
+        count = totalNanos = maxNanos = 0;
+        firstTotal = secondTotal = firstLast = secondLast = 0;
+    }
+
+    //This method returns a consistent copy of the figures recorded so far.
+    public synchronized Stats stats(){
+        return new Stats(this, count, count == 0 ? 0 : totalNanos / count,
+            percentile(0.50), percentile(0.90), percentile(0.99), maxNanos,
+            firstTotal, secondTotal, firstLast, secondLast);
+    }
+
+    //This method returns the duration below which a share of the calls fell, using the middle of its bucket.
+    private long percentile(double share){
+        if (count == 0){
+            return 0;
+        }
+        long rank = (long) Math.ceil(share * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++){
+            seen += buckets[i];
+            if (seen >= rank){
+                return Math.min(maxNanos, (lowerBound(i) + upperBound(i)) / 2);
+            }
+        }
+        return maxNanos;
+    }
+
+    //This method returns the bucket of a duration: exact below 16 and then 16 buckets per power of two.
+    private static int bucketOf(long v){
+        if (v < SUB_COUNT){
+            return (int) v;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exp - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    //This method returns the smallest duration in a bucket.
+    private static long lowerBound(int bucket){
+        if (bucket < SUB_COUNT){
+            return bucket;
+        }
+        int exp = bucket / SUB_COUNT + SUB_BITS - 1;
+        long sub = bucket % SUB_COUNT;
+        return (SUB_COUNT + sub) << (exp - SUB_BITS);
+    }
+
+    //This method returns the largest duration in a bucket.
+    private static long upperBound(int bucket){
+        if (bucket < SUB_COUNT){
+            return bucket;
+        }
+        int exp = bucket / SUB_COUNT + SUB_BITS - 1;
+        return lowerBound(bucket) + (1L << (exp - SUB_BITS)) - 1;
+    }
+
+    //This class holds the figures of a metric at one moment.
+    public static final class Stats{
+        public final Metric metric;
+        public final long count;
+        public final long meanNanos;
+        public final long p50Nanos;
+        public final long p90Nanos;
+        public final long p99Nanos;
+        public final long maxNanos;
+        public final long firstTotal;
+        public final long secondTotal;
+        public final long firstLast;
+        public final long secondLast;
+
+        //This constructor stores the figures.
+        Stats(Metric metric, long count, long meanNanos, long p50Nanos, long p90Nanos, long p99Nanos, long maxNanos,
+              long firstTotal, long secondTotal, long firstLast, long secondLast){
+            this.metric = metric;
+            this.count = count;
+            this.meanNanos = meanNanos;
+            this.p50Nanos = p50Nanos;
+            this.p90Nanos = p90Nanos;
+            this.p99Nanos = p99Nanos;
+            this.maxNanos = maxNanos;
+            this.firstTotal = firstTotal;
+            this.secondTotal = secondTotal;
+            this.firstLast = firstLast;
+            this.secondLast = secondLast;
+        }
+    }
+}
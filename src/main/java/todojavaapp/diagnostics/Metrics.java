@@ -0,0 +1,118 @@
+//This file holds the application's timing metrics and writes them to a file.
+package todojavaapp.diagnostics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+//This class lists the metrics recorded next to the flight recorder events so they can be read without a recording.
+//When todo.metrics.file is set a snapshot is written to that file as the application exits.
+public final class Metrics{
+    public static final Metric LOAD = new Metric("storage.load", "records", "bytes");
+    public static final Metric SAVE = new Metric("storage.save", "records", "bytes");
+    public static final Metric APPEND = new Metric("storage.append", "records", "bytes");
+    public static final Metric FILTER = new Metric("table.filter", "input", "output");
+    public static final Metric REPAINT = new Metric("table.repaint", "rows", null);
+
+    private static final List<Metric> ALL = Collections.unmodifiableList(Arrays.asList(LOAD, SAVE, APPEND, FILTER, REPAINT));
+
+    static{
+        String file = System.getProperty("todo.metrics.file");
+        if (file != null){
+            Runtime.getRuntime().addShutdownHook(new Thread(() ->{
+                try{
+                    writeSnapshot(Paths.get(file));
+                } catch (IOException e){
+                    System.err.println("Failed to write metrics: " + e.getMessage());
+                }
+            }, "metrics-snapshot"));
+        }
+    }
+
+    //This constructor is private because the class only holds the shared metrics.
+    private Metrics(){
+    }
+
+    //This method returns every metric in display order.
+    public static List<Metric> all(){
+        return ALL;
+    }
+
+    //This method clears every metric.
+    public static void reset(){
+        for (Metric m : ALL){
+            m.reset();
+        }
+    }
+
+    //This method writes the current figures of every metric to a JSON file with the time and runtime they came from.
+    public static void writeSnapshot(Path file) throws IOException{
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)){
+            out.write(snapshotJson());
+        }
+    }
+
+    //This method returns the current figures of every metric as a JSON document with durations in milliseconds.
+    public static String snapshotJson(){
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append("{\n");
+        field(sb, "  ", "timestamp", Instant.now().toString()).append(",\n");
+        field(sb, "  ", "javaVersion", System.getProperty("java.version")).append(",\n");
+        field(sb, "  ", "os", System.getProperty("os.name") + " " + System.getProperty("os.arch")).append(",\n");
+        sb.append("  \"processors\": ").append(Runtime.getRuntime().availableProcessors()).append(",\n");
+        sb.append("  \"metrics\": [");
+        for (int i = 0; i < ALL.size(); i++){
+            Metric.Stats s = ALL.get(i).stats();
+            sb.append(i == 0 ? "\n" : ",\n").append("    {");
+            field(sb, "", "name", s.metric.getName());
+            sb.append(", \"count\": ").append(s.count);
+            sb.append(", \"meanMillis\": ").append(millis(s.meanNanos));
+            sb.append(", \"p50Millis\": ").append(millis(s.p50Nanos));
+            sb.append(", \"p90Millis\": ").append(millis(s.p90Nanos));
+            sb.append(", \"p99Millis\": ").append(millis(s.p99Nanos));
+            sb.append(", \"maxMillis\": ").append(millis(s.maxNanos));
+            counter(sb, s.metric.getFirstCounter(), s.firstTotal, s.firstLast);
+            counter(sb, s.metric.getSecondCounter(), s.secondTotal, s.secondLast);
+            sb.append('}');
+        }
+        sb.append("\n  ]\n}\n");
+        return sb.toString();
+    }
+
+    //This method formats nanoseconds as milliseconds with three decimals.
+    public static String millis(long nanos){
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+
+    //This method appends the total and last value of a counter when the metric has one.
+    private static void counter(StringBuilder sb, String name, long total, long last){
+        if (name != null){
+            sb.append(", \"").append(name).append("Total\": ").append(total);
+            sb.append(", \"").append(name).append("Last\": ").append(last);
+        }
+    }
+
+    //This method appends a string field, escaping quotes, backslashes and control characters.
+    private static StringBuilder field(StringBuilder sb, String indent, String name, String value){
+        sb.append(indent).append('"').append(name).append("\": \"");
+        for (int i = 0; i < value.length(); i++){
+            char ch = value.charAt(i);
+            if (ch == '"' || ch == '\\'){
+                sb.append('\\').append(ch);
+            } else if (ch < 0x20){
+                sb.append(String.format("\\u%04x", (int) ch));
+            } else{
+                sb.append(ch);
+            }
+        }
+        return sb.append('"');
+    }
+}
@@ -0,0 +1,16 @@
+//This file defines the flight recorder event for painting the task table.
+package todojavaapp.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+//This class is committed once per table paint with how many rows were painted.
+@Name("todojavaapp.TableRepaint")
+@Label("Table Repaint")
+@Category({"ToDo App", "Table"})
+public class TableRepaintEvent extends Event{
+    @Label("Rows")
+    public int rows;
+}
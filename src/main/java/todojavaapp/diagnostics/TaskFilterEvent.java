@@ -0,0 +1,23 @@
+//This file defines the flight recorder event for refiltering the task table.
+package todojavaapp.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+//This class is committed once per refilter with how many tasks went in and how many rows came out.
+@Name("todojavaapp.TaskFilter")
+@Label("Task Filter")
+@Category({"ToDo App", "Table"})
+@Description("Applying the filters and sort order to the task table")
+public class TaskFilterEvent extends Event{
+    @Label("Input Size")
+    @Description("Tasks in the list")
+    public int inputSize;
+
+    @Label("Output Size")
+    @Description("Rows shown after filtering")
+    public int outputSize;
+}
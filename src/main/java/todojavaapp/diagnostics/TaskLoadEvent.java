@@ -0,0 +1,27 @@
+//This file defines the flight recorder event for reading a task store.
+package todojavaapp.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+//This class is committed once per load with the snapshot file and how much was read.
+@Name("todojavaapp.TaskLoad")
+@Label("Task Load")
+@Category({"ToDo App", "Storage"})
+@Description("Reading the task snapshot and replaying its journal")
+public class TaskLoadEvent extends Event{
+    @Label("File")
+    public String file;
+
+    @Label("Records")
+    @Description("Tasks read from the snapshot plus journal records replayed")
+    public long records;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,30 @@
+//This file defines the flight recorder event for writing to a task store.
+package todojavaapp.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+//This class is committed once per snapshot write or journal append with how much was written.
+@Name("todojavaapp.TaskSave")
+@Label("Task Save")
+@Category({"ToDo App", "Storage"})
+@Description("Writing a task snapshot or appending records to its journal")
+public class TaskSaveEvent extends Event{
+    @Label("File")
+    public String file;
+
+    @Label("Kind")
+    @Description("snapshot or journal")
+    public String kind;
+
+    @Label("Records")
+    public long records;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+}
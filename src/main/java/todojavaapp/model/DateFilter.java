@@ -0,0 +1,57 @@
+//This file defines the time based filters shared by the task table and the local API.
+package todojavaapp.model;
+
+import java.time.LocalDate;
+
+//This enum lists the time based filter options and the inclusive due date range each covers on a given day.
+//A null end leaves that side of the range open; the range of ALL is open on both sides and also keeps undated tasks.
+public enum DateFilter{
+    ALL("All"),
+    TODAY("Today"),
+    THIS_WEEK("This week"),
+    OVERDUE("Overdue");
+    private final String label;
+    DateFilter(String label){ this.label = label; }
+    public String getLabel(){ return label; }
+    @Override public String toString(){ return label; }
+
+    //This method returns the first day of the range as seen on a day, or null when it is open.
+    public LocalDate from(LocalDate today){
+        switch (this){
+            case TODAY:
+                return today;
+            case THIS_WEEK:
+                return weekStart(today);
+            default:
+                return null;
+        }
+    }
+
+    //This method returns the last day of the range as seen on a day, or null when it is open.
+    public LocalDate to(LocalDate today){
+        switch (this){
+            case TODAY:
+                return today;
+            case THIS_WEEK:
+                return weekStart(today).plusDays(6);
+            case OVERDUE:
+                return today.minusDays(1);
+            default:
+                return null;
+        }
+    }
+
+    //This method returns whether a due date passes the filter on a day; only ALL passes a task without one.
+    public boolean matches(LocalDate due, LocalDate today){
+        if (this == ALL) return true;
+        if (due == null) return false;
+        LocalDate from = from(today);
+        LocalDate to = to(today);
+        return (from == null || !due.isBefore(from)) && (to == null || !due.isAfter(to));
+    }
+
+    //This method returns the Monday of the week that contains a date.
+    public static LocalDate weekStart(LocalDate day){
+        return day.minusDays(day.getDayOfWeek().getValue() - 1);
+    }
+}
@@ -0,0 +1,403 @@
+//This file defines how a task repeats: daily, weekly on chosen weekdays or monthly, with an optional end.
+package todojavaapp.model;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.format.TextStyle;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+
+//This class is an immutable repeat rule whose series starts on the task's due date.
+//Occurrences are never stored: the n-th occurrence and the occurrence number of a date are worked out with arithmetic,
+//so a series costs the same few fields whether it ends after two dates or never ends.
+//The text form follows the iCalendar RRULE style, such as FREQ=WEEKLY;BYDAY=MO,TH;COUNT=10 or FREQ=MONTHLY;UNTIL=2026-12-31.
+//A monthly rule may name its day of the month with BYMONTHDAY, which a series moved on to a shorter month keeps.
+public final class Recurrence{
+    private static final String[] DAY_CODES = {"MO", "TU", "WE", "TH", "FR", "SA", "SU"};
+
+    private final Frequency frequency;
+    private final int weekdays;
+    private final int monthDay;
+    private final LocalDate until;
+    private final int count;
+
+    //This enum lists how often a series repeats.
+    public enum Frequency{
+        DAILY("Daily"),
+        WEEKLY("Weekly"),
+        MONTHLY("Monthly");
+        private final String label;
+        Frequency(String label){ this.label = label; }
+        public String getLabel(){ return label; }
+        @Override public String toString(){ return label; }
+    }
+
+    //This constructor keeps a rule; weekdays only apply to weekly rules and a day of the month only to monthly ones,
+    //where 0 means the day of the start. A null until and a count of 0 mean no end.
+    private Recurrence(Frequency frequency, int weekdays, int monthDay, LocalDate until, int count){
+        this.frequency = Objects.requireNonNull(frequency);
+        this.weekdays = frequency == Frequency.WEEKLY ? weekdays : 0;
+        this.monthDay = frequency == Frequency.MONTHLY ? monthDay : 0;
+        this.until = until;
+        this.count = count;
+    }
+
+    //This method returns a rule that repeats every day.
+    public static Recurrence daily(){
+        return new Recurrence(Frequency.DAILY, 0, 0, null, 0);
+    }
+
+    //This method returns a rule that repeats every week on the given days, or on the weekday of the start when none are given.
+    public static Recurrence weekly(Set<DayOfWeek> days){
+        int mask = 0;
+        for (DayOfWeek d : days){
+            mask |= 1 << (d.getValue() - 1);
+        }
+        return new Recurrence(Frequency.WEEKLY, mask, 0, null, 0);
+    }
+
+    //This method returns a rule that repeats every month on the day of the month of the start.
+    //Months without that day use their last day.
+    public static Recurrence monthly(){
+        return new Recurrence(Frequency.MONTHLY, 0, 0, null, 0);
+    }
+
+    //This method returns the same monthly rule falling on a day of the month, or on the day of the start for 0.
+    public Recurrence onMonthDay(int day){
+        if (day < 0 || day > 31){
+            throw new IllegalArgumentException("A day of the month is from 1 to 31.");
+        }
+        return new Recurrence(frequency, weekdays, day, until, count);
+    }
+
+    //This method returns the same rule ending after the given date.
+    public Recurrence until(LocalDate date){
+        return new Recurrence(frequency, weekdays, monthDay, Objects.requireNonNull(date), count);
+    }
+
+    //This method returns the same rule ending after the given number of occurrences.
+    public Recurrence times(int occurrences){
+        if (occurrences < 1){
+            throw new IllegalArgumentException("A series must repeat at least once.");
+        }
+        return new Recurrence(frequency, weekdays, monthDay, until, occurrences);
+    }
+
+    //This method returns how often the series repeats.
+    public Frequency getFrequency(){
+        return frequency;
+    }
+
+    //This method returns whether a weekly rule names a weekday, ignoring the fallback to the start's weekday.
+    public boolean repeatsOn(DayOfWeek day){
+        return (weekdays & (1 << (day.getValue() - 1))) != 0;
+    }
+
+    //This method returns the day of the month a monthly rule names, or 0 when it falls on the day of the start.
+    public int getMonthDay(){
+        return monthDay;
+    }
+
+    //This method returns the last date the series may fall on, or null.
+    public LocalDate getUntil(){
+        return until;
+    }
+
+    //This method returns the number of occurrences, or 0 when the count is not limited.
+    public int getCount(){
+        return count;
+    }
+
+    //This method returns the first occurrence on or after a day, or null when the series has ended by then.
+    public LocalDate nextOnOrAfter(LocalDate start, LocalDate day){
+        LocalDate from = day.isBefore(start) ? start : day;
+        LocalDate next;
+        switch (frequency){
+            case DAILY:
+                next = from;
+                break;
+            case WEEKLY:{
+                int mask = maskFor(start);
+                int dow = from.getDayOfWeek().getValue() - 1;
+                int later = mask >>> dow;
+                next = later != 0
+                    ? from.plusDays(Integer.numberOfTrailingZeros(later))
+                    : from.plusDays(7 - dow + Integer.numberOfTrailingZeros(mask));
+                break;
+            }
+            default:{
+                long months = ChronoUnit.MONTHS.between(start.withDayOfMonth(1), from.withDayOfMonth(1));
+                next = monthsAfter(start, months);
+                if (next.isBefore(from)){
+                    next = monthsAfter(start, months + 1);
+                }
+                break;
+            }
+        }
+        return within(start, next) ? next : null;
+    }
+
+    //This method returns the first occurrence of a series, or its start when the rule ends before any.
+    public LocalDate first(LocalDate start){
+        LocalDate first = nextOnOrAfter(start, start);
+        return first != null ? first : start;
+    }
+
+    //This method returns the rule of what is left of a series once its first occurrence is done, for the series that
+    //then starts on its second occurrence, so every later date stays the same.
+    //A count shrinks by the occurrence done and a monthly rule keeps the day of the month of the old start.
+    //It returns null when the first occurrence was the last.
+    public Recurrence afterFirst(LocalDate start){
+        LocalDate first = first(start);
+        LocalDate second = nextOnOrAfter(start, first.plusDays(1));
+        if (second == null){
+            return null;
+        }
+        int day = monthDay;
+        if (frequency == Frequency.MONTHLY){
+            int anchor = monthDay != 0 ? monthDay : start.getDayOfMonth();
+            day = anchor == second.getDayOfMonth() ? 0 : anchor;
+        }
+        return new Recurrence(frequency, weekdays, day, until, count == 0 ? 0 : count - 1);
+    }
+
+    //This method returns the last occurrence of a series that ends, or null when it repeats forever or never occurs.
+    public LocalDate last(LocalDate start){
+        LocalDate last = null;
+        if (count > 0){
+            last = nth(start, count - 1);
+        }
+        if (until != null){
+            LocalDate byDate = lastOnOrBefore(start, until);
+            if (byDate == null || last == null || byDate.isBefore(last)){
+                last = byDate;
+            }
+        }
+        return last;
+    }
+
+    //This method returns whether a date the rule produces is inside the end date and the count.
+    private boolean within(LocalDate start, LocalDate date){
+        return (until == null || !date.isAfter(until)) && (count == 0 || ordinal(start, date) < count);
+    }
+
+    //This method returns how many occurrences come before a date the rule produces.
+    private long ordinal(LocalDate start, LocalDate date){
+        switch (frequency){
+            case DAILY:
+                return ChronoUnit.DAYS.between(start, date);
+            case WEEKLY:{
+                int mask = maskFor(start);
+                long weeks = ChronoUnit.WEEKS.between(weekStart(start), weekStart(date));
+                return weeks * Integer.bitCount(mask) + before(mask, date) - before(mask, start);
+            }
+            default:
+                return ChronoUnit.MONTHS.between(start.withDayOfMonth(1), date.withDayOfMonth(1));
+        }
+    }
+
+    //This method returns the occurrence after n others, ignoring the end date and the count.
+    private LocalDate nth(LocalDate start, long n){
+        switch (frequency){
+            case DAILY:
+                return start.plusDays(n);
+            case WEEKLY:{
+                int mask = maskFor(start);
+                int perWeek = Integer.bitCount(mask);
+                long k = n + before(mask, start);
+                int bit = (int) (k % perWeek);
+                int day = mask;
+                for (int i = 0; i < bit; i++){
+                    day &= day - 1;
+                }
+                return weekStart(start).plusWeeks(k / perWeek).plusDays(Integer.numberOfTrailingZeros(day));
+            }
+            default:
+                return monthsAfter(start, n);
+        }
+    }
+
+    //This method returns the monthly occurrence a number of months after the start's month, on the rule's day of the
+    //month or the start's, moved back to the last day of a month without it.
+    private LocalDate monthsAfter(LocalDate start, long months){
+        if (monthDay == 0){
+            return start.plusMonths(months);
+        }
+        LocalDate month = start.withDayOfMonth(1).plusMonths(months);
+        return month.withDayOfMonth(Math.min(monthDay, month.lengthOfMonth()));
+    }
+
+    //This method returns the last date the rule produces on or before a day, ignoring the count, or null before the start.
+    private LocalDate lastOnOrBefore(LocalDate start, LocalDate day){
+        if (day.isBefore(start)){
+            return null;
+        }
+        LocalDate last;
+        switch (frequency){
+            case DAILY:
+                last = day;
+                break;
+            case WEEKLY:{
+                int mask = maskFor(start);
+                int dow = day.getDayOfWeek().getValue() - 1;
+                int earlier = mask & ((2 << dow) - 1);
+                last = earlier != 0
+                    ? day.minusDays(dow - (31 - Integer.numberOfLeadingZeros(earlier)))
+                    : day.minusDays(dow + 7 - (31 - Integer.numberOfLeadingZeros(mask)));
+                break;
+            }
+            default:{
+                long months = ChronoUnit.MONTHS.between(start.withDayOfMonth(1), day.withDayOfMonth(1));
+                last = monthsAfter(start, months);
+                if (last.isAfter(day)){
+                    last = monthsAfter(start, months - 1);
+                }
+                break;
+            }
+        }
+        return last.isBefore(start) ? null : last;
+    }
+
+    //This method returns the weekday mask of a weekly rule, falling back to the weekday of the start.
+    private int maskFor(LocalDate start){
+        return weekdays != 0 ? weekdays : 1 << (start.getDayOfWeek().getValue() - 1);
+    }
+
+    //This method counts the days of a mask that fall earlier in the week than a date.
+    private static int before(int mask, LocalDate date){
+        return Integer.bitCount(mask & ((1 << (date.getDayOfWeek().getValue() - 1)) - 1));
+    }
+
+    //This method returns the Monday of the week that contains a date.
+    private static LocalDate weekStart(LocalDate day){
+        return day.minusDays(day.getDayOfWeek().getValue() - 1);
+    }
+
+    //This method returns a short description such as "weekly on Mon, Thu" for the due date column.
+    public String describe(){
+        StringBuilder sb = new StringBuilder(frequency.name().toLowerCase(Locale.ROOT));
+        if (weekdays != 0){
+            sb.append(" on ");
+            String separator = "";
+            for (DayOfWeek d : DayOfWeek.values()){
+                if (repeatsOn(d)){
+                    sb.append(separator).append(d.getDisplayName(TextStyle.SHORT, Locale.ENGLISH));
+                    separator = ", ";
+                }
+            }
+        }
+        if (monthDay != 0){
+            sb.append(" on day ").append(monthDay);
+        }
+        if (count > 0){
+            sb.append(", ").append(count).append(count == 1 ? " time" : " times");
+        }
+        if (until != null){
+            sb.append(", until ").append(until);
+        }
+        return sb.toString();
+    }
+
+    //This method parses the text form of a rule and throws when it is not one.
+    public static Recurrence parse(String text){
+        Frequency frequency = null;
+        int weekdays = 0;
+        int monthDay = 0;
+        LocalDate until = null;
+        int count = 0;
+        for (String part : text.trim().split(";")){
+            int eq = part.indexOf('=');
+            String name = eq < 0 ? part.trim() : part.substring(0, eq).trim().toUpperCase(Locale.ROOT);
+            String value = eq < 0 ? "" : part.substring(eq + 1).trim().toUpperCase(Locale.ROOT);
+            try{
+                switch (name){
+                    case "FREQ":
+                        frequency = Frequency.valueOf(value);
+                        break;
+                    case "BYDAY":
+                        for (String code : value.split(",")){
+                            weekdays |= 1 << dayIndex(code.trim());
+                        }
+                        break;
+                    case "BYMONTHDAY":
+                        monthDay = Integer.parseInt(value);
+                        if (monthDay < 1 || monthDay > 31){
+                            throw new IllegalArgumentException();
+                        }
+                        break;
+                    case "UNTIL":
+                        until = LocalDate.parse(value);
+                        break;
+                    case "COUNT":
+                        count = Integer.parseInt(value);
+                        if (count < 1){
+                            throw new IllegalArgumentException();
+                        }
+                        break;
+                    default:
+                        throw new IllegalArgumentException();
+                }
+            } catch (IllegalArgumentException | DateTimeParseException e){
+                throw new IllegalArgumentException("Invalid repeat rule: " + text);
+            }
+        }
+        if (frequency == null){
+            throw new IllegalArgumentException("Invalid repeat rule: " + text);
+        }
+        return new Recurrence(frequency, weekdays, monthDay, until, count);
+    }
+
+    //This method returns the position of a two letter weekday code.
+    private static int dayIndex(String code){
+        for (int i = 0; i < DAY_CODES.length; i++){
+            if (DAY_CODES[i].equals(code)){
+                return i;
+            }
+        }
+        throw new IllegalArgumentException();
+    }
+
+    //This method returns the text form that parse reads back.
+    @Override
+    public String toString(){
+        StringBuilder sb = new StringBuilder("FREQ=").append(frequency.name());
+        if (weekdays != 0){
+            sb.append(";BYDAY=");
+            String separator = "";
+            for (int i = 0; i < DAY_CODES.length; i++){
+                if ((weekdays & (1 << i)) != 0){
+                    sb.append(separator).append(DAY_CODES[i]);
+                    separator = ",";
+                }
+            }
+        }
+        if (monthDay != 0){
+            sb.append(";BYMONTHDAY=").append(monthDay);
+        }
+        if (until != null){
+            sb.append(";UNTIL=").append(until);
+        }
+        if (count > 0){
+            sb.append(";COUNT=").append(count);
+        }
+        return sb.toString();
+    }
+
+    //This method defines equality on every part of the rule.
+    @Override
+    public boolean equals(Object o){
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Recurrence r = (Recurrence) o;
+        return frequency == r.frequency && weekdays == r.weekdays && monthDay == r.monthDay && count == r.count && Objects.equals(until, r.until);
+    }
+
+    //This method returns a hash code based on every part of the rule.
+    @Override
+    public int hashCode(){
+        return Objects.hash(frequency, weekdays, monthDay, until, count);
+    }
+}
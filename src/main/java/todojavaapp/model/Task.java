@@ -1,4 +1,4 @@
-//This file defines the task model with description priority and due date.
+//This file defines the task model with a stable id description priority due date and repeat rule.
 package todojavaapp.model;
 
 import java.time.LocalDate;
@@ -6,15 +6,49 @@ import java.util.Objects;
 
 //This class holds the data for a single task row.
 public class Task{
+    private long id;
     private String description;
     private Priority priority;
     private LocalDate dueDate;
+    private Recurrence recurrence;
 
-    //This constructor initializes all fields for this task.
+    //This constructor initializes all fields for a task that has not been given an id yet.
     public Task(String description, Priority priority, LocalDate dueDate){
+        this(0, description, priority, dueDate);
+    }
+
+    //This constructor initializes all fields including the stable id.
+    public Task(long id, String description, Priority priority, LocalDate dueDate){
+        this(id, description, priority, dueDate, null);
+    }
+
+    //This constructor initializes all fields of a task that repeats from its due date, or does not for a null rule.
+    public Task(long id, String description, Priority priority, LocalDate dueDate, Recurrence recurrence){
+        this.id = id;
         this.description = description;
         this.priority = priority;
         this.dueDate = dueDate;
+        this.recurrence = recurrence;
+    }
+
+    //This method returns an independent copy of this task.
+    public Task copy(){
+        return new Task(id, description, priority, dueDate, recurrence);
+    }
+
+    //This method returns a copy that stands for one occurrence of a repeating task, due on that date.
+    public Task occurrence(LocalDate date){
+        return new Task(id, description, priority, date, recurrence);
+    }
+
+    //This method returns the stable id or 0 when none has been assigned.
+    public long getId(){
+        return id;
+    }
+
+    //This method sets the stable id.
+    public void setId(long id){
+        this.id = id;
     }
 
     //This method returns the description.
@@ -47,18 +81,55 @@ public class Task{
         this.dueDate = dueDate;
     }
 
-    //This method defines equality based on all fields.
+    //This method returns the repeat rule or null when the task happens once.
+    public Recurrence getRecurrence(){
+        return recurrence;
+    }
+
+    //This method updates the repeat rule.
+    public void setRecurrence(Recurrence recurrence){
+        this.recurrence = recurrence;
+    }
+
+    //This method returns whether the task repeats from its due date.
+    public boolean isRecurring(){
+        return recurrence != null && dueDate != null;
+    }
+
+    //This method returns the date the task is due.
+    //A repeating task is due on its earliest occurrence not yet done, which stays put and turns overdue once it has
+    //passed, until the series is advanced past it.
+    public LocalDate nextDue(){
+        return isRecurring() ? recurrence.first(dueDate) : dueDate;
+    }
+
+    //This method returns the series left once the occurrence the task is due on is done, starting on the occurrence
+    //after it with the same later dates, or null when that occurrence was the last or the task does not repeat.
+    public Task advanced(){
+        if (!isRecurring()){
+            return null;
+        }
+        Recurrence rest = recurrence.afterFirst(dueDate);
+        if (rest == null){
+            return null;
+        }
+        LocalDate first = recurrence.first(dueDate);
+        return new Task(id, description, priority, recurrence.nextOnOrAfter(dueDate, first.plusDays(1)), rest);
+    }
+
+    //This method defines equality based on the id and all fields.
     @Override
     public boolean equals(Object o){
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Task task = (Task) o;
-        return Objects.equals(description, task.description) && priority == task.priority && Objects.equals(dueDate, task.dueDate);
+        return id == task.id && Objects.equals(description, task.description) && priority == task.priority && Objects.equals(dueDate, task.dueDate)
+            && Objects.equals(recurrence, task.recurrence);
     }
 
-    //This method returns a hash code based on all fields.
+    //This method returns a hash code based on the id and all fields.
     @Override
     public int hashCode(){
-        return Objects.hash(description, priority, dueDate);
+        return Objects.hash(id, description, priority, dueDate, recurrence);
     }
 }
@@ -0,0 +1,195 @@
+//This file defines secondary indexes over tasks by priority, by due date, by description words and by sort keys.
+package todojavaapp.model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+
+//This class keeps a bucket per priority and a sorted due date index so filters become range lookups.
+//The due date index keeps the tasks of each day by id, so any id fits and the distinct days double as sort keys.
+//Everything is ordered by task id, which grows as tasks are added.
+//A repeating task is indexed on its earliest occurrence not yet done, which only moves when the series is advanced,
+//so a date query or a new day never has to look at the series that do not fall in it.
+public class TaskIndex{
+    private final NavigableMap<Long, Task> byId = new TreeMap<>();
+    private final Map<Priority, NavigableMap<Long, Task>> byPriority = new EnumMap<>(Priority.class);
+    private final NavigableMap<LocalDate, NavigableMap<Long, Task>> byDate = new TreeMap<>();
+    private final TaskTextIndex byWord = new TaskTextIndex();
+    private final NavigableMap<String, Integer> descriptions = new TreeMap<>(TaskOrder.DESCRIPTIONS);
+
+    //This constructor creates an empty bucket for every priority.
+    public TaskIndex(){
+        for (Priority p : Priority.values()){
+            byPriority.put(p, new TreeMap<>());
+        }
+    }
+
+    //This method removes every task from the index.
+    public void clear(){
+        byId.clear();
+        byDate.clear();
+        byWord.clear();
+        descriptions.clear();
+        for (NavigableMap<Long, Task> bucket : byPriority.values()){
+            bucket.clear();
+        }
+    }
+
+    //This method indexes a task or replaces the indexed task with the same id.
+    public void add(Task task){
+        remove(task.getId());
+        byId.put(task.getId(), task);
+        byPriority.get(task.getPriority()).put(task.getId(), task);
+        if (task.getDueDate() != null){
+            byDate.computeIfAbsent(task.nextDue(), d -> new TreeMap<>()).put(task.getId(), task);
+        }
+        byWord.add(task);
+        descriptions.merge(TaskOrder.descriptionOf(task), 1, Integer::sum);
+    }
+
+    //This method removes the task with an id from every index.
+    public void remove(long id){
+        Task task = byId.remove(id);
+        if (task == null){
+            return;
+        }
+        byPriority.get(task.getPriority()).remove(id);
+        if (task.getDueDate() != null){
+            NavigableMap<Long, Task> day = byDate.get(task.nextDue());
+            day.remove(id);
+            if (day.isEmpty()){
+                byDate.remove(task.nextDue());
+            }
+        }
+        byWord.remove(task);
+        release(descriptions, TaskOrder.descriptionOf(task));
+    }
+
+    //This method swaps the indexed task for its replacement with the same id.
+    public void replace(Task updated){
+        add(updated);
+    }
+
+    //This method returns every distinct description in sort order.
+    public NavigableSet<String> descriptionKeys(){
+        return descriptions.navigableKeySet();
+    }
+
+    //This method returns every distinct due date in order, with a repeating task on its earliest open occurrence.
+    public NavigableSet<LocalDate> dueDateKeys(){
+        return byDate.navigableKeySet();
+    }
+
+    //This method counts one use of a sort key less and forgets the key when it is no longer used.
+    private static <K> void release(NavigableMap<K, Integer> counts, K key){
+        counts.computeIfPresent(key, (k, n) -> n == 1 ? null : n - 1);
+    }
+
+    //This method returns the indexed task with an id, or null.
+    public Task get(long id){
+        return byId.get(id);
+    }
+
+    //This method returns the number of indexed tasks.
+    public int size(){
+        return byId.size();
+    }
+
+    //This method returns the tasks in id order that match a priority, a due date range and search terms.
+    //A repeating task matches when the earliest occurrence not yet done falls in the range.
+    //The word index yields the tasks of the most selective term, which are then checked against the rest.
+    public List<Task> query(Priority priority, LocalDate from, LocalDate to, String[] terms){
+        if (terms == null || terms.length == 0){
+            return query(priority, from, to);
+        }
+        List<Task> result = new ArrayList<>();
+        for (Task t : byWord.candidates(terms)){
+            LocalDate d = t.nextDue();
+            if ((priority == null || t.getPriority() == priority)
+                    && (from == null && to == null || inRange(d, from, to))
+                    && (terms.length == 1 || TaskTextIndex.matches(t.getDescription(), terms))){
+                result.add(t);
+            }
+        }
+        return result;
+    }
+
+    //This method returns the tasks in id order that match a priority and an inclusive due date range,
+    //placing each repeating task on its earliest occurrence not yet done.
+    //A null priority matches every priority and a null from and to matches every date including none.
+    public List<Task> query(Priority priority, LocalDate from, LocalDate to){
+        if (from == null && to == null){
+            Collection<Task> source = priority == null ? byId.values() : byPriority.get(priority).values();
+            return new ArrayList<>(source);
+        }
+
+        if (from != null && to != null && from.isAfter(to)){
+            return new ArrayList<>();
+        }
+        Collection<NavigableMap<Long, Task>> range = daysBetween(from, to).values();
+
+        //Walk the date range but stop once it is clearly larger than the priority bucket and scan that instead.
+        NavigableMap<Long, Task> bucket = priority == null ? null : byPriority.get(priority);
+        NavigableMap<Long, Task> hits = new TreeMap<>();
+        int budget = bucket == null ? Integer.MAX_VALUE : bucket.size();
+        int walked = 0;
+        for (NavigableMap<Long, Task> day : range){
+            for (Task t : day.values()){
+                if (++walked > budget){
+                    return scanBucket(bucket, from, to);
+                }
+                if (priority == null || t.getPriority() == priority){
+                    hits.put(t.getId(), t);
+                }
+            }
+        }
+        return new ArrayList<>(hits.values());
+    }
+
+    //This method returns the tasks due in an inclusive range in date order, a repeating task by its open occurrence.
+    public List<Task> dueBetween(LocalDate from, LocalDate to){
+        if (from.isAfter(to)){
+            return new ArrayList<>();
+        }
+        List<Task> result = new ArrayList<>();
+        for (NavigableMap<Long, Task> day : byDate.subMap(from, true, to, true).values()){
+            result.addAll(day.values());
+        }
+        return result;
+    }
+
+    //This method returns the earliest day on or after a day on which a task or an open occurrence is due, or null.
+    public LocalDate nextDueDate(LocalDate from){
+        return byDate.ceilingKey(from);
+    }
+
+    //This method returns whether a date lies in an inclusive range whose ends may be open.
+    private static boolean inRange(LocalDate d, LocalDate from, LocalDate to){
+        return d != null && (from == null || !d.isBefore(from)) && (to == null || !d.isAfter(to));
+    }
+
+    //This method filters a priority bucket by due date and keeps id order.
+    private List<Task> scanBucket(NavigableMap<Long, Task> bucket, LocalDate from, LocalDate to){
+        List<Task> result = new ArrayList<>();
+        for (Task t : bucket.values()){
+            if (inRange(t.nextDue(), from, to)){
+                result.add(t);
+            }
+        }
+        return result;
+    }
+
+    //This method returns the days of an inclusive date range whose ends may be open, each with its tasks by id.
+    private NavigableMap<LocalDate, NavigableMap<Long, Task>> daysBetween(LocalDate from, LocalDate to){
+        if (from == null){
+            return byDate.headMap(to, true);
+        }
+        return to == null ? byDate.tailMap(from, true) : byDate.subMap(from, true, to, true);
+    }
+}
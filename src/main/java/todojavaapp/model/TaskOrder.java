@@ -0,0 +1,260 @@
+//This file defines the orders the task table can be sorted in.
+package todojavaapp.model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.function.Function;
+
+//This class sorts tasks by up to three columns, each ascending or descending, with the id breaking ties.
+//Arranging a list never compares tasks with each other: it regroups the list once per column,
+//last column first, and takes the order of the groups from the sorted keys the index already keeps.
+public class TaskOrder implements Comparator<Task>{
+    public static final int MAX_KEYS = 3;
+    public static final TaskOrder BY_ID = new TaskOrder(Collections.emptyList());
+
+    //This comparator orders descriptions ignoring case first so that equal keys are exactly equal strings.
+    public static final Comparator<String> DESCRIPTIONS = (a, b) ->{
+        int c = String.CASE_INSENSITIVE_ORDER.compare(a, b);
+        return c != 0 ? c : a.compareTo(b);
+    };
+
+    private final List<Key> keys;
+
+    //This enum lists the columns a table can be sorted by.
+    public enum Column{ DESCRIPTION, PRIORITY, DUE_DATE }
+
+    //This class pairs a column with a direction.
+    public static final class Key{
+        private final Column column;
+        private final boolean ascending;
+
+        //This constructor stores the column and whether it sorts ascending.
+        public Key(Column column, boolean ascending){
+            this.column = Objects.requireNonNull(column);
+            this.ascending = ascending;
+        }
+
+        //This method returns the column.
+        public Column getColumn(){
+            return column;
+        }
+
+        //This method returns whether the column sorts ascending.
+        public boolean isAscending(){
+            return ascending;
+        }
+    }
+
+    //This constructor keeps the sort keys, most significant first.
+    public TaskOrder(List<Key> keys){
+        this.keys = Collections.unmodifiableList(new ArrayList<>(keys));
+    }
+
+    //This method returns the sort keys, most significant first.
+    public List<Key> getKeys(){
+        return keys;
+    }
+
+    //This method returns whether tasks are simply in id order.
+    public boolean isById(){
+        return keys.isEmpty();
+    }
+
+    //This method returns the key of a column or null when the column is not sorted.
+    public Key keyOf(Column column){
+        for (Key k : keys){
+            if (k.column == column){
+                return k;
+            }
+        }
+        return null;
+    }
+
+    //This method returns the order after a click on a column header.
+    //A new column becomes the first key ascending and the others stay as tie breakers, so clicking due date
+    //and then priority sorts by priority and then due date. Clicking the first key again turns it descending
+    //and a third click removes it.
+    public TaskOrder toggle(Column column){
+        List<Key> next = new ArrayList<>(keys);
+        Key first = next.isEmpty() ? null : next.get(0);
+        if (first != null && first.column == column){
+            next.remove(0);
+            if (first.ascending){
+                next.add(0, new Key(column, false));
+            }
+            return new TaskOrder(next);
+        }
+        next.removeIf(k -> k.column == column);
+        next.add(0, new Key(column, true));
+        while (next.size() > MAX_KEYS){
+            next.remove(next.size() - 1);
+        }
+        return new TaskOrder(next);
+    }
+
+    //This method compares two tasks by every key and then by id.
+    @Override
+    public int compare(Task a, Task b){
+        for (Key k : keys){
+            int c;
+            switch (k.column){
+                case DESCRIPTION:
+                    c = DESCRIPTIONS.compare(descriptionOf(a), descriptionOf(b));
+                    break;
+                case PRIORITY:
+                    c = a.getPriority().compareTo(b.getPriority());
+                    break;
+                default:
+                    c = compareDates(a.getDueDate(), b.getDueDate());
+                    break;
+            }
+            if (c != 0){
+                return k.ascending ? c : -c;
+            }
+        }
+        return Long.compare(a.getId(), b.getId());
+    }
+
+    //This method puts tasks given in id order into this order in time linear in the tasks and the keys walked.
+    //Each pass regroups the list by one column and keeps the order inside a group, so earlier passes break ties.
+    public List<Task> arrange(List<Task> byId, TaskIndex index){
+        List<Task> current = byId;
+        for (int i = keys.size() - 1; i >= 0; i--){
+            Key k = keys.get(i);
+            switch (k.column){
+                case DESCRIPTION:
+                    current = regroup(current, TaskOrder::descriptionOf, index.descriptionKeys(), DESCRIPTIONS, k.ascending);
+                    break;
+                case PRIORITY:
+                    current = regroupByPriority(current, k.ascending);
+                    break;
+                default:
+                    current = regroup(current, Task::getDueDate, index.dueDateKeys(), Comparator.naturalOrder(), k.ascending);
+                    break;
+            }
+        }
+        return current;
+    }
+
+    //This method splits tasks into one group per priority and joins the groups in priority order.
+    private static List<Task> regroupByPriority(List<Task> tasks, boolean ascending){
+        Priority[] levels = Priority.values();
+        List<List<Task>> groups = new ArrayList<>(levels.length);
+        for (int i = 0; i < levels.length; i++){
+            groups.add(new ArrayList<>());
+        }
+        for (Task t : tasks){
+            groups.get(t.getPriority().ordinal()).add(t);
+        }
+        List<Task> result = new ArrayList<>(tasks.size());
+        for (int i = 0; i < levels.length; i++){
+            result.addAll(groups.get(ascending ? i : levels.length - 1 - i));
+        }
+        return result;
+    }
+
+    //This method splits tasks into one group per key and joins the groups in key order, with no key sorting last.
+    //The order of the groups comes from walking the sorted keys of the index, unless so few groups
+    //are present that sorting just their keys is cheaper. Keys the index does not hold are sorted on their own
+    //and merged in.
+    @SuppressWarnings("unchecked")
+    private static <K> List<Task> regroup(List<Task> tasks, Function<Task, K> keyOf, NavigableSet<K> sortedKeys, Comparator<K> cmp, boolean ascending){
+        Map<K, Object> groups = new HashMap<>();
+        List<Task> none = new ArrayList<>();
+        for (Task t : tasks){
+            K key = keyOf.apply(t);
+            if (key == null){
+                none.add(t);
+                continue;
+            }
+            Object group = groups.get(key);
+            if (group == null){
+                groups.put(key, t);
+            } else if (group instanceof Task){
+                List<Task> list = new ArrayList<>(4);
+                list.add((Task) group);
+                list.add(t);
+                groups.put(key, list);
+            } else{
+                ((List<Task>) group).add(t);
+            }
+        }
+
+        Iterable<K> order;
+        int n = groups.size();
+        if ((long) n * (32 - Integer.numberOfLeadingZeros(n)) < sortedKeys.size()){
+            List<K> present = new ArrayList<>(groups.keySet());
+            present.sort(ascending ? cmp : cmp.reversed());
+            order = present;
+        } else{
+            order = ascending ? sortedKeys : sortedKeys.descendingSet();
+        }
+
+        List<Task> joined = new ArrayList<>(tasks.size());
+        for (K key : order){
+            if (groups.isEmpty()){
+                break;
+            }
+            addGroup(joined, groups.remove(key));
+        }
+        if (!groups.isEmpty()){
+            joined = mergeGroups(joined, groups, keyOf, ascending ? cmp : cmp.reversed());
+        }
+
+        List<Task> result = new ArrayList<>(tasks.size());
+        if (!ascending){
+            result.addAll(none);
+        }
+        result.addAll(joined);
+        if (ascending){
+            result.addAll(none);
+        }
+        return result;
+    }
+
+    //This method merges groups whose keys were not walked into a list already in key order.
+    private static <K> List<Task> mergeGroups(List<Task> joined, Map<K, Object> groups, Function<Task, K> keyOf, Comparator<K> cmp){
+        List<K> rest = new ArrayList<>(groups.keySet());
+        rest.sort(cmp);
+        List<Task> result = new ArrayList<>(joined.size() + groups.size());
+        int i = 0;
+        for (K key : rest){
+            while (i < joined.size() && cmp.compare(keyOf.apply(joined.get(i)), key) < 0){
+                result.add(joined.get(i++));
+            }
+            addGroup(result, groups.get(key));
+        }
+        result.addAll(joined.subList(i, joined.size()));
+        return result;
+    }
+
+    //This method appends a group, which is either a single task or a list of tasks.
+    @SuppressWarnings("unchecked")
+    private static void addGroup(List<Task> result, Object group){
+        if (group instanceof Task){
+            result.add((Task) group);
+        } else if (group != null){
+            result.addAll((List<Task>) group);
+        }
+    }
+
+    //This method returns the description used as a sort key, treating a missing one as empty.
+    static String descriptionOf(Task t){
+        return t.getDescription() == null ? "" : t.getDescription();
+    }
+
+    //This method compares due dates with missing dates after all others.
+    private static int compareDates(LocalDate a, LocalDate b){
+        if (a == null || b == null){
+            return a == null ? (b == null ? 0 : 1) : -1;
+        }
+        return a.compareTo(b);
+    }
+}
@@ -0,0 +1,192 @@
+//This file defines an inverted index from description words to tasks for full text search.
+package todojavaapp.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+//This class maps every lower case word of a description to the tasks that contain it in id order.
+//A search term matches any word that starts with it, and every term of a query must match.
+public class TaskTextIndex{
+    private static final String[] NO_TERMS = new String[0];
+    private static final Comparator<Task> BY_ID = Comparator.comparingLong(Task::getId);
+
+    private final NavigableMap<String, Postings> words = new TreeMap<>();
+
+    //This class holds a growable array of tasks sorted by id.
+    private static final class Postings{
+        private Task[] tasks = new Task[2];
+        private int size;
+
+        //This method adds a task and keeps the array sorted, appending when ids arrive in order.
+        void add(Task task){
+            int at = size == 0 || task.getId() > tasks[size - 1].getId() ? -(size + 1) : find(task.getId());
+            if (at >= 0){
+                tasks[at] = task;
+                return;
+            }
+            at = -at - 1;
+            if (size == tasks.length){
+                tasks = Arrays.copyOf(tasks, size * 2);
+            }
+            System.arraycopy(tasks, at, tasks, at + 1, size - at);
+            tasks[at] = task;
+            size++;
+        }
+
+        //This method removes the task with an id if present.
+        void remove(long id){
+            int at = find(id);
+            if (at >= 0){
+                System.arraycopy(tasks, at + 1, tasks, at, size - at - 1);
+                tasks[--size] = null;
+            }
+        }
+
+        //This method binary searches for an id and returns its slot or minus the insertion point minus one.
+        private int find(long id){
+            int lo = 0;
+            int hi = size - 1;
+            while (lo <= hi){
+                int mid = (lo + hi) >>> 1;
+                long midId = tasks[mid].getId();
+                if (midId < id){
+                    lo = mid + 1;
+                } else if (midId > id){
+                    hi = mid - 1;
+                } else{
+                    return mid;
+                }
+            }
+            return -(lo + 1);
+        }
+    }
+
+    //This method removes every word from the index.
+    public void clear(){
+        words.clear();
+    }
+
+    //This method indexes the words of a task description under its id.
+    public void add(Task task){
+        for (String word : terms(task.getDescription())){
+            words.computeIfAbsent(word, w -> new Postings()).add(task);
+        }
+    }
+
+    //This method removes the words of a task description from under its id.
+    public void remove(Task task){
+        for (String word : terms(task.getDescription())){
+            Postings p = words.get(word);
+            if (p != null){
+                p.remove(task.getId());
+                if (p.size == 0){
+                    words.remove(word);
+                }
+            }
+        }
+    }
+
+    //This method returns the tasks in id order whose words start with the most selective term.
+    //The other terms still have to be checked with matches.
+    public List<Task> candidates(String[] terms){
+        String best = null;
+        int bestCount = Integer.MAX_VALUE;
+        for (String term : terms){
+            int n = count(term, bestCount);
+            if (n < bestCount){
+                best = term;
+                bestCount = n;
+            }
+        }
+        if (best == null){
+            return new ArrayList<>();
+        }
+        Task[] hits = new Task[bestCount];
+        int n = 0;
+        for (Postings p : prefixRange(best).values()){
+            System.arraycopy(p.tasks, 0, hits, n, p.size);
+            n += p.size;
+        }
+        //The hits are a run of sorted postings per word, which the merge sort joins cheaply.
+        Arrays.sort(hits, 0, n, BY_ID);
+        List<Task> result = new ArrayList<>(n);
+        for (int i = 0; i < n; i++){
+            if (i == 0 || hits[i].getId() != hits[i - 1].getId()){
+                result.add(hits[i]);
+            }
+        }
+        return result;
+    }
+
+    //This method splits a search query into lower case terms.
+    public static String[] parseQuery(String query){
+        List<String> terms = terms(query);
+        return terms.isEmpty() ? NO_TERMS : terms.toArray(NO_TERMS);
+    }
+
+    //This method returns whether every term starts some word of a description.
+    public static boolean matches(String description, String[] terms){
+        if (terms.length == 0){
+            return true;
+        }
+        List<String> descriptionWords = terms(description);
+        for (String term : terms){
+            boolean found = false;
+            for (String word : descriptionWords){
+                if (word.startsWith(term)){
+                    found = true;
+                    break;
+                }
+            }
+            if (!found){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //This method counts the postings of every word starting with a term and stops early above a limit.
+    private int count(String term, int limit){
+        int n = 0;
+        for (Postings p : prefixRange(term).values()){
+            n += p.size;
+            if (n >= limit){
+                return limit;
+            }
+        }
+        return n;
+    }
+
+    //This method returns the words that start with a prefix.
+    private NavigableMap<String, Postings> prefixRange(String prefix){
+        return words.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    //This method splits text into distinct lower case runs of letters and digits.
+    private static List<String> terms(String text){
+        List<String> result = new ArrayList<>();
+        if (text == null){
+            return result;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++){
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0){
+                start = i;
+            } else if (!wordChar && start >= 0){
+                String word = lower.substring(start, i);
+                if (!result.contains(word)){
+                    result.add(word);
+                }
+                start = -1;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,88 @@
+//This file defines the validation rules shared by the task dialog and bulk import.
+package todojavaapp.model;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+//This class checks raw field text and turns it into task values or explains what is wrong.
+public class TaskValidator{
+    public static final String DESCRIPTION_REQUIRED = "Task description is required.";
+    public static final String INVALID_DATE = "Invalid date format. Please use: yyyy-MM-dd (like 2025-10-29)";
+    public static final String REPEAT_NEEDS_DATE = "A repeating task needs a due date to start from.";
+
+    private static final DateTimeFormatter DTF = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    //This method returns the trimmed description or throws when it is blank.
+    public static String checkDescription(String text){
+        String desc = text == null ? "" : text.trim();
+        if (desc.isEmpty()){
+            throw new IllegalArgumentException(DESCRIPTION_REQUIRED);
+        }
+        return desc;
+    }
+
+    //This method parses an optional yyyy-MM-dd date, returning null for blank text and throwing for anything else.
+    public static LocalDate parseDueDate(String text){
+        String trimmed = text == null ? "" : text.trim();
+        if (trimmed.isEmpty()){
+            return null;
+        }
+        try{
+            return LocalDate.parse(trimmed, DTF);
+        } catch (DateTimeParseException e){
+            throw new IllegalArgumentException(INVALID_DATE);
+        }
+    }
+
+    //This method parses a priority by name or label, defaulting blank text to medium.
+    public static Priority parsePriority(String text){
+        String trimmed = text == null ? "" : text.trim();
+        if (trimmed.isEmpty()){
+            return Priority.MEDIUM;
+        }
+        Priority p = Priority.fromDisplay(trimmed);
+        if (p == null){
+            try{
+                p = Priority.valueOf(trimmed.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e){
+                throw new IllegalArgumentException("Unknown priority: " + trimmed);
+            }
+        }
+        return p;
+    }
+
+    //This method parses an optional repeat rule such as FREQ=WEEKLY;BYDAY=MO, returning null for blank text.
+    public static Recurrence parseRecurrence(String text){
+        String trimmed = text == null ? "" : text.trim();
+        return trimmed.isEmpty() ? null : Recurrence.parse(trimmed);
+    }
+
+    //This method checks that a repeat rule has a due date to start from and does not end before it.
+    public static Recurrence checkRecurrence(Recurrence recurrence, LocalDate dueDate){
+        if (recurrence == null){
+            return null;
+        }
+        if (dueDate == null){
+            throw new IllegalArgumentException(REPEAT_NEEDS_DATE);
+        }
+        if (recurrence.getUntil() != null && recurrence.getUntil().isBefore(dueDate)){
+            throw new IllegalArgumentException("A repeating task cannot end before its due date.");
+        }
+        return recurrence;
+    }
+
+    //This method builds a new task from raw field text or throws with the first problem found.
+    public static Task validate(String description, String priority, String dueDate){
+        return validate(description, priority, dueDate, null);
+    }
+
+    //This method builds a new task that may repeat from raw field text or throws with the first problem found.
+    public static Task validate(String description, String priority, String dueDate, String recurrence){
+        LocalDate due = parseDueDate(dueDate);
+        Task task = new Task(checkDescription(description), parsePriority(priority), due);
+        task.setRecurrence(checkRecurrence(parseRecurrence(recurrence), due));
+        return task;
+    }
+}
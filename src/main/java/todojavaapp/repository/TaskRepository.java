@@ -0,0 +1,429 @@
+//This file defines the thread safe home of the tasks of one list, shared by the table and any background job.
+package todojavaapp.repository;
+
+import todojavaapp.model.Task;
+import todojavaapp.storage.PersistenceWorker;
+import todojavaapp.storage.TaskChange;
+import todojavaapp.storage.TaskFileWatcher;
+import todojavaapp.storage.TaskLoadListener;
+import todojavaapp.storage.TaskStorage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+//This class owns the tasks of a list, loads them from storage and saves every change made through it.
+//Reads never lock: each write publishes a new immutable snapshot through one volatile field, so any number of threads
+//read a consistent version while a write is under way. Writes take turns on one lock, are short because a change
+//copies only one path of the trie, and tell listeners about each new version in order before the next write starts.
+public class TaskRepository implements Closeable{
+    public static final int LOAD_BATCH = 2000;
+
+    private final TaskStorage storage;
+    private final PersistenceWorker persistence;
+    private final Object lock = new Object();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Set<Long> touchedDuringLoad = new HashSet<>();
+    private final Set<Long> addedDuringLoad = new HashSet<>();
+
+    private volatile TaskSnapshot current = TaskSnapshot.EMPTY;
+    private volatile boolean loading;
+    private TaskFileWatcher watcher;
+    private long nextId = 1;
+
+    //This interface receives every new version of the tasks.
+    public interface Listener{
+        //This method is called on the writing thread, in version order, while the next write waits,
+        //so it should only hand the update on to where it is handled.
+        void tasksChanged(Update update);
+    }
+
+    //This interface receives progress while tasks are loaded in the background.
+    public interface LoadListener{
+        //This method is called on the loading thread after each batch has been published.
+        void loadProgress(int tasksLoaded);
+
+        //This method is called on the loading thread once loading ends, with the error if it failed.
+        void loadFinished(IOException error);
+    }
+
+    //This class describes one write: the snapshots before and after it and the changes between them.
+    public static final class Update{
+        private final TaskSnapshot before;
+        private final TaskSnapshot after;
+        private final List<TaskChange> changes;
+        private final boolean renumbered;
+
+        //This constructor keeps both snapshots, the changes and whether tasks were moved to new ids.
+        Update(TaskSnapshot before, TaskSnapshot after, List<TaskChange> changes, boolean renumbered){
+            this.before = before;
+            this.after = after;
+            this.changes = Collections.unmodifiableList(changes);
+            this.renumbered = renumbered;
+        }
+
+        //This method returns the snapshot the write started from.
+        public TaskSnapshot getBefore(){
+            return before;
+        }
+
+        //This method returns the snapshot the write published.
+        public TaskSnapshot getAfter(){
+            return after;
+        }
+
+        //This method returns the changes in the order they were applied; each add or update holds the stored task.
+        public List<TaskChange> getChanges(){
+            return changes;
+        }
+
+        //This method returns whether tasks added while loading were given new ids because the file already used theirs.
+        public boolean isRenumbered(){
+            return renumbered;
+        }
+    }
+
+    //This constructor keeps the storage the tasks are read from and saved to.
+    public TaskRepository(TaskStorage storage){
+        this.storage = storage;
+        this.persistence = new PersistenceWorker(storage);
+    }
+
+    //This method returns the latest snapshot without waiting for writers.
+    public TaskSnapshot snapshot(){
+        return current;
+    }
+
+    //This method starts telling a listener about every write from the next one on.
+    public void addListener(Listener listener){
+        listeners.add(listener);
+    }
+
+    //This method stops telling a listener about writes.
+    public void removeListener(Listener listener){
+        listeners.remove(listener);
+    }
+
+    //This method returns whether tasks are still being loaded.
+    public boolean isLoading(){
+        return loading;
+    }
+
+    //This method starts loading tasks on a background thread and publishes them in batches.
+    //Writes made while loading are applied at once and saved when loading has finished.
+    //The file is watched from before it is read so edits made by other programs are picked up once loading ends.
+    public void load(LoadListener listener){
+        synchronized (lock){
+            loading = true;
+            watcher = startWatching();
+        }
+        Thread thread = new Thread(() -> runLoad(listener), "task-loader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    //This method starts watching the storage for outside edits or returns null when the folder cannot be watched.
+    private TaskFileWatcher startWatching(){
+        try{
+            return new TaskFileWatcher(storage, new TaskFileWatcher.Listener(){
+                @Override
+                public void beforeReload() throws IOException{
+                    persistence.flush();
+                }
+
+                @Override
+                public void changesFound(List<TaskChange> changes, boolean idsAssigned){
+                    applyExternalChanges(changes, idsAssigned);
+                }
+            });
+        } catch (IOException | UnsupportedOperationException e){
+            System.err.println("Failed to watch tasks for outside changes: " + e.getMessage());
+            return null;
+        }
+    }
+
+    //This method streams the storage, publishing a batch every few thousand items, and reports the outcome.
+    private void runLoad(LoadListener listener){
+        List<TaskChange> batch = new ArrayList<>(LOAD_BATCH);
+        int[] loaded = new int[1];
+        TaskLoadListener sink = new TaskLoadListener(){
+            @Override
+            public void taskLoaded(Task task){
+                add(TaskChange.added(task));
+            }
+
+            @Override
+            public void changeReplayed(TaskChange change){
+                add(change);
+            }
+
+            //This method adds an item to the batch and publishes it when full.
+            private void add(TaskChange change){
+                batch.add(change);
+                if (batch.size() == LOAD_BATCH){
+                    applyLoaded(batch);
+                    loaded[0] += batch.size();
+                    batch.clear();
+                    listener.loadProgress(loaded[0]);
+                }
+            }
+        };
+        IOException error = null;
+        boolean idsAssigned = false;
+        try{
+            TaskFileWatcher w;
+            synchronized (lock){
+                w = watcher;
+            }
+            idsAssigned = storage.loadTasks(w == null ? sink : w.recording(sink));
+            if (!batch.isEmpty()){
+                applyLoaded(batch);
+                loaded[0] += batch.size();
+                listener.loadProgress(loaded[0]);
+            }
+        } catch (IOException e){
+            error = e;
+        } catch (RuntimeException e){
+            error = new IOException(e);
+        }
+        finishLoading(idsAssigned, error);
+        listener.loadFinished(error);
+    }
+
+    //This method publishes a batch of loaded tasks and journal changes.
+    private void applyLoaded(List<TaskChange> loaded){
+        synchronized (lock){
+            Batch b = new Batch();
+            for (TaskChange c : loaded){
+                nextId = Math.max(nextId, c.getId() + 1);
+                if (yieldToLocalEdit(b, c.getId(), c.getKind() == TaskChange.Kind.ADD)){
+                    b.apply(c);
+                }
+            }
+            b.publish();
+        }
+    }
+
+    //This method decides whether loaded data for an id may be applied given writes made while loading.
+    //A task added locally under an id that turns out to be taken on disk moves to a fresh id.
+    private boolean yieldToLocalEdit(Batch b, long id, boolean adds){
+        if (!touchedDuringLoad.contains(id)){
+            return true;
+        }
+        if (!addedDuringLoad.contains(id) || !adds){
+            return false;
+        }
+        touchedDuringLoad.remove(id);
+        addedDuringLoad.remove(id);
+        Task local = b.get(id);
+        if (local == null){
+            //The task was added and removed again while loading, which leaves nothing to move.
+            return true;
+        }
+        b.apply(TaskChange.removed(id));
+        Task moved = local.copy();
+        moved.setId(nextId++);
+        b.apply(TaskChange.added(moved));
+        b.renumbered = true;
+        touchedDuringLoad.add(moved.getId());
+        addedDuringLoad.add(moved.getId());
+        return true;
+    }
+
+    //This method saves the writes made while loading, or a whole new snapshot when loaded tasks were given ids.
+    private void finishLoading(boolean idsAssigned, IOException error){
+        synchronized (lock){
+            loading = false;
+            if (error == null && idsAssigned){
+                persistence.submitSnapshot(current.list());
+            } else{
+                for (long id : touchedDuringLoad){
+                    Task t = current.get(id);
+                    if (t == null){
+                        if (!addedDuringLoad.contains(id)){
+                            persistence.submit(TaskChange.removed(id));
+                        }
+                    } else if (addedDuringLoad.contains(id)){
+                        persistence.submit(TaskChange.added(t));
+                    } else{
+                        persistence.submit(TaskChange.updated(t));
+                    }
+                }
+            }
+            touchedDuringLoad.clear();
+            addedDuringLoad.clear();
+            if (watcher != null){
+                if (error == null){
+                    watcher.baselineLoaded();
+                } else{
+                    stopWatching();
+                }
+            }
+        }
+    }
+
+    //This method applies tasks changed on disk by another program without saving them again.
+    //Tasks that already match the stored ones are left out so listeners are not told about them.
+    private void applyExternalChanges(List<TaskChange> changes, boolean idsAssigned){
+        synchronized (lock){
+            Batch b = new Batch();
+            for (TaskChange c : changes){
+                nextId = Math.max(nextId, c.getId() + 1);
+                if (c.getKind() == TaskChange.Kind.REMOVE || !c.getTask().equals(b.get(c.getId()))){
+                    b.apply(c);
+                }
+            }
+            b.publish();
+            if (idsAssigned){
+                persistence.submitSnapshot(current.list());
+            }
+        }
+    }
+
+    //This method adds a task under a fresh id, which is also set on the given task, and returns the stored copy.
+    public Task add(Task task){
+        synchronized (lock){
+            task.setId(nextId++);
+            Batch b = new Batch();
+            b.apply(TaskChange.added(task));
+            return b.commit().get(0).getTask();
+        }
+    }
+
+    //This method replaces the task with the id of the given one and returns the task it replaced,
+    //or changes nothing and returns null when no task has that id.
+    public Task update(Task task){
+        synchronized (lock){
+            Batch b = new Batch();
+            Task before = b.get(task.getId());
+            if (before != null){
+                b.apply(TaskChange.updated(task));
+                b.commit();
+            }
+            return before;
+        }
+    }
+
+    //This method stores a task under its own id, adding it when the id is free, and returns the task it replaced or null.
+    public Task put(Task task){
+        synchronized (lock){
+            nextId = Math.max(nextId, task.getId() + 1);
+            Batch b = new Batch();
+            Task before = b.apply(TaskChange.added(task));
+            b.commit();
+            return before;
+        }
+    }
+
+    //This method removes the task with an id and returns it, or null when there was none.
+    public Task remove(long id){
+        synchronized (lock){
+            Batch b = new Batch();
+            Task before = b.apply(TaskChange.removed(id));
+            if (before != null){
+                b.commit();
+            }
+            return before;
+        }
+    }
+
+    //This method sets the handler that receives save failures and the other problems the files report.
+    public void setSaveErrorHandler(Consumer<IOException> handler){
+        persistence.setErrorHandler(handler);
+    }
+
+    //This method writes all accepted changes to disk before returning.
+    public void flush() throws IOException{
+        persistence.flush();
+    }
+
+    //This method stops watching, writes all accepted changes, then stops the save thread and releases the files.
+    @Override
+    public void close() throws IOException{
+        synchronized (lock){
+            if (watcher != null){
+                stopWatching();
+            }
+        }
+        persistence.close();
+    }
+
+    //This method stops watching the storage.
+    private void stopWatching(){
+        try{
+            watcher.close();
+        } catch (IOException e){
+            System.err.println("Failed to stop watching tasks: " + e.getMessage());
+        }
+        watcher = null;
+    }
+
+    //This class gathers the changes of one write on an editor of the current trie; it is only used while holding the lock.
+    private final class Batch{
+        private final TaskSnapshot before = current;
+        private final TaskTrie.Editor tasks = before.tasks().edit();
+        private final List<TaskChange> changes = new ArrayList<>();
+        private boolean renumbered;
+
+        //This method returns the task with an id as changed so far, or null.
+        Task get(long id){
+            return tasks.get(id);
+        }
+
+        //This method applies a change and returns the task it replaced or removed.
+        //An add or update is recorded as whichever it turns out to be and removing a missing task is left out.
+        Task apply(TaskChange c){
+            Task old = tasks.get(c.getId());
+            if (c.getKind() == TaskChange.Kind.REMOVE){
+                if (old == null){
+                    return null;
+                }
+                tasks.remove(c.getId());
+            } else{
+                if (old == null && c.getKind() != TaskChange.Kind.ADD){
+                    c = TaskChange.added(c.getTask());
+                } else if (old != null && c.getKind() != TaskChange.Kind.UPDATE){
+                    c = TaskChange.updated(c.getTask());
+                }
+                tasks.put(c.getTask());
+            }
+            changes.add(c);
+            return old;
+        }
+
+        //This method queues the changes for saving, or only notes their ids while loading, and publishes them.
+        List<TaskChange> commit(){
+            for (TaskChange c : changes){
+                if (loading){
+                    touchedDuringLoad.add(c.getId());
+                    if (c.getKind() == TaskChange.Kind.ADD){
+                        addedDuringLoad.add(c.getId());
+                    }
+                } else{
+                    persistence.submit(c);
+                }
+            }
+            publish();
+            return changes;
+        }
+
+        //This method makes the changes the current snapshot and tells every listener, unless nothing changed.
+        void publish(){
+            if (changes.isEmpty()){
+                return;
+            }
+            TaskSnapshot after = new TaskSnapshot(before.getVersion() + 1, tasks.done());
+            current = after;
+            Update update = new Update(before, after, changes, renumbered);
+            for (Listener l : listeners){
+                l.tasksChanged(update);
+            }
+        }
+    }
+}
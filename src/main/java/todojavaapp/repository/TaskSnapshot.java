@@ -0,0 +1,66 @@
+//This file defines one published version of the tasks of a repository.
+package todojavaapp.repository;
+
+import todojavaapp.model.Task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+//This class is an immutable view of every task as of one write, so it can be read from any thread without locking.
+//Tasks read from it are shared with later snapshots and must not be changed; copy a task to edit it.
+public final class TaskSnapshot{
+    static final TaskSnapshot EMPTY = new TaskSnapshot(0, TaskTrie.EMPTY);
+
+    private final long version;
+    private final TaskTrie tasks;
+
+    //This constructor keeps the version number and the tasks of the snapshot.
+    TaskSnapshot(long version, TaskTrie tasks){
+        this.version = version;
+        this.tasks = tasks;
+    }
+
+    //This method returns the version, which grows by one with every write that changes something.
+    public long getVersion(){
+        return version;
+    }
+
+    //This method returns the number of tasks.
+    public int size(){
+        return tasks.size();
+    }
+
+    //This method returns the task with an id, or null.
+    public Task get(long id){
+        return tasks.get(id);
+    }
+
+    //This method returns whether a task with an id exists.
+    public boolean contains(long id){
+        return tasks.get(id) != null;
+    }
+
+    //This method passes every task to a consumer in id order.
+    public void forEach(Consumer<Task> consumer){
+        tasks.forEach(consumer);
+    }
+
+    //This method passes the tasks from an id on to a visitor in id order until it returns false.
+    public void forEachFrom(long fromId, Predicate<Task> visitor){
+        tasks.forEachFrom(fromId, visitor);
+    }
+
+    //This method returns every task in id order.
+    public List<Task> list(){
+        List<Task> result = new ArrayList<>(tasks.size());
+        tasks.forEach(result::add);
+        return result;
+    }
+
+    //This method returns the tasks the snapshot is built on.
+    TaskTrie tasks(){
+        return tasks;
+    }
+}
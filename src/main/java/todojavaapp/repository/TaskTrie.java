@@ -0,0 +1,258 @@
+//This file defines an immutable map from task id to task that shares everything but the changed path between versions.
+package todojavaapp.repository;
+
+import todojavaapp.model.Task;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+//This class is a radix trie over the bits of the id, five bits per level with the most significant first,
+//so walking it visits tasks in id order. Each node keeps a bitmap of the children present and an array of just those,
+//and a change copies only the nodes on the path to its id, which a reader holding the old trie never sees.
+//Ids handed out one after another fill the nodes densely and a million tasks sit four or five levels deep.
+public final class TaskTrie{
+    public static final TaskTrie EMPTY = new TaskTrie(null, 0, 0);
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private final Node root;
+    private final int shift;
+    private final int size;
+
+    //This class is one level of the trie; it is only changed in place by the editor that created it.
+    private static final class Node{
+        final Object owner;
+        int bitmap;
+        Object[] slots;
+
+        //This constructor keeps the editor allowed to change the node, the children present and their slots.
+        Node(Object owner, int bitmap, Object[] slots){
+            this.owner = owner;
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+    }
+
+    //This constructor keeps a root whose children are picked by the id bits at a shift and the number of tasks.
+    private TaskTrie(Node root, int shift, int size){
+        this.root = root;
+        this.shift = shift;
+        this.size = size;
+    }
+
+    //This method returns the number of tasks.
+    public int size(){
+        return size;
+    }
+
+    //This method returns the task with an id, or null.
+    public Task get(long id){
+        return find(root, shift, id);
+    }
+
+    //This method returns a trie that also holds a task, replacing the one with the same id.
+    public TaskTrie with(Task task){
+        Editor e = edit();
+        e.put(task);
+        return e.done();
+    }
+
+    //This method returns a trie without the task with an id.
+    public TaskTrie without(long id){
+        if (get(id) == null){
+            return this;
+        }
+        Editor e = edit();
+        e.remove(id);
+        return e.done();
+    }
+
+    //This method passes every task to a consumer in id order.
+    public void forEach(Consumer<Task> consumer){
+        if (root != null){
+            walk(root, shift, consumer);
+        }
+    }
+
+    //This method passes the tasks from an id on to a visitor in id order until it returns false.
+    //Subtrees holding only smaller ids are skipped, so a page from a cursor costs the depth plus the page.
+    public void forEachFrom(long fromId, Predicate<Task> visitor){
+        if (root != null && (fromId <= 0 || fits(fromId, shift))){
+            walkFrom(root, shift, Math.max(0, fromId), true, visitor);
+        }
+    }
+
+    //This method returns an editor that applies many changes to a copy of this trie before it is shared.
+    public Editor edit(){
+        return new Editor(this);
+    }
+
+    //This method walks a node and the nodes below it in id order.
+    private static void walk(Node node, int s, Consumer<Task> consumer){
+        int count = Integer.bitCount(node.bitmap);
+        for (int i = 0; i < count; i++){
+            if (s == 0){
+                consumer.accept((Task) node.slots[i]);
+            } else{
+                walk((Node) node.slots[i], s - BITS, consumer);
+            }
+        }
+    }
+
+    //This method walks the ids of a node from a lower bound on, which only applies along the path of that bound,
+    //and returns false once the visitor has asked to stop.
+    private static boolean walkFrom(Node node, int s, long fromId, boolean bounded, Predicate<Task> visitor){
+        int first = bounded ? (int) ((fromId >>> s) & MASK) : 0;
+        int rest = node.bitmap & -(1 << first);
+        int i = Integer.bitCount(node.bitmap & ((1 << first) - 1));
+        for (; rest != 0; rest &= rest - 1, i++){
+            boolean onBound = bounded && Integer.numberOfTrailingZeros(rest) == first;
+            boolean more = s == 0
+                ? visitor.test((Task) node.slots[i])
+                : walkFrom((Node) node.slots[i], s - BITS, fromId, onBound, visitor);
+            if (!more){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //This method looks an id up below a node.
+    private static Task find(Node node, int s, long id){
+        if (node == null || id < 0 || !fits(id, s)){
+            return null;
+        }
+        while (true){
+            int bit = bitOf(id, s);
+            if ((node.bitmap & bit) == 0){
+                return null;
+            }
+            Object slot = node.slots[Integer.bitCount(node.bitmap & (bit - 1))];
+            if (s == 0){
+                return (Task) slot;
+            }
+            node = (Node) slot;
+            s -= BITS;
+        }
+    }
+
+    //This method returns whether an id is small enough for a root whose children are picked at a shift.
+    private static boolean fits(long id, int s){
+        return s + BITS >= Long.SIZE - 1 || (id >>> (s + BITS)) == 0;
+    }
+
+    //This method returns the bitmap bit of the child an id goes to at a shift.
+    private static int bitOf(long id, int s){
+        return 1 << ((id >>> s) & MASK);
+    }
+
+    //This class applies changes to a trie, copying each node the first time it is touched and changing its copy in place
+    //after that, so a batch of adds copies a path once rather than once per task. Nothing it builds is seen by others
+    //until done is called, and once done it copies again so the shared result never changes.
+    public static final class Editor{
+        private Object owner = new Object();
+        private Node root;
+        private int shift;
+        private int size;
+
+        //This constructor starts from a trie.
+        private Editor(TaskTrie from){
+            this.root = from.root;
+            this.shift = from.shift;
+            this.size = from.size;
+        }
+
+        //This method returns the task with an id as edited so far, or null.
+        public Task get(long id){
+            return find(root, shift, id);
+        }
+
+        //This method adds a task or replaces the one with the same id.
+        public void put(Task task){
+            long id = task.getId();
+            if (id < 0){
+                throw new IllegalArgumentException("Task ids cannot be negative: " + id);
+            }
+            if (root == null){
+                root = new Node(owner, 0, new Object[1]);
+                shift = 0;
+            }
+            while (!fits(id, shift)){
+                root = new Node(owner, 1, new Object[]{root});
+                shift += BITS;
+            }
+            root = put(root, shift, id, task);
+        }
+
+        //This method removes the task with an id and returns whether there was one.
+        public boolean remove(long id){
+            if (get(id) == null){
+                return false;
+            }
+            root = remove(root, shift, id);
+            size--;
+            return true;
+        }
+
+        //This method returns the edited trie and stops changing the nodes it shares in place.
+        public TaskTrie done(){
+            owner = new Object();
+            return root == null ? EMPTY : new TaskTrie(root, shift, size);
+        }
+
+        //This method returns a node this editor may change, copying it when another editor created it.
+        private Node editable(Node node){
+            return node.owner == owner ? node : new Node(owner, node.bitmap, node.slots.clone());
+        }
+
+        //This method puts a task below a node and returns the node to keep in its place.
+        private Node put(Node node, int s, long id, Task task){
+            Node n = editable(node);
+            int bit = bitOf(id, s);
+            int i = Integer.bitCount(n.bitmap & (bit - 1));
+            if ((n.bitmap & bit) != 0){
+                n.slots[i] = s == 0 ? task : put((Node) n.slots[i], s - BITS, id, task);
+                return n;
+            }
+            int count = Integer.bitCount(n.bitmap);
+            if (count == n.slots.length){
+                n.slots = Arrays.copyOf(n.slots, Math.min(WIDTH, count * 2));
+            }
+            System.arraycopy(n.slots, i, n.slots, i + 1, count - i);
+            if (s == 0){
+                n.slots[i] = task;
+                size++;
+            } else{
+                n.slots[i] = put(new Node(owner, 0, new Object[1]), s - BITS, id, task);
+            }
+            n.bitmap |= bit;
+            return n;
+        }
+
+        //This method removes an id that is present below a node and returns the node to keep, or null once it is empty.
+        private Node remove(Node node, int s, long id){
+            int bit = bitOf(id, s);
+            int i = Integer.bitCount(node.bitmap & (bit - 1));
+            if (s > 0){
+                Node child = remove((Node) node.slots[i], s - BITS, id);
+                if (child != null){
+                    Node n = editable(node);
+                    n.slots[i] = child;
+                    return n;
+                }
+            }
+            int count = Integer.bitCount(node.bitmap);
+            if (count == 1){
+                return null;
+            }
+            Node n = editable(node);
+            System.arraycopy(n.slots, i + 1, n.slots, i, count - i - 1);
+            n.slots[count - 1] = null;
+            n.bitmap &= ~bit;
+            return n;
+        }
+    }
+}
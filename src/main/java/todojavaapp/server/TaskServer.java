@@ -0,0 +1,356 @@
+//This file serves the tasks of one list as a small JSON API on the loopback interface.
+package todojavaapp.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import todojavaapp.model.DateFilter;
+import todojavaapp.model.Priority;
+import todojavaapp.model.Task;
+import todojavaapp.model.TaskTextIndex;
+import todojavaapp.model.TaskValidator;
+import todojavaapp.repository.TaskRepository;
+import todojavaapp.repository.TaskSnapshot;
+import todojavaapp.storage.TaskJsonReader;
+import todojavaapp.storage.TaskJsonWriter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//This class answers GET, POST, PUT and DELETE on /tasks and /tasks/{id} straight from a task repository.
+//Reads use the latest snapshot without locking, so requests never wait for each other or for a write in progress,
+//and lists are paged by id so a page costs its own size however many tasks there are.
+//Every response to a GET carries an ETag made from the data version, so a client asking again with If-None-Match
+//gets an empty 304 until something changes.
+public class TaskServer implements Closeable{
+    public static final int DEFAULT_PORT = Integer.getInteger("todo.server.port", 8765);
+    public static final int THREADS = Integer.getInteger("todo.server.threads", Math.max(8, 4 * Runtime.getRuntime().availableProcessors()));
+    public static final int BACKLOG = Integer.getInteger("todo.server.backlog", 4096);
+    public static final int DEFAULT_PAGE = 100;
+    public static final int MAX_PAGE = 1000;
+    public static final int MAX_BODY_BYTES = 64 * 1024;
+
+    private static final String JSON = "application/json; charset=utf-8";
+
+    private final TaskRepository repository;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    //This class carries an HTTP status and message from deep in a handler to the response.
+    private static final class Failure extends Exception{
+        private final int status;
+
+        //This constructor keeps the status and the message sent to the client.
+        Failure(int status, String message){
+            super(message);
+            this.status = status;
+        }
+    }
+
+    //This constructor binds the server to an address; nothing is answered until start is called.
+    public TaskServer(TaskRepository repository, InetSocketAddress address) throws IOException{
+        this.repository = repository;
+        this.server = HttpServer.create(address, BACKLOG);
+        this.executor = requestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/tasks", this::handle);
+    }
+
+    //This method returns an executor that runs each request on its own virtual thread on a JDK that has them,
+    //and otherwise on a fixed pool of daemon threads, which suffices because no handler blocks on a lock.
+    static ExecutorService requestExecutor(){
+        try{
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e){
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newFixedThreadPool(THREADS, r ->{
+                Thread t = new Thread(r, "task-server-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    //This method starts answering requests.
+    public void start(){
+        server.start();
+    }
+
+    //This method returns the address the server listens on, with the port picked when 0 was asked for.
+    public InetSocketAddress getAddress(){
+        return server.getAddress();
+    }
+
+    //This method stops answering requests and lets the request threads finish.
+    @Override
+    public void close(){
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    //This method routes a request by path and method and turns failures into JSON error responses.
+    private void handle(HttpExchange ex){
+        String method = ex.getRequestMethod();
+        String path = ex.getRequestURI().getPath();
+        try{
+            if ("/tasks".equals(path) || "/tasks/".equals(path)){
+                switch (method){
+                    case "GET": list(ex); break;
+                    case "POST": create(ex); break;
+                    default: throw notAllowed(ex, "GET, POST");
+                }
+            } else{
+                long id = parseId(path.substring("/tasks/".length()));
+                switch (method){
+                    case "GET": get(ex, id); break;
+                    case "PUT": update(ex, id); break;
+                    case "DELETE": delete(ex, id); break;
+                    default: throw notAllowed(ex, "GET, PUT, DELETE");
+                }
+            }
+        } catch (Failure f){
+            sendQuietly(ex, f.status, "{\"error\": " + TaskJsonWriter.quote(f.getMessage()) + "}");
+        } catch (IllegalArgumentException e){
+            sendQuietly(ex, 400, "{\"error\": " + TaskJsonWriter.quote(e.getMessage()) + "}");
+        } catch (IOException e){
+            System.err.println("Failed to answer " + method + " " + path + ": " + e.getMessage());
+        } catch (RuntimeException e){
+            System.err.println("Failed to answer " + method + " " + path + ": " + e);
+            sendQuietly(ex, 500, "{\"error\": \"Internal error\"}");
+        } finally{
+            ex.close();
+        }
+    }
+
+    //This method answers a page of tasks that pass the same priority, date and search filters as the window.
+    //The page starts after the id given as after and the response names the id to ask for the next page after.
+    private void list(HttpExchange ex) throws IOException, Failure{
+        Map<String, String> query = parseQuery(ex.getRequestURI().getRawQuery());
+        Priority priority = parsePriorityFilter(query.get("priority"));
+        DateFilter due = parseDateFilter(query.get("due"));
+        String[] terms = TaskTextIndex.parseQuery(query.getOrDefault("q", ""));
+        long after = parseNumber(query.get("after"), 0, Long.MAX_VALUE, "after");
+        int limit = (int) parseNumber(query.get("limit"), DEFAULT_PAGE, MAX_PAGE, "limit");
+        if (limit < 1){
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE);
+        }
+
+        TaskSnapshot snapshot = repository.snapshot();
+        LocalDate today = LocalDate.now();
+        //Which tasks are overdue or due this week changes at midnight without a write, so the day is part of the tag.
+        String tag = "\"" + epoch + "." + snapshot.getVersion() + "." + today.toEpochDay() + "\"";
+        if (notModified(ex, tag)){
+            return;
+        }
+        List<Task> page = new ArrayList<>(Math.min(limit + 1, 64));
+        if (after < Long.MAX_VALUE){
+            snapshot.forEachFrom(after + 1, t ->{
+                if ((priority == null || t.getPriority() == priority) && due.matches(t.nextDue(), today)
+                        && TaskTextIndex.matches(t.getDescription(), terms)){
+                    page.add(t);
+                }
+                return page.size() <= limit;
+            });
+        }
+        String next = "null";
+        if (page.size() > limit){
+            page.remove(limit);
+            next = Long.toString(page.get(limit - 1).getId());
+        }
+
+        StringBuilder body = new StringBuilder(64 + page.size() * 96);
+        body.append("{\"version\": ").append(snapshot.getVersion()).append(", \"tasks\": [");
+        for (int i = 0; i < page.size(); i++){
+            body.append(i == 0 ? "" : ", ").append(TaskJsonWriter.toJsonLine(page.get(i)));
+        }
+        body.append("], \"next\": ").append(next).append('}');
+        ex.getResponseHeaders().set("ETag", tag);
+        send(ex, 200, body.toString());
+    }
+
+    //This method answers one task.
+    private void get(HttpExchange ex, long id) throws IOException, Failure{
+        TaskSnapshot snapshot = repository.snapshot();
+        Task t = snapshot.get(id);
+        if (t == null){
+            throw new Failure(404, "No task with id " + id);
+        }
+        String tag = "\"" + epoch + "." + snapshot.getVersion() + "\"";
+        if (notModified(ex, tag)){
+            return;
+        }
+        ex.getResponseHeaders().set("ETag", tag);
+        send(ex, 200, TaskJsonWriter.toJsonLine(t));
+    }
+
+    //This method adds a task from a JSON body checked with the same rules as the task dialog.
+    private void create(HttpExchange ex) throws IOException, Failure{
+        Task stored = repository.add(readTask(ex));
+        ex.getResponseHeaders().set("Location", "/tasks/" + stored.getId());
+        send(ex, 201, TaskJsonWriter.toJsonLine(stored));
+    }
+
+    //This method replaces every field of a task from a JSON body.
+    private void update(HttpExchange ex, long id) throws IOException, Failure{
+        Task t = readTask(ex);
+        t.setId(id);
+        if (repository.update(t) == null){
+            throw new Failure(404, "No task with id " + id);
+        }
+        send(ex, 200, TaskJsonWriter.toJsonLine(t));
+    }
+
+    //This method removes a task.
+    private void delete(HttpExchange ex, long id) throws IOException, Failure{
+        if (repository.remove(id) == null){
+            throw new Failure(404, "No task with id " + id);
+        }
+        ex.sendResponseHeaders(204, -1);
+    }
+
+    //This method reads a JSON object body into a new task or throws with the first problem found.
+    private static Task readTask(HttpExchange ex) throws IOException, Failure{
+        byte[] bytes;
+        try (InputStream in = ex.getRequestBody()){
+            bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+        }
+        if (bytes.length > MAX_BODY_BYTES){
+            throw new Failure(413, "The body is larger than " + MAX_BODY_BYTES + " bytes");
+        }
+        Map<String, String> fields;
+        try{
+            TaskJsonReader reader = TaskJsonReader.forLine(new String(bytes, StandardCharsets.UTF_8), 1);
+            fields = reader.readObject();
+            if (!reader.atEnd()){
+                throw new IOException("Unexpected text after the object");
+            }
+        } catch (IOException e){
+            throw new IllegalArgumentException("The body is not a JSON object: " + e.getMessage());
+        }
+        return TaskValidator.validate(fields.get("description"), fields.get("priority"), fields.get("dueDate"), fields.get("recurrence"));
+    }
+
+    //This method answers 304 when the client already holds the version a tag names and returns whether it did.
+    private static boolean notModified(HttpExchange ex, String tag) throws IOException{
+        String header = ex.getRequestHeaders().getFirst("If-None-Match");
+        if (header == null){
+            return false;
+        }
+        for (String candidate : header.split(",")){
+            String c = candidate.trim();
+            if (c.startsWith("W/")){
+                c = c.substring(2);
+            }
+            if (c.equals(tag) || c.equals("*")){
+                ex.getResponseHeaders().set("ETag", tag);
+                ex.sendResponseHeaders(304, -1);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //This method returns a 405 failure and names the methods a path allows.
+    private static Failure notAllowed(HttpExchange ex, String allowed){
+        ex.getResponseHeaders().set("Allow", allowed);
+        return new Failure(405, "Use " + allowed);
+    }
+
+    //This method sends a JSON body with a status.
+    private static void send(HttpExchange ex, int status, String body) throws IOException{
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", JSON);
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()){
+            out.write(bytes);
+        }
+    }
+
+    //This method sends an error body, ignoring a client that has already gone.
+    private static void sendQuietly(HttpExchange ex, int status, String body){
+        try{
+            send(ex, status, body);
+        } catch (IOException e){
+            //The client closed the connection, so there is nobody left to tell.
+        }
+    }
+
+    //This method splits a raw query string into decoded names and values.
+    private static Map<String, String> parseQuery(String raw){
+        Map<String, String> query = new HashMap<>();
+        if (raw == null || raw.isEmpty()){
+            return query;
+        }
+        for (String pair : raw.split("&")){
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            query.put(name, value);
+        }
+        return query;
+    }
+
+    //This method parses the id part of a path.
+    private static long parseId(String text) throws Failure{
+        try{
+            long id = Long.parseLong(text);
+            if (id > 0){
+                return id;
+            }
+        } catch (NumberFormatException e){
+            //Anything but a positive number names no task.
+        }
+        throw new Failure(404, "No task with id " + text);
+    }
+
+    //This method parses a priority filter, where a missing value or all matches every priority.
+    private static Priority parsePriorityFilter(String text){
+        if (text == null || text.isBlank() || "all".equalsIgnoreCase(text.trim())){
+            return null;
+        }
+        return TaskValidator.parsePriority(text);
+    }
+
+    //This method parses a date filter by name, such as today or this_week, where a missing value means all.
+    private static DateFilter parseDateFilter(String text){
+        if (text == null || text.isBlank()){
+            return DateFilter.ALL;
+        }
+        String name = text.trim().toUpperCase(Locale.ROOT).replace('-', '_').replace(' ', '_');
+        try{
+            return DateFilter.valueOf(name);
+        } catch (IllegalArgumentException e){
+            throw new IllegalArgumentException("Unknown due filter: " + text + ", use all, today, this_week or overdue");
+        }
+    }
+
+    //This method parses an optional whole number within bounds.
+    private static long parseNumber(String text, long fallback, long max, String name){
+        if (text == null || text.isBlank()){
+            return fallback;
+        }
+        try{
+            long value = Long.parseLong(text.trim());
+            if (value >= 0 && value <= max){
+                return value;
+            }
+        } catch (NumberFormatException e){
+            //Reported below with the allowed range.
+        }
+        throw new IllegalArgumentException(name + " must be a whole number between 0 and " + max);
+    }
+}
@@ -0,0 +1,219 @@
+//This file implements the compact binary snapshot format for tasks.
+package todojavaapp.storage;
+
+import todojavaapp.model.Priority;
+import todojavaapp.model.Recurrence;
+import todojavaapp.model.Task;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+//This class reads and writes a versioned binary snapshot that is loaded through a memory mapped buffer.
+public class BinaryTaskFormat{
+    //The file starts with MAGIC, a version int and a record count int.
+    //Each record is an id long, an epoch day int, a priority ordinal byte, a length prefixed UTF-8 description
+    //and a length prefixed UTF-8 repeat rule.
+    //Version 1 files have no id and get ids assigned on load, and files before version 3 have no repeat rule.
+    public static final int MAGIC = 0x54444A42;
+    public static final int VERSION = 3;
+    private static final int HEADER_SIZE = 12;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final int NO_DESCRIPTION = -1;
+    private static final long MAP_WINDOW = 1L << 30;
+
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    //This method returns whether a file starts with the binary magic number.
+    public static boolean isBinary(Path file) throws IOException{
+        if (!Files.exists(file) || Files.size(file) < 4){
+            return false;
+        }
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)){
+            ByteBuffer head = ByteBuffer.allocate(4);
+            int n;
+            do{
+                n = ch.read(head);
+            } while (n > 0 && head.hasRemaining());
+            head.flip();
+            return head.remaining() == 4 && head.getInt() == MAGIC;
+        }
+    }
+
+    //This method writes all tasks to a binary file.
+    public static void write(Path file, List<Task> tasks) throws IOException{
+        try (RecordWriter out = new RecordWriter(file)){
+            for (Task task : tasks){
+                out.write(task);
+            }
+        }
+    }
+
+    //This method writes a length prefixed UTF-8 string, or only NO_DESCRIPTION for null.
+    private static void writeText(DataOutputStream out, String text) throws IOException{
+        if (text == null){
+            out.writeInt(NO_DESCRIPTION);
+        } else{
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    //This method maps a binary file and decodes every record into a list.
+    public static List<Task> read(Path file) throws IOException{
+        List<Task> tasks = new ArrayList<>();
+        read(file, tasks::add);
+        return tasks;
+    }
+
+    //This method maps a binary file and passes each decoded record to a consumer.
+    public static void read(Path file, Consumer<Task> sink) throws IOException{
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)){
+            Cursor in = new Cursor(ch);
+            in.ensure(HEADER_SIZE);
+            if (in.buffer.getInt() != MAGIC){
+                throw new IOException("Not a binary task file: " + file);
+            }
+            int version = in.buffer.getInt();
+            if (version < 1 || version > VERSION){
+                throw new IOException("Unsupported binary task file version " + version);
+            }
+            int count = in.buffer.getInt();
+            if (count < 0){
+                throw new IOException("Corrupt binary task file: negative record count");
+            }
+
+            byte[] scratch = new byte[256];
+            for (int i = 0; i < count; i++){
+                in.ensure(version >= 2 ? 17 : 9);
+                long id = version >= 2 ? in.buffer.getLong() : 0;
+                int epochDay = in.buffer.getInt();
+                int ordinal = in.buffer.get();
+                int length = in.buffer.getInt();
+                if (ordinal < 0 || ordinal >= PRIORITIES.length){
+                    throw new IOException("Corrupt binary task file: bad priority in record " + i);
+                }
+                String description = null;
+                if (length != NO_DESCRIPTION){
+                    if (length < 0){
+                        throw new IOException("Corrupt binary task file: bad length in record " + i);
+                    }
+                    if (scratch.length < length){
+                        scratch = new byte[Math.max(length, scratch.length * 2)];
+                    }
+                    in.ensure(length);
+                    in.buffer.get(scratch, 0, length);
+                    description = new String(scratch, 0, length, StandardCharsets.UTF_8);
+                }
+                Recurrence recurrence = null;
+                if (version >= 3){
+                    in.ensure(4);
+                    length = in.buffer.getInt();
+                    if (length != NO_DESCRIPTION){
+                        if (length < 0){
+                            throw new IOException("Corrupt binary task file: bad repeat rule length in record " + i);
+                        }
+                        if (scratch.length < length){
+                            scratch = new byte[Math.max(length, scratch.length * 2)];
+                        }
+                        in.ensure(length);
+                        in.buffer.get(scratch, 0, length);
+                        try{
+                            recurrence = Recurrence.parse(new String(scratch, 0, length, StandardCharsets.UTF_8));
+                        } catch (IllegalArgumentException e){
+                            throw new IOException("Corrupt binary task file: bad repeat rule in record " + i);
+                        }
+                    }
+                }
+                LocalDate due = epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+                sink.accept(new Task(id, description, PRIORITIES[ordinal], due, recurrence));
+            }
+        }
+    }
+
+    //This class walks a file through mapped windows so files larger than one mapping can be read.
+    private static final class Cursor{
+        private final FileChannel channel;
+        private final long size;
+        private long windowStart;
+        private MappedByteBuffer buffer;
+
+        //This constructor maps the first window of the file.
+        Cursor(FileChannel channel) throws IOException{
+            this.channel = channel;
+            this.size = channel.size();
+            map(0);
+        }
+
+        //This method makes sure the next n bytes are inside the current window.
+        void ensure(int n) throws IOException{
+            if (buffer.remaining() >= n){
+                return;
+            }
+            long position = windowStart + buffer.position();
+            if (size - position < n){
+                throw new IOException("Binary task file is truncated");
+            }
+            map(position);
+        }
+
+        //This method maps a window starting at an absolute file position.
+        private void map(long position) throws IOException{
+            windowStart = position;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW, size - position));
+        }
+    }
+
+    //This class writes records one at a time and fills in the record count in the header once it is closed,
+    //so a snapshot can be written from a stream without knowing how many tasks it will hold.
+    public static final class RecordWriter implements Closeable{
+        private final Path file;
+        private final DataOutputStream out;
+        private int count;
+
+        //This constructor creates the file and writes the header with a count that close fills in.
+        public RecordWriter(Path file) throws IOException{
+            this.file = file;
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(0);
+        }
+
+        //This method writes one task as the next record.
+        public void write(Task task) throws IOException{
+            out.writeLong(task.getId());
+            LocalDate due = task.getDueDate();
+            out.writeInt(due == null ? NO_DATE : (int) due.toEpochDay());
+            out.writeByte(task.getPriority().ordinal());
+            writeText(out, task.getDescription());
+            writeText(out, task.getRecurrence() == null ? null : task.getRecurrence().toString());
+            count++;
+        }
+
+        //This method closes the file and writes the number of records into its header.
+        @Override
+        public void close() throws IOException{
+            out.close();
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)){
+                ByteBuffer header = ByteBuffer.allocate(4).putInt(0, count);
+                while (header.hasRemaining()){
+                    ch.write(header, HEADER_SIZE - 4 + header.position());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,388 @@
+//This file implements a task store that keeps every task in memory as a slot of parallel primitive arrays.
+package todojavaapp.storage;
+
+import todojavaapp.model.Priority;
+import todojavaapp.model.Recurrence;
+import todojavaapp.model.Task;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+//This class holds a task list in memory without a Task object per task. Each task is a slot across parallel arrays:
+//its id as a long, its due date as an int epoch day with NO_DAY for none, its priority as a byte ordinal and its
+//description as a handle into a pool that stores each distinct text once as UTF-8 bytes. Repeat rules are few and
+//are kept in a map by slot. A slot costs about 25 bytes with its share of the id table, against well over 100 for
+//a Task with its String and LocalDate, and a filter scan reads a few dense arrays instead of chasing references.
+//Tasks are built as Task objects only when asked for, which the table does for the rows on screen.
+//The snapshot and journal stay the record of the list and every change is journaled as in the window.
+//The store is not thread safe: it is filled on the thread that opens it and used on one thread at a time after that.
+public class CompactTaskStore implements TaskStore{
+    public static final int NO_DAY = Integer.MAX_VALUE;
+    public static final int LOAD_BATCH = 2000;
+
+    private static final int SERIES = 0x40;
+    private static final int PRIORITY_MASK = 0x3;
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private final TaskStorage storage;
+    private final TextPool descriptions = new TextPool();
+    private final Map<Integer, Recurrence> rules = new HashMap<>();
+
+    private long[] ids = new long[64];
+    private int[] due = new int[64];
+    private byte[] priority = new byte[64];
+    private int[] description = new int[64];
+    private int slots;
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int[] idTable = new int[128];
+    private int size;
+    private long maxId;
+    private PersistenceWorker persistence;
+    private Consumer<IOException> saveErrorHandler;
+
+    //This constructor keeps the storage the tasks are read from and journaled to.
+    public CompactTaskStore(TaskStorage storage){
+        this.storage = storage;
+    }
+
+    //This method reads every task of the snapshot and journal into the arrays.
+    @Override
+    public boolean open(IntConsumer progress) throws IOException{
+        int[] read = new int[1];
+        storage.loadTasks(new TaskLoadListener(){
+            @Override
+            public void taskLoaded(Task task){
+                apply(TaskChange.added(task));
+            }
+
+            @Override
+            public void changeReplayed(TaskChange change){
+                apply(change);
+            }
+
+            //This method applies one loaded task or replayed change and reports progress now and then.
+            private void apply(TaskChange change){
+                int slot = slotOf(change.getId());
+                if (change.getKind() == TaskChange.Kind.REMOVE){
+                    if (slot >= 0){
+                        free(slot);
+                    }
+                } else if (slot < 0){
+                    insert(change.getTask());
+                } else{
+                    write(slot, change.getTask());
+                }
+                if (++read[0] % LOAD_BATCH == 0){
+                    progress.accept(read[0]);
+                }
+            }
+        });
+        progress.accept(read[0]);
+        persistence = new PersistenceWorker(storage);
+        if (saveErrorHandler != null){
+            persistence.setErrorHandler(saveErrorHandler);
+        }
+        return true;
+    }
+
+    //This method sets the handler that receives journal write failures and the other problems the files report.
+    //It may be set before the store is opened.
+    @Override
+    public void setSaveErrorHandler(Consumer<IOException> handler){
+        saveErrorHandler = handler;
+        storage.setErrorHandler(handler);
+        if (persistence != null){
+            persistence.setErrorHandler(handler);
+        }
+    }
+
+    //This method returns the number of tasks.
+    @Override
+    public int size(){
+        return size;
+    }
+
+    //This method returns the bytes of memory held by the arrays, the id table and the description pool.
+    public long footprint(){
+        return 17L * ids.length + 4L * (freeSlots.length + idTable.length) + descriptions.footprint();
+    }
+
+    //This method returns one more than the highest slot in use, for scans and arrays indexed by slot.
+    public int slotLimit(){
+        return slots;
+    }
+
+    //This method returns whether a slot below slotLimit holds a task.
+    public boolean isLive(int slot){
+        return ids[slot] != 0;
+    }
+
+    //This method returns the slot of the task with an id, or -1.
+    public int slotOf(long id){
+        int mask = idTable.length - 1;
+        for (int i = hash(id) & mask; idTable[i] != 0; i = (i + 1) & mask){
+            int slot = idTable[i] - 1;
+            if (ids[slot] == id){
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    //This method returns the id of the task in a slot.
+    public long idAt(int slot){
+        return ids[slot];
+    }
+
+    //This method returns the priority ordinal of the task in a slot.
+    public int priorityAt(int slot){
+        return priority[slot] & PRIORITY_MASK;
+    }
+
+    //This method returns whether the task in a slot repeats.
+    public boolean isSeries(int slot){
+        return (priority[slot] & SERIES) != 0;
+    }
+
+    //This method returns the stored due date of a slot as an epoch day, NO_DAY for none, which starts a series.
+    public int dueAt(int slot){
+        return due[slot];
+    }
+
+    //This method returns the epoch day a slot is due, which for a series is its earliest occurrence not yet done.
+    public int nextDue(int slot){
+        if ((priority[slot] & SERIES) == 0){
+            return due[slot];
+        }
+        return (int) rules.get(slot).first(LocalDate.ofEpochDay(due[slot])).toEpochDay();
+    }
+
+    //This method returns the description handle of a slot, TextPool.NONE for none, shared by equal descriptions.
+    public int descriptionAt(int slot){
+        return description[slot];
+    }
+
+    //This method returns the pool the description handles point into.
+    public TextPool descriptions(){
+        return descriptions;
+    }
+
+    //This method builds the task in a slot.
+    public Task taskAt(int slot){
+        return new Task(ids[slot], descriptions.get(description[slot]), PRIORITIES[priority[slot] & PRIORITY_MASK],
+            due[slot] == NO_DAY ? null : LocalDate.ofEpochDay(due[slot]), (priority[slot] & SERIES) != 0 ? rules.get(slot) : null);
+    }
+
+    //This method returns the task with an id, or null.
+    @Override
+    public Task get(long id){
+        int slot = slotOf(id);
+        return slot < 0 ? null : taskAt(slot);
+    }
+
+    //This method adds a task under the next free id, saves that and returns the stored copy.
+    @Override
+    public Task add(Task task){
+        Task stored = task.copy();
+        stored.setId(maxId + 1);
+        insert(stored);
+        persistence.submit(TaskChange.added(stored.copy()));
+        return stored;
+    }
+
+    //This method replaces the task with the id of a task, saves that and returns the task it replaced, or null if none.
+    @Override
+    public Task update(Task task){
+        int slot = slotOf(task.getId());
+        if (slot < 0){
+            return null;
+        }
+        Task before = taskAt(slot);
+        write(slot, task);
+        persistence.submit(TaskChange.updated(task.copy()));
+        return before;
+    }
+
+    //This method adds or replaces a task under its own id, saves that and returns the task it replaced, or null.
+    @Override
+    public Task put(Task task){
+        int slot = slotOf(task.getId());
+        if (slot < 0){
+            insert(task);
+            persistence.submit(TaskChange.added(task.copy()));
+            return null;
+        }
+        Task before = taskAt(slot);
+        write(slot, task);
+        persistence.submit(TaskChange.updated(task.copy()));
+        return before;
+    }
+
+    //This method removes the task with an id, saves that and returns it, or null when there was none.
+    @Override
+    public Task remove(long id){
+        int slot = slotOf(id);
+        if (slot < 0){
+            return null;
+        }
+        Task before = taskAt(slot);
+        free(slot);
+        persistence.submit(TaskChange.removed(id));
+        return before;
+    }
+
+    //This method returns the earliest day on or after a day on which a task or an open occurrence is due, or null.
+    @Override
+    public LocalDate nextDueDate(LocalDate from){
+        int first = (int) from.toEpochDay();
+        int next = NO_DAY;
+        for (int slot = 0; slot < slots; slot++){
+            if (ids[slot] != 0){
+                int day = nextDue(slot);
+                if (day >= first && day < next){
+                    next = day;
+                }
+            }
+        }
+        return next == NO_DAY ? null : LocalDate.ofEpochDay(next);
+    }
+
+    //This method returns the tasks in id order that are due on a day, counting a repeating task by its open occurrence.
+    @Override
+    public List<Task> dueOn(LocalDate day){
+        int d = (int) day.toEpochDay();
+        List<Task> found = new ArrayList<>();
+        for (int slot = 0; slot < slots; slot++){
+            if (ids[slot] != 0 && nextDue(slot) == d){
+                found.add(taskAt(slot));
+            }
+        }
+        found.sort((a, b) -> Long.compare(a.getId(), b.getId()));
+        return found;
+    }
+
+    //This method writes every change to the journal before returning.
+    @Override
+    public void flush() throws IOException{
+        if (persistence != null){
+            persistence.flush();
+        }
+    }
+
+    //This method writes every change to the journal and releases it.
+    @Override
+    public void close() throws IOException{
+        if (persistence != null){
+            persistence.close();
+            persistence = null;
+        }
+    }
+
+    //This method puts a task into a free slot under its own id.
+    private void insert(Task task){
+        int slot;
+        if (freeCount > 0){
+            slot = freeSlots[--freeCount];
+        } else{
+            if (slots == ids.length){
+                int grown = slots * 2;
+                ids = Arrays.copyOf(ids, grown);
+                due = Arrays.copyOf(due, grown);
+                priority = Arrays.copyOf(priority, grown);
+                description = Arrays.copyOf(description, grown);
+            }
+            slot = slots++;
+        }
+        ids[slot] = task.getId();
+        description[slot] = TextPool.NONE;
+        write(slot, task);
+        size++;
+        maxId = Math.max(maxId, task.getId());
+        if (size * 2 > idTable.length){
+            rehash(idTable.length * 2);
+        } else{
+            place(slot);
+        }
+    }
+
+    //This method writes the fields of a task into a slot that already holds its id.
+    private void write(int slot, Task task){
+        int text = descriptions.intern(task.getDescription());
+        descriptions.release(description[slot]);
+        description[slot] = text;
+        due[slot] = task.getDueDate() == null ? NO_DAY : (int) task.getDueDate().toEpochDay();
+        boolean series = task.isRecurring();
+        priority[slot] = (byte) (task.getPriority().ordinal() | (series ? SERIES : 0));
+        if (series){
+            rules.put(slot, task.getRecurrence());
+        } else{
+            rules.remove(slot);
+        }
+    }
+
+    //This method empties a slot and keeps it for the next insert.
+    private void free(int slot){
+        unplace(slot);
+        descriptions.release(description[slot]);
+        description[slot] = TextPool.NONE;
+        rules.remove(slot);
+        ids[slot] = 0;
+        size--;
+        if (freeCount == freeSlots.length){
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    //This method puts a slot into the id table at the first free place from the hash of its id.
+    private void place(int slot){
+        int mask = idTable.length - 1;
+        int i = hash(ids[slot]) & mask;
+        while (idTable[i] != 0){
+            i = (i + 1) & mask;
+        }
+        idTable[i] = slot + 1;
+    }
+
+    //This method takes a slot out of the id table and moves later places back so every lookup still finds its slot.
+    private void unplace(int slot){
+        int mask = idTable.length - 1;
+        int i = hash(ids[slot]) & mask;
+        while (idTable[i] != slot + 1){
+            i = (i + 1) & mask;
+        }
+        int hole = i;
+        for (int j = (hole + 1) & mask; idTable[j] != 0; j = (j + 1) & mask){
+            int home = hash(ids[idTable[j] - 1]) & mask;
+            if (((j - home) & mask) >= ((j - hole) & mask)){
+                idTable[hole] = idTable[j];
+                hole = j;
+            }
+        }
+        idTable[hole] = 0;
+    }
+
+    //This method builds a larger id table from the live slots.
+    private void rehash(int capacity){
+        idTable = new int[capacity];
+        for (int slot = 0; slot < slots; slot++){
+            if (ids[slot] != 0){
+                place(slot);
+            }
+        }
+    }
+
+    //This method spreads the bits of an id over the low bits the id table uses.
+    private static int hash(long id){
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
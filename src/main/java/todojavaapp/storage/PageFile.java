@@ -0,0 +1,209 @@
+//This file implements a file of fixed size pages read and written through a bounded cache.
+package todojavaapp.storage;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+//This class reads pages of a file on demand and keeps the most recently used ones in memory up to a budget.
+//Pages are only evicted by trim, which the owner calls between operations, so a page obtained during one
+//operation stays valid however many others that operation touches. Changed pages are written back when they are
+//evicted and when the file is flushed. Freed pages are chained through their first bytes and handed out again.
+public class PageFile implements Closeable{
+    public static final int PAGE_SIZE = 4096;
+    public static final int MIN_CACHED_PAGES = 64;
+
+    private static final int FREE_NEXT = 4;
+
+    private final FileChannel channel;
+    private final int capacity;
+    private final LinkedHashMap<Integer, Page> cache = new LinkedHashMap<>(256, 0.75f, true);
+    private int pageCount;
+    private int freeHead;
+    private long hits;
+    private long misses;
+
+    //This class is one page held in memory.
+    public static final class Page{
+        private final int number;
+        private final ByteBuffer data = ByteBuffer.allocate(PAGE_SIZE);
+        private boolean dirty;
+
+        //This constructor creates an empty page for a page number.
+        private Page(int number){
+            this.number = number;
+        }
+
+        //This method returns the page number.
+        public int getNumber(){
+            return number;
+        }
+
+        //This method returns the bytes of the page; call changed after writing to them.
+        public ByteBuffer data(){
+            return data;
+        }
+
+        //This method marks the page to be written back.
+        public void changed(){
+            dirty = true;
+        }
+    }
+
+    //This constructor opens or creates a page file and caches as many pages as fit in a number of bytes.
+    public PageFile(Path file, long cacheBytes) throws IOException{
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.capacity = (int) Math.max(MIN_CACHED_PAGES, Math.min(Integer.MAX_VALUE, cacheBytes / PAGE_SIZE));
+        this.pageCount = (int) (channel.size() / PAGE_SIZE);
+    }
+
+    //This method returns the number of pages in the file, including pages not written out yet.
+    public int getPageCount(){
+        return pageCount;
+    }
+
+    //This method returns the number of pages the cache holds at most between operations.
+    public int getCapacity(){
+        return capacity;
+    }
+
+    //This method returns how many page reads were answered from memory.
+    public long getHits(){
+        return hits;
+    }
+
+    //This method returns how many page reads went to the file.
+    public long getMisses(){
+        return misses;
+    }
+
+    //This method returns the first page of the free chain, or 0 when there is none.
+    public int getFreeHead(){
+        return freeHead;
+    }
+
+    //This method sets the first page of the free chain, as read back from a header.
+    public void setFreeHead(int page){
+        this.freeHead = page;
+    }
+
+    //This method returns a page, reading it from the file when it is not in memory.
+    public Page get(int number) throws IOException{
+        Page page = cache.get(number);
+        if (page != null){
+            hits++;
+            return page;
+        }
+        if (number < 0 || number >= pageCount){
+            throw new IOException("Page " + number + " is outside the file of " + pageCount + " pages");
+        }
+        misses++;
+        page = new Page(number);
+        long position = (long) number * PAGE_SIZE;
+        ByteBuffer buf = page.data;
+        while (buf.hasRemaining()){
+            int n = channel.read(buf, position + buf.position());
+            if (n < 0){
+                throw new EOFException("Page " + number + " is cut short");
+            }
+        }
+        buf.clear();
+        cache.put(number, page);
+        return page;
+    }
+
+    //This method returns a zeroed page, reusing a freed one when there is one.
+    public Page allocate() throws IOException{
+        Page page;
+        if (freeHead != 0){
+            page = get(freeHead);
+            freeHead = page.data.getInt(FREE_NEXT);
+            Arrays.fill(page.data.array(), (byte) 0);
+        } else{
+            page = new Page(pageCount++);
+            cache.put(page.number, page);
+        }
+        page.dirty = true;
+        return page;
+    }
+
+    //This method puts a page on the free chain so a later allocate hands it out again.
+    public void free(Page page){
+        Arrays.fill(page.data.array(), (byte) 0);
+        page.data.putInt(FREE_NEXT, freeHead);
+        freeHead = page.number;
+        page.dirty = true;
+    }
+
+    //This method evicts the least recently used pages beyond the budget, writing back the changed ones.
+    public void trim() throws IOException{
+        if (cache.size() <= capacity){
+            return;
+        }
+        Iterator<Page> it = cache.values().iterator();
+        while (cache.size() > capacity && it.hasNext()){
+            Page page = it.next();
+            if (page.dirty){
+                write(page);
+            }
+            it.remove();
+        }
+    }
+
+    //This method writes every changed page in page order and forces them to the device.
+    public void flush() throws IOException{
+        List<Page> dirty = new ArrayList<>();
+        for (Page page : cache.values()){
+            if (page.dirty){
+                dirty.add(page);
+            }
+        }
+        dirty.sort((a, b) -> Integer.compare(a.number, b.number));
+        for (Page page : dirty){
+            write(page);
+        }
+        channel.force(false);
+    }
+
+    //This method drops every page and empties the file.
+    public void truncate() throws IOException{
+        cache.clear();
+        channel.truncate(0);
+        pageCount = 0;
+        freeHead = 0;
+    }
+
+    //This method releases the file without writing changed pages; flush first to keep them.
+    @Override
+    public void close() throws IOException{
+        cache.clear();
+        channel.close();
+    }
+
+    //This method writes one page at its place in the file.
+    private void write(Page page) throws IOException{
+        ByteBuffer buf = page.data.duplicate();
+        buf.clear();
+        long position = (long) page.number * PAGE_SIZE;
+        while (buf.hasRemaining()){
+            channel.write(buf, position + buf.position());
+        }
+        page.dirty = false;
+    }
+
+    //This method returns a short summary of the cache for diagnostics.
+    @Override
+    public String toString(){
+        long total = hits + misses;
+        return cache.size() + "/" + capacity + " pages cached, " + (total == 0 ? 100 : hits * 100 / total) + "% hits";
+    }
+}
@@ -0,0 +1,340 @@
+//This file implements a B+ tree whose nodes are pages of a page file.
+package todojavaapp.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+//This class maps keys made of two longs to a long value, sorted by the first long and then the second.
+//Leaves are linked both ways, so a scan can start at any key and walk forwards or backwards one page at a time.
+//A removal only takes the entry out of its leaf; a leaf left empty stays in the chain and scans step over it,
+//which keeps a removal to one page at the cost of some space after mass deletes.
+public class PagedIndex{
+    public static final long NONE = -1;
+
+    private static final byte LEAF = 2;
+    private static final byte BRANCH = 3;
+    private static final int TYPE = 0;
+    private static final int COUNT = 2;
+    private static final int NEXT = 4;
+    private static final int PREV = 8;
+    private static final int FIRST_CHILD = 8;
+    private static final int ENTRIES = 16;
+    private static final int LEAF_ENTRY = 24;
+    private static final int BRANCH_ENTRY = 20;
+    private static final int LEAF_CAPACITY = (PageFile.PAGE_SIZE - ENTRIES) / LEAF_ENTRY;
+    private static final int BRANCH_CAPACITY = (PageFile.PAGE_SIZE - ENTRIES) / BRANCH_ENTRY;
+    private static final int MAX_DEPTH = 16;
+
+    private final PageFile pages;
+    private int root;
+
+    //This interface receives the entries of a scan in order and returns false to stop it.
+    public interface Visitor{
+        //This method is called with the two parts of the key and the value of one entry.
+        boolean visit(long hi, long lo, long value) throws IOException;
+    }
+
+    //This constructor opens the tree whose root is a page, or an empty tree for page 0.
+    public PagedIndex(PageFile pages, int root){
+        this.pages = pages;
+        this.root = root;
+    }
+
+    //This method returns the root page to keep in a header, or 0 while the tree is empty.
+    public int getRoot(){
+        return root;
+    }
+
+    //This method returns the value of a key, or NONE.
+    public long get(long hi, long lo) throws IOException{
+        if (root == 0){
+            return NONE;
+        }
+        ByteBuffer leaf = findLeaf(hi, lo, null, null).data();
+        int i = lowerBound(leaf, hi, lo);
+        return i < count(leaf) && compareAt(leaf, i, hi, lo) == 0 ? leaf.getLong(leafAt(i) + 16) : NONE;
+    }
+
+    //This method sets the value of a key, adding the key when it is missing.
+    public void put(long hi, long lo, long value) throws IOException{
+        if (root == 0){
+            PageFile.Page page = pages.allocate();
+            page.data().put(TYPE, LEAF);
+            root = page.getNumber();
+        }
+        PageFile.Page[] path = new PageFile.Page[MAX_DEPTH];
+        int[] slots = new int[MAX_DEPTH];
+        int depth = descend(hi, lo, path, slots);
+        PageFile.Page leaf = path[depth];
+        ByteBuffer buf = leaf.data();
+        int i = lowerBound(buf, hi, lo);
+        if (i < count(buf) && compareAt(buf, i, hi, lo) == 0){
+            buf.putLong(leafAt(i) + 16, value);
+            leaf.changed();
+            return;
+        }
+
+        //Split a full leaf in half first, then insert into whichever half the key belongs to.
+        long sepHi = 0;
+        long sepLo = 0;
+        PageFile.Page right = null;
+        if (count(buf) == LEAF_CAPACITY){
+            right = splitLeaf(leaf);
+            ByteBuffer r = right.data();
+            sepHi = r.getLong(leafAt(0));
+            sepLo = r.getLong(leafAt(0) + 8);
+            if (compare(hi, lo, sepHi, sepLo) >= 0){
+                leaf = right;
+                buf = r;
+                i -= count(path[depth].data());
+            }
+        }
+        insertLeafEntry(buf, i, hi, lo, value);
+        leaf.changed();
+
+        //Carry the separator of each split up the path, splitting full branches on the way.
+        for (int level = depth - 1; right != null; level--){
+            if (level < 0){
+                PageFile.Page top = pages.allocate();
+                ByteBuffer t = top.data();
+                t.put(TYPE, BRANCH);
+                t.putInt(FIRST_CHILD, root);
+                insertBranchEntry(t, 0, sepHi, sepLo, right.getNumber());
+                root = top.getNumber();
+                return;
+            }
+            PageFile.Page parent = path[level];
+            ByteBuffer p = parent.data();
+            int at = slots[level];
+            int child = right.getNumber();
+            right = null;
+            if (count(p) < BRANCH_CAPACITY){
+                insertBranchEntry(p, at, sepHi, sepLo, child);
+                parent.changed();
+                break;
+            }
+            //The middle entry of a full branch moves up and the entries after it move to a new right branch.
+            int mid = count(p) / 2;
+            long upHi = p.getLong(branchAt(mid));
+            long upLo = p.getLong(branchAt(mid) + 8);
+            PageFile.Page sibling = pages.allocate();
+            ByteBuffer s = sibling.data();
+            s.put(TYPE, BRANCH);
+            s.putInt(FIRST_CHILD, p.getInt(branchAt(mid) + 16));
+            int moved = count(p) - mid - 1;
+            System.arraycopy(p.array(), branchAt(mid + 1), s.array(), branchAt(0), moved * BRANCH_ENTRY);
+            setCount(s, moved);
+            setCount(p, mid);
+            if (at <= mid){
+                insertBranchEntry(p, at, sepHi, sepLo, child);
+            } else{
+                insertBranchEntry(s, at - mid - 1, sepHi, sepLo, child);
+            }
+            parent.changed();
+            right = sibling;
+            sepHi = upHi;
+            sepLo = upLo;
+        }
+    }
+
+    //This method removes a key and returns whether it was there.
+    public boolean remove(long hi, long lo) throws IOException{
+        if (root == 0){
+            return false;
+        }
+        PageFile.Page leaf = findLeaf(hi, lo, null, null);
+        ByteBuffer buf = leaf.data();
+        int i = lowerBound(buf, hi, lo);
+        int n = count(buf);
+        if (i >= n || compareAt(buf, i, hi, lo) != 0){
+            return false;
+        }
+        System.arraycopy(buf.array(), leafAt(i + 1), buf.array(), leafAt(i), (n - i - 1) * LEAF_ENTRY);
+        setCount(buf, n - 1);
+        leaf.changed();
+        return true;
+    }
+
+    //This method passes the entries from a key on to a visitor, in key order when ascending and in reverse otherwise.
+    //An ascending scan starts at the first key not below the given one and a descending scan at the last key not above it.
+    //Pages the scan has left may be evicted while it runs, so a visitor must not change the page file.
+    public void forEachFrom(long hi, long lo, boolean ascending, Visitor visitor) throws IOException{
+        if (root == 0){
+            return;
+        }
+        PageFile.Page leaf = findLeaf(hi, lo, null, null);
+        ByteBuffer buf = leaf.data();
+        int i = ascending ? lowerBound(buf, hi, lo) : upperBound(buf, hi, lo) - 1;
+        while (true){
+            if (ascending){
+                for (int n = count(buf); i < n; i++){
+                    int at = leafAt(i);
+                    if (!visitor.visit(buf.getLong(at), buf.getLong(at + 8), buf.getLong(at + 16))){
+                        return;
+                    }
+                }
+            } else{
+                for (; i >= 0; i--){
+                    int at = leafAt(i);
+                    if (!visitor.visit(buf.getLong(at), buf.getLong(at + 8), buf.getLong(at + 16))){
+                        return;
+                    }
+                }
+            }
+            int nextPage = buf.getInt(ascending ? NEXT : PREV);
+            if (nextPage == 0){
+                return;
+            }
+            pages.trim();
+            buf = pages.get(nextPage).data();
+            i = ascending ? 0 : count(buf) - 1;
+        }
+    }
+
+    //This method passes every entry to a visitor, from the smallest key when ascending and from the largest otherwise.
+    public void forEach(boolean ascending, Visitor visitor) throws IOException{
+        if (ascending){
+            forEachFrom(Long.MIN_VALUE, Long.MIN_VALUE, true, visitor);
+        } else{
+            forEachFrom(Long.MAX_VALUE, Long.MAX_VALUE, false, visitor);
+        }
+    }
+
+    //This method returns the leaf a key belongs in, recording the branches passed and the child taken in each.
+    private PageFile.Page findLeaf(long hi, long lo, PageFile.Page[] path, int[] slots) throws IOException{
+        PageFile.Page page = pages.get(root);
+        int depth = 0;
+        while (page.data().get(TYPE) == BRANCH){
+            ByteBuffer buf = page.data();
+            int u = upperBound(buf, hi, lo);
+            if (path != null){
+                path[depth] = page;
+                slots[depth] = u;
+            }
+            depth++;
+            page = pages.get(u == 0 ? buf.getInt(FIRST_CHILD) : buf.getInt(branchAt(u - 1) + 16));
+        }
+        if (path != null){
+            path[depth] = page;
+        }
+        return page;
+    }
+
+    //This method fills the path down to the leaf of a key and returns the depth of the leaf.
+    private int descend(long hi, long lo, PageFile.Page[] path, int[] slots) throws IOException{
+        findLeaf(hi, lo, path, slots);
+        int depth = 0;
+        while (path[depth].data().get(TYPE) == BRANCH){
+            depth++;
+        }
+        return depth;
+    }
+
+    //This method moves the upper half of a full leaf to a new leaf linked in after it and returns the new leaf.
+    private PageFile.Page splitLeaf(PageFile.Page leaf) throws IOException{
+        ByteBuffer buf = leaf.data();
+        PageFile.Page right = pages.allocate();
+        ByteBuffer r = right.data();
+        r.put(TYPE, LEAF);
+        int n = count(buf);
+        int keep = n / 2;
+        System.arraycopy(buf.array(), leafAt(keep), r.array(), leafAt(0), (n - keep) * LEAF_ENTRY);
+        setCount(r, n - keep);
+        setCount(buf, keep);
+        int after = buf.getInt(NEXT);
+        r.putInt(NEXT, after);
+        r.putInt(PREV, leaf.getNumber());
+        buf.putInt(NEXT, right.getNumber());
+        if (after != 0){
+            PageFile.Page next = pages.get(after);
+            next.data().putInt(PREV, right.getNumber());
+            next.changed();
+        }
+        leaf.changed();
+        return right;
+    }
+
+    //This method inserts a leaf entry at a position, shifting the later ones.
+    private static void insertLeafEntry(ByteBuffer buf, int i, long hi, long lo, long value){
+        int n = count(buf);
+        System.arraycopy(buf.array(), leafAt(i), buf.array(), leafAt(i + 1), (n - i) * LEAF_ENTRY);
+        int at = leafAt(i);
+        buf.putLong(at, hi);
+        buf.putLong(at + 8, lo);
+        buf.putLong(at + 16, value);
+        setCount(buf, n + 1);
+    }
+
+    //This method inserts a branch entry at a position, shifting the later ones.
+    private static void insertBranchEntry(ByteBuffer buf, int i, long hi, long lo, int child){
+        int n = count(buf);
+        System.arraycopy(buf.array(), branchAt(i), buf.array(), branchAt(i + 1), (n - i) * BRANCH_ENTRY);
+        int at = branchAt(i);
+        buf.putLong(at, hi);
+        buf.putLong(at + 8, lo);
+        buf.putInt(at + 16, child);
+        setCount(buf, n + 1);
+    }
+
+    //This method returns the first entry of a node whose key is not below the given key.
+    private static int lowerBound(ByteBuffer buf, long hi, long lo){
+        int a = 0;
+        int b = count(buf);
+        while (a < b){
+            int mid = (a + b) >>> 1;
+            if (compareAt(buf, mid, hi, lo) < 0){
+                a = mid + 1;
+            } else{
+                b = mid;
+            }
+        }
+        return a;
+    }
+
+    //This method returns the first entry of a node whose key is above the given key.
+    private static int upperBound(ByteBuffer buf, long hi, long lo){
+        int a = 0;
+        int b = count(buf);
+        while (a < b){
+            int mid = (a + b) >>> 1;
+            if (compareAt(buf, mid, hi, lo) <= 0){
+                a = mid + 1;
+            } else{
+                b = mid;
+            }
+        }
+        return a;
+    }
+
+    //This method compares the key of an entry with a key, for leaves and branches alike.
+    private static int compareAt(ByteBuffer buf, int i, long hi, long lo){
+        int at = buf.get(TYPE) == LEAF ? leafAt(i) : branchAt(i);
+        return compare(buf.getLong(at), buf.getLong(at + 8), hi, lo);
+    }
+
+    //This method compares two keys.
+    private static int compare(long aHi, long aLo, long bHi, long bLo){
+        int c = Long.compare(aHi, bHi);
+        return c != 0 ? c : Long.compare(aLo, bLo);
+    }
+
+    //This method returns the number of entries in a node.
+    private static int count(ByteBuffer buf){
+        return buf.getShort(COUNT);
+    }
+
+    //This method sets the number of entries in a node.
+    private static void setCount(ByteBuffer buf, int n){
+        buf.putShort(COUNT, (short) n);
+    }
+
+    //This method returns where a leaf entry starts.
+    private static int leafAt(int i){
+        return ENTRIES + i * LEAF_ENTRY;
+    }
+
+    //This method returns where a branch entry starts.
+    private static int branchAt(int i){
+        return ENTRIES + i * BRANCH_ENTRY;
+    }
+}
@@ -0,0 +1,732 @@
+//This file implements a task store kept in fixed size pages on disk so memory holds only the pages in use.
+package todojavaapp.storage;
+
+import todojavaapp.model.Priority;
+import todojavaapp.model.Recurrence;
+import todojavaapp.model.Task;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+//This class keeps the tasks of a list in a page file next to its snapshot: records in slotted heap pages,
+//a B+ tree from id to record and a B+ tree from due date and id to record.
+//Only the pages in use stay in memory, up to the cache budget, so the heap does not grow with the list.
+//The snapshot and journal stay the record of the list: every change is journaled as in the window and the page file
+//is a copy that is rebuilt from them whenever it was not closed cleanly or they have changed since.
+//Index values carry the record address with the priority, so priority filters
+//and orders never read a record.
+public class PagedTaskStore implements TaskStore{
+    public static final long DEFAULT_CACHE_BYTES = Long.getLong("todo.pageCache.mb", 32) * 1024 * 1024;
+    public static final int MAGIC = 0x54445047;
+    public static final int VERSION = 2;
+    public static final long NO_DATE = Long.MAX_VALUE;
+    public static final int LOAD_BATCH = 2000;
+
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_PAGE_SIZE = 8;
+    private static final int H_CLEAN = 12;
+    private static final int H_FREE = 16;
+    private static final int H_ID_ROOT = 20;
+    private static final int H_DUE_ROOT = 24;
+    private static final int H_SIZE = 32;
+    private static final int H_MAX_ID = 40;
+    private static final int H_HEAP = 48;
+    private static final int H_FINGERPRINT = 52;
+
+    private static final byte HEAP = 1;
+    private static final byte OVERFLOW = 4;
+    private static final int SLOT_COUNT = 2;
+    private static final int FREE_END = 4;
+    private static final int GARBAGE = 6;
+    private static final int SLOTS = 8;
+    private static final int SLOT_SIZE = 4;
+    private static final int OVERFLOW_NEXT = 4;
+    private static final int OVERFLOW_LENGTH = 8;
+    private static final int OVERFLOW_DATA = 12;
+    private static final int MAX_INLINE = PageFile.PAGE_SIZE / 4;
+    private static final int ROOMY = PageFile.PAGE_SIZE / 4;
+    private static final int MAX_ROOMY_PAGES = 1024;
+
+    private static final int RECORD_HEAD = 14;
+    private static final int NO_DAY = Integer.MIN_VALUE;
+    private static final byte HAS_RULE = 1;
+    private static final byte SPILLED = 2;
+    private static final byte NO_DESCRIPTION = 4;
+
+    private static final int SLOT_BITS = 12;
+    private static final long ADDRESS_MASK = (1L << 44) - 1;
+    private static final int PRIORITY_SHIFT = 44;
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private final TaskStorage storage;
+    private final Path file;
+    private final long cacheBytes;
+    private final Object lock = new Object();
+    private final ArrayDeque<Integer> roomy = new ArrayDeque<>();
+    private final Map<String, Recurrence> rules = new LinkedHashMap<>(64, 0.75f, true){
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Recurrence> eldest){
+            return size() > 256;
+        }
+    };
+
+    private PageFile pages;
+    private PagedIndex byId;
+    private PagedIndex byDue;
+    private PersistenceWorker persistence;
+    private int size;
+    private long maxId;
+    private int heapPage;
+    private boolean cleanOnDisk;
+    private Consumer<IOException> saveErrorHandler;
+
+    //This enum names the orders a scan can walk the tasks in.
+    public enum Key{
+        //Tasks by id, where the first part of a position is the id and the second is 0.
+        ID,
+        //Tasks by the epoch day they are due on, NO_DATE for none, and then by id as the second part.
+        //A repeating task is placed on its earliest occurrence not yet done.
+        DUE
+    }
+
+    //This constructor keeps the pages of a storage in the page file next to its snapshot with the default cache.
+    public PagedTaskStore(TaskStorage storage){
+        this(storage, pageFileOf(storage.getDataFile()), DEFAULT_CACHE_BYTES);
+    }
+
+    //This constructor keeps the pages of a storage in a file and caches up to a number of bytes of them.
+    public PagedTaskStore(TaskStorage storage, Path file, long cacheBytes){
+        this.storage = storage;
+        this.file = file;
+        this.cacheBytes = cacheBytes;
+    }
+
+    //This method returns the page file kept next to a snapshot file.
+    public static Path pageFileOf(Path dataFile){
+        return dataFile.resolveSibling(dataFile.getFileName() + ".pages");
+    }
+
+    //This method returns the priority carried by an index value.
+    public static Priority priorityOf(long ref){
+        return PRIORITIES[(int) (ref >>> PRIORITY_SHIFT) & 3];
+    }
+
+    //This method returns the position key a task has in the due date order.
+    public static long dueKey(LocalDate due){
+        return due == null ? NO_DATE : due.toEpochDay();
+    }
+
+    //This method opens the page file, rebuilding it from the snapshot and journal when it is missing or out of date.
+    //Progress is reported with the number of tasks copied so far, and the result tells whether a rebuild was needed.
+    @Override
+    public boolean open(IntConsumer progress) throws IOException{
+        synchronized (lock){
+            String fingerprint = storage.fingerprint();
+            pages = new PageFile(file, cacheBytes);
+            boolean reuse = false;
+            if (pages.getPageCount() > 0){
+                ByteBuffer h = pages.get(0).data();
+                reuse = h.getInt(H_MAGIC) == MAGIC && h.getInt(H_VERSION) == VERSION && h.getInt(H_PAGE_SIZE) == PageFile.PAGE_SIZE
+                    && h.get(H_CLEAN) == 1 && fingerprint.equals(readFingerprint(h));
+            }
+            if (reuse){
+                ByteBuffer h = pages.get(0).data();
+                pages.setFreeHead(h.getInt(H_FREE));
+                byId = new PagedIndex(pages, h.getInt(H_ID_ROOT));
+                byDue = new PagedIndex(pages, h.getInt(H_DUE_ROOT));
+                size = h.getInt(H_SIZE);
+                maxId = h.getLong(H_MAX_ID);
+                heapPage = h.getInt(H_HEAP);
+                cleanOnDisk = true;
+            } else{
+                rebuild(progress);
+            }
+            persistence = new PersistenceWorker(storage);
+            if (saveErrorHandler != null){
+                persistence.setErrorHandler(saveErrorHandler);
+            }
+            return !reuse;
+        }
+    }
+
+    //This method sets the handler that receives journal write failures and the other problems the files report.
+    //It may be set before the store is opened.
+    @Override
+    public void setSaveErrorHandler(Consumer<IOException> handler){
+        synchronized (lock){
+            saveErrorHandler = handler;
+            storage.setErrorHandler(handler);
+            if (persistence != null){
+                persistence.setErrorHandler(handler);
+            }
+        }
+    }
+
+    //This method returns the number of tasks.
+    @Override
+    public int size(){
+        synchronized (lock){
+            return size;
+        }
+    }
+
+    //This method returns a description of the page cache for diagnostics.
+    public String cacheSummary(){
+        synchronized (lock){
+            return pages == null ? "closed" : pages.toString();
+        }
+    }
+
+    //This method returns the task with an id, or null.
+    @Override
+    public Task get(long id) throws IOException{
+        synchronized (lock){
+            long ref = byId.get(id, 0);
+            Task t = ref == PagedIndex.NONE ? null : read(ref);
+            pages.trim();
+            return t;
+        }
+    }
+
+    //This method returns the task an index value points at.
+    public Task read(long ref) throws IOException{
+        synchronized (lock){
+            return decode(ref);
+        }
+    }
+
+    //This method passes the entries of an order from a position on to a visitor, walking backwards when not ascending.
+    //The visitor gets the two parts of each position and the index value, which read turns into the task.
+    public void scan(Key key, long hi, long lo, boolean ascending, PagedIndex.Visitor visitor) throws IOException{
+        synchronized (lock){
+            (key == Key.ID ? byId : byDue).forEachFrom(hi, lo, ascending, visitor);
+            pages.trim();
+        }
+    }
+
+    //This method adds a task under the next free id, saves that and returns the stored copy.
+    @Override
+    public Task add(Task task) throws IOException{
+        synchronized (lock){
+            Task stored = task.copy();
+            stored.setId(maxId + 1);
+            changing();
+            insert(stored);
+            persistence.submit(TaskChange.added(stored.copy()));
+            pages.trim();
+            return stored;
+        }
+    }
+
+    //This method replaces the task with the id of a task, saves that and returns the task it replaced, or null if none.
+    @Override
+    public Task update(Task task) throws IOException{
+        synchronized (lock){
+            long ref = byId.get(task.getId(), 0);
+            if (ref == PagedIndex.NONE){
+                return null;
+            }
+            changing();
+            Task before = replace(ref, task.copy());
+            persistence.submit(TaskChange.updated(task.copy()));
+            pages.trim();
+            return before;
+        }
+    }
+
+    //This method adds or replaces a task under its own id, saves that and returns the task it replaced, or null.
+    @Override
+    public Task put(Task task) throws IOException{
+        synchronized (lock){
+            changing();
+            long ref = byId.get(task.getId(), 0);
+            Task before = null;
+            if (ref == PagedIndex.NONE){
+                insert(task.copy());
+                persistence.submit(TaskChange.added(task.copy()));
+            } else{
+                before = replace(ref, task.copy());
+                persistence.submit(TaskChange.updated(task.copy()));
+            }
+            pages.trim();
+            return before;
+        }
+    }
+
+    //This method removes the task with an id, saves that and returns it, or null when there was none.
+    @Override
+    public Task remove(long id) throws IOException{
+        synchronized (lock){
+            long ref = byId.get(id, 0);
+            if (ref == PagedIndex.NONE){
+                return null;
+            }
+            changing();
+            Task before = delete(ref);
+            persistence.submit(TaskChange.removed(id));
+            pages.trim();
+            return before;
+        }
+    }
+
+    //This method returns the earliest day on or after a day on which a task or an open occurrence is due, or null.
+    @Override
+    public LocalDate nextDueDate(LocalDate from) throws IOException{
+        synchronized (lock){
+            long[] next ={NO_DATE};
+            byDue.forEachFrom(from.toEpochDay(), Long.MIN_VALUE, true, (day, id, ref) ->{
+                next[0] = day;
+                return false;
+            });
+            pages.trim();
+            return next[0] == NO_DATE ? null : LocalDate.ofEpochDay(next[0]);
+        }
+    }
+
+    //This method returns the tasks in id order that are due on a day, counting a repeating task by its open occurrence.
+    @Override
+    public List<Task> dueOn(LocalDate day) throws IOException{
+        synchronized (lock){
+            List<Task> due = new ArrayList<>();
+            byDue.forEachFrom(day.toEpochDay(), Long.MIN_VALUE, true, (d, id, ref) ->{
+                if (d != day.toEpochDay()){
+                    return false;
+                }
+                due.add(decode(ref));
+                return true;
+            });
+            pages.trim();
+            return due;
+        }
+    }
+
+    //This method writes every change to the journal and the pages to the page file, then marks the file clean.
+    @Override
+    public void flush() throws IOException{
+        synchronized (lock){
+            if (persistence == null){
+                return;
+            }
+            persistence.flush();
+            checkpoint();
+        }
+    }
+
+    //This method writes everything, releases the journal and marks the page file clean before closing it.
+    @Override
+    public void close() throws IOException{
+        synchronized (lock){
+            if (pages == null){
+                return;
+            }
+            if (persistence == null){
+                pages.close();
+                pages = null;
+                return;
+            }
+            persistence.close();
+            checkpoint();
+            pages.close();
+            pages = null;
+        }
+    }
+
+    //This method empties the page file and copies every task of the snapshot and journal into it.
+    private void rebuild(IntConsumer progress) throws IOException{
+        pages.truncate();
+        PageFile.Page header = pages.allocate();
+        header.data().putInt(H_MAGIC, MAGIC);
+        byId = new PagedIndex(pages, 0);
+        byDue = new PagedIndex(pages, 0);
+        size = 0;
+        maxId = 0;
+        heapPage = 0;
+        roomy.clear();
+        cleanOnDisk = false;
+        writeHeader(false, "");
+        pages.flush();
+
+        int[] copied = new int[1];
+        IOException[] failure = new IOException[1];
+        storage.loadTasks(new TaskLoadListener(){
+            @Override
+            public void taskLoaded(Task task){
+                apply(TaskChange.added(task));
+            }
+
+            @Override
+            public void changeReplayed(TaskChange change){
+                apply(change);
+            }
+
+            //This method copies one loaded task or replayed change into the pages and reports progress now and then.
+            private void apply(TaskChange change){
+                if (failure[0] != null){
+                    return;
+                }
+                try{
+                    long ref = byId.get(change.getId(), 0);
+                    if (change.getKind() == TaskChange.Kind.REMOVE){
+                        if (ref != PagedIndex.NONE){
+                            delete(ref);
+                        }
+                    } else if (ref == PagedIndex.NONE){
+                        insert(change.getTask());
+                    } else{
+                        replace(ref, change.getTask());
+                    }
+                    pages.trim();
+                } catch (IOException e){
+                    failure[0] = e;
+                }
+                if (++copied[0] % LOAD_BATCH == 0){
+                    progress.accept(copied[0]);
+                }
+            }
+        });
+        if (failure[0] != null){
+            throw failure[0];
+        }
+        progress.accept(copied[0]);
+        checkpoint();
+    }
+
+    //This method writes every changed page, then records in the header that the file matches the journal as it is now.
+    private void checkpoint() throws IOException{
+        pages.flush();
+        writeHeader(true, storage.fingerprint());
+        pages.flush();
+        cleanOnDisk = true;
+    }
+
+    //This method marks the file unclean on disk before the first change after a checkpoint can reach it,
+    //so a crash in between makes the next open rebuild the file.
+    private void changing() throws IOException{
+        if (cleanOnDisk){
+            writeHeader(false, "");
+            pages.flush();
+            cleanOnDisk = false;
+        }
+    }
+
+    //This method writes the roots, counts and state of the store into the header page.
+    private void writeHeader(boolean clean, String fingerprint) throws IOException{
+        PageFile.Page header = pages.get(0);
+        ByteBuffer h = header.data();
+        h.putInt(H_MAGIC, MAGIC);
+        h.putInt(H_VERSION, VERSION);
+        h.putInt(H_PAGE_SIZE, PageFile.PAGE_SIZE);
+        h.put(H_CLEAN, (byte) (clean ? 1 : 0));
+        h.putInt(H_FREE, pages.getFreeHead());
+        h.putInt(H_ID_ROOT, byId.getRoot());
+        h.putInt(H_DUE_ROOT, byDue.getRoot());
+        h.putInt(H_SIZE, size);
+        h.putLong(H_MAX_ID, maxId);
+        h.putInt(H_HEAP, heapPage);
+        byte[] text = fingerprint.getBytes(StandardCharsets.UTF_8);
+        h.putShort(H_FINGERPRINT, (short) text.length);
+        h.position(H_FINGERPRINT + 2);
+        h.put(text);
+        h.clear();
+        header.changed();
+    }
+
+    //This method reads the fingerprint of the journal the file was last made to match.
+    private static String readFingerprint(ByteBuffer h){
+        int length = h.getShort(H_FINGERPRINT);
+        if (length < 0 || length > PageFile.PAGE_SIZE - H_FINGERPRINT - 2){
+            return "";
+        }
+        byte[] text = new byte[length];
+        h.position(H_FINGERPRINT + 2);
+        h.get(text);
+        h.clear();
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    //This method stores a new task and adds it to the indexes.
+    private void insert(Task t) throws IOException{
+        long ref = withSummary(writeRecord(t), t);
+        byId.put(t.getId(), 0, ref);
+        byDue.put(dueKey(t.nextDue()), t.getId(), ref);
+        size++;
+        maxId = Math.max(maxId, t.getId());
+    }
+
+    //This method replaces the stored task an index value points at and returns the task it replaced.
+    //A record that still fits is rewritten where it is, so only indexes whose keys or values change are touched.
+    private Task replace(long ref, Task t) throws IOException{
+        Task before = decode(ref);
+        long address = ref & ADDRESS_MASK;
+        byte[] record = encode(t);
+        if (!overwrite(address, record)){
+            freeRecord(address);
+            address = writeRecord(record);
+        }
+        long next = withSummary(address, t);
+        if (next != ref){
+            byId.put(t.getId(), 0, next);
+        }
+        long oldDue = dueKey(before.nextDue());
+        long newDue = dueKey(t.nextDue());
+        if (oldDue != newDue){
+            byDue.remove(oldDue, t.getId());
+        }
+        if (oldDue != newDue || next != ref){
+            byDue.put(newDue, t.getId(), next);
+        }
+        maxId = Math.max(maxId, t.getId());
+        return before;
+    }
+
+    //This method removes the stored task an index value points at from the pages and the indexes and returns it.
+    private Task delete(long ref) throws IOException{
+        Task before = decode(ref);
+        freeRecord(ref & ADDRESS_MASK);
+        byId.remove(before.getId(), 0);
+        byDue.remove(dueKey(before.nextDue()), before.getId());
+        size--;
+        return before;
+    }
+
+    //This method adds the priority of a task to a record address.
+    private static long withSummary(long address, Task t){
+        return address | (long) t.getPriority().ordinal() << PRIORITY_SHIFT;
+    }
+
+    //This method writes a task as a record and returns its address.
+    private long writeRecord(Task t) throws IOException{
+        return writeRecord(encode(t));
+    }
+
+    //This method writes a record into a heap page with room for it and returns its address.
+    //It tries the page being filled, then pages that deletes have made roomy, then a new page.
+    private long writeRecord(byte[] record) throws IOException{
+        int need = record.length + SLOT_SIZE;
+        if (heapPage != 0 && fits(pages.get(heapPage).data(), need)){
+            return place(pages.get(heapPage), record);
+        }
+        while (!roomy.isEmpty()){
+            int candidate = roomy.peekFirst();
+            ByteBuffer buf = pages.get(candidate).data();
+            if (buf.get(0) == HEAP && fits(buf, need)){
+                return place(pages.get(candidate), record);
+            }
+            roomy.pollFirst();
+        }
+        PageFile.Page page = pages.allocate();
+        ByteBuffer buf = page.data();
+        buf.put(0, HEAP);
+        buf.putShort(FREE_END, (short) PageFile.PAGE_SIZE);
+        heapPage = page.getNumber();
+        return place(page, record);
+    }
+
+    //This method returns whether a record of a size plus a slot fits in a heap page once it is compacted.
+    private static boolean fits(ByteBuffer buf, int need){
+        return freeEnd(buf) - (SLOTS + buf.getShort(SLOT_COUNT) * SLOT_SIZE) + buf.getShort(GARBAGE) >= need;
+    }
+
+    //This method puts a record into a heap page known to have room, reusing an empty slot when there is one.
+    private static long place(PageFile.Page page, byte[] record){
+        ByteBuffer buf = page.data();
+        int slots = buf.getShort(SLOT_COUNT);
+        int slot = 0;
+        while (slot < slots && buf.getShort(SLOTS + slot * SLOT_SIZE) != 0){
+            slot++;
+        }
+        int extra = slot == slots ? SLOT_SIZE : 0;
+        if (freeEnd(buf) - (SLOTS + slots * SLOT_SIZE) < record.length + extra){
+            compactPage(buf);
+        }
+        int at = freeEnd(buf) - record.length;
+        System.arraycopy(record, 0, buf.array(), at, record.length);
+        buf.putShort(FREE_END, (short) at);
+        buf.putShort(SLOTS + slot * SLOT_SIZE, (short) at);
+        buf.putShort(SLOTS + slot * SLOT_SIZE + 2, (short) record.length);
+        if (slot == slots){
+            buf.putShort(SLOT_COUNT, (short) (slots + 1));
+        }
+        page.changed();
+        return (long) page.getNumber() << SLOT_BITS | slot;
+    }
+
+    //This method rewrites a record in place when the new one is no longer than the old and returns whether it did.
+    private boolean overwrite(long address, byte[] record) throws IOException{
+        PageFile.Page page = pages.get((int) (address >>> SLOT_BITS));
+        ByteBuffer buf = page.data();
+        int slot = SLOTS + (int) (address & ((1 << SLOT_BITS) - 1)) * SLOT_SIZE;
+        int at = buf.getShort(slot);
+        int length = buf.getShort(slot + 2);
+        if (record.length > length || (buf.get(at + 9) & SPILLED) != 0){
+            return false;
+        }
+        System.arraycopy(record, 0, buf.array(), at, record.length);
+        buf.putShort(slot + 2, (short) record.length);
+        buf.putShort(GARBAGE, (short) (buf.getShort(GARBAGE) + length - record.length));
+        page.changed();
+        return true;
+    }
+
+    //This method frees a record, its overflow pages and, once nothing is left in it, its heap page.
+    private void freeRecord(long address) throws IOException{
+        PageFile.Page page = pages.get((int) (address >>> SLOT_BITS));
+        ByteBuffer buf = page.data();
+        int slot = SLOTS + (int) (address & ((1 << SLOT_BITS) - 1)) * SLOT_SIZE;
+        int at = buf.getShort(slot);
+        int length = buf.getShort(slot + 2);
+        if ((buf.get(at + 9) & SPILLED) != 0){
+            int next = buf.getInt(at + RECORD_HEAD);
+            while (next != 0){
+                PageFile.Page spill = pages.get(next);
+                next = spill.data().getInt(OVERFLOW_NEXT);
+                pages.free(spill);
+            }
+        }
+        buf.putShort(slot, (short) 0);
+        buf.putShort(slot + 2, (short) 0);
+        buf.putShort(GARBAGE, (short) (buf.getShort(GARBAGE) + length));
+        page.changed();
+
+        int slots = buf.getShort(SLOT_COUNT);
+        boolean empty = true;
+        for (int i = 0; i < slots && empty; i++){
+            empty = buf.getShort(SLOTS + i * SLOT_SIZE) == 0;
+        }
+        if (empty && page.getNumber() != heapPage){
+            roomy.remove(page.getNumber());
+            pages.free(page);
+        } else if (page.getNumber() != heapPage && fits(buf, ROOMY) && roomy.size() < MAX_ROOMY_PAGES && !roomy.contains(page.getNumber())){
+            roomy.addLast(page.getNumber());
+        }
+    }
+
+    //This method moves the live records of a heap page together at its end so the free space is in one piece.
+    private static void compactPage(ByteBuffer buf){
+        byte[] old = buf.array().clone();
+        int slots = buf.getShort(SLOT_COUNT);
+        int end = PageFile.PAGE_SIZE;
+        for (int i = 0; i < slots; i++){
+            int slot = SLOTS + i * SLOT_SIZE;
+            int at = buf.getShort(slot);
+            if (at == 0){
+                continue;
+            }
+            int length = buf.getShort(slot + 2);
+            end -= length;
+            System.arraycopy(old, at, buf.array(), end, length);
+            buf.putShort(slot, (short) end);
+        }
+        buf.putShort(FREE_END, (short) end);
+        buf.putShort(GARBAGE, (short) 0);
+    }
+
+    //This method returns where the record area of a heap page starts.
+    private static int freeEnd(ByteBuffer buf){
+        return buf.getShort(FREE_END) & 0xFFFF;
+    }
+
+    //This method turns a task into record bytes, moving text that would make the record large onto overflow pages.
+    private byte[] encode(Task t) throws IOException{
+        byte[] description = t.getDescription() == null ? new byte[0] : t.getDescription().getBytes(StandardCharsets.UTF_8);
+        byte[] rule = t.getRecurrence() == null ? null : t.getRecurrence().toString().getBytes(StandardCharsets.UTF_8);
+        int bodyLength = 4 + description.length + (rule == null ? 0 : 2 + rule.length);
+        ByteBuffer body = ByteBuffer.allocate(bodyLength);
+        body.putInt(description.length);
+        body.put(description);
+        if (rule != null){
+            body.putShort((short) rule.length);
+            body.put(rule);
+        }
+
+        byte flags = (byte) ((rule == null ? 0 : HAS_RULE) | (t.getDescription() == null ? NO_DESCRIPTION : 0));
+        boolean spill = RECORD_HEAD + bodyLength > MAX_INLINE;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEAD + (spill ? 8 : bodyLength));
+        record.putLong(t.getId());
+        record.put((byte) t.getPriority().ordinal());
+        record.put((byte) (flags | (spill ? SPILLED : 0)));
+        record.putInt(t.getDueDate() == null ? NO_DAY : (int) t.getDueDate().toEpochDay());
+        if (spill){
+            record.putInt(writeOverflow(body.array()));
+            record.putInt(bodyLength);
+        } else{
+            record.put(body.array());
+        }
+        return record.array();
+    }
+
+    //This method writes bytes across a chain of overflow pages and returns the first one.
+    private int writeOverflow(byte[] bytes) throws IOException{
+        int capacity = PageFile.PAGE_SIZE - OVERFLOW_DATA;
+        int first = 0;
+        PageFile.Page previous = null;
+        for (int from = 0; from < bytes.length; from += capacity){
+            PageFile.Page page = pages.allocate();
+            ByteBuffer buf = page.data();
+            int length = Math.min(capacity, bytes.length - from);
+            buf.put(0, OVERFLOW);
+            buf.putShort(OVERFLOW_LENGTH, (short) length);
+            System.arraycopy(bytes, from, buf.array(), OVERFLOW_DATA, length);
+            if (previous == null){
+                first = page.getNumber();
+            } else{
+                previous.data().putInt(OVERFLOW_NEXT, page.getNumber());
+                previous.changed();
+            }
+            previous = page;
+        }
+        return first;
+    }
+
+    //This method reads the task an index value points at.
+    private Task decode(long ref) throws IOException{
+        long address = ref & ADDRESS_MASK;
+        ByteBuffer buf = pages.get((int) (address >>> SLOT_BITS)).data();
+        int at = buf.getShort(SLOTS + (int) (address & ((1 << SLOT_BITS) - 1)) * SLOT_SIZE);
+        long id = buf.getLong(at);
+        Priority priority = PRIORITIES[buf.get(at + 8)];
+        byte flags = buf.get(at + 9);
+        int day = buf.getInt(at + 10);
+
+        ByteBuffer body;
+        if ((flags & SPILLED) != 0){
+            body = ByteBuffer.wrap(readOverflow(buf.getInt(at + RECORD_HEAD), buf.getInt(at + RECORD_HEAD + 4)));
+        } else{
+            body = ByteBuffer.wrap(buf.array(), at + RECORD_HEAD, buf.getShort(SLOTS + (int) (address & ((1 << SLOT_BITS) - 1)) * SLOT_SIZE + 2) - RECORD_HEAD);
+        }
+        int descriptionLength = body.getInt();
+        String description = (flags & NO_DESCRIPTION) != 0 ? null : new String(body.array(), body.position(), descriptionLength, StandardCharsets.UTF_8);
+        body.position(body.position() + descriptionLength);
+        Recurrence rule = null;
+        if ((flags & HAS_RULE) != 0){
+            int ruleLength = body.getShort();
+            rule = rules.computeIfAbsent(new String(body.array(), body.position(), ruleLength, StandardCharsets.UTF_8), Recurrence::parse);
+        }
+        return new Task(id, description, priority, day == NO_DAY ? null : LocalDate.ofEpochDay(day), rule);
+    }
+
+    //This method reads a number of bytes back from a chain of overflow pages.
+    private byte[] readOverflow(int first, int length) throws IOException{
+        byte[] bytes = new byte[length];
+        int from = 0;
+        for (int next = first; next != 0 && from < length; ){
+            ByteBuffer buf = pages.get(next).data();
+            int n = buf.getShort(OVERFLOW_LENGTH);
+            System.arraycopy(buf.array(), OVERFLOW_DATA, bytes, from, n);
+            from += n;
+            next = buf.getInt(OVERFLOW_NEXT);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,224 @@
+//This file implements parallel parsing of large JSON task snapshots.
+package todojavaapp.storage;
+
+import todojavaapp.model.Task;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+//This class cuts a large task array between objects, parses the pieces on the fork join pool and hands the tasks on in file order.
+//A piece that turns out not to start at a top level object is parsed again sequentially from there, so the result always equals a sequential load.
+public class ParallelJsonLoader{
+    public static final long THRESHOLD_BYTES = Long.getLong("todo.parallelLoadBytes", 8L * 1024 * 1024);
+
+    private static final long MIN_PIECE_BYTES = 1024 * 1024;
+    private static final int PIECES_PER_THREAD = 4;
+    private static final int WINDOW_BYTES = 64 * 1024;
+    private static final int MAX_WINDOWS = 16;
+
+    //This class holds the tasks parsed from one piece, how many lines it covered and whether it skipped an object.
+    private static final class Piece{
+        final List<Task> tasks = new ArrayList<>();
+        boolean skipped;
+        boolean whole;
+        int lines;
+    }
+
+    //This method returns whether a file of the given size is worth parsing in parallel.
+    static boolean worthIt(long size){
+        return size >= THRESHOLD_BYTES && ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
+
+    //This method parses a JSON snapshot in pieces and passes its tasks to the sink in file order.
+    //Objects that are not valid tasks go to the skip handler. A piece that skipped one is parsed again sequentially
+    //from there, as only then are its line numbers known.
+    static void read(Path source, Consumer<Task> sink, Consumer<IOException> skipHandler) throws IOException{
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)){
+            long size = channel.size();
+            long[] starts = cutPoints(channel, size);
+            int count = starts.length;
+
+            List<ForkJoinTask<Piece>> parsing = new ArrayList<>(count - 1);
+            for (int i = 0; i < count - 1; i++){
+                long start = starts[i];
+                long end = starts[i + 1];
+                boolean first = i == 0;
+                parsing.add(ForkJoinPool.commonPool().submit(() -> parsePiece(channel, start, end, first)));
+            }
+
+            int line = 1;
+            for (int i = 0; i < count - 1; i++){
+                Piece piece = join(parsing.get(i));
+                if (piece == null || !piece.whole || piece.skipped){
+                    for (int j = i + 1; j < parsing.size(); j++){
+                        parsing.get(j).cancel(false);
+                    }
+                    readRest(channel, starts[i], size, i == 0, line, sink, skipHandler);
+                    return;
+                }
+                piece.tasks.forEach(sink);
+                line += piece.lines;
+                parsing.set(i, null);
+            }
+            readRest(channel, starts[count - 1], size, count == 1, line, sink, skipHandler);
+        }
+    }
+
+    //This method waits for a piece and returns null when parsing it failed.
+    private static Piece join(ForkJoinTask<Piece> task){
+        try{
+            return task.join();
+        } catch (RuntimeException e){
+            return null;
+        }
+    }
+
+    //This method parses one piece that should hold whole objects each followed by a comma.
+    private static Piece parsePiece(FileChannel channel, long start, long end, boolean first){
+        Piece piece = new Piece();
+        try (TaskJsonReader reader = new TaskJsonReader(new InputStreamReader(new RangeStream(channel, start, end), StandardCharsets.UTF_8), 1)){
+            reader.setSkipHandler(e -> piece.skipped = true);
+            piece.whole = (!first || reader.beginArray()) && reader.readSlice(piece.tasks::add);
+            piece.lines = reader.getLine() - 1;
+        } catch (IOException e){
+            piece.whole = false;
+        }
+        return piece;
+    }
+
+    //This method parses from a piece boundary to the end of the file exactly like a sequential load.
+    private static void readRest(FileChannel channel, long start, long size, boolean first, int line, Consumer<Task> sink, Consumer<IOException> skipHandler) throws IOException{
+        try (TaskJsonReader reader = new TaskJsonReader(new InputStreamReader(new RangeStream(channel, start, size), StandardCharsets.UTF_8), line)){
+            reader.setSkipHandler(skipHandler);
+            if (first && !reader.beginArray()){
+                return;
+            }
+            while (reader.hasNext()){
+                Task task = reader.nextTask();
+                if (task != null){
+                    sink.accept(task);
+                }
+            }
+        }
+    }
+
+    //This method picks piece start offsets, the first being 0, each just before an object that follows a comma and a line break.
+    //Only outside a string can a raw line break appear in valid JSON, which makes these offsets cheap to find.
+    private static long[] cutPoints(FileChannel channel, long size) throws IOException{
+        int pieces = (int) Math.max(1, Math.min((long) ForkJoinPool.getCommonPoolParallelism() * PIECES_PER_THREAD, size / MIN_PIECE_BYTES));
+        List<Long> starts = new ArrayList<>();
+        starts.add(0L);
+        ByteBuffer window = ByteBuffer.allocate(WINDOW_BYTES);
+        for (int i = 1; i < pieces; i++){
+            long target = Math.max(size * i / pieces, starts.get(starts.size() - 1) + 1);
+            long cut = findCut(channel, window, target, size);
+            if (cut < 0){
+                break;
+            }
+            if (cut > starts.get(starts.size() - 1)){
+                starts.add(cut);
+            }
+        }
+        long[] result = new long[starts.size()];
+        for (int i = 0; i < result.length; i++){
+            result[i] = starts.get(i);
+        }
+        return result;
+    }
+
+    //This method finds the first object start at or after an offset that follows a comma, whitespace and a line break.
+    private static long findCut(FileChannel channel, ByteBuffer window, long from, long size) throws IOException{
+        long base = from;
+        for (int w = 0; w < MAX_WINDOWS && base < size; w++){
+            window.clear();
+            int n = channel.read(window, base);
+            if (n <= 0){
+                return -1;
+            }
+            byte[] bytes = window.array();
+            for (int j = 1; j < n; j++){
+                if (bytes[j] != '{'){
+                    continue;
+                }
+                boolean lineBreak = false;
+                int k = j - 1;
+                while (k >= 0 && (bytes[k] == ' ' || bytes[k] == '\t' || bytes[k] == '\r' || bytes[k] == '\n')){
+                    lineBreak |= bytes[k] == '\n';
+                    k--;
+                }
+                if (k >= 0 && lineBreak && bytes[k] == ','){
+                    return base + j;
+                }
+            }
+            //Overlap the windows a little so a comma and brace split across them are still seen.
+            base += Math.max(1, n - 256);
+        }
+        return -1;
+    }
+
+    //This class reads a byte range of a shared channel with positional reads.
+    private static final class RangeStream extends InputStream{
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(WINDOW_BYTES);
+        private long position;
+        private final long end;
+
+        //This constructor reads from start up to but not including end.
+        RangeStream(FileChannel channel, long start, long end){
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+            buffer.limit(0);
+        }
+
+        //This method reads one byte.
+        @Override
+        public int read() throws IOException{
+            if (!buffer.hasRemaining() && !fill()){
+                return -1;
+            }
+            return buffer.get() & 0xFF;
+        }
+
+        //This method reads bytes into an array.
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException{
+            if (len == 0){
+                return 0;
+            }
+            if (!buffer.hasRemaining() && !fill()){
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        //This method refills the buffer from the channel and returns false at the end of the range.
+        private boolean fill() throws IOException{
+            if (position >= end){
+                return false;
+            }
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            int n = channel.read(buffer, position);
+            buffer.flip();
+            if (n <= 0){
+                return false;
+            }
+            position += n;
+            return true;
+        }
+    }
+}
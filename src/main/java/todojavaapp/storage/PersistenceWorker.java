@@ -0,0 +1,213 @@
+//This file defines a background worker that persists task changes off the event dispatch thread.
+package todojavaapp.storage;
+
+import todojavaapp.model.Task;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+//This class queues changes, merges bursts into one journal write and reports failures to a handler.
+//A failed write is queued again and retried after a delay that doubles with each failure in a row.
+//One shutdown hook flushes every worker that has not been closed, so opening and closing lists does not pile up hooks.
+public class PersistenceWorker{
+    public static final long DEFAULT_DELAY_MILLIS = Long.getLong("todo.persist.delayMillis", 300);
+    public static final long FIRST_RETRY_MILLIS = Long.getLong("todo.persist.retryMillis", 1000);
+    public static final long MAX_RETRY_MILLIS = Long.getLong("todo.persist.maxRetryMillis", 60 * 1000);
+
+    private static final Set<PersistenceWorker> LIVE = ConcurrentHashMap.newKeySet();
+
+    static{
+        Runtime.getRuntime().addShutdownHook(new Thread(PersistenceWorker::flushAllQuietly, "task-persistence-flush"));
+    }
+
+    private final TaskStorage storage;
+    private final long delayMillis;
+    private final ScheduledExecutorService executor;
+    private final Object lock = new Object();
+
+    private List<TaskChange> pending = new ArrayList<>();
+    private List<Task> pendingSnapshot;
+    private boolean scheduled;
+    private long retryDelay;
+    private volatile Consumer<IOException> errorHandler = e -> System.err.println("Failed to save tasks: " + e.getMessage());
+
+    //This constructor uses the default coalescing delay.
+    public PersistenceWorker(TaskStorage storage){
+        this(storage, DEFAULT_DELAY_MILLIS);
+    }
+
+    //This constructor starts the worker thread and has it flushed on exit until it is closed.
+    public PersistenceWorker(TaskStorage storage, long delayMillis){
+        this.storage = storage;
+        this.delayMillis = delayMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r ->{
+            Thread t = new Thread(r, "task-persistence");
+            t.setDaemon(true);
+            return t;
+        });
+        LIVE.add(this);
+    }
+
+    //This method sets the handler that receives write failures on the worker thread,
+    //and failures of the storage's background journal folds on the thread that runs them.
+    public void setErrorHandler(Consumer<IOException> handler){
+        this.errorHandler = handler;
+        storage.setErrorHandler(handler);
+    }
+
+    //This method queues a change and schedules a write after the coalescing delay.
+    //A change that arrives after close cannot be saved any more and is reported to the error handler.
+    public void submit(TaskChange change){
+        synchronized (lock){
+            if (!executor.isShutdown()){
+                pending.add(change);
+                scheduleLocked();
+                return;
+            }
+        }
+        reportClosed();
+    }
+
+    //This method queues a full snapshot that supersedes every change queued before it.
+    public void submitSnapshot(List<Task> tasks){
+        List<Task> copy = new ArrayList<>(tasks.size());
+        for (Task t : tasks){
+            copy.add(t.copy());
+        }
+        synchronized (lock){
+            if (!executor.isShutdown()){
+                pendingSnapshot = copy;
+                pending.clear();
+                scheduleLocked();
+                return;
+            }
+        }
+        reportClosed();
+    }
+
+    //This method writes everything queued so far and waits until it is on disk.
+    public void flush() throws IOException{
+        try{
+            executor.submit(() ->{
+                write();
+                return null;
+            }).get();
+        } catch (RejectedExecutionException e){
+            throw new IOException("The task list " + storage.getDataFile().getFileName() + " is already closed", e);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while saving tasks");
+        } catch (ExecutionException e){
+            if (e.getCause() instanceof IOException){
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to save tasks", e.getCause());
+        }
+    }
+
+    //This method writes everything queued so far, stops the worker thread and releases the storage.
+    //The worker stays usable when the final write fails so nothing queued is lost.
+    public void close() throws IOException{
+        flush();
+        synchronized (lock){
+            executor.shutdown();
+        }
+        LIVE.remove(this);
+        storage.close();
+    }
+
+    //This method tells the error handler about work that came after close and was dropped.
+    private void reportClosed(){
+        errorHandler.accept(new IOException("A change to " + storage.getDataFile().getFileName()
+            + " came after the list was closed and was not saved"));
+    }
+
+    //This method schedules a drain after the coalescing delay unless one is already waiting.
+    private void scheduleLocked(){
+        scheduleLocked(delayMillis);
+    }
+
+    //This method schedules a drain after a delay unless one is already waiting.
+    private void scheduleLocked(long delay){
+        if (!scheduled){
+            scheduled = true;
+            executor.schedule(this::drain, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    //This method runs a scheduled write and passes failures to the error handler.
+    private void drain(){
+        try{
+            write();
+        } catch (IOException e){
+            errorHandler.accept(e);
+        }
+    }
+
+    //This method takes the queued work and writes it, putting it back and scheduling a retry when the write fails.
+    //With nothing queued it leaves the storage alone, since a drain still waiting when the worker closes runs after
+    //the storage has given up its lock and must not take it again.
+    private void write() throws IOException{
+        List<TaskChange> batch;
+        List<Task> snapshot;
+        synchronized (lock){
+            scheduled = false;
+            if (pending.isEmpty() && pendingSnapshot == null){
+                return;
+            }
+            batch = pending;
+            snapshot = pendingSnapshot;
+            pending = new ArrayList<>();
+            pendingSnapshot = null;
+        }
+        try{
+            if (snapshot != null){
+                storage.saveTasks(snapshot);
+                snapshot = null;
+            }
+            storage.appendChanges(batch);
+        } catch (IOException e){
+            synchronized (lock){
+                if (pendingSnapshot == null){
+                    pendingSnapshot = snapshot;
+                    batch.addAll(pending);
+                    pending = batch;
+                }
+                retryDelay = retryDelay == 0 ? FIRST_RETRY_MILLIS : Math.min(retryDelay * 2, MAX_RETRY_MILLIS);
+                if (!executor.isShutdown()){
+                    scheduleLocked(retryDelay);
+                }
+            }
+            throw e;
+        }
+        synchronized (lock){
+            retryDelay = 0;
+        }
+    }
+
+    //This method flushes every worker not yet closed, from the shutdown hook.
+    private static void flushAllQuietly(){
+        for (PersistenceWorker worker : LIVE){
+            worker.flushQuietly();
+        }
+    }
+
+    //This method flushes from the shutdown hook where nobody is left to report to.
+    private void flushQuietly(){
+        try{
+            flush();
+        } catch (IOException e){
+            System.err.println("Failed to save tasks on exit: " + e.getMessage());
+        }
+    }
+}
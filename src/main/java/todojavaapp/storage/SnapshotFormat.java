@@ -0,0 +1,20 @@
+//This file defines the file formats a task snapshot can be stored in.
+package todojavaapp.storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+//This enum lists the snapshot formats and detects which one a file uses.
+public enum SnapshotFormat{
+    JSON,
+    BINARY;
+
+    //This method detects the format from the file contents and falls back to a guess from the name.
+    public static SnapshotFormat detect(Path file) throws IOException{
+        if (Files.exists(file) && Files.size(file) > 0){
+            return BinaryTaskFormat.isBinary(file) ? BINARY : JSON;
+        }
+        return file.getFileName().toString().endsWith(".bin") ? BINARY : JSON;
+    }
+}
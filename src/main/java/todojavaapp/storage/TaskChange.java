@@ -0,0 +1,70 @@
+//This file defines an immutable record of a single change to the task list.
+package todojavaapp.storage;
+
+import todojavaapp.model.Task;
+
+import java.util.Map;
+
+//This class captures one add update or remove by task id so it can be persisted after the model has moved on.
+public final class TaskChange{
+    //This enum lists the kinds of change that can be recorded.
+    public enum Kind{ ADD, UPDATE, REMOVE }
+
+    private final Kind kind;
+    private final long id;
+    private final Task task;
+
+    //This constructor stores the change and a private copy of the task.
+    private TaskChange(Kind kind, long id, Task task){
+        this.kind = kind;
+        this.id = id;
+        this.task = task == null ? null : task.copy();
+    }
+
+    //This method returns a change that adds a task.
+    public static TaskChange added(Task task){
+        return new TaskChange(Kind.ADD, task.getId(), task);
+    }
+
+    //This method returns a change that replaces the task with the same id.
+    public static TaskChange updated(Task task){
+        return new TaskChange(Kind.UPDATE, task.getId(), task);
+    }
+
+    //This method returns a change that removes the task with an id.
+    public static TaskChange removed(long id){
+        return new TaskChange(Kind.REMOVE, id, null);
+    }
+
+    //This method returns the kind of change.
+    public Kind getKind(){
+        return kind;
+    }
+
+    //This method returns the id of the changed task.
+    public long getId(){
+        return id;
+    }
+
+    //This method returns the copied task for adds and updates.
+    public Task getTask(){
+        return task;
+    }
+
+    //This method applies the change to tasks keyed by id in list order and returns false when the id is unknown.
+    public boolean applyTo(Map<Long, Task> tasks){
+        switch (kind){
+            case ADD:
+                tasks.put(id, task.copy());
+                return true;
+            case UPDATE:
+                if (!tasks.containsKey(id)) return false;
+                tasks.put(id, task.copy());
+                return true;
+            case REMOVE:
+                return tasks.remove(id) != null;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+//This file implements a streaming reader for comma separated task files.
+package todojavaapp.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+//This class reads one CSV record at a time with quoted fields, doubled quotes and line breaks inside quotes.
+public class TaskCsvReader implements Closeable{
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final Reader in;
+    private final char[] buf = new char[BUFFER_SIZE];
+    private final StringBuilder field = new StringBuilder(64);
+    private int pos;
+    private int limit;
+    private int line = 1;
+    private int recordLine;
+
+    //This constructor wraps a reader and does its own buffering.
+    public TaskCsvReader(Reader in){
+        this.in = in;
+    }
+
+    //This method returns the fields of the next record or null at the end of input.
+    //Blank lines are skipped.
+    public List<String> next() throws IOException{
+        int c;
+        while ((c = peek()) == '\r' || c == '\n'){
+            consumeLineBreak();
+        }
+        if (c == -1){
+            return null;
+        }
+        recordLine = line;
+        List<String> fields = new ArrayList<>();
+        while (true){
+            fields.add(readField());
+            c = peek();
+            if (c == ','){
+                pos++;
+                continue;
+            }
+            if (c == '\r' || c == '\n'){
+                consumeLineBreak();
+            }
+            return fields;
+        }
+    }
+
+    //This method returns the line number on which the last record started.
+    public int getRecordLine(){
+        return recordLine;
+    }
+
+    //This method closes the underlying reader.
+    @Override
+    public void close() throws IOException{
+        in.close();
+    }
+
+    //This method reads a plain or quoted field up to the next comma or line break.
+    private String readField() throws IOException{
+        field.setLength(0);
+        if (peek() != '"'){
+            int c;
+            while ((c = peek()) != -1 && c != ',' && c != '\r' && c != '\n'){
+                field.append((char) c);
+                pos++;
+            }
+            return field.toString();
+        }
+        pos++;
+        while (true){
+            int c = peek();
+            if (c == -1){
+                throw new IOException("Unterminated quoted field starting at line " + recordLine);
+            }
+            pos++;
+            if (c == '"'){
+                if (peek() == '"'){
+                    field.append('"');
+                    pos++;
+                    continue;
+                }
+                break;
+            }
+            if (c == '\n'){
+                line++;
+            }
+            field.append((char) c);
+        }
+        //Anything between the closing quote and the next separator is kept as written.
+        int c;
+        while ((c = peek()) != -1 && c != ',' && c != '\r' && c != '\n'){
+            field.append((char) c);
+            pos++;
+        }
+        return field.toString();
+    }
+
+    //This method consumes a CR, LF or CRLF line break.
+    private void consumeLineBreak() throws IOException{
+        if (peek() == '\r'){
+            pos++;
+        }
+        if (peek() == '\n'){
+            pos++;
+        }
+        line++;
+    }
+
+    //This method returns the next character without consuming it or -1 at the end of input.
+    private int peek() throws IOException{
+        if (pos >= limit){
+            int n = in.read(buf, 0, buf.length);
+            if (n <= 0){
+                pos = limit = 0;
+                return -1;
+            }
+            pos = 0;
+            limit = n;
+        }
+        return buf[pos];
+    }
+}
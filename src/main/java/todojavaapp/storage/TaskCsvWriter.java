@@ -0,0 +1,73 @@
+//This file implements a streaming writer for comma separated task files.
+package todojavaapp.storage;
+
+import todojavaapp.model.Task;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+//This class writes a header and then one CSV line per task, quoting only fields that need it.
+public class TaskCsvWriter implements Closeable, Flushable{
+    public static final String HEADER = "id,description,priority,dueDate,recurrence";
+
+    private final Writer out;
+
+    //This constructor wraps a writer.
+    public TaskCsvWriter(Writer out){
+        this.out = out;
+    }
+
+    //This method writes the header line.
+    public void writeHeader() throws IOException{
+        out.write(HEADER);
+        out.write("\r\n");
+    }
+
+    //This method writes one task as a line.
+    public void writeTask(Task task) throws IOException{
+        out.write(Long.toString(task.getId()));
+        out.write(',');
+        writeField(task.getDescription() == null ? "" : task.getDescription());
+        out.write(',');
+        out.write(task.getPriority().name());
+        out.write(',');
+        if (task.getDueDate() != null){
+            out.write(task.getDueDate().toString());
+        }
+        out.write(',');
+        if (task.getRecurrence() != null){
+            out.write(task.getRecurrence().toString());
+        }
+        out.write("\r\n");
+    }
+
+    //This method flushes the underlying writer.
+    @Override
+    public void flush() throws IOException{
+        out.flush();
+    }
+
+    //This method closes the underlying writer.
+    @Override
+    public void close() throws IOException{
+        out.close();
+    }
+
+    //This method writes a field and quotes it when it holds a comma, quote or line break.
+    private void writeField(String s) throws IOException{
+        boolean quote = false;
+        for (int i = 0; i < s.length() && !quote; i++){
+            char ch = s.charAt(i);
+            quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+        }
+        if (!quote){
+            out.write(s);
+            return;
+        }
+        out.write('"');
+        out.write(s.replace("\"", "\"\""));
+        out.write('"');
+    }
+}
@@ -0,0 +1,373 @@
+//This file watches a task snapshot for edits made by other programs and works out what they changed.
+package todojavaapp.storage;
+
+import todojavaapp.model.Task;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+//This class keeps a fingerprint per task id of what is on disk and compares a fresh read against it after an outside edit.
+//Only tasks whose fingerprint differs are reported, and writes made through the storage update the fingerprints
+//so the application never mistakes its own saves for outside edits.
+//A second set of fingerprints covers the snapshot alone, so an outside snapshot can be compared with the one it
+//replaced to find the tasks the other program touched; journal records for every other task are kept on top of it.
+public class TaskFileWatcher implements Closeable{
+    public static final long QUIET_MILLIS = Long.getLong("todo.watch.quietMillis", 250);
+
+    private final TaskStorage storage;
+    private final Listener listener;
+    private final Path fileName;
+    private final WatchService watch;
+    private final Thread thread;
+    private final Object lock = new Object();
+
+    private FingerprintTable known = new FingerprintTable(1024);
+    private final AtomicReference<FingerprintTable> base = new AtomicReference<>(new FingerprintTable(1024));
+    private volatile boolean ready;
+    private volatile boolean running = true;
+    private boolean dirty;
+
+    //This interface receives the outcome of a reread on the watcher thread.
+    public interface Listener{
+        //This method is called before the file is read again so changes still queued in memory reach the disk first.
+        void beforeReload() throws IOException;
+
+        //This method is called with the adds, updates and removes found, and whether tasks were given new ids.
+        void changesFound(List<TaskChange> changes, boolean idsAssigned);
+    }
+
+    //This constructor starts watching the folder of the storage's snapshot before any of it is read.
+    public TaskFileWatcher(TaskStorage storage, Listener listener) throws IOException{
+        Path file = storage.getDataFile().toAbsolutePath();
+        this.storage = storage;
+        this.listener = listener;
+        this.fileName = file.getFileName();
+        this.watch = FileSystems.getDefault().newWatchService();
+        try{
+            file.getParent().register(watch, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e){
+            watch.close();
+            throw e;
+        }
+        this.thread = new Thread(this::run, "task-file-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        storage.setWatcher(this);
+    }
+
+    //This method wraps a load listener so the tasks it sees become the fingerprints to compare against.
+    public TaskLoadListener recording(TaskLoadListener next){
+        return new TaskLoadListener(){
+            @Override
+            public void taskLoaded(Task task){
+                long print = fingerprint(task);
+                synchronized (lock){
+                    known.put(task.getId(), print);
+                    base.get().put(task.getId(), print);
+                }
+                next.taskLoaded(task);
+            }
+
+            @Override
+            public void changeReplayed(TaskChange change){
+                record(change);
+                next.changeReplayed(change);
+            }
+        };
+    }
+
+    //This method starts comparing once the recorded load is complete, catching up on edits seen meanwhile.
+    public void baselineLoaded(){
+        ready = true;
+    }
+
+    //This method stops watching.
+    @Override
+    public void close() throws IOException{
+        running = false;
+        storage.setWatcher(null);
+        watch.close();
+    }
+
+    //This method notes changes the application wrote to the journal.
+    void changesWritten(List<TaskChange> changes){
+        for (TaskChange change : changes){
+            record(change);
+        }
+    }
+
+    //This method notes a full snapshot the application wrote.
+    void snapshotWritten(List<Task> tasks){
+        FingerprintTable next = fingerprints(tasks);
+        base.set(fingerprints(tasks));
+        synchronized (lock){
+            known = next;
+        }
+    }
+
+    //This method starts collecting the tasks a fold writes from the journal, which leaves what the application holds
+    //unchanged, so they become the snapshot fingerprints once the fold is in place.
+    FoldRecorder recordFold(){
+        return new FoldRecorder();
+    }
+
+    //This class collects the fingerprints of the tasks a fold writes while it streams them to the new snapshot.
+    //It takes no lock, as a reread holding the lock may be waiting for the fold to finish.
+    final class FoldRecorder implements Consumer<Task>{
+        private final FingerprintTable prints = new FingerprintTable(1024);
+
+        //This method records one task written to the new snapshot.
+        @Override
+        public void accept(Task task){
+            prints.put(task.getId(), fingerprint(task));
+        }
+
+        //This method makes the recorded tasks the snapshot fingerprints after the new snapshot was put in place.
+        void finish(){
+            base.set(prints);
+        }
+    }
+
+    //This method returns the fingerprints of a list of tasks.
+    private static FingerprintTable fingerprints(List<Task> tasks){
+        FingerprintTable prints = new FingerprintTable(tasks.size());
+        for (Task task : tasks){
+            prints.put(task.getId(), fingerprint(task));
+        }
+        return prints;
+    }
+
+    //This method applies one change to the fingerprints.
+    private void record(TaskChange change){
+        synchronized (lock){
+            if (change.getKind() == TaskChange.Kind.REMOVE){
+                known.remove(change.getId());
+            } else{
+                known.put(change.getId(), fingerprint(change.getTask()));
+            }
+        }
+    }
+
+    //This method collects events until the folder has been quiet for a moment and then rereads the snapshot.
+    //Editors and scripts often write a file in several steps, so waiting avoids reading it half written.
+    private void run(){
+        try{
+            while (running){
+                WatchKey key = watch.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null){
+                    for (WatchEvent<?> event : key.pollEvents()){
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())){
+                            dirty = true;
+                        }
+                    }
+                    key.reset();
+                    continue;
+                }
+                if (dirty && ready){
+                    dirty = false;
+                    if (!storage.isOwnSnapshot()){
+                        reload();
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e){
+            //Closing the watcher ends the loop.
+        }
+    }
+
+    //This method rereads the tasks, reports those whose fingerprint changed and keeps the new fingerprints.
+    //The outside snapshot is first merged with the journal by task id: its edits win for the tasks it touched and
+    //the journal records of the others stay on top of it, so neither side's edits are lost.
+    private void reload(){
+        try{
+            listener.beforeReload();
+            List<TaskChange> changes = new ArrayList<>();
+            boolean idsAssigned;
+            //Holding the lock makes journal writes that finish during the read wait to be recorded on top of it.
+            synchronized (lock){
+                FingerprintTable before = known;
+                FingerprintTable after = new FingerprintTable(before.size());
+                FingerprintTable outside = new FingerprintTable(before.size());
+                storage.readSnapshot(storage.getDataFile(), task -> outside.put(task.getId(), fingerprint(task)));
+                FingerprintTable previous = base.getAndSet(outside);
+                if (!storage.mergeOutsideSnapshot(id -> outside.get(id) != previous.get(id))){
+                    base.compareAndSet(outside, previous);
+                }
+                idsAssigned = storage.forEachTask(task ->{
+                    long print = fingerprint(task);
+                    long old = before.get(task.getId());
+                    if (old == FingerprintTable.MISSING){
+                        changes.add(TaskChange.added(task));
+                    } else if (old != print){
+                        changes.add(TaskChange.updated(task));
+                    }
+                    after.put(task.getId(), print);
+                });
+                before.forEachKey(id ->{
+                    if (after.get(id) == FingerprintTable.MISSING){
+                        changes.add(TaskChange.removed(id));
+                    }
+                });
+                known = after;
+            }
+            if (!changes.isEmpty() || idsAssigned){
+                listener.changesFound(changes, idsAssigned);
+            }
+        } catch (IOException | RuntimeException e){
+            //A file caught in the middle of a write fails to parse; the write finishing triggers another reread.
+            storage.reportError(new IOException("Failed to reload tasks changed on disk: " + e.getMessage(), e));
+        }
+    }
+
+    //This method returns a 64 bit fingerprint of every field of a task.
+    static long fingerprint(Task task){
+        long h = mix(0x9E3779B97F4A7C15L, task.getId());
+        String description = task.getDescription();
+        if (description == null){
+            h = mix(h, -1);
+        } else{
+            h = mix(h, description.length());
+            for (int i = 0; i < description.length(); i++){
+                h = (h ^ description.charAt(i)) * 0x100000001B3L;
+            }
+        }
+        h = mix(h, task.getPriority() == null ? -1 : task.getPriority().ordinal());
+        LocalDate due = task.getDueDate();
+        h = mix(h, due == null ? Long.MIN_VALUE : due.toEpochDay());
+        return mix(h, task.getRecurrence() == null ? -1 : task.getRecurrence().hashCode());
+    }
+
+    //This method folds a value into a running hash.
+    private static long mix(long h, long value){
+        h ^= value + 0x9E3779B97F4A7C15L + (h << 6) + (h >>> 2);
+        h *= 0xBF58476D1CE4E5B9L;
+        return h ^ (h >>> 31);
+    }
+
+    //This interface receives ids while a table is walked.
+    private interface IdConsumer{
+        void accept(long id);
+    }
+
+    //This class maps task ids to fingerprints in two flat arrays so a million tasks cost no boxed objects.
+    //It uses linear probing with ids as keys, which are never negative, so -1 marks a free slot.
+    private static final class FingerprintTable{
+        static final long MISSING = Long.MIN_VALUE;
+        private static final long FREE = -1;
+
+        private long[] keys;
+        private long[] values;
+        private int size;
+
+        //This constructor sizes the table for an expected number of ids.
+        FingerprintTable(int expected){
+            int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+            keys = new long[capacity];
+            values = new long[capacity];
+            Arrays.fill(keys, FREE);
+        }
+
+        //This method returns the number of ids.
+        int size(){
+            return size;
+        }
+
+        //This method returns the fingerprint of an id or MISSING.
+        long get(long id){
+            int mask = keys.length - 1;
+            for (int i = slot(id, mask); ; i = (i + 1) & mask){
+                if (keys[i] == id){
+                    return values[i];
+                }
+                if (keys[i] == FREE){
+                    return MISSING;
+                }
+            }
+        }
+
+        //This method sets the fingerprint of an id.
+        void put(long id, long value){
+            if ((size + 1) * 2 > keys.length){
+                grow();
+            }
+            int mask = keys.length - 1;
+            int i = slot(id, mask);
+            while (keys[i] != FREE && keys[i] != id){
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == FREE){
+                keys[i] = id;
+                size++;
+            }
+            values[i] = value;
+        }
+
+        //This method removes an id and shifts later entries of its probe run back into the gap.
+        void remove(long id){
+            int mask = keys.length - 1;
+            int i = slot(id, mask);
+            while (keys[i] != id){
+                if (keys[i] == FREE){
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = FREE;
+            size--;
+            for (int j = (i + 1) & mask; keys[j] != FREE; j = (j + 1) & mask){
+                int home = slot(keys[j], mask);
+                //Move the entry back when its home slot is not between the gap and its current slot.
+                if (((j - home) & mask) >= ((j - i) & mask)){
+                    keys[i] = keys[j];
+                    values[i] = values[j];
+                    keys[j] = FREE;
+                    i = j;
+                }
+            }
+        }
+
+        //This method passes every id to a consumer.
+        void forEachKey(IdConsumer consumer){
+            for (long key : keys){
+                if (key != FREE){
+                    consumer.accept(key);
+                }
+            }
+        }
+
+        //This method doubles the arrays and puts every entry back.
+        private void grow(){
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new long[oldKeys.length * 2];
+            Arrays.fill(keys, FREE);
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++){
+                if (oldKeys[i] != FREE){
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        //This method returns the home slot of an id.
+        private static int slot(long id, int mask){
+            long h = id * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+//This file converts task files between the JSON and binary snapshot formats.
+package todojavaapp.storage;
+
+import todojavaapp.model.Task;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+
+//This class loads a task file with its journal and writes it back out in the other format.
+public class TaskFormatConverter{
+    //This method converts a task file and returns the number of tasks written.
+    public static int convert(Path source, Path target, SnapshotFormat format) throws IOException{
+        TaskStorage in = new TaskStorage(source);
+        TaskStorage out = source.toAbsolutePath().equals(target.toAbsolutePath()) ? in : new TaskStorage(target);
+        try{
+            List<Task> tasks = in.loadTasks();
+            out.setFormat(format);
+            out.saveTasks(tasks);
+            return tasks.size();
+        } finally{
+            try{
+                in.close();
+            } finally{
+                out.close();
+            }
+        }
+    }
+
+    //This method runs the converter from the command line, reporting the result on standard output and failures on
+    //standard error.
+    public static void main(String[] args){
+        if (args.length < 2 || args.length > 3){
+            System.err.println("Usage: TaskFormatConverter <source> <target> [json|binary]");
+            System.err.println("Without a format the target gets the opposite format of the source.");
+            System.exit(2);
+        }
+        SnapshotFormat format = null;
+        if (args.length == 3){
+            try{
+                format = SnapshotFormat.valueOf(args[2].toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e){
+                System.err.println("Unknown format: " + args[2]);
+                System.exit(2);
+            }
+        }
+        try{
+            Path source = Paths.get(args[0]);
+            Path target = Paths.get(args[1]);
+            if (format == null){
+                format = SnapshotFormat.detect(source) == SnapshotFormat.BINARY ? SnapshotFormat.JSON : SnapshotFormat.BINARY;
+            }
+            int count = convert(source, target, format);
+            System.out.println("Wrote " + count + " tasks to " + target + " as " + format);
+        } catch (IOException | RuntimeException e){
+            System.err.println("Conversion failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
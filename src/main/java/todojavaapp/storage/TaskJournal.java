@@ -0,0 +1,655 @@
+//This file implements the append only change journal kept next to the task snapshot.
+package todojavaapp.storage;
+
+import todojavaapp.model.Task;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
+
+//This class appends one small record per mutation keyed by task id and folds the log back into the snapshot in the background.
+public class TaskJournal{
+    private static final long COMPACT_THRESHOLD_BYTES = Long.getLong("todo.journal.compactBytes", 256 * 1024);
+    private static final long FIRST_RETRY_MILLIS = 1000;
+    private static final long MAX_RETRY_MILLIS = 5 * 60 * 1000;
+
+    private static final char ADD = 'A';
+    private static final char UPDATE = 'U';
+    private static final char REMOVE = 'R';
+
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r ->{
+        Thread t = new Thread(r, "task-journal-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final TaskStorage storage;
+    private final Path snapshot;
+    private final Path journal;
+    private final Path pending;
+    private final Path folded;
+    private final Path snapshotTmp;
+    private final Path journalTmp;
+
+    private FileOutputStream out;
+    private long journalSize;
+    private Future<?> compaction;
+    private volatile long retryAt;
+    private volatile long retryDelay;
+    private boolean backgroundCompaction = true;
+
+    //This constructor derives the journal file names from the snapshot file.
+    public TaskJournal(TaskStorage storage, Path snapshot){
+        this.storage = storage;
+        this.snapshot = snapshot;
+        this.journal = snapshot.resolveSibling(snapshot.getFileName() + ".journal");
+        this.pending = snapshot.resolveSibling(snapshot.getFileName() + ".journal.pending");
+        this.folded = snapshot.resolveSibling(snapshot.getFileName() + ".journal.folded");
+        this.snapshotTmp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        this.journalTmp = snapshot.resolveSibling(snapshot.getFileName() + ".journal.tmp");
+    }
+
+    //This method finishes any interrupted compaction and returns the snapshot with all journal records applied.
+    public List<Task> load() throws IOException{
+        Map<Long, Task> tasks = new LinkedHashMap<>();
+        load(new TaskLoadListener(){
+            @Override
+            public void taskLoaded(Task task){
+                tasks.put(task.getId(), task);
+            }
+
+            @Override
+            public void changeReplayed(TaskChange change){
+                change.applyTo(tasks);
+            }
+        });
+        return new ArrayList<>(tasks.values());
+    }
+
+    //This method streams the snapshot and then the journal records to a listener.
+    //It returns true when tasks without ids were given new ones that only a new snapshot will keep.
+    public synchronized boolean load(TaskLoadListener listener) throws IOException{
+        awaitCompaction();
+        recover();
+        boolean idsAssigned = storage.readSnapshot(snapshot, listener::taskLoaded);
+        replay(pending, listener::changeReplayed);
+        replay(journal, listener::changeReplayed);
+        journalSize = Files.exists(journal) ? Files.size(journal) : 0;
+        if (Files.exists(pending)){
+            compaction = COMPACTOR.submit(this::compact);
+        }
+        return idsAssigned;
+    }
+
+    //This method streams the tasks with every journal record applied, holding only the journal records in memory.
+    //It returns true when tasks without ids were given new ones that only a new snapshot will keep.
+    public synchronized boolean stream(Consumer<Task> sink) throws IOException{
+        awaitCompaction();
+        recover();
+        Map<Long, TaskChange> latest = new LinkedHashMap<>();
+        Consumer<TaskChange> collect = change ->{
+            TaskChange previous = latest.get(change.getId());
+            if (change.getKind() == TaskChange.Kind.UPDATE && previous != null && previous.getKind() == TaskChange.Kind.ADD){
+                change = TaskChange.added(change.getTask());
+            }
+            latest.put(change.getId(), change);
+        };
+        replay(pending, collect);
+        replay(journal, collect);
+        boolean idsAssigned = storage.readSnapshot(snapshot, task ->{
+            TaskChange change = latest.remove(task.getId());
+            if (change == null){
+                sink.accept(task);
+            } else if (change.getKind() != TaskChange.Kind.REMOVE){
+                sink.accept(change.getTask());
+            }
+        });
+        for (TaskChange change : latest.values()){
+            if (change.getKind() == TaskChange.Kind.ADD){
+                sink.accept(change.getTask());
+            }
+        }
+        return idsAssigned;
+    }
+
+    //This method appends the records for a batch of changes with a single write and returns the bytes written.
+    public synchronized long appendChanges(List<TaskChange> changes) throws IOException{
+        if (changes.isEmpty()){
+            return 0;
+        }
+        StringBuilder records = new StringBuilder();
+        for (TaskChange change : changes){
+            records.append(encode(change)).append('\n');
+        }
+        return append(records.toString());
+    }
+
+    //This method returns the combined size of the snapshot and the journal files waiting to be folded into it.
+    public synchronized long sizeOnDisk() throws IOException{
+        long size = 0;
+        for (Path file : new Path[]{snapshot, pending, journal}){
+            if (Files.exists(file)){
+                size += Files.size(file);
+            }
+        }
+        return size;
+    }
+
+    //This method waits for a running compaction and describes the snapshot and journal files by size and time,
+    //so the description changes whenever their contents do.
+    public synchronized String fingerprint() throws IOException{
+        awaitCompaction();
+        StringBuilder sb = new StringBuilder();
+        for (Path file : new Path[]{snapshot, pending, journal}){
+            if (Files.exists(file)){
+                BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                sb.append(attrs.size()).append('@').append(attrs.lastModifiedTime().toMillis());
+            } else{
+                sb.append('-');
+            }
+            sb.append(';');
+        }
+        return sb.toString();
+    }
+
+    //This method writes a full snapshot and discards every journal record it supersedes.
+    public synchronized void replaceSnapshot(List<Task> tasks) throws IOException{
+        awaitCompaction();
+        closeJournal();
+        if (Files.exists(pending)){
+            fold(null);
+        }
+        if (!Files.exists(journal)){
+            storage.writeSnapshot(snapshot, tasks);
+            journalSize = 0;
+            return;
+        }
+        Files.move(journal, pending, StandardCopyOption.ATOMIC_MOVE);
+        journalSize = 0;
+        fold(tasks);
+    }
+
+    //This method folds every journal record into the snapshot now and waits until it is written.
+    public synchronized void compactNow() throws IOException{
+        awaitCompaction();
+        closeJournal();
+        if (Files.exists(pending)){
+            fold(null);
+        }
+        if (Files.exists(journal) && Files.size(journal) > 0){
+            Files.move(journal, pending, StandardCopyOption.ATOMIC_MOVE);
+            journalSize = 0;
+            fold(null);
+        }
+    }
+
+    //This method merges a snapshot another program wrote with the journal records not yet folded into the snapshot.
+    //Records for the tasks the other program added, changed or removed are dropped so its edits win, and the rest
+    //are kept as the pending journal on top of the new snapshot and folded into it in the background.
+    //The other program most often rewrote the tasks it read, so the edits made here since are kept.
+    //It returns false, changing nothing, when the snapshot is still the one this storage wrote.
+    public synchronized boolean mergeOutsideSnapshot(LongPredicate touched) throws IOException{
+        awaitCompaction();
+        if (!Files.exists(snapshot) || storage.isOwnSnapshot()){
+            return false;
+        }
+        closeJournal();
+        dropTornRecord();
+        StringBuilder kept = new StringBuilder();
+        Consumer<TaskChange> keep = change ->{
+            if (!touched.test(change.getId())){
+                kept.append(encode(change)).append('\n');
+            }
+        };
+        replay(pending, keep);
+        replay(journal, keep);
+        if (kept.length() > 0){
+            try (FileOutputStream tmp = new FileOutputStream(journalTmp.toFile())){
+                tmp.write(kept.toString().getBytes(StandardCharsets.UTF_8));
+                tmp.getChannel().force(false);
+            }
+            Files.move(journalTmp, pending, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } else{
+            Files.deleteIfExists(pending);
+        }
+        Files.deleteIfExists(journal);
+        journalSize = 0;
+        retryAt = 0;
+        retryDelay = 0;
+        storage.noteSnapshotWritten();
+        if (kept.length() > 0){
+            compaction = COMPACTOR.submit(this::compact);
+        }
+        return true;
+    }
+
+    //This method turns rotating a full journal out to be folded in the background on or off.
+    public synchronized void setBackgroundCompaction(boolean enabled){
+        backgroundCompaction = enabled;
+    }
+
+    //This method waits for a running compaction and releases the open journal file.
+    public synchronized void close() throws IOException{
+        awaitCompaction();
+        closeJournal();
+    }
+
+    //This method writes record lines, rotates the journal once it passes the threshold and returns the bytes written.
+    private long append(String records) throws IOException{
+        if (out == null){
+            dropTornRecord();
+            out = new FileOutputStream(journal.toFile(), true);
+        }
+        byte[] bytes = records.getBytes(StandardCharsets.UTF_8);
+        out.write(bytes);
+        out.getChannel().force(false);
+        journalSize += bytes.length;
+
+        if (compaction == null || compaction.isDone()){
+            if (retryAt != 0){
+                if (System.currentTimeMillis() >= retryAt){
+                    compaction = COMPACTOR.submit(this::compact);
+                }
+            } else if (backgroundCompaction && journalSize >= COMPACT_THRESHOLD_BYTES && !Files.exists(pending)){
+                closeJournal();
+                Files.move(journal, pending, StandardCopyOption.ATOMIC_MOVE);
+                journalSize = 0;
+                compaction = COMPACTOR.submit(this::compact);
+            }
+        }
+        return bytes.length;
+    }
+
+    //This method runs a compaction on the background thread and reports failures to the storage's error handler.
+    //A failed fold leaves the pending journal in place and is tried again by an append after a delay that doubles
+    //with each failure, up to five minutes.
+    //It takes no lock: every method that could fold the pending journal too waits for this one first while holding
+    //the lock, so locking here would leave both waiting on each other.
+    private void compact(){
+        try{
+            if (!Files.exists(pending)){
+                return;
+            }
+            fold(null);
+        } catch (IOException e){
+            retryDelay = retryDelay == 0 ? FIRST_RETRY_MILLIS : Math.min(retryDelay * 2, MAX_RETRY_MILLIS);
+            retryAt = System.currentTimeMillis() + retryDelay;
+            storage.reportError(new IOException("Failed to compact task journal: " + e.getMessage(), e));
+        }
+    }
+
+    //This method replaces the snapshot with the given tasks or with the snapshot plus the pending journal.
+    private void fold(List<Task> tasks) throws IOException{
+        TaskFileWatcher.FoldRecorder recorder = storage.recordFold();
+        try (TaskStorage.SnapshotFileWriter tmp = storage.openSnapshotFile(snapshotTmp)){
+            Consumer<Task> sink = task ->{
+                try{
+                    tmp.write(task);
+                } catch (IOException e){
+                    throw new UncheckedIOException(e);
+                }
+                if (recorder != null){
+                    recorder.accept(task);
+                }
+            };
+            if (tasks == null){
+                streamFold(sink);
+            } else{
+                tasks.forEach(sink);
+            }
+        } catch (UncheckedIOException e){
+            throw e.getCause();
+        }
+        Files.move(pending, folded, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(snapshotTmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        storage.noteSnapshotWritten();
+        if (recorder != null){
+            recorder.finish();
+        }
+        Files.deleteIfExists(folded);
+        retryAt = 0;
+        retryDelay = 0;
+    }
+
+    //This method streams the snapshot with the pending journal applied, in the order replaying it into a map would
+    //give, while holding only a few numbers per journaled id and the tasks that are needed out of file order.
+    //The journal is read up to four times: to find its ids, to follow each id through its records once it is known
+    //which ids the snapshot holds, to pick up tasks written before their place in the output, and to write the rest.
+    private void streamFold(Consumer<Task> sink) throws IOException{
+        RecordIndex index = new RecordIndex();
+        replay(pending, change -> index.add(change.getId()));
+        storage.readSnapshot(snapshot, task -> index.markInSnapshot(task.getId()));
+        int[] record ={0};
+        replay(pending, change -> index.follow(change, record[0]++), false);
+
+        Map<Long, Task> outOfPlace = new HashMap<>();
+        if (index.outOfPlace() > 0){
+            record[0] = 0;
+            replay(pending, change ->{
+                if (index.isFinalTask(change.getId(), record[0]++)){
+                    outOfPlace.put(change.getId(), change.getTask());
+                }
+            }, false);
+        }
+
+        storage.readSnapshot(snapshot, task ->{
+            int slot = index.find(task.getId());
+            if (slot < 0){
+                sink.accept(task);
+            } else if (index.placedAt(slot, RecordIndex.SNAPSHOT)){
+                sink.accept(index.taskAt(slot) == RecordIndex.SNAPSHOT ? task : outOfPlace.get(task.getId()));
+            }
+        }, false);
+        record[0] = 0;
+        replay(pending, change ->{
+            int i = record[0]++;
+            int slot = index.find(change.getId());
+            if (slot >= 0 && index.placedAt(slot, i)){
+                sink.accept(index.taskAt(slot) == i ? change.getTask() : outOfPlace.get(change.getId()));
+            }
+        }, false);
+    }
+    //This method completes or rolls back a compaction that was cut short by a crash.
+    private void recover() throws IOException{
+        if (Files.exists(folded)){
+            if (Files.exists(snapshotTmp)){
+                Files.move(snapshotTmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            Files.delete(folded);
+        } else{
+            Files.deleteIfExists(snapshotTmp);
+        }
+        Files.deleteIfExists(journalTmp);
+        dropTornRecord();
+    }
+
+    //This method cuts a record torn by a crash off the end of the journal, so the next append starts on a fresh line
+    //instead of running into it and being skipped along with it on the next load.
+    private void dropTornRecord() throws IOException{
+        if (!Files.exists(journal)){
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            long size = channel.size();
+            long keep = 0;
+            ByteBuffer buf = ByteBuffer.allocate(4096);
+            for (long end = size; end > 0 && keep == 0; end -= buf.limit()){
+                buf.clear().limit((int) Math.min(buf.capacity(), end));
+                long from = end - buf.limit();
+                while (buf.hasRemaining()){
+                    if (channel.read(buf, from + buf.position()) < 0){
+                        break;
+                    }
+                }
+                for (int i = buf.limit() - 1; i >= 0; i--){
+                    if (buf.get(i) == '\n'){
+                        keep = from + i + 1;
+                        break;
+                    }
+                }
+            }
+            if (keep < size){
+                channel.truncate(keep);
+                storage.reportError(new IOException("Dropped a torn record at the end of " + journal.getFileName()));
+            }
+        }
+    }
+
+    //This method passes every complete record of a journal file to a consumer and reports damaged ones.
+    private void replay(Path file, Consumer<TaskChange> sink) throws IOException{
+        replay(file, sink, true);
+    }
+
+    //This method passes every complete record of a journal file to a consumer.
+    //Damaged records are skipped and only reported when asked, so a file read more than once reports them once.
+    private void replay(Path file, Consumer<TaskChange> sink, boolean reportSkipped) throws IOException{
+        if (!Files.exists(file)){
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)){
+            String line;
+            int lineNo = 0;
+            while ((line = reader.readLine()) != null){
+                lineNo++;
+                if (line.isEmpty()){
+                    continue;
+                }
+                TaskChange change;
+                try{
+                    change = decode(line);
+                } catch (IOException e){
+                    if (reportSkipped){
+                        storage.reportError(new IOException("Skipped journal record " + lineNo + " in " + file.getFileName() + ": " + e.getMessage(), e));
+                    }
+                    continue;
+                }
+                sink.accept(change);
+            }
+        }
+    }
+
+    //This method turns a change into a single journal line.
+    private String encode(TaskChange change){
+        switch (change.getKind()){
+            case ADD:
+                return ADD + " " + storage.toJsonLine(change.getTask());
+            case UPDATE:
+                return UPDATE + " " + storage.toJsonLine(change.getTask());
+            default:
+                return REMOVE + " " + change.getId();
+        }
+    }
+
+    //This method parses a journal line back into a change and throws with the reason when it is damaged.
+    private TaskChange decode(String line) throws IOException{
+        try{
+            switch (line.charAt(0)){
+                case ADD:
+                    return TaskChange.added(taskOf(line));
+                case UPDATE:
+                    return TaskChange.updated(taskOf(line));
+                case REMOVE:
+                    return TaskChange.removed(Long.parseLong(line.substring(2).trim()));
+                default:
+                    throw new IOException("unknown record kind '" + line.charAt(0) + "'");
+            }
+        } catch (RuntimeException e){
+            throw new IOException("malformed record: " + e.getMessage(), e);
+        }
+    }
+
+    //This method parses the task of an add or update record, which must have an id.
+    private Task taskOf(String line) throws IOException{
+        Task task = storage.parseTask(line.substring(2));
+        if (task.getId() == 0){
+            throw new IOException("task without an id");
+        }
+        return task;
+    }
+
+    //This method waits for a running compaction so the snapshot is not written twice at once.
+    private void awaitCompaction() throws IOException{
+        if (compaction == null){
+            return;
+        }
+        try{
+            compaction.get();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for journal compaction");
+        } catch (Exception e){
+            throw new IOException("Journal compaction failed", e);
+        }
+    }
+
+    //This method closes the open journal stream if there is one.
+    private void closeJournal() throws IOException{
+        if (out != null){
+            out.close();
+            out = null;
+        }
+    }
+
+    //This class follows every id of a journal file through its records without keeping the tasks they carry.
+    //Per id it keeps whether the task is in the snapshot, whether it is there at the end, the record that put it at
+    //its place in the output and the record that holds its final contents, where SNAPSHOT stands for the snapshot.
+    //Ids are never negative, so -1 marks a free slot of the linear probing table.
+    private static final class RecordIndex{
+        static final int SNAPSHOT = -1;
+        private static final long FREE = -1;
+        private static final byte IN_SNAPSHOT = 1;
+        private static final byte PRESENT = 2;
+
+        private long[] keys = new long[16];
+        private byte[] flags = new byte[16];
+        private int[] placed = new int[16];
+        private int[] contents = new int[16];
+        private int size;
+
+        //This constructor starts with an empty table.
+        RecordIndex(){
+            Arrays.fill(keys, FREE);
+        }
+
+        //This method adds an id named by a journal record.
+        void add(long id){
+            if (id < 0 || find(id) >= 0){
+                return;
+            }
+            if ((size + 1) * 2 > keys.length){
+                grow();
+            }
+            insert(id);
+        }
+
+        //This method notes that a snapshot task has an id named by the journal.
+        void markInSnapshot(long id){
+            int slot = find(id);
+            if (slot >= 0){
+                flags[slot] = IN_SNAPSHOT | PRESENT;
+                placed[slot] = SNAPSHOT;
+                contents[slot] = SNAPSHOT;
+            }
+        }
+
+        //This method applies a record to the state of its id the way TaskChange.applyTo changes a map: an add of a
+        //missing task puts it at the end, an update only changes a present task and a remove takes it out.
+        void follow(TaskChange change, int record){
+            int slot = find(change.getId());
+            if (slot < 0){
+                return;
+            }
+            boolean present = (flags[slot] & PRESENT) != 0;
+            switch (change.getKind()){
+                case ADD:
+                    if (!present){
+                        flags[slot] |= PRESENT;
+                        placed[slot] = record;
+                    }
+                    contents[slot] = record;
+                    break;
+                case UPDATE:
+                    if (present){
+                        contents[slot] = record;
+                    }
+                    break;
+                default:
+                    flags[slot] &= ~PRESENT;
+                    break;
+            }
+        }
+
+        //This method returns how many ids end with contents from a record other than the one that placed them.
+        int outOfPlace(){
+            int outOfPlace = 0;
+            for (int i = 0; i < keys.length; i++){
+                if (keys[i] != FREE && (flags[i] & PRESENT) != 0 && placed[i] != contents[i]){
+                    outOfPlace++;
+                }
+            }
+            return outOfPlace;
+        }
+
+        //This method returns whether a record holds the final contents of an id placed by another record.
+        boolean isFinalTask(long id, int record){
+            int slot = find(id);
+            return slot >= 0 && (flags[slot] & PRESENT) != 0 && contents[slot] == record && placed[slot] != record;
+        }
+
+        //This method returns whether the task of a slot is there at the end and placed by the given record.
+        boolean placedAt(int slot, int record){
+            return (flags[slot] & PRESENT) != 0 && placed[slot] == record;
+        }
+
+        //This method returns the record that holds the final contents of a slot.
+        int taskAt(int slot){
+            return contents[slot];
+        }
+
+        //This method returns the slot of an id or -1.
+        int find(long id){
+            if (id < 0){
+                return -1;
+            }
+            int mask = keys.length - 1;
+            for (int i = slot(id, mask); ; i = (i + 1) & mask){
+                if (keys[i] == id){
+                    return i;
+                }
+                if (keys[i] == FREE){
+                    return -1;
+                }
+            }
+        }
+
+        //This method puts a new id into its free slot.
+        private void insert(long id){
+            int mask = keys.length - 1;
+            int i = slot(id, mask);
+            while (keys[i] != FREE){
+                i = (i + 1) & mask;
+            }
+            keys[i] = id;
+            size++;
+        }
+
+        //This method doubles the table, which is only done while ids are added and before any state is kept.
+        private void grow(){
+            long[] old = keys;
+            keys = new long[old.length * 2];
+            flags = new byte[keys.length];
+            placed = new int[keys.length];
+            contents = new int[keys.length];
+            Arrays.fill(keys, FREE);
+            size = 0;
+            for (long id : old){
+                if (id != FREE){
+                    insert(id);
+                }
+            }
+        }
+
+        //This method spreads an id over the table.
+        private static int slot(long id, int mask){
+            long h = id * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+}
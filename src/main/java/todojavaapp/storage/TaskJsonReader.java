@@ -0,0 +1,489 @@
+//This file implements a streaming single pass reader for task JSON documents.
+package todojavaapp.storage;
+
+import todojavaapp.model.Priority;
+import todojavaapp.model.Recurrence;
+import todojavaapp.model.Task;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+//This class tokenizes task JSON straight from a Reader and builds each task in one pass with full escape handling.
+public class TaskJsonReader implements Closeable{
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final Reader in;
+    private final char[] buf;
+    private final StringBuilder token = new StringBuilder(64);
+    private int pos;
+    private int limit;
+    private int line;
+    private Consumer<IOException> skipHandler = e ->{};
+    private IOException lastSkip;
+
+    //This constructor wraps a reader and does its own buffering.
+    public TaskJsonReader(Reader in){
+        this(in, BUFFER_SIZE, 1);
+    }
+
+    //This constructor wraps a reader whose first character is on the given line.
+    public TaskJsonReader(Reader in, int firstLine){
+        this(in, BUFFER_SIZE, firstLine);
+    }
+
+    //This constructor wraps a reader with a buffer size and the line number of its first character.
+    private TaskJsonReader(Reader in, int bufferSize, int firstLine){
+        this.in = in;
+        this.buf = new char[bufferSize];
+        this.line = firstLine;
+    }
+
+    //This method returns a reader for one line of text, such as a line of newline delimited JSON.
+    //Syntax errors then report that line number.
+    public static TaskJsonReader forLine(String text, int lineNumber){
+        return new TaskJsonReader(new StringReader(text), Math.max(16, text.length()), lineNumber);
+    }
+
+    //This method sets the handler told about each object nextTask skips because its values are not a valid task.
+    public void setSkipHandler(Consumer<IOException> handler){
+        this.skipHandler = handler;
+    }
+
+    //This method consumes the opening bracket and returns false for an empty document.
+    public boolean beginArray() throws IOException{
+        int c = peekSignificant();
+        if (c == -1){
+            return false;
+        }
+        expect('[');
+        return true;
+    }
+
+    //This method returns true when another object follows in the array.
+    public boolean hasNext() throws IOException{
+        int c = peekSignificant();
+        if (c == ','){
+            pos++;
+            c = peekSignificant();
+        }
+        if (c == ']'){
+            pos++;
+            return false;
+        }
+        if (c == -1){
+            return false;
+        }
+        if (c != '{'){
+            throw syntax("Expected '{' or ']'");
+        }
+        return true;
+    }
+
+    //This method reads the next object and returns null when its values are not a valid task,
+    //telling the skip handler why unless the object was empty.
+    public Task nextTask() throws IOException{
+        lastSkip = null;
+        expect('{');
+        long id = 0;
+        String description = null;
+        Priority priority = null;
+        LocalDate dueDate = null;
+        Recurrence recurrence = null;
+        String problem = null;
+
+        int c = peekSignificant();
+        if (c == '}'){
+            pos++;
+            return null;
+        }
+        while (true){
+            readString();
+            expect(':');
+            int v = peekSignificant();
+            if (keyIs("id")){
+                if (v == '"'){
+                    readString();
+                } else{
+                    readNumber();
+                }
+                id = idFromToken();
+                if (id < 0) problem = "invalid id " + token;
+            } else if (keyIs("description")){
+                if (v == '"'){
+                    readString();
+                    description = token.toString();
+                } else{
+                    skipValue();
+                }
+            } else if (keyIs("priority")){
+                if (v == '"'){
+                    readString();
+                    priority = priorityFromToken();
+                    if (priority == null) problem = "unknown priority " + token;
+                } else{
+                    skipValue();
+                    problem = "missing priority";
+                }
+            } else if (keyIs("dueDate")){
+                if (v == '"'){
+                    readString();
+                    dueDate = dateFromToken();
+                    if (dueDate == null) problem = "invalid due date " + token;
+                } else{
+                    skipValue();
+                }
+            } else if (keyIs("recurrence")){
+                if (v == '"'){
+                    readString();
+                    try{
+                        recurrence = Recurrence.parse(token.toString());
+                    } catch (IllegalArgumentException e){
+                        problem = "invalid repeat rule " + token;
+                    }
+                } else{
+                    skipValue();
+                }
+            } else{
+                skipValue();
+            }
+
+            c = peekSignificant();
+            pos++;
+            if (c == '}'){
+                break;
+            }
+            if (c != ','){
+                pos--;
+                throw syntax("Expected ',' or '}'");
+            }
+        }
+
+        if (problem == null && priority == null){
+            problem = "missing priority";
+        }
+        if (problem != null){
+            lastSkip = new IOException("Skipped a task with " + problem + " at line " + line);
+            skipHandler.accept(lastSkip);
+            return null;
+        }
+        return new Task(id, description, priority, dueDate, recurrence);
+    }
+
+    //This method reads a piece of the task array that was cut just before an object and just after a comma.
+    //It returns false unless the piece holds only whole objects and ends right after such a comma.
+    public boolean readSlice(Consumer<Task> sink) throws IOException{
+        int c = peekSignificant();
+        while (c == '{'){
+            Task task = nextTask();
+            if (task != null){
+                sink.accept(task);
+            }
+            c = peekSignificant();
+            if (c == ','){
+                pos++;
+                c = peekSignificant();
+                if (c == -1){
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    //This method returns the number of the line the reader has reached.
+    public int getLine(){
+        return line;
+    }
+
+    //This method reads a single task object such as one journal record and throws with the reason when it is not a valid task.
+    public Task readTask() throws IOException{
+        if (peekSignificant() != '{'){
+            throw syntax("Expected '{'");
+        }
+        Task task = nextTask();
+        if (task == null){
+            throw lastSkip != null ? lastSkip : syntax("Empty task object");
+        }
+        return task;
+    }
+
+    //This method reads one flat object into its keys and values as text.
+    //JSON null becomes a null value and nested objects or arrays are skipped.
+    public Map<String, String> readObject() throws IOException{
+        expect('{');
+        Map<String, String> fields = new LinkedHashMap<>();
+        if (peekSignificant() == '}'){
+            pos++;
+            return fields;
+        }
+        while (true){
+            readString();
+            String key = token.toString();
+            expect(':');
+            int v = peekSignificant();
+            if (v == '"'){
+                readString();
+                fields.put(key, token.toString());
+            } else if (v == '{' || v == '['){
+                skipValue();
+            } else{
+                readNumber();
+                fields.put(key, keyIs("null") ? null : token.toString());
+            }
+            int c = peekSignificant();
+            pos++;
+            if (c == '}'){
+                return fields;
+            }
+            if (c != ','){
+                pos--;
+                throw syntax("Expected ',' or '}'");
+            }
+        }
+    }
+
+    //This method returns true when only whitespace is left in the input.
+    public boolean atEnd() throws IOException{
+        return peekSignificant() == -1;
+    }
+
+    //This method closes the underlying reader.
+    @Override
+    public void close() throws IOException{
+        in.close();
+    }
+
+    //This method returns whether the last string read equals a key without allocating.
+    private boolean keyIs(String key){
+        if (token.length() != key.length()){
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++){
+            if (token.charAt(i) != key.charAt(i)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //This method matches the last string read against the priority names.
+    private Priority priorityFromToken(){
+        for (Priority p : Priority.values()){
+            if (keyIs(p.name())){
+                return p;
+            }
+        }
+        return null;
+    }
+
+    //This method parses a non negative id from the last token or returns -1.
+    private long idFromToken(){
+        if (token.length() == 0 || token.length() > 18){
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < token.length(); i++){
+            char ch = token.charAt(i);
+            if (ch < '0' || ch > '9'){
+                return -1;
+            }
+            value = value * 10 + (ch - '0');
+        }
+        return value;
+    }
+
+    //This method parses a yyyy-MM-dd date from the last string read without building a String.
+    private LocalDate dateFromToken(){
+        if (token.length() != 10 || token.charAt(4) != '-' || token.charAt(7) != '-'){
+            return null;
+        }
+        int year = digits(0, 4);
+        int month = digits(5, 2);
+        int day = digits(8, 2);
+        if (year < 0 || month < 0 || day < 0){
+            return null;
+        }
+        try{
+            return LocalDate.of(year, month, day);
+        } catch (DateTimeException e){
+            return null;
+        }
+    }
+
+    //This method reads a run of decimal digits from the token or returns -1.
+    private int digits(int start, int count){
+        int value = 0;
+        for (int i = start; i < start + count; i++){
+            char ch = token.charAt(i);
+            if (ch < '0' || ch > '9'){
+                return -1;
+            }
+            value = value * 10 + (ch - '0');
+        }
+        return value;
+    }
+
+    //This method reads a quoted string into the reusable token buffer and decodes escapes.
+    private void readString() throws IOException{
+        expect('"');
+        token.setLength(0);
+        while (true){
+            if (pos >= limit && !fill()){
+                throw syntax("Unterminated string");
+            }
+            int start = pos;
+            while (pos < limit){
+                char ch = buf[pos];
+                if (ch == '"' || ch == '\\'){
+                    break;
+                }
+                if (ch == '\n'){
+                    line++;
+                }
+                pos++;
+            }
+            token.append(buf, start, pos - start);
+            if (pos >= limit){
+                continue;
+            }
+            char ch = buf[pos++];
+            if (ch == '"'){
+                return;
+            }
+            token.append(readEscape());
+        }
+    }
+
+    //This method decodes the character after a backslash.
+    private char readEscape() throws IOException{
+        int ch = read();
+        switch (ch){
+            case '"': return '"';
+            case '\\': return '\\';
+            case '/': return '/';
+            case 'b': return '\b';
+            case 'f': return '\f';
+            case 'n': return '\n';
+            case 'r': return '\r';
+            case 't': return '\t';
+            case 'u':{
+                int value = 0;
+                for (int i = 0; i < 4; i++){
+                    int h = Character.digit(read(), 16);
+                    if (h < 0){
+                        throw syntax("Invalid unicode escape");
+                    }
+                    value = (value << 4) | h;
+                }
+                return (char) value;
+            }
+            default:
+                throw syntax("Invalid escape");
+        }
+    }
+
+    //This method reads a bare number or literal into the token buffer.
+    private void readNumber() throws IOException{
+        token.setLength(0);
+        while (true){
+            if (pos >= limit && !fill()){
+                break;
+            }
+            char ch = buf[pos];
+            if (ch == ',' || ch == '}' || ch == ']' || Character.isWhitespace(ch)){
+                break;
+            }
+            token.append(ch);
+            pos++;
+        }
+        if (token.length() == 0){
+            throw syntax("Expected a value");
+        }
+    }
+
+    //This method skips any JSON value including nested objects and arrays.
+    private void skipValue() throws IOException{
+        int c = peekSignificant();
+        if (c == '"'){
+            readString();
+            return;
+        }
+        if (c == '{' || c == '['){
+            int depth = 0;
+            do{
+                c = peekSignificant();
+                if (c == '"'){
+                    readString();
+                    continue;
+                }
+                if (c == -1){
+                    throw syntax("Unterminated value");
+                }
+                pos++;
+                if (c == '{' || c == '['){
+                    depth++;
+                } else if (c == '}' || c == ']'){
+                    depth--;
+                }
+            } while (depth > 0);
+            return;
+        }
+        readNumber();
+    }
+
+    //This method consumes the given character after optional whitespace.
+    private void expect(char expected) throws IOException{
+        if (peekSignificant() != expected){
+            throw syntax("Expected '" + expected + "'");
+        }
+        pos++;
+    }
+
+    //This method skips whitespace and returns the next character without consuming it.
+    private int peekSignificant() throws IOException{
+        while (true){
+            if (pos >= limit && !fill()){
+                return -1;
+            }
+            char ch = buf[pos];
+            if (ch == '\n'){
+                line++;
+            } else if (ch != ' ' && ch != '\t' && ch != '\r'){
+                return ch;
+            }
+            pos++;
+        }
+    }
+
+    //This method consumes and returns the next raw character.
+    private int read() throws IOException{
+        if (pos >= limit && !fill()){
+            throw syntax("Unexpected end of input");
+        }
+        return buf[pos++];
+    }
+
+    //This method refills the buffer and returns false at the end of input.
+    private boolean fill() throws IOException{
+        int n = in.read(buf, 0, buf.length);
+        if (n <= 0){
+            pos = limit = 0;
+            return false;
+        }
+        pos = 0;
+        limit = n;
+        return true;
+    }
+
+    //This method builds a syntax error that points at the current line.
+    private IOException syntax(String message){
+        return new IOException(message + " at line " + line);
+    }
+}
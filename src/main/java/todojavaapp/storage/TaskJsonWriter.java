@@ -0,0 +1,165 @@
+//This file implements a streaming writer for task JSON documents.
+package todojavaapp.storage;
+
+import todojavaapp.model.Task;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.time.LocalDate;
+
+//This class writes tasks straight to a Writer one object at a time without building the document in memory.
+public class TaskJsonWriter implements Closeable, Flushable{
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Writer out;
+    private final boolean pretty;
+    private boolean first = true;
+
+    //This constructor writes indented output when pretty is true and single line output otherwise.
+    public TaskJsonWriter(Writer out, boolean pretty){
+        this.out = out;
+        this.pretty = pretty;
+    }
+
+    //This method writes a task as a single line JSON object.
+    public static String toJsonLine(Task task){
+        StringWriter sw = new StringWriter(96);
+        try{
+            new TaskJsonWriter(sw, false).writeObject(task);
+        } catch (IOException e){
+            throw new IllegalStateException(e);
+        }
+        return sw.toString();
+    }
+
+    //This method returns text as a quoted JSON string.
+    public static String quote(String text){
+        StringWriter sw = new StringWriter(text == null ? 2 : text.length() + 2);
+        try{
+            new TaskJsonWriter(sw, false).writeString(text);
+        } catch (IOException e){
+            throw new IllegalStateException(e);
+        }
+        return sw.toString();
+    }
+
+    //This method writes the opening bracket of the array.
+    public void beginArray() throws IOException{
+        out.write(pretty ? "[\n" : "[");
+    }
+
+    //This method writes one task as the next array element.
+    public void writeTask(Task task) throws IOException{
+        if (!first){
+            out.write(pretty ? ",\n" : ",");
+        }
+        first = false;
+        writeObject(task);
+    }
+
+    //This method writes the closing bracket of the array.
+    public void endArray() throws IOException{
+        if (pretty){
+            out.write(first ? "]\n" : "\n]\n");
+        } else{
+            out.write(']');
+        }
+    }
+
+    //This method flushes the underlying writer.
+    @Override
+    public void flush() throws IOException{
+        out.flush();
+    }
+
+    //This method closes the underlying writer.
+    @Override
+    public void close() throws IOException{
+        out.close();
+    }
+
+    //This method writes the fields of one task object.
+    private void writeObject(Task task) throws IOException{
+        String open = pretty ? "  {\n    " : "{";
+        String separator = pretty ? ",\n    " : ", ";
+        out.write(open);
+        out.write("\"id\": ");
+        out.write(Long.toString(task.getId()));
+        out.write(separator);
+        out.write("\"description\": ");
+        writeString(task.getDescription());
+        out.write(separator);
+        out.write("\"priority\": \"");
+        out.write(task.getPriority().name());
+        out.write('"');
+        out.write(separator);
+        out.write("\"dueDate\": ");
+        LocalDate due = task.getDueDate();
+        if (due != null){
+            out.write('"');
+            writeDate(due);
+            out.write('"');
+        } else{
+            out.write("null");
+        }
+        if (task.getRecurrence() != null){
+            out.write(separator);
+            out.write("\"recurrence\": ");
+            writeString(task.getRecurrence().toString());
+        }
+        out.write(pretty ? "\n  }" : "}");
+    }
+
+    //This method writes a date as yyyy-MM-dd without a formatter.
+    private void writeDate(LocalDate date) throws IOException{
+        int year = date.getYear();
+        if (year < 0 || year > 9999){
+            out.write(date.toString());
+            return;
+        }
+        writeDigits(year, 4);
+        out.write('-');
+        writeDigits(date.getMonthValue(), 2);
+        out.write('-');
+        writeDigits(date.getDayOfMonth(), 2);
+    }
+
+    //This method writes a zero padded number.
+    private void writeDigits(int value, int width) throws IOException{
+        for (int div = width == 4 ? 1000 : 10; div > 0; div /= 10){
+            out.write('0' + (value / div) % 10);
+        }
+    }
+
+    //This method writes a quoted string and escapes characters that JSON does not allow raw.
+    private void writeString(String s) throws IOException{
+        out.write('"');
+        if (s != null){
+            int start = 0;
+            for (int i = 0; i < s.length(); i++){
+                char ch = s.charAt(i);
+                if (ch != '"' && ch != '\\' && ch >= 0x20){
+                    continue;
+                }
+                out.write(s, start, i - start);
+                start = i + 1;
+                switch (ch){
+                    case '"': out.write("\\\""); break;
+                    case '\\': out.write("\\\\"); break;
+                    case '\n': out.write("\\n"); break;
+                    case '\r': out.write("\\r"); break;
+                    case '\t': out.write("\\t"); break;
+                    default:
+                        out.write("\\u00");
+                        out.write(HEX[ch >> 4]);
+                        out.write(HEX[ch & 0xF]);
+                }
+            }
+            out.write(s, start, s.length() - start);
+        }
+        out.write('"');
+    }
+}
@@ -0,0 +1,132 @@
+//This file maps named task lists to the shard files that store them.
+package todojavaapp.storage;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+//This class keeps every named list in its own snapshot and journal so each list is read and written on its own.
+//The default list is the usual data file and the others are shards in a lists folder next to it.
+//Finding the lists only reads file names, so nothing is loaded until a list is opened.
+public class TaskListCatalog{
+    public static final String DEFAULT_LIST = "Tasks";
+    public static final int MAX_NAME_LENGTH = 60;
+
+    private static final String SHARD_SUFFIX = ".json";
+    private static final String JOURNAL_SUFFIX = SHARD_SUFFIX + ".journal";
+
+    private final Path defaultFile;
+    private final Path listsDir;
+
+    //This constructor uses the default data file and the lists folder beside it unless todo.listsDir names another.
+    public TaskListCatalog(){
+        this(TaskStorage.defaultDataFile(), listsDirFor(TaskStorage.defaultDataFile()));
+    }
+
+    //This constructor uses the given default data file and folder of shards.
+    public TaskListCatalog(Path defaultFile, Path listsDir){
+        this.defaultFile = defaultFile;
+        this.listsDir = listsDir;
+    }
+
+    //This method returns the folder that holds the shards of the lists other than the default one.
+    private static Path listsDirFor(Path defaultFile){
+        String configured = System.getProperty("todo.listsDir");
+        if (configured != null){
+            return Paths.get(configured);
+        }
+        return defaultFile.toAbsolutePath().resolveSibling("lists");
+    }
+
+    //This method returns the default list first and then every other list by name.
+    public List<String> listNames() throws IOException{
+        Set<String> names = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        if (Files.isDirectory(listsDir)){
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(listsDir)){
+                for (Path file : files){
+                    String name = nameOf(file.getFileName().toString());
+                    if (name != null && !name.equalsIgnoreCase(DEFAULT_LIST)){
+                        names.add(name);
+                    }
+                }
+            }
+        }
+        List<String> result = new ArrayList<>(names.size() + 1);
+        result.add(DEFAULT_LIST);
+        result.addAll(names);
+        return Collections.unmodifiableList(result);
+    }
+
+    //This method returns the storage of a list without reading any of it.
+    public TaskStorage open(String name){
+        return new TaskStorage(shardOf(name));
+    }
+
+    //This method creates an empty list and returns its storage.
+    public TaskStorage create(String name) throws IOException{
+        String checked = checkName(name);
+        for (String existing : listNames()){
+            if (existing.equalsIgnoreCase(checked)){
+                throw new IllegalArgumentException("A list named \"" + existing + "\" already exists.");
+            }
+        }
+        Files.createDirectories(listsDir);
+        TaskStorage storage = open(checked);
+        storage.saveTasks(Collections.emptyList());
+        return storage;
+    }
+
+    //This method returns a trimmed list name or throws when it cannot be used.
+    public static String checkName(String name){
+        String trimmed = name == null ? "" : name.trim();
+        if (trimmed.isEmpty()){
+            throw new IllegalArgumentException("List name is required.");
+        }
+        if (trimmed.length() > MAX_NAME_LENGTH){
+            throw new IllegalArgumentException("List name must be at most " + MAX_NAME_LENGTH + " characters.");
+        }
+        for (int i = 0; i < trimmed.length(); i++){
+            if (Character.isISOControl(trimmed.charAt(i))){
+                throw new IllegalArgumentException("List name must not contain control characters.");
+            }
+        }
+        return trimmed;
+    }
+
+    //This method returns the snapshot file of a list.
+    private Path shardOf(String name){
+        if (DEFAULT_LIST.equalsIgnoreCase(name)){
+            return defaultFile;
+        }
+        //Encoding keeps any name a single safe file name and can be reversed when the folder is listed.
+        return listsDir.resolve(URLEncoder.encode(name, StandardCharsets.UTF_8) + SHARD_SUFFIX);
+    }
+
+    //This method returns the list a snapshot or journal file belongs to, or null for other files.
+    private static String nameOf(String fileName){
+        String encoded;
+        if (fileName.endsWith(SHARD_SUFFIX)){
+            encoded = fileName.substring(0, fileName.length() - SHARD_SUFFIX.length());
+        } else if (fileName.endsWith(JOURNAL_SUFFIX)){
+            encoded = fileName.substring(0, fileName.length() - JOURNAL_SUFFIX.length());
+        } else{
+            return null;
+        }
+        try{
+            String name = URLDecoder.decode(encoded, StandardCharsets.UTF_8);
+            return name.isBlank() ? null : name;
+        } catch (IllegalArgumentException e){
+            return null;
+        }
+    }
+}
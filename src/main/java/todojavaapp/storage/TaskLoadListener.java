@@ -0,0 +1,13 @@
+//This file defines the callbacks used to stream tasks out of storage while they are loaded.
+package todojavaapp.storage;
+
+import todojavaapp.model.Task;
+
+//This interface receives snapshot tasks one at a time followed by the journal changes replayed on top of them.
+public interface TaskLoadListener{
+    //This method is called for each task read from the snapshot.
+    void taskLoaded(Task task);
+
+    //This method is called for each journal record after the snapshot has been read.
+    void changeReplayed(TaskChange change);
+}
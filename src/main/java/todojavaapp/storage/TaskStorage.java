@@ -1,175 +1,485 @@
-//This file manages JSON persistence for tasks using a simple manual JSON implementation.
+//This file manages snapshot persistence for tasks in JSON or binary form.
 package todojavaapp.storage;
 
-import todojavaapp.model.Priority;
+import todojavaapp.diagnostics.Metrics;
+import todojavaapp.diagnostics.TaskLoadEvent;
+import todojavaapp.diagnostics.TaskSaveEvent;
 import todojavaapp.model.Task;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
 
-//This class provides methods to save and load tasks from a JSON file.
+//This class provides methods to save and load tasks from a snapshot plus an append only change journal.
 public class TaskStorage{
     private static final String DATA_FILE = "tasks.json";
-    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE;
 
-    //This method saves a list of tasks to the JSON file.
+    private final Path dataFile;
+    private final TaskJournal journal;
+    private volatile SnapshotFormat format;
+    private volatile TaskFileWatcher watcher;
+    private volatile FileTime ownSnapshotTime;
+    private volatile long ownSnapshotSize = -1;
+    private volatile Consumer<IOException> errorHandler = e -> System.err.println(e.getMessage());
+    private final Object lockGuard = new Object();
+    private FileChannel lockChannel;
+    private FileLock lock;
+
+    //This constructor uses tasks.json in the working directory unless todo.dataFile names another file.
+    public TaskStorage(){
+        this(defaultDataFile());
+    }
+
+    //This constructor uses the given snapshot file and detects its format from the contents.
+    public TaskStorage(Path dataFile){
+        this(dataFile, null);
+    }
+
+    //This constructor uses the given snapshot file and writes it in the given format.
+    public TaskStorage(Path dataFile, SnapshotFormat format){
+        this.dataFile = dataFile;
+        this.journal = new TaskJournal(this, dataFile);
+        this.format = format;
+    }
+
+    //This method returns tasks.json in the working directory unless todo.dataFile names another file.
+    public static Path defaultDataFile(){
+        return Paths.get(System.getProperty("todo.dataFile", DATA_FILE));
+    }
+
+    //This method returns the snapshot file this storage writes to.
+    public Path getDataFile(){
+        return dataFile;
+    }
+
+    //This method returns the format snapshots are written in.
+    public SnapshotFormat getFormat() throws IOException{
+        if (format == null){
+            format = SnapshotFormat.detect(dataFile);
+        }
+        return format;
+    }
+
+    //This method changes the format used by the next snapshot write.
+    public void setFormat(SnapshotFormat format){
+        this.format = format;
+    }
+
+    //This method saves a full list of tasks as a new snapshot and clears the journal.
     public void saveTasks(List<Task> tasks) throws IOException{
-        StringBuilder json = new StringBuilder();
-        json.append("[\n");
-        
-        for (int i = 0; i < tasks.size(); i++){
-            Task task = tasks.get(i);
-            json.append("  {\n");
-            json.append("    \"description\": \"").append(escapeJson(task.getDescription())).append("\",\n");
-            json.append("    \"priority\": \"").append(task.getPriority().name()).append("\",\n");
-            json.append("    \"dueDate\": ");
-            if (task.getDueDate() != null){
-                json.append("\"").append(task.getDueDate().format(DATE_FORMAT)).append("\"");
+        lock();
+        TaskSaveEvent event = new TaskSaveEvent();
+        event.begin();
+        long start = System.nanoTime();
+        journal.replaceSnapshot(tasks);
+        long bytes = Files.size(dataFile);
+        Metrics.SAVE.record(System.nanoTime() - start, tasks.size(), bytes);
+        event.file = dataFile.toString();
+        event.kind = "snapshot";
+        event.records = tasks.size();
+        event.bytes = bytes;
+        event.commit();
+        TaskFileWatcher w = watcher;
+        if (w != null){
+            w.snapshotWritten(tasks);
+        }
+    }
+
+    //This method loads tasks from the snapshot and replays the journal on top of it.
+    public List<Task> loadTasks() throws IOException{
+        lock();
+        TaskLoadEvent event = new TaskLoadEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long bytes = journal.sizeOnDisk();
+        List<Task> tasks = journal.load();
+        loaded(event, start, tasks.size(), bytes);
+        return tasks;
+    }
+
+    //This method streams the snapshot tasks and then the journal changes to a listener without building a list.
+    //It returns true when tasks from an older file were given ids, so a new snapshot should be saved.
+    public boolean loadTasks(TaskLoadListener listener) throws IOException{
+        lock();
+        TaskLoadEvent event = new TaskLoadEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long bytes = journal.sizeOnDisk();
+        long[] records = new long[1];
+        boolean idsAssigned = journal.load(new TaskLoadListener(){
+            @Override
+            public void taskLoaded(Task task){
+                records[0]++;
+                listener.taskLoaded(task);
+            }
+
+            @Override
+            public void changeReplayed(TaskChange change){
+                records[0]++;
+                listener.changeReplayed(change);
+            }
+        });
+        loaded(event, start, records[0], bytes);
+        return idsAssigned;
+    }
+
+    //This method records a finished load in the metrics and the flight recorder.
+    private void loaded(TaskLoadEvent event, long start, long records, long bytes){
+        Metrics.LOAD.record(System.nanoTime() - start, records, bytes);
+        event.file = dataFile.toString();
+        event.records = records;
+        event.bytes = bytes;
+        event.commit();
+    }
+
+    //This method streams the current tasks with journal changes applied without loading the snapshot into memory.
+    //It returns true when tasks from an older file were given ids, so a new snapshot should be saved.
+    public boolean forEachTask(Consumer<Task> sink) throws IOException{
+        lock();
+        return journal.stream(sink);
+    }
+
+    //This method appends a batch of changes to the journal.
+    public void appendChanges(List<TaskChange> changes) throws IOException{
+        lock();
+        TaskSaveEvent event = new TaskSaveEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long bytes = journal.appendChanges(changes);
+        Metrics.APPEND.record(System.nanoTime() - start, changes.size(), bytes);
+        event.file = dataFile.toString();
+        event.kind = "journal";
+        event.records = changes.size();
+        event.bytes = bytes;
+        event.commit();
+        TaskFileWatcher w = watcher;
+        if (w != null){
+            w.changesWritten(changes);
+        }
+    }
+
+    //This method returns a description of the files behind this storage that changes whenever what they hold does.
+    public String fingerprint() throws IOException{
+        return journal.fingerprint();
+    }
+
+    //This method folds the journal into the snapshot and waits for the write to finish.
+    public void compact() throws IOException{
+        lock();
+        journal.compactNow();
+    }
+
+    //This method turns folding the journal into the snapshot in the background on or off.
+    //A bulk import turns it off so the journal grows until one compact at the end instead of being folded over and
+    //over while the import runs.
+    public void setBackgroundCompaction(boolean enabled){
+        journal.setBackgroundCompaction(enabled);
+    }
+
+    //This method waits for background journal work and releases the files this storage holds open and its lock.
+    public void close() throws IOException{
+        try{
+            journal.close();
+        } finally{
+            unlock();
+        }
+    }
+
+    //This method takes the lock file next to the snapshot, so a second program opening the same list fails at once
+    //instead of both writing the journal and each folding it over the other's snapshot.
+    //Reads and writes take it on first use, and a command can take it up front to fail before doing any work.
+    //The lock is held until close.
+    public void lock() throws IOException{
+        synchronized (lockGuard){
+            if (lock != null){
+                return;
+            }
+            Path file = dataFile.resolveSibling(dataFile.getFileName() + ".lock");
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock taken;
+            try{
+                taken = channel.tryLock();
+            } catch (OverlappingFileLockException e){
+                taken = null;
+            } catch (IOException e){
+                channel.close();
+                throw e;
+            }
+            if (taken == null){
+                channel.close();
+                throw new IOException("The task list " + dataFile + " is in use by another program. Close the application window, server or import using it and try again.");
+            }
+            lockChannel = channel;
+            lock = taken;
+        }
+    }
+
+    //This method releases the lock file if this storage holds it.
+    private void unlock() throws IOException{
+        synchronized (lockGuard){
+            if (lock == null){
+                return;
+            }
+            try{
+                lock.release();
+            } finally{
+                lockChannel.close();
+                lock = null;
+                lockChannel = null;
+            }
+        }
+    }
+
+    //This method sets the handler that receives failures of background work on the files, such as a journal fold.
+    public void setErrorHandler(Consumer<IOException> handler){
+        this.errorHandler = handler;
+    }
+
+    //This method passes a failure of background work to the error handler.
+    void reportError(IOException e){
+        errorHandler.accept(e);
+    }
+
+    //This method merges a snapshot another program wrote with the journal, keeping the records of the tasks for
+    //which touched is false. It returns false when the snapshot is still the one this storage wrote.
+    boolean mergeOutsideSnapshot(LongPredicate touched) throws IOException{
+        return journal.mergeOutsideSnapshot(touched);
+    }
+
+    //This method returns a recorder for the tasks a fold writes to the snapshot, or null when no watcher is set.
+    TaskFileWatcher.FoldRecorder recordFold(){
+        TaskFileWatcher w = watcher;
+        return w == null ? null : w.recordFold();
+    }
+
+    //This method sets the watcher that is told about every write so it can tell them from outside edits.
+    void setWatcher(TaskFileWatcher watcher){
+        this.watcher = watcher;
+    }
+
+    //This method remembers the size and time of the snapshot this storage just wrote.
+    void noteSnapshotWritten() throws IOException{
+        BasicFileAttributes attrs = Files.readAttributes(dataFile, BasicFileAttributes.class);
+        ownSnapshotSize = attrs.size();
+        ownSnapshotTime = attrs.lastModifiedTime();
+    }
+
+    //This method returns whether the snapshot is still the file this storage last wrote.
+    boolean isOwnSnapshot(){
+        try{
+            BasicFileAttributes attrs = Files.readAttributes(dataFile, BasicFileAttributes.class);
+            return attrs.size() == ownSnapshotSize && attrs.lastModifiedTime().equals(ownSnapshotTime);
+        } catch (IOException e){
+            return false;
+        }
+    }
+
+    //This method writes a list of tasks to a JSON file through a temporary file.
+    void writeSnapshot(Path target, List<Task> tasks) throws IOException{
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        writeSnapshotFile(tmp, tasks);
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (target.equals(dataFile)){
+            noteSnapshotWritten();
+        }
+    }
+
+    //This method writes a list of tasks in place using the snapshot format and forces them to disk.
+    void writeSnapshotFile(Path file, List<Task> tasks) throws IOException{
+        try (SnapshotFileWriter out = openSnapshotFile(file)){
+            for (Task task : tasks){
+                out.write(task);
+            }
+        }
+    }
+
+    //This method opens a file to be written one task at a time in the snapshot format.
+    SnapshotFileWriter openSnapshotFile(Path file) throws IOException{
+        return new SnapshotFileWriter(file, getFormat());
+    }
+
+    //This class writes tasks one at a time to a snapshot file and forces it to disk when closed,
+    //so the rename that puts the file in place cannot outlive its contents in a crash.
+    static final class SnapshotFileWriter implements Closeable{
+        private final Path file;
+        private final BinaryTaskFormat.RecordWriter binary;
+        private final TaskJsonWriter json;
+
+        //This constructor creates the file and starts it in the given format.
+        SnapshotFileWriter(Path file, SnapshotFormat format) throws IOException{
+            this.file = file;
+            if (format == SnapshotFormat.BINARY){
+                binary = new BinaryTaskFormat.RecordWriter(file);
+                json = null;
             } else{
-                json.append("null");
+                binary = null;
+                json = new TaskJsonWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), true);
+                json.beginArray();
+            }
+        }
+
+        //This method writes the next task.
+        void write(Task task) throws IOException{
+            if (binary != null){
+                binary.write(task);
+            } else{
+                json.writeTask(task);
+            }
+        }
+
+        //This method finishes the file and forces it to disk.
+        @Override
+        public void close() throws IOException{
+            if (binary != null){
+                binary.close();
+            } else{
+                try{
+                    json.endArray();
+                } finally{
+                    json.close();
+                }
             }
-            json.append("\n");
-            json.append("  }");
-            if (i < tasks.size() - 1){
-                json.append(",");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)){
+                channel.force(true);
             }
-            json.append("\n");
         }
-        
-        json.append("]\n");
-        
-        Files.write(Paths.get(DATA_FILE), json.toString().getBytes(StandardCharsets.UTF_8));
     }
 
-    //This method loads tasks from the JSON file.
-    public List<Task> loadTasks() throws IOException{
+    //This method reads the tasks stored in a snapshot file in whichever format the file uses.
+    List<Task> readSnapshot(Path source) throws IOException{
         List<Task> tasks = new ArrayList<>();
-        
-        if (!Files.exists(Paths.get(DATA_FILE))){
-            return tasks;
-        }
-        
-        String content = new String(Files.readAllBytes(Paths.get(DATA_FILE)), StandardCharsets.UTF_8);
-        content = content.trim();
-        
-        if (content.isEmpty() || content.equals("[]")){
-            return tasks;
-        }
-        
-        content = content.substring(1, content.length() - 1).trim();
-        
-        List<String> objects = splitJsonObjects(content);
-        
-        for (String obj : objects){
-            Task task = parseTask(obj);
-            if (task != null){
-                tasks.add(task);
-            }
-        }
-        
+        readSnapshot(source, tasks::add);
         return tasks;
     }
 
-    //This method splits the JSON array content into individual object strings.
-    private List<String> splitJsonObjects(String content){
-        List<String> objects = new ArrayList<>();
-        int braceLevel = 0;
-        int start = -1;
-        
-        for (int i = 0; i < content.length(); i++){
-            char c = content.charAt(i);
-            if (c == '{'){
-                if (braceLevel == 0){
-                    start = i;
+    //This method streams the tasks of a snapshot file to a consumer and returns true if any needed a new id.
+    //Objects that are not valid tasks are skipped and reported to the error handler.
+    boolean readSnapshot(Path source, Consumer<Task> sink) throws IOException{
+        return readSnapshot(source, sink, true);
+    }
+
+    //This method streams the tasks of a snapshot file to a consumer and returns true if any needed a new id.
+    //Skipped objects are only reported when asked, so a file read more than once reports them once.
+    boolean readSnapshot(Path source, Consumer<Task> sink, boolean reportSkipped) throws IOException{
+        if (!Files.exists(source)){
+            return false;
+        }
+
+        SnapshotFormat detected = SnapshotFormat.detect(source);
+        if (format == null && source.equals(dataFile)){
+            format = detected;
+        }
+
+        Consumer<IOException> skipped = e ->{
+            if (reportSkipped){
+                reportError(new IOException(e.getMessage() + " of " + source.getFileName(), e));
+            }
+        };
+        IdAssigner ids = new IdAssigner(sink);
+        if (detected == SnapshotFormat.BINARY){
+            BinaryTaskFormat.read(source, ids);
+            return ids.finish();
+        }
+        if (ParallelJsonLoader.worthIt(Files.size(source))){
+            ParallelJsonLoader.read(source, ids, skipped);
+            return ids.finish();
+        }
+
+        try (TaskJsonReader reader = new TaskJsonReader(new InputStreamReader(Files.newInputStream(source), StandardCharsets.UTF_8))){
+            reader.setSkipHandler(skipped);
+            if (reader.beginArray()){
+                while (reader.hasNext()){
+                    Task task = reader.nextTask();
+                    if (task != null){
+                        ids.accept(task);
+                    }
+                }
+            }
+        }
+        return ids.finish();
+    }
+
+    //This class passes tasks through until one lacks a unique id, then holds back that task and every later one
+    //until the largest id is known. The held back tasks without one then get ids after it and every task is passed
+    //on in file order, so the same file always loads the same way. Files with ids throughout are never held back.
+    private static final class IdAssigner implements Consumer<Task>{
+        private final Consumer<Task> sink;
+        private final BitSet seenSmall = new BitSet();
+        private final Set<Long> seenLarge = new HashSet<>();
+        private final List<Task> held = new ArrayList<>();
+        private boolean missing;
+        private long maxId;
+
+        //This constructor wraps the consumer that receives the tasks.
+        IdAssigner(Consumer<Task> sink){
+            this.sink = sink;
+        }
+
+        //This method forwards a task with a fresh id unless tasks are already held back, and holds back the rest.
+        @Override
+        public void accept(Task task){
+            long id = task.getId();
+            if (id <= 0 || !markSeen(id)){
+                task.setId(0);
+                held.add(task);
+                missing = true;
+                return;
+            }
+            maxId = Math.max(maxId, id);
+            if (held.isEmpty()){
+                sink.accept(task);
+            } else{
+                held.add(task);
+            }
+        }
+
+        //This method assigns ids to the tasks without one, forwards the held back tasks and reports whether any needed an id.
+        boolean finish(){
+            for (Task task : held){
+                if (task.getId() == 0){
+                    task.setId(++maxId);
                 }
-                braceLevel++;
-            } else if (c == '}'){
-                braceLevel--;
-                if (braceLevel == 0 && start >= 0){
-                    objects.add(content.substring(start, i + 1));
-                    start = -1;
+                sink.accept(task);
+            }
+            return missing;
+        }
+
+        //This method records an id and returns false when it was already used.
+        private boolean markSeen(long id){
+            if (id < Integer.MAX_VALUE){
+                if (seenSmall.get((int) id)){
+                    return false;
                 }
+                seenSmall.set((int) id);
+                return true;
             }
+            return seenLarge.add(id);
         }
-        
-        return objects;
     }
 
-    //This method parses a single task from a JSON object string.
-    private Task parseTask(String json){
-        try{
-            String description = extractJsonValue(json, "description");
-            String priorityStr = extractJsonValue(json, "priority");
-            String dueDateStr = extractJsonValue(json, "dueDate");
-            
-            Priority priority = Priority.valueOf(priorityStr);
-            LocalDate dueDate = null;
-            if (dueDateStr != null && !dueDateStr.equals("null")){
-                dueDate = LocalDate.parse(dueDateStr, DATE_FORMAT);
-            }
-            
-            return new Task(description, priority, dueDate);
-        } catch (Exception e){
-            System.err.println("Failed to parse task: " + e.getMessage());
-            return null;
-        }
-    }
-
-    //This method extracts a value for a given key from a JSON object string.
-    private String extractJsonValue(String json, String key){
-        String searchKey = "\"" + key + "\"";
-        int keyIndex = json.indexOf(searchKey);
-        if (keyIndex == -1){
-            return null;
-        }
-        
-        int colonIndex = json.indexOf(':', keyIndex);
-        if (colonIndex == -1){
-            return null;
-        }
-        
-        int valueStart = colonIndex + 1;
-        while (valueStart < json.length() && Character.isWhitespace(json.charAt(valueStart))){
-            valueStart++;
-        }
-        
-        if (valueStart >= json.length()){
-            return null;
-        }
-        
-        char firstChar = json.charAt(valueStart);
-        if (firstChar == '"'){
-            int valueEnd = json.indexOf('"', valueStart + 1);
-            if (valueEnd == -1){
-                return null;
-            }
-            return json.substring(valueStart + 1, valueEnd);
-        } else if (firstChar == 'n' && json.startsWith("null", valueStart)){
-            return "null";
-        } else{
-            int valueEnd = valueStart;
-            while (valueEnd < json.length() && json.charAt(valueEnd) != ',' && json.charAt(valueEnd) != '}' && json.charAt(valueEnd) != '\n'){
-                valueEnd++;
-            }
-            return json.substring(valueStart, valueEnd).trim();
-        }
-    }
-
-    //This method escapes special characters in a string for JSON encoding.
-    private String escapeJson(String str){
-        if (str == null){
-            return "";
-        }
-        return str.replace("\\", "\\\\")
-                  .replace("\"", "\\\"")
-                  .replace("\n", "\\n")
-                  .replace("\r", "\\r")
-                  .replace("\t", "\\t");
+    //This method writes a task as a single line JSON object for a journal record.
+    String toJsonLine(Task task){
+        return TaskJsonWriter.toJsonLine(task);
+    }
+
+    //This method parses a single task from a JSON object string and throws with the reason when it is not one.
+    Task parseTask(String json) throws IOException{
+        return TaskJsonReader.forLine(json, 1).readTask();
     }
 }
@@ -0,0 +1,50 @@
+//This file defines a task list kept outside the repository that the table model reads a row at a time.
+package todojavaapp.storage;
+
+import todojavaapp.model.Task;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+//This interface is a task list that is opened once, then read and written one task at a time with every change
+//journaled like the repository does, so a table can show a list without holding a Task object for each task.
+public interface TaskStore extends Closeable{
+    //This method reads the list in, reporting the number of tasks read so far, and returns whether it was copied
+    //from the snapshot and journal rather than reused from an earlier run.
+    boolean open(IntConsumer progress) throws IOException;
+
+    //This method sets the handler that receives journal write failures and the other problems the files report;
+    //it may be set before open.
+    void setSaveErrorHandler(Consumer<IOException> handler);
+
+    //This method returns the number of tasks.
+    int size();
+
+    //This method returns the task with an id, or null.
+    Task get(long id) throws IOException;
+
+    //This method adds a task under the next free id, saves that and returns the stored copy.
+    Task add(Task task) throws IOException;
+
+    //This method replaces the task with the id of a task, saves that and returns the task it replaced, or null if none.
+    Task update(Task task) throws IOException;
+
+    //This method adds or replaces a task under its own id, saves that and returns the task it replaced, or null.
+    Task put(Task task) throws IOException;
+
+    //This method removes the task with an id, saves that and returns it, or null when there was none.
+    Task remove(long id) throws IOException;
+
+    //This method returns the earliest day on or after a day on which a task or an occurrence is due, or null.
+    LocalDate nextDueDate(LocalDate from) throws IOException;
+
+    //This method returns the tasks in id order that are due on a day, counting repeating tasks with an occurrence that day.
+    List<Task> dueOn(LocalDate day) throws IOException;
+
+    //This method writes every change to the journal before returning.
+    void flush() throws IOException;
+}
@@ -0,0 +1,183 @@
+//This file implements a pool of deduplicated strings kept as UTF-8 bytes in one array.
+package todojavaapp.storage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+//This class stores each distinct string once as UTF-8 bytes in a shared array and hands out int handles to it.
+//A handle costs three ints and a hash table slot or two instead of a String and its array, and equal strings share
+//one entry with a reference count. Entries that are no longer referenced leave a gap in the array that is closed
+//once the gaps grow to half of it, and their handles are handed out again.
+public class TextPool{
+    public static final int NONE = -1;
+
+    private static final int MIN_COMPACT_BYTES = 64 * 1024;
+
+    private byte[] bytes = new byte[1024];
+    private int used;
+    private int garbage;
+    private int[] offset = new int[64];
+    private int[] length = new int[64];
+    private int[] refs = new int[64];
+    private int entries;
+    private int[] freeEntries = new int[16];
+    private int freeCount;
+    private int live;
+    private int[] table = new int[128];
+
+    //This method returns the handle of a string, adding it when it is new, and counts one more reference to it.
+    public int intern(String text){
+        if (text == null){
+            return NONE;
+        }
+        byte[] b = text.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(b, 0, b.length);
+        int mask = table.length - 1;
+        for (int i = hash & mask; table[i] != 0; i = (i + 1) & mask){
+            int e = table[i] - 1;
+            if (Arrays.equals(bytes, offset[e], offset[e] + length[e], b, 0, b.length)){
+                refs[e]++;
+                return e;
+            }
+        }
+        int e = newEntry();
+        if (used + b.length > bytes.length){
+            compactOrGrow(b.length);
+        }
+        System.arraycopy(b, 0, bytes, used, b.length);
+        offset[e] = used;
+        length[e] = b.length;
+        refs[e] = 1;
+        used += b.length;
+        live++;
+        if (live * 2 > table.length){
+            rehash(table.length * 2);
+        } else{
+            place(e, hash);
+        }
+        return e;
+    }
+
+    //This method counts one reference to a handle less and drops its entry once nothing refers to it.
+    public void release(int entry){
+        if (entry == NONE || --refs[entry] > 0){
+            return;
+        }
+        unplace(entry);
+        garbage += length[entry];
+        length[entry] = 0;
+        if (freeCount == freeEntries.length){
+            freeEntries = Arrays.copyOf(freeEntries, freeCount * 2);
+        }
+        freeEntries[freeCount++] = entry;
+        live--;
+    }
+
+    //This method returns the string of a handle, decoded anew on each call.
+    public String get(int entry){
+        return entry == NONE ? null : new String(bytes, offset[entry], length[entry], StandardCharsets.UTF_8);
+    }
+
+    //This method returns one more than the highest handle handed out, for arrays indexed by handle.
+    public int limit(){
+        return entries;
+    }
+
+    //This method returns whether a handle below limit is in use.
+    public boolean isLive(int entry){
+        return refs[entry] > 0;
+    }
+
+    //This method returns the number of distinct strings.
+    public int size(){
+        return live;
+    }
+
+    //This method returns the bytes of memory held by the pool's arrays.
+    public long footprint(){
+        return bytes.length + 12L * offset.length + 4L * (freeEntries.length + table.length);
+    }
+
+    //This method returns a handle for a new entry, reusing a dropped one when there is one.
+    private int newEntry(){
+        if (freeCount > 0){
+            return freeEntries[--freeCount];
+        }
+        if (entries == offset.length){
+            int grown = entries * 2;
+            offset = Arrays.copyOf(offset, grown);
+            length = Arrays.copyOf(length, grown);
+            refs = Arrays.copyOf(refs, grown);
+        }
+        return entries++;
+    }
+
+    //This method makes room for a number of bytes, closing the gaps of dropped entries first when they are large.
+    private void compactOrGrow(int needed){
+        if (garbage >= MIN_COMPACT_BYTES && garbage * 2 >= used){
+            byte[] next = new byte[Math.max(bytes.length, used - garbage + needed)];
+            int at = 0;
+            for (int e = 0; e < entries; e++){
+                if (refs[e] > 0){
+                    System.arraycopy(bytes, offset[e], next, at, length[e]);
+                    offset[e] = at;
+                    at += length[e];
+                }
+            }
+            bytes = next;
+            used = at;
+            garbage = 0;
+        }
+        if (used + needed > bytes.length){
+            bytes = Arrays.copyOf(bytes, (int) Math.min(Integer.MAX_VALUE - 8, Math.max((long) bytes.length * 2, (long) used + needed)));
+        }
+    }
+
+    //This method puts a handle into the hash table at the first free slot from its hash.
+    private void place(int entry, int hash){
+        int mask = table.length - 1;
+        int i = hash & mask;
+        while (table[i] != 0){
+            i = (i + 1) & mask;
+        }
+        table[i] = entry + 1;
+    }
+
+    //This method takes a handle out of the hash table and moves later slots back so every lookup still finds its entry.
+    private void unplace(int entry){
+        int mask = table.length - 1;
+        int i = hash(bytes, offset[entry], length[entry]) & mask;
+        while (table[i] != entry + 1){
+            i = (i + 1) & mask;
+        }
+        int hole = i;
+        for (int j = (hole + 1) & mask; table[j] != 0; j = (j + 1) & mask){
+            int e = table[j] - 1;
+            int home = hash(bytes, offset[e], length[e]) & mask;
+            if (((j - home) & mask) >= ((j - hole) & mask)){
+                table[hole] = table[j];
+                hole = j;
+            }
+        }
+        table[hole] = 0;
+    }
+
+    //This method builds a larger hash table from the live entries.
+    private void rehash(int size){
+        table = new int[size];
+        for (int e = 0; e < entries; e++){
+            if (refs[e] > 0){
+                place(e, hash(bytes, offset[e], length[e]));
+            }
+        }
+    }
+
+    //This method hashes a run of bytes and spreads the high bits into the low ones the table uses.
+    private static int hash(byte[] b, int from, int count){
+        int h = 1;
+        for (int i = from; i < from + count; i++){
+            h = 31 * h + b[i];
+        }
+        return h ^ (h >>> 16);
+    }
+}
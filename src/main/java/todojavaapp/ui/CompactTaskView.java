@@ -0,0 +1,257 @@
+//This file implements the rows of a task table kept as slots of a compact task store.
+package todojavaapp.ui;
+
+import todojavaapp.model.DateFilter;
+import todojavaapp.model.Priority;
+import todojavaapp.model.Task;
+import todojavaapp.model.TaskOrder;
+import todojavaapp.model.TaskTextIndex;
+import todojavaapp.storage.CompactTaskStore;
+import todojavaapp.storage.TextPool;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.function.IntBinaryOperator;
+
+//This class keeps the view of a compact store as an array of slots in view order, four bytes a row.
+//Refiltering scans the arrays of the store and checks a search against each distinct description once, then sorts
+//the slots on int keys: the day each is shown on and, for a description order, the rank of its text among the texts
+//in the view. Tasks are built only for the rows the table asks for. Every order the window offers is supported.
+public class CompactTaskView implements StoreView{
+    private static final byte UNKNOWN = 0;
+    private static final byte MATCH = 1;
+    private static final byte NO_MATCH = 2;
+
+    private final CompactTaskStore store;
+
+    private int[] rows = new int[0];
+    private int count;
+    private TaskOrder order = TaskOrder.BY_ID;
+    private Priority filterPriority;
+    private DateFilter filterDate = DateFilter.ALL;
+    private String[] filterTerms = new String[0];
+    private LocalDate today = LocalDate.now();
+
+    //This constructor shows the tasks of a store in id order; call rebuild once the store is open.
+    public CompactTaskView(CompactTaskStore store){
+        this.store = store;
+    }
+
+    //This method returns the order unchanged, as the view can sort by every column.
+    @Override
+    public TaskOrder supportedOrder(TaskOrder order){
+        return order;
+    }
+
+    //This method sets the order of the rows; call rebuild after.
+    @Override
+    public void setOrder(TaskOrder order){
+        this.order = order;
+    }
+
+    //This method sets the filters and the day they are applied on; call rebuild after.
+    @Override
+    public void setFilters(Priority priority, DateFilter date, String[] terms, LocalDate day){
+        this.filterPriority = priority;
+        this.filterDate = date;
+        this.filterTerms = terms;
+        this.today = day;
+    }
+
+    //This method scans every slot of the store against the filters and sorts the ones that pass.
+    @Override
+    public void rebuild(){
+        int limit = store.slotLimit();
+        int[] next = new int[store.size()];
+        int n = 0;
+        int[] shownDay = new int[limit];
+        LocalDate from = filterDate.from(today);
+        LocalDate to = filterDate.to(today);
+        int first = from == null ? Integer.MIN_VALUE : (int) from.toEpochDay();
+        int last = to == null ? CompactTaskStore.NO_DAY - 1 : (int) to.toEpochDay();
+        int wanted = filterPriority == null ? -1 : filterPriority.ordinal();
+        TextPool texts = store.descriptions();
+        byte[] textMatch = filterTerms.length == 0 ? null : new byte[texts.limit()];
+        for (int slot = 0; slot < limit; slot++){
+            if (!store.isLive(slot) || (wanted >= 0 && store.priorityAt(slot) != wanted)){
+                continue;
+            }
+            int day = store.nextDue(slot);
+            if (filterDate != DateFilter.ALL && (day < first || day > last)){
+                continue;
+            }
+            if (textMatch != null){
+                int text = store.descriptionAt(slot);
+                if (text == TextPool.NONE){
+                    continue;
+                }
+                if (textMatch[text] == UNKNOWN){
+                    textMatch[text] = TaskTextIndex.matches(texts.get(text), filterTerms) ? MATCH : NO_MATCH;
+                }
+                if (textMatch[text] == NO_MATCH){
+                    continue;
+                }
+            }
+            shownDay[slot] = day;
+            next[n++] = slot;
+        }
+        sort(next, n, comparator(next, n, shownDay));
+        rows = next;
+        count = n;
+    }
+
+    //This method returns the number of rows.
+    @Override
+    public int size(){
+        return count;
+    }
+
+    //This method returns the task of a row as the view shows it, with a repeating task on its occurrence.
+    @Override
+    public Task taskAt(int row){
+        return shown(store.taskAt(rows[row]));
+    }
+
+    //This method returns whether a stored task passes the filters.
+    @Override
+    public boolean matches(Task t){
+        return (filterPriority == null || t.getPriority() == filterPriority) && filterDate.matches(t.nextDue(), today)
+            && TaskTextIndex.matches(t.getDescription(), filterTerms);
+    }
+
+    //This method binary searches the rows in view order for the place of a stored task.
+    @Override
+    public int rowsBefore(Task t){
+        Task probe = shown(t);
+        int lo = 0;
+        int hi = count;
+        while (lo < hi){
+            int mid = (lo + hi) >>> 1;
+            if (order.compare(taskAt(mid), probe) < 0){
+                lo = mid + 1;
+            } else{
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    //This method drops the slot of a row that showed a task.
+    @Override
+    public void taskRemoved(Task t, int row){
+        System.arraycopy(rows, row + 1, rows, row, count - row - 1);
+        count--;
+    }
+
+    //This method inserts the slot of a stored task at its place in the rows.
+    @Override
+    public void taskAdded(Task t){
+        int at = rowsBefore(t);
+        if (count == rows.length){
+            rows = Arrays.copyOf(rows, Math.max(16, count * 2));
+        }
+        System.arraycopy(rows, at, rows, at + 1, count - at);
+        rows[at] = store.slotOf(t.getId());
+        count++;
+    }
+
+    //This method returns the task as the view shows it: a repeating task on the earliest occurrence not yet done.
+    private Task shown(Task t){
+        if (!t.isRecurring()){
+            return t;
+        }
+        LocalDate due = t.nextDue();
+        return due.equals(t.getDueDate()) ? t : t.occurrence(due);
+    }
+
+    //This method compares two slots by the keys of the order and then by id, as the order compares their tasks.
+    //Descriptions compare by rank among the texts of the rows, so each text is decoded once per sort.
+    private IntBinaryOperator comparator(int[] slots, int n, int[] shownDay){
+        int[] rank = order.keyOf(TaskOrder.Column.DESCRIPTION) == null ? null : textRanks(slots, n);
+        return (a, b) ->{
+            for (TaskOrder.Key k : order.getKeys()){
+                int c;
+                switch (k.getColumn()){
+                    case DESCRIPTION:
+                        c = Integer.compare(rank[store.descriptionAt(a) + 1], rank[store.descriptionAt(b) + 1]);
+                        break;
+                    case PRIORITY:
+                        c = Integer.compare(store.priorityAt(a), store.priorityAt(b));
+                        break;
+                    default:
+                        c = Integer.compare(shownDay[a], shownDay[b]);
+                        break;
+                }
+                if (c != 0){
+                    return k.isAscending() ? c : -c;
+                }
+            }
+            return Long.compare(store.idAt(a), store.idAt(b));
+        };
+    }
+
+    //This method ranks the distinct descriptions of some slots in description order, equal texts sharing a rank.
+    //The rank of a handle is found one place up, so a task without a description ranks as an empty one at 0.
+    private int[] textRanks(int[] slots, int n){
+        TextPool texts = store.descriptions();
+        int[] rank = new int[texts.limit() + 1];
+        boolean[] seen = new boolean[texts.limit() + 1];
+        int distinct = 0;
+        int[] handles = new int[Math.min(n, texts.size()) + 1];
+        handles[distinct++] = TextPool.NONE;
+        seen[0] = true;
+        for (int i = 0; i < n; i++){
+            int text = store.descriptionAt(slots[i]);
+            if (!seen[text + 1]){
+                seen[text + 1] = true;
+                handles[distinct++] = text;
+            }
+        }
+        String[] decoded = new String[distinct];
+        Integer[] byText = new Integer[distinct];
+        for (int i = 0; i < distinct; i++){
+            decoded[i] = handles[i] == TextPool.NONE ? "" : texts.get(handles[i]);
+            byText[i] = i;
+        }
+        Arrays.sort(byText, (x, y) -> TaskOrder.DESCRIPTIONS.compare(decoded[x], decoded[y]));
+        int r = 0;
+        for (int i = 0; i < distinct; i++){
+            if (i > 0 && TaskOrder.DESCRIPTIONS.compare(decoded[byText[i - 1]], decoded[byText[i]]) != 0){
+                r++;
+            }
+            rank[handles[byText[i]] + 1] = r;
+        }
+        return rank;
+    }
+
+    //This method sorts the first n ints of an array with a comparator, merging runs through a second array.
+    //Slots mostly come in id order, so an array that is already sorted is left after one pass.
+    private static void sort(int[] a, int n, IntBinaryOperator cmp){
+        int ordered = 1;
+        while (ordered < n && cmp.applyAsInt(a[ordered - 1], a[ordered]) <= 0){
+            ordered++;
+        }
+        if (ordered >= n){
+            return;
+        }
+        int[] src = a;
+        int[] dst = new int[n];
+        for (int width = 1; width < n; width *= 2){
+            for (int lo = 0; lo < n; lo += 2 * width){
+                int mid = Math.min(lo + width, n);
+                int hi = Math.min(lo + 2 * width, n);
+                int i = lo;
+                int j = mid;
+                for (int k = lo; k < hi; k++){
+                    dst[k] = i < mid && (j >= hi || cmp.applyAsInt(src[i], src[j]) <= 0) ? src[i++] : src[j++];
+                }
+            }
+            int[] swap = src;
+            src = dst;
+            dst = swap;
+        }
+        if (src != a){
+            System.arraycopy(src, 0, a, 0, n);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+//This file defines the window that shows live timings of loading, saving, filtering and painting.
+package todojavaapp.ui;
+
+import todojavaapp.diagnostics.Metric;
+import todojavaapp.diagnostics.Metrics;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+//This class shows the count and percentiles of every metric, refreshed once a second while it is open.
+//It is opened with a shortcut rather than a button because it is meant for troubleshooting.
+public class DiagnosticsDialog extends JDialog{
+    private static final int REFRESH_MILLIS = 1000;
+    private static final String[] COLUMNS = {"Metric", "Count", "p50 ms", "p90 ms", "p99 ms", "Max ms", "Totals", "Last"};
+
+    private final StatsModel stats = new StatsModel();
+    private final Timer refresh = new Timer(REFRESH_MILLIS, e -> stats.refresh());
+
+    //This constructor builds the table and buttons and starts refreshing when the window is shown.
+    public DiagnosticsDialog(Window owner){
+        super(owner, "Diagnostics", ModalityType.MODELESS);
+        setDefaultCloseOperation(HIDE_ON_CLOSE);
+        setLayout(new BorderLayout(12, 12));
+
+        JPanel mainPanel = new JPanel(new BorderLayout(12, 12));
+        mainPanel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+        mainPanel.setBackground(new Color(245, 245, 250));
+
+        JTable table = new JTable(stats);
+        table.setRowHeight(26);
+        table.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        table.getTableHeader().setFont(new Font("Segoe UI", Font.BOLD, 13));
+        table.getColumnModel().getColumn(0).setPreferredWidth(120);
+        table.getColumnModel().getColumn(6).setPreferredWidth(220);
+        table.getColumnModel().getColumn(7).setPreferredWidth(160);
+        JScrollPane scroll = new JScrollPane(table);
+        scroll.setPreferredSize(new Dimension(900, 190));
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 0));
+        buttonPanel.setBackground(new Color(245, 245, 250));
+        JButton save = new JButton("Save Snapshot...");
+        JButton reset = new JButton("Reset");
+        JButton close = new JButton("Close");
+        Font btnFont = new Font("Segoe UI", Font.BOLD, 13);
+        for (JButton b : new JButton[]{save, reset, close}){
+            b.setFont(btnFont);
+            b.setForeground(Color.WHITE);
+            b.setOpaque(true);
+            b.setBorderPainted(false);
+            b.setFocusPainted(false);
+            b.setCursor(new Cursor(Cursor.HAND_CURSOR));
+            buttonPanel.add(b);
+        }
+        save.setBackground(new Color(52, 152, 219));
+        reset.setBackground(new Color(231, 76, 60));
+        close.setBackground(new Color(149, 165, 166));
+        save.setPreferredSize(new Dimension(160, 35));
+        reset.setPreferredSize(new Dimension(100, 35));
+        close.setPreferredSize(new Dimension(100, 35));
+
+        JLabel hint = new JLabel("Flight recorder events are under \"ToDo App\" in a JFR recording.");
+        hint.setFont(new Font("Segoe UI", Font.ITALIC, 12));
+        hint.setForeground(new Color(100, 100, 120));
+
+        JPanel south = new JPanel(new BorderLayout());
+        south.setBackground(new Color(245, 245, 250));
+        south.add(hint, BorderLayout.WEST);
+        south.add(buttonPanel, BorderLayout.EAST);
+
+        mainPanel.add(scroll, BorderLayout.CENTER);
+        mainPanel.add(south, BorderLayout.SOUTH);
+        add(mainPanel);
+
+        save.addActionListener(e -> onSave());
+        reset.addActionListener(e ->{
+            Metrics.reset();
+            stats.refresh();
+        });
+        close.addActionListener(e -> setVisible(false));
+
+        pack();
+        setLocationRelativeTo(owner);
+    }
+
+    //This method refreshes the figures while the window is shown and stops the timer while it is hidden.
+    @Override
+    public void setVisible(boolean visible){
+        if (visible){
+            stats.refresh();
+            refresh.start();
+        } else{
+            refresh.stop();
+        }
+        super.setVisible(visible);
+    }
+
+    //This method asks for a file and writes the current figures to it as JSON.
+    private void onSave(){
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("todo-metrics.json"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION){
+            return;
+        }
+        try{
+            Metrics.writeSnapshot(chooser.getSelectedFile().toPath());
+        } catch (IOException e){
+            JOptionPane.showMessageDialog(this, "Failed to write metrics: " + e.getMessage(), "Diagnostics", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    //This class shows one row per metric from the figures taken at the last refresh.
+    private static final class StatsModel extends AbstractTableModel{
+        private List<Metric.Stats> rows = new ArrayList<>();
+
+        //This method takes new figures from every metric and repaints the table.
+        void refresh(){
+            List<Metric.Stats> next = new ArrayList<>();
+            for (Metric m : Metrics.all()){
+                next.add(m.stats());
+            }
+            rows = next;
+            fireTableDataChanged();
+        }
+
+        //This method returns the number of metrics.
+        @Override
+        public int getRowCount(){
+            return rows.size();
+        }
+
+        //This method returns the number of columns.
+        @Override
+        public int getColumnCount(){
+            return COLUMNS.length;
+        }
+
+        //This method returns the name of a column.
+        @Override
+        public String getColumnName(int column){
+            return COLUMNS[column];
+        }
+
+        //This method returns the text of one cell.
+        @Override
+        public Object getValueAt(int row, int column){
+            Metric.Stats s = rows.get(row);
+            switch (column){
+                case 0: return s.metric.getName();
+                case 1: return s.count;
+                case 2: return Metrics.millis(s.p50Nanos);
+                case 3: return Metrics.millis(s.p90Nanos);
+                case 4: return Metrics.millis(s.p99Nanos);
+                case 5: return Metrics.millis(s.maxNanos);
+                case 6: return counters(s.metric, s.firstTotal, s.secondTotal);
+                default: return counters(s.metric, s.firstLast, s.secondLast);
+            }
+        }
+
+        //This method formats the counters of a metric as name and value pairs.
+        private static String counters(Metric m, long first, long second){
+            StringBuilder sb = new StringBuilder();
+            if (m.getFirstCounter() != null){
+                sb.append(m.getFirstCounter()).append(' ').append(String.format("%,d", first));
+            }
+            if (m.getSecondCounter() != null){
+                sb.append(", ").append(m.getSecondCounter()).append(' ').append(String.format("%,d", second));
+            }
+            return sb.toString();
+        }
+    }
+}
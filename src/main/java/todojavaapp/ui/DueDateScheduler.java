@@ -0,0 +1,173 @@
+//This file schedules due date reminders and the change of day for every open task list.
+package todojavaapp.ui;
+
+import javax.swing.*;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+//This class sleeps on a delay queue until the next wakeup is due and never looks at tasks on its own.
+//The queue holds one wakeup for the next midnight and, per open list, one for the earliest due date still to be
+//reminded of, so the number of waiting entries does not grow with the number of tasks.
+//Wakeups are handled on the event dispatch thread, where the lists are told to roll over or to remind.
+public final class DueDateScheduler{
+    public static final LocalTime REMINDER_TIME = LocalTime.parse(System.getProperty("todo.reminder.time", "09:00"));
+
+    private static final DueDateScheduler SHARED = new DueDateScheduler();
+
+    private final DelayQueue<Wakeup> queue = new DelayQueue<>();
+    private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+
+    //This interface is what a task list offers the scheduler; every method is called on the event dispatch thread.
+    public interface Target{
+        //This method brings the list up to the current day.
+        void rollOver();
+
+        //This method returns the earliest day on or after a day that has a task due, or null.
+        LocalDate nextDueDate(LocalDate from);
+
+        //This method reminds of the tasks due on a day.
+        void remind(LocalDate day);
+    }
+
+    //This constructor starts the thread that waits for wakeups and queues the first midnight.
+    private DueDateScheduler(){
+        queue.add(new Wakeup(null, null, nextMidnight()));
+        Thread thread = new Thread(this::run, "due-date-scheduler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    //This method returns the scheduler shared by every list.
+    public static DueDateScheduler shared(){
+        return SHARED;
+    }
+
+    //This method starts reminding a list of its due dates and telling it when the day changes.
+    public Registration register(Target target){
+        Registration r = new Registration(target);
+        registrations.add(r);
+        r.scheduleFrom(LocalDate.now());
+        return r;
+    }
+
+    //This method waits for each wakeup in turn and hands it to the event dispatch thread.
+    private void run(){
+        try{
+            while (true){
+                Wakeup w = queue.take();
+                if (w.owner == null){
+                    queue.add(new Wakeup(null, null, nextMidnight()));
+                    SwingUtilities.invokeLater(() ->{
+                        for (Registration r : registrations){
+                            r.target.rollOver();
+                        }
+                    });
+                } else{
+                    SwingUtilities.invokeLater(() -> w.owner.fire(w));
+                }
+            }
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //This method returns the time in milliseconds of the next midnight in the default time zone.
+    private static long nextMidnight(){
+        return LocalDate.now().plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    //This method returns the time in milliseconds at which a day's reminder is due, or now when that time has passed.
+    private static long reminderTime(LocalDate day){
+        long at = day.atTime(REMINDER_TIME).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return Math.max(at, System.currentTimeMillis());
+    }
+
+    //This class ties one list to the scheduler and keeps the single reminder wakeup it has queued.
+    public final class Registration{
+        private final Target target;
+        private Wakeup pending;
+        private LocalDate reminded;
+        private boolean cancelled;
+
+        //This constructor keeps the list.
+        private Registration(Target target){
+            this.target = target;
+        }
+
+        //This method moves the reminder earlier when a task now falls due before the one queued.
+        //Dates already reminded of or in the past are ignored, and a later date is picked up when the queued one fires.
+        public void dueDateChanged(LocalDate day){
+            if (cancelled || day.isBefore(LocalDate.now()) || (reminded != null && !day.isAfter(reminded))){
+                return;
+            }
+            if (pending == null || day.isBefore(pending.day)){
+                if (pending != null){
+                    queue.remove(pending);
+                }
+                pending = new Wakeup(this, day, reminderTime(day));
+                queue.add(pending);
+            }
+        }
+
+        //This method stops the wakeups of the list.
+        public void cancel(){
+            cancelled = true;
+            registrations.remove(this);
+            if (pending != null){
+                queue.remove(pending);
+                pending = null;
+            }
+        }
+
+        //This method reminds of a day that has come and queues the next due date after it.
+        private void fire(Wakeup w){
+            if (cancelled || w != pending){
+                return;
+            }
+            pending = null;
+            reminded = w.day;
+            target.remind(w.day);
+            scheduleFrom(w.day.plusDays(1));
+        }
+
+        //This method queues the reminder of the earliest due date on or after a day.
+        private void scheduleFrom(LocalDate from){
+            LocalDate next = target.nextDueDate(from);
+            if (next != null){
+                dueDateChanged(next);
+            }
+        }
+    }
+
+    //This class is one entry of the delay queue: a midnight when it has no owner, else a list's reminder for a day.
+    private static final class Wakeup implements Delayed{
+        private final Registration owner;
+        private final LocalDate day;
+        private final long atMillis;
+
+        //This constructor keeps who the wakeup is for and the wall clock time it is due.
+        Wakeup(Registration owner, LocalDate day, long atMillis){
+            this.owner = owner;
+            this.day = day;
+            this.atMillis = atMillis;
+        }
+
+        //This method returns the time left, measured on the wall clock so a changed clock is followed.
+        @Override
+        public long getDelay(TimeUnit unit){
+            return unit.convert(atMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        //This method orders wakeups by the time they are due.
+        @Override
+        public int compareTo(Delayed other){
+            return Long.compare(atMillis, ((Wakeup) other).atMillis);
+        }
+    }
+}
@@ -0,0 +1,406 @@
+//This file implements the rows of a task table read on demand from a paged task store.
+package todojavaapp.ui;
+
+import todojavaapp.model.DateFilter;
+import todojavaapp.model.Priority;
+import todojavaapp.model.Task;
+import todojavaapp.model.TaskOrder;
+import todojavaapp.model.TaskTextIndex;
+import todojavaapp.storage.PagedIndex;
+import todojavaapp.storage.PagedTaskStore;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//This class maps the rows of a filtered and sorted view to the tasks of a paged store without holding those tasks.
+//The view walks one or more segments, each an order of the store limited to one priority or not, and skips the tasks
+//that fail the filters. Refiltering walks the whole view once to count its rows and keeps a checkpoint every SPACING
+//rows: a position in the walk and the number of rows before it. A row is read by walking on from the checkpoint
+//before it, and the last blocks of rows read are kept, so painting a screen reads each page it needs once.
+//Memory grows with the rows over SPACING rather than with the tasks.
+public class PagedTaskView implements StoreView{
+    public static final int SPACING = 256;
+
+    private static final int BLOCK = 64;
+    private static final int CACHED_BLOCKS = 32;
+
+    private final PagedTaskStore store;
+    private final Map<Integer, Task[]> blocks = new LinkedHashMap<>(CACHED_BLOCKS * 2, 0.75f, true){
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Task[]> eldest){
+            return size() > CACHED_BLOCKS;
+        }
+    };
+
+    private Segment[] segments ={new Segment(PagedTaskStore.Key.ID, true, null)};
+    private Priority filterPriority;
+    private DateFilter filterDate = DateFilter.ALL;
+    private String[] filterTerms = new String[0];
+    private LocalDate today = LocalDate.now();
+    private int rows;
+    private int checkpoints;
+    private int[] cpSegment = new int[16];
+    private long[] cpHi = new long[16];
+    private long[] cpLo = new long[16];
+    private int[] cpRows = new int[16];
+
+    //This class is one part of the walk: an order of the store, its direction and the priority it is limited to.
+    //The direction applies to the first part of a position only; ties on it always go by the second part ascending,
+    //as the table orders tasks with the same due date by id whichever way the dates run.
+    private static final class Segment{
+        final PagedTaskStore.Key key;
+        final boolean ascending;
+        final Priority priority;
+
+        //This constructor keeps the order, the direction and the priority, which is null for every priority.
+        Segment(PagedTaskStore.Key key, boolean ascending, Priority priority){
+            this.key = key;
+            this.ascending = ascending;
+            this.priority = priority;
+        }
+
+        //This method returns the first part of the position a walk of the segment starts at.
+        long startHi(){
+            return ascending ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+
+        //This method returns the second part of the position a walk of the segment starts at.
+        long startLo(){
+            return Long.MIN_VALUE;
+        }
+    }
+
+    //This interface receives the rows of a walk with their segment and position and returns false to stop it.
+    private interface RowVisitor{
+        //This method is called for each task that passes the filters.
+        boolean visit(int segment, long hi, long lo, long ref) throws IOException;
+    }
+
+    //This constructor shows the tasks of a store in id order; call rebuild once the store is open.
+    public PagedTaskView(PagedTaskStore store){
+        this.store = store;
+    }
+
+    //This method returns the nearest order a paged view can walk: a leading priority key, then a due date key.
+    //The walk follows indexes the store keeps, so other keys, and keys after a due date, are dropped and ties go by id.
+    public static TaskOrder supported(TaskOrder order){
+        List<TaskOrder.Key> kept = new ArrayList<>();
+        for (TaskOrder.Key k : order.getKeys()){
+            if (k.getColumn() == TaskOrder.Column.DESCRIPTION || (k.getColumn() == TaskOrder.Column.PRIORITY && !kept.isEmpty())){
+                break;
+            }
+            kept.add(k);
+            if (k.getColumn() == TaskOrder.Column.DUE_DATE){
+                break;
+            }
+        }
+        return kept.size() == order.getKeys().size() ? order : new TaskOrder(kept);
+    }
+
+    //This method returns the nearest order a paged view can walk, as supported does.
+    @Override
+    public TaskOrder supportedOrder(TaskOrder order){
+        return supported(order);
+    }
+
+    //This method sets the order of the rows, which must be one that supported returns; call rebuild after.
+    @Override
+    public void setOrder(TaskOrder order){
+        TaskOrder.Key first = order.getKeys().isEmpty() ? null : order.getKeys().get(0);
+        TaskOrder.Key due = order.keyOf(TaskOrder.Column.DUE_DATE);
+        PagedTaskStore.Key key = due == null ? PagedTaskStore.Key.ID : PagedTaskStore.Key.DUE;
+        boolean ascending = due == null || due.isAscending();
+        if (first != null && first.getColumn() == TaskOrder.Column.PRIORITY){
+            Priority[] levels = Priority.values();
+            segments = new Segment[levels.length];
+            for (int i = 0; i < levels.length; i++){
+                segments[i] = new Segment(key, ascending, levels[first.isAscending() ? i : levels.length - 1 - i]);
+            }
+        } else{
+            segments = new Segment[]{new Segment(key, ascending, null)};
+        }
+    }
+
+    //This method sets the filters and the day they are applied on; call rebuild after.
+    @Override
+    public void setFilters(Priority priority, DateFilter date, String[] terms, LocalDate day){
+        this.filterPriority = priority;
+        this.filterDate = date;
+        this.filterTerms = terms;
+        this.today = day;
+    }
+
+    //This method walks the whole view to count its rows and place the checkpoints.
+    @Override
+    public void rebuild() throws IOException{
+        blocks.clear();
+        rows = 0;
+        checkpoints = 0;
+        addCheckpoint(checkpoints, 0, segments[0].startHi(), segments[0].startLo(), 0);
+        walk(0, segments[0].startHi(), segments[0].startLo(), (s, hi, lo, ref) ->{
+            if (rows > 0 && rows % SPACING == 0){
+                addCheckpoint(checkpoints, s, hi, lo, rows);
+            }
+            rows++;
+            return true;
+        });
+    }
+
+    //This method returns the number of rows.
+    @Override
+    public int size(){
+        return rows;
+    }
+
+    //This method returns the task of a row as the view shows it, with a repeating task on its occurrence.
+    @Override
+    public Task taskAt(int row) throws IOException{
+        int b = row / BLOCK;
+        Task[] block = blocks.get(b);
+        if (block == null){
+            block = readBlock(b * BLOCK, Math.min(BLOCK, rows - b * BLOCK));
+            blocks.put(b, block);
+        }
+        return block[row - b * BLOCK];
+    }
+
+    //This method returns whether a stored task passes the filters.
+    @Override
+    public boolean matches(Task t){
+        return (filterPriority == null || t.getPriority() == filterPriority) && filterDate.matches(t.nextDue(), today)
+            && TaskTextIndex.matches(t.getDescription(), filterTerms);
+    }
+
+    //This method returns how many rows come before the place of a stored task, which is its row when it is shown.
+    @Override
+    public int rowsBefore(Task t) throws IOException{
+        int s = segmentOf(t);
+        long hi = hiOf(segments[s], t);
+        long lo = loOf(segments[s], t);
+        int i = checkpointBefore(s, hi, lo);
+        int[] count ={0};
+        walk(cpSegment[i], cpHi[i], cpLo[i], (seg, h, l, ref) ->{
+            if (compare(seg, h, l, s, hi, lo) >= 0){
+                return false;
+            }
+            count[0]++;
+            return true;
+        });
+        return cpRows[i] + count[0];
+    }
+
+    //This method takes a stored task that passed the filters out of the counts, once it has left the store.
+    //The walk finds the rows by their place in the indexes, so the row the task was shown in is not needed.
+    @Override
+    public void taskRemoved(Task t, int row){
+        shift(t, -1);
+    }
+
+    //This method counts a stored task that passes the filters, once it is in the store.
+    @Override
+    public void taskAdded(Task t){
+        shift(t, 1);
+    }
+
+    //This method moves the row counts of the checkpoints after a task that passes the filters by one row.
+    private void shift(Task t, int delta){
+        if (!matches(t)){
+            return;
+        }
+        blocks.clear();
+        int s = segmentOf(t);
+        long hi = hiOf(segments[s], t);
+        long lo = loOf(segments[s], t);
+        for (int i = checkpoints - 1; i >= 0 && compare(cpSegment[i], cpHi[i], cpLo[i], s, hi, lo) > 0; i--){
+            cpRows[i] += delta;
+        }
+        rows += delta;
+    }
+
+    //This method reads the tasks of a run of rows, adding checkpoints on the way when the walk to it is long.
+    private Task[] readBlock(int from, int count) throws IOException{
+        Task[] block = new Task[count];
+        int i = checkpointAt(from);
+        int base = cpRows[i];
+        int[] seen ={0};
+        int[] next ={i + 1};
+        walk(cpSegment[i], cpHi[i], cpLo[i], (s, hi, lo, ref) ->{
+            int row = base + seen[0];
+            if (row >= from){
+                Task t = store.read(ref);
+                block[row - from] = t.isRecurring() ? shown(t) : t;
+            } else if (seen[0] > 0 && seen[0] % SPACING == 0 && (next[0] >= checkpoints || cpRows[next[0]] > row)){
+                addCheckpoint(next[0]++, s, hi, lo, row);
+            }
+            seen[0]++;
+            return row + 1 < from + count;
+        });
+        return block;
+    }
+
+    //This method returns the task as the view shows it: a repeating task on the earliest occurrence not yet done.
+    private Task shown(Task t){
+        LocalDate due = t.nextDue();
+        return due.equals(t.getDueDate()) ? t : t.occurrence(due);
+    }
+
+    //This method walks the rows from a position in a segment on through the later segments.
+    private void walk(int fromSegment, long hi, long lo, RowVisitor visitor) throws IOException{
+        boolean[] more ={true};
+        for (int s = fromSegment; s < segments.length && more[0]; s++){
+            Segment seg = segments[s];
+            if (seg.priority != null && filterPriority != null && seg.priority != filterPriority){
+                continue;
+            }
+            int segment = s;
+            long h = s == fromSegment ? hi : seg.startHi();
+            long l = s == fromSegment ? lo : seg.startLo();
+            PagedIndex.Visitor entries = (eh, el, ref) ->{
+                if (passes(seg, eh, ref)){
+                    more[0] = visitor.visit(segment, eh, el, ref);
+                }
+                return more[0];
+            };
+            if (seg.ascending){
+                store.scan(seg.key, h, l, true, entries);
+            } else{
+                scanLatestFirst(seg.key, h, l, entries);
+            }
+        }
+    }
+
+    //This method scans an index from a position with the first parts descending and the second parts ascending.
+    //It walks the entries sharing a first part forwards, then looks one entry back from the start of them for the
+    //next lower first part, so each due date costs one more lookup in the index.
+    private void scanLatestFirst(PagedTaskStore.Key key, long hi, long lo, PagedIndex.Visitor visitor) throws IOException{
+        boolean[] more ={true};
+        long[] next ={hi};
+        boolean[] found ={true};
+        for (long from = lo; found[0]; from = Long.MIN_VALUE){
+            long current = next[0];
+            store.scan(key, current, from, true, (eh, el, ref) ->{
+                if (eh != current){
+                    return false;
+                }
+                more[0] = visitor.visit(eh, el, ref);
+                return more[0];
+            });
+            if (!more[0] || current == Long.MIN_VALUE){
+                return;
+            }
+            found[0] = false;
+            store.scan(key, current - 1, Long.MAX_VALUE, false, (eh, el, ref) ->{
+                next[0] = eh;
+                found[0] = true;
+                return false;
+            });
+        }
+    }
+
+    //This method checks an index entry against the segment and the filters, reading the task only when it must.
+    private boolean passes(Segment seg, long hi, long ref) throws IOException{
+        Priority p = PagedTaskStore.priorityOf(ref);
+        if ((seg.priority != null && p != seg.priority) || (filterPriority != null && p != filterPriority)){
+            return false;
+        }
+        boolean needsDate = filterDate != DateFilter.ALL && seg.key != PagedTaskStore.Key.DUE;
+        if (!needsDate && filterTerms.length == 0){
+            return filterDate == DateFilter.ALL
+                || hi != PagedTaskStore.NO_DATE && filterDate.matches(LocalDate.ofEpochDay(hi), today);
+        }
+        Task t = store.read(ref);
+        return filterDate.matches(t.nextDue(), today) && TaskTextIndex.matches(t.getDescription(), filterTerms);
+    }
+
+    //This method returns the segment a stored task is walked in.
+    private int segmentOf(Task t){
+        if (segments[0].priority == null){
+            return 0;
+        }
+        for (int s = 0; s < segments.length; s++){
+            if (segments[s].priority == t.getPriority()){
+                return s;
+            }
+        }
+        return 0;
+    }
+
+    //This method returns the first part of the position of a task in a segment.
+    private static long hiOf(Segment seg, Task t){
+        return seg.key == PagedTaskStore.Key.ID ? t.getId() : PagedTaskStore.dueKey(t.nextDue());
+    }
+
+    //This method returns the second part of the position of a task in a segment.
+    private static long loOf(Segment seg, Task t){
+        return seg.key == PagedTaskStore.Key.ID ? 0 : t.getId();
+    }
+
+    //This method compares two positions in the walk: the first parts in the direction of the segment, then the
+    //second parts ascending.
+    private int compare(int aSegment, long aHi, long aLo, int bSegment, long bHi, long bLo){
+        if (aSegment != bSegment){
+            return Integer.compare(aSegment, bSegment);
+        }
+        if (aHi != bHi){
+            int c = Long.compare(aHi, bHi);
+            return segments[aSegment].ascending ? c : -c;
+        }
+        return Long.compare(aLo, bLo);
+    }
+
+    //This method returns the last checkpoint at or before a position.
+    private int checkpointBefore(int s, long hi, long lo){
+        int a = 0;
+        int b = checkpoints - 1;
+        while (a < b){
+            int mid = (a + b + 1) >>> 1;
+            if (compare(cpSegment[mid], cpHi[mid], cpLo[mid], s, hi, lo) <= 0){
+                a = mid;
+            } else{
+                b = mid - 1;
+            }
+        }
+        return a;
+    }
+
+    //This method returns the last checkpoint with at most a number of rows before it.
+    private int checkpointAt(int row){
+        int a = 0;
+        int b = checkpoints - 1;
+        while (a < b){
+            int mid = (a + b + 1) >>> 1;
+            if (cpRows[mid] <= row){
+                a = mid;
+            } else{
+                b = mid - 1;
+            }
+        }
+        return a;
+    }
+
+    //This method inserts a checkpoint at an index of the sorted checkpoints.
+    private void addCheckpoint(int at, int segment, long hi, long lo, int before){
+        if (checkpoints == cpRows.length){
+            int grown = checkpoints * 2;
+            cpSegment = Arrays.copyOf(cpSegment, grown);
+            cpHi = Arrays.copyOf(cpHi, grown);
+            cpLo = Arrays.copyOf(cpLo, grown);
+            cpRows = Arrays.copyOf(cpRows, grown);
+        }
+        int tail = checkpoints - at;
+        System.arraycopy(cpSegment, at, cpSegment, at + 1, tail);
+        System.arraycopy(cpHi, at, cpHi, at + 1, tail);
+        System.arraycopy(cpLo, at, cpLo, at + 1, tail);
+        System.arraycopy(cpRows, at, cpRows, at + 1, tail);
+        cpSegment[at] = segment;
+        cpHi[at] = hi;
+        cpLo[at] = lo;
+        cpRows[at] = before;
+        checkpoints++;
+    }
+}
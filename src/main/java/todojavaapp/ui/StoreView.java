@@ -0,0 +1,44 @@
+//This file defines the filtered and sorted rows of a task store as the table model reads them.
+package todojavaapp.ui;
+
+import todojavaapp.model.DateFilter;
+import todojavaapp.model.Priority;
+import todojavaapp.model.Task;
+import todojavaapp.model.TaskOrder;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+//This interface maps the rows of a view to the tasks of a store, building a task only for the rows asked for.
+//The model tells it about each change it makes to the store, so the rows follow without being worked out again.
+public interface StoreView{
+    //This method returns the nearest order the view can show the rows in.
+    TaskOrder supportedOrder(TaskOrder order);
+
+    //This method sets the order of the rows, which must be one that supportedOrder returns; call rebuild after.
+    void setOrder(TaskOrder order);
+
+    //This method sets the filters and the day they are applied on; call rebuild after.
+    void setFilters(Priority priority, DateFilter date, String[] terms, LocalDate day);
+
+    //This method works the rows out again from the whole store.
+    void rebuild() throws IOException;
+
+    //This method returns the number of rows.
+    int size();
+
+    //This method returns the task of a row as the view shows it, with a repeating task on its occurrence.
+    Task taskAt(int row) throws IOException;
+
+    //This method returns whether a stored task passes the filters.
+    boolean matches(Task t);
+
+    //This method returns how many rows come before the place of a stored task, which is its row when it is shown.
+    int rowsBefore(Task t) throws IOException;
+
+    //This method drops the row a task that passed the filters was shown in, once it has changed or left the store.
+    void taskRemoved(Task t, int row);
+
+    //This method adds a row for a stored task that passes the filters, once it is in the store.
+    void taskAdded(Task t) throws IOException;
+}
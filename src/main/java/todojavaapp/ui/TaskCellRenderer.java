@@ -0,0 +1,120 @@
+//This file defines the shared cell renderer for the tasks table.
+package todojavaapp.ui;
+
+import todojavaapp.model.Priority;
+import todojavaapp.ui.TaskTableModel.DueState;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableModel;
+import java.awt.*;
+import java.util.EnumMap;
+import java.util.Map;
+
+//This class paints task cells with one reused label and cached fonts, colors and priority chips.
+//Overdue and due today rows are tinted from the state the model computed when the row was built.
+public class TaskCellRenderer extends DefaultTableCellRenderer{
+    private static final Font FONT = new Font("Segoe UI", Font.PLAIN, 14);
+    private static final Font BOLD_FONT = FONT.deriveFont(Font.BOLD);
+    private static final Color ROW_BACKGROUND = Color.WHITE;
+    private static final Color OVERDUE_BACKGROUND = new Color(253, 237, 236);
+    private static final Color TODAY_BACKGROUND = new Color(254, 245, 231);
+    private static final Color TEXT = new Color(33, 37, 41);
+    private static final Color OVERDUE_TEXT = new Color(192, 57, 43);
+    private static final Color TODAY_TEXT = new Color(211, 84, 0);
+    private static final Map<Priority, Icon> CHIPS = new EnumMap<>(Priority.class);
+
+    static{
+        CHIPS.put(Priority.HIGH, new ChipIcon(new Color(231, 76, 60)));
+        CHIPS.put(Priority.MEDIUM, new ChipIcon(new Color(243, 156, 18)));
+        CHIPS.put(Priority.LOW, new ChipIcon(new Color(46, 204, 113)));
+    }
+
+    private final int column;
+
+    //This constructor renders one column of the tasks table with the given alignment.
+    public TaskCellRenderer(int column, int alignment){
+        this.column = column;
+        setHorizontalAlignment(alignment);
+        setIconTextGap(8);
+    }
+
+    //This method styles the reused label for a cell without allocating.
+    @Override
+    public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int col){
+        super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, col);
+        TableModel model = table.getModel();
+        DueState state = DueState.NONE;
+        Icon chip = null;
+        if (model instanceof TaskTableModel){
+            TaskTableModel tasks = (TaskTableModel) model;
+            int modelRow = table.convertRowIndexToModel(row);
+            state = tasks.getDueStateAt(modelRow);
+            if (column == 1){
+                chip = CHIPS.get(tasks.getPriorityAt(modelRow));
+            }
+        }
+        setIcon(chip);
+        setFont(column == 2 && state == DueState.OVERDUE ? BOLD_FONT : FONT);
+        if (!isSelected){
+            switch (state){
+                case OVERDUE:
+                    setBackground(OVERDUE_BACKGROUND);
+                    setForeground(column == 2 ? OVERDUE_TEXT : TEXT);
+                    break;
+                case TODAY:
+                    setBackground(TODAY_BACKGROUND);
+                    setForeground(column == 2 ? TODAY_TEXT : TEXT);
+                    break;
+                default:
+                    setBackground(ROW_BACKGROUND);
+                    setForeground(TEXT);
+                    break;
+            }
+        }
+        return this;
+    }
+
+    //This method drops the text change event the label UI would turn into a new event object per cell.
+    //Task text is always painted as plain text, so there is no HTML view to refresh.
+    @Override
+    protected void firePropertyChange(String propertyName, Object oldValue, Object newValue){
+        if (!"text".equals(propertyName)){
+            super.firePropertyChange(propertyName, oldValue, newValue);
+        }
+    }
+
+    //This class draws a small filled circle in a priority color.
+    private static final class ChipIcon implements Icon{
+        private static final int SIZE = 10;
+        private final Color color;
+
+        //This constructor keeps the chip color.
+        ChipIcon(Color color){
+            this.color = color;
+        }
+
+        //This method paints the chip.
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y){
+            Graphics2D g2 = (Graphics2D) g;
+            Object hint = g2.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2.setColor(color);
+            g2.fillOval(x, y, SIZE, SIZE);
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, hint);
+        }
+
+        //This method returns the chip width.
+        @Override
+        public int getIconWidth(){
+            return SIZE;
+        }
+
+        //This method returns the chip height.
+        @Override
+        public int getIconHeight(){
+            return SIZE;
+        }
+    }
+}
@@ -1,22 +1,40 @@
-//This file defines a modal dialog for adding or editing a task.
+//This file defines a modal dialog for adding or editing a task and how it repeats.
 package todojavaapp.ui;
 
 import todojavaapp.model.Priority;
+import todojavaapp.model.Recurrence;
 import todojavaapp.model.Task;
+import todojavaapp.model.TaskValidator;
 
 import javax.swing.*;
 import java.awt.*;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
+import java.time.format.TextStyle;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
 
-//This class shows a simple dialog that gathers description priority and due date.
+//This class shows a simple dialog that gathers description priority due date and repeat rule.
 public class TaskDialog extends JDialog{
+    private static final String NEVER = "Never";
+    private static final String ENDS_ON = "On date";
+    private static final String ENDS_AFTER = "After occurrences";
+
     private final JTextField descriptionField = new JTextField();
     private final JComboBox<Priority> priorityCombo = new JComboBox<>(Priority.values());
     private final JTextField dateField = new JTextField();
+    private final JComboBox<Object> repeatCombo = new JComboBox<>(new Object[]{NEVER,
+        Recurrence.Frequency.DAILY, Recurrence.Frequency.WEEKLY, Recurrence.Frequency.MONTHLY});
+    private final JCheckBox[] dayBoxes = new JCheckBox[7];
+    private final JPanel dayPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+    private final JComboBox<String> endsCombo = new JComboBox<>(new String[]{NEVER, ENDS_ON, ENDS_AFTER});
+    private final JTextField endsField = new JTextField();
 
     private Task result;
+    private LocalDate initialDue;
+    private int monthDay;
 
     private static final DateTimeFormatter DTF = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
@@ -68,6 +86,40 @@ public class TaskDialog extends JDialog{
         gbc.gridx = 1; gbc.weightx = 1;
         form.add(dateField, gbc);
 
+        repeatCombo.setFont(inputFont);
+        repeatCombo.setPreferredSize(new Dimension(300, 32));
+        gbc.weightx = 0; gbc.gridx = 0; gbc.gridy = 3;
+        JLabel repeatLabel = new JLabel("Repeats:");
+        repeatLabel.setFont(labelFont);
+        form.add(repeatLabel, gbc);
+        gbc.gridx = 1; gbc.weightx = 1;
+        form.add(repeatCombo, gbc);
+
+        dayPanel.setBackground(new Color(245, 245, 250));
+        for (DayOfWeek d : DayOfWeek.values()){
+            JCheckBox box = new JCheckBox(d.getDisplayName(TextStyle.SHORT, Locale.ENGLISH));
+            box.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+            box.setBackground(new Color(245, 245, 250));
+            dayBoxes[d.getValue() - 1] = box;
+            dayPanel.add(box);
+        }
+        gbc.gridx = 1; gbc.gridy = 4;
+        form.add(dayPanel, gbc);
+
+        JPanel endsPanel = new JPanel(new BorderLayout(8, 0));
+        endsPanel.setBackground(new Color(245, 245, 250));
+        endsCombo.setFont(inputFont);
+        endsField.setFont(inputFont);
+        endsField.setPreferredSize(new Dimension(120, 32));
+        endsPanel.add(endsCombo, BorderLayout.CENTER);
+        endsPanel.add(endsField, BorderLayout.EAST);
+        gbc.weightx = 0; gbc.gridx = 0; gbc.gridy = 5;
+        JLabel endsLabel = new JLabel("Ends:");
+        endsLabel.setFont(labelFont);
+        form.add(endsLabel, gbc);
+        gbc.gridx = 1; gbc.weightx = 1;
+        form.add(endsPanel, gbc);
+
         JLabel hint = new JLabel("(Use format: yyyy-MM-dd, like 2025-10-29)");
         hint.setFont(new Font("Segoe UI", Font.ITALIC, 12));
         hint.setForeground(new Color(100, 100, 120));
@@ -120,11 +172,17 @@ public class TaskDialog extends JDialog{
         ok.addActionListener(e -> onOk());
         cancel.addActionListener(e ->{ result = null; dispose(); });
 
+        repeatCombo.addActionListener(e -> updateRepeatFields());
+        endsCombo.addActionListener(e -> updateRepeatFields());
+
         if (initial != null){
             descriptionField.setText(initial.getDescription());
             priorityCombo.setSelectedItem(initial.getPriority());
             dateField.setText(initial.getDueDate() != null ? DTF.format(initial.getDueDate()) : "");
+            initialDue = initial.getDueDate();
+            showRecurrence(initial.getRecurrence());
         }
+        updateRepeatFields();
 
         pack();
         setLocationRelativeTo(owner);
@@ -133,8 +191,10 @@ public class TaskDialog extends JDialog{
 
     //This method validates inputs and constructs the result task.
     private void onOk(){
-        String desc = descriptionField.getText().trim();
-        if (desc.isEmpty()){
+        String desc;
+        try{
+            desc = TaskValidator.checkDescription(descriptionField.getText());
+        } catch (IllegalArgumentException ex){
             JOptionPane.showMessageDialog(this, 
                 "Task description is required.\nPlease enter a description.", 
                 "Validation Error", 
@@ -143,24 +203,101 @@ public class TaskDialog extends JDialog{
             return;
         }
         Priority pr = (Priority) priorityCombo.getSelectedItem();
-        LocalDate date = null;
-        String text = dateField.getText().trim();
-        if (!text.isEmpty()){
-            try{
-                date = LocalDate.parse(text, DTF);
-            } catch (DateTimeParseException ex){
-                JOptionPane.showMessageDialog(this, 
-                    "Invalid date format.\nPlease use: yyyy-MM-dd (like 2025-10-29)", 
-                    "Validation Error", 
-                    JOptionPane.WARNING_MESSAGE);
-                dateField.requestFocus();
-                return;
-            }
+        LocalDate date;
+        try{
+            date = TaskValidator.parseDueDate(dateField.getText());
+        } catch (IllegalArgumentException ex){
+            JOptionPane.showMessageDialog(this, 
+                "Invalid date format.\nPlease use: yyyy-MM-dd (like 2025-10-29)", 
+                "Validation Error", 
+                JOptionPane.WARNING_MESSAGE);
+            dateField.requestFocus();
+            return;
+        }
+        Recurrence recurrence;
+        try{
+            recurrence = TaskValidator.checkRecurrence(readRecurrence(date), date);
+        } catch (IllegalArgumentException ex){
+            JOptionPane.showMessageDialog(this,
+                ex.getMessage(),
+                "Validation Error",
+                JOptionPane.WARNING_MESSAGE);
+            (date == null ? dateField : endsField).requestFocus();
+            return;
         }
         result = new Task(desc, pr == null ? Priority.MEDIUM : pr, date);
+        result.setRecurrence(recurrence);
         dispose();
     }
 
+    //This method fills the repeat fields from an existing rule.
+    private void showRecurrence(Recurrence r){
+        if (r == null){
+            return;
+        }
+        repeatCombo.setSelectedItem(r.getFrequency());
+        monthDay = r.getMonthDay();
+        for (DayOfWeek d : DayOfWeek.values()){
+            dayBoxes[d.getValue() - 1].setSelected(r.repeatsOn(d));
+        }
+        if (r.getCount() > 0){
+            endsCombo.setSelectedItem(ENDS_AFTER);
+            endsField.setText(Integer.toString(r.getCount()));
+        } else if (r.getUntil() != null){
+            endsCombo.setSelectedItem(ENDS_ON);
+            endsField.setText(DTF.format(r.getUntil()));
+        }
+    }
+
+    //This method shows the weekdays only for weekly rules and the end field only when the series ends.
+    private void updateRepeatFields(){
+        boolean repeats = repeatCombo.getSelectedItem() != NEVER;
+        dayPanel.setVisible(repeatCombo.getSelectedItem() == Recurrence.Frequency.WEEKLY);
+        endsCombo.setEnabled(repeats);
+        endsField.setEnabled(repeats && endsCombo.getSelectedItem() != NEVER);
+        pack();
+    }
+
+    //This method builds the repeat rule from the fields, or returns null when the task does not repeat.
+    //A monthly series moved on to a shorter month keeps its day of the month while its date is left as it was.
+    private Recurrence readRecurrence(LocalDate date){
+        Object repeat = repeatCombo.getSelectedItem();
+        if (repeat == NEVER){
+            return null;
+        }
+        Recurrence r;
+        if (repeat == Recurrence.Frequency.DAILY){
+            r = Recurrence.daily();
+        } else if (repeat == Recurrence.Frequency.MONTHLY){
+            r = Recurrence.monthly();
+            if (date != null && date.equals(initialDue)){
+                r = r.onMonthDay(monthDay);
+            }
+        } else{
+            Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+            for (DayOfWeek d : DayOfWeek.values()){
+                if (dayBoxes[d.getValue() - 1].isSelected()){
+                    days.add(d);
+                }
+            }
+            r = Recurrence.weekly(days);
+        }
+        if (endsCombo.getSelectedItem() == ENDS_ON){
+            LocalDate until = TaskValidator.parseDueDate(endsField.getText());
+            if (until == null){
+                throw new IllegalArgumentException("Enter the last date of the series as yyyy-MM-dd.");
+            }
+            r = r.until(until);
+        } else if (endsCombo.getSelectedItem() == ENDS_AFTER){
+            try{
+                r = r.times(Integer.parseInt(endsField.getText().trim()));
+            } catch (NumberFormatException e){
+                throw new IllegalArgumentException("Enter how many times the task repeats.");
+            }
+        }
+        return r;
+    }
+
     //This method returns the created or edited task or null if canceled.
     public Task getResult(){
         return result;
@@ -0,0 +1,47 @@
+//This file defines the header renderer for the tasks table.
+package todojavaapp.ui;
+
+import todojavaapp.model.TaskOrder;
+
+import javax.swing.*;
+import javax.swing.border.Border;
+import javax.swing.table.TableCellRenderer;
+import java.awt.*;
+
+//This class paints every header cell with one reused label and cached font, colors and border.
+//Sorted columns get an arrow, and a number when several columns are sorted.
+public class TaskHeaderRenderer implements TableCellRenderer{
+    private static final Font FONT = new Font("Segoe UI", Font.BOLD, 15);
+    private static final Color BACKGROUND = new Color(70, 130, 180);
+    private static final Border BORDER = BorderFactory.createEmptyBorder(8, 8, 8, 8);
+
+    private final JLabel label = new JLabel();
+
+    //This constructor styles the shared label once.
+    public TaskHeaderRenderer(){
+        label.setFont(FONT);
+        label.setBackground(BACKGROUND);
+        label.setForeground(Color.WHITE);
+        label.setOpaque(true);
+        label.setBorder(BORDER);
+        label.setHorizontalAlignment(SwingConstants.CENTER);
+    }
+
+    //This method sets the header text and sort marker on the shared label.
+    @Override
+    public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column){
+        String text = value != null ? value.toString() : "";
+        if (table != null && table.getModel() instanceof TaskTableModel){
+            TaskOrder order = ((TaskTableModel) table.getModel()).getSortOrder();
+            TaskOrder.Key key = order.keyOf(TaskTableModel.sortColumnOf(table.convertColumnIndexToModel(column)));
+            if (key != null){
+                text += key.isAscending() ? " \u25B2" : " \u25BC";
+                if (order.getKeys().size() > 1){
+                    text += order.getKeys().indexOf(key) + 1;
+                }
+            }
+        }
+        label.setText(text);
+        return label;
+    }
+}
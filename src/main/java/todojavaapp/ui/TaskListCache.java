@@ -0,0 +1,188 @@
+//This file keeps the table models of the task lists that are open and drops the ones left idle.
+package todojavaapp.ui;
+
+import todojavaapp.storage.CompactTaskStore;
+import todojavaapp.storage.PagedTaskStore;
+import todojavaapp.storage.TaskListCatalog;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+//This class opens a list the first time it is shown and closes it once it has not been shown for a while.
+//Only open lists use memory, so memory follows the lists in use rather than every list on disk.
+public class TaskListCache{
+    public static final long IDLE_MILLIS = Long.getLong("todo.list.idleMillis", 5 * 60 * 1000);
+    public static final boolean PAGED = Boolean.getBoolean("todo.paged");
+    public static final boolean COMPACT = Boolean.getBoolean("todo.compact");
+
+    private final TaskListCatalog catalog;
+    private final Map<String, TaskTableModel> open = new LinkedHashMap<>();
+    private final Map<String, Long> hiddenSince = new HashMap<>();
+    private final Map<String, Closing> closing = new HashMap<>();
+    private final Timer evictTimer;
+    private Consumer<IOException> errorHandler = e -> System.err.println(e.getMessage());
+    private String current;
+
+    //This constructor starts a timer on the event dispatch thread that looks for idle lists.
+    public TaskListCache(TaskListCatalog catalog){
+        this.catalog = catalog;
+        this.evictTimer = new Timer((int) Math.max(1000, Math.min(IDLE_MILLIS, 60 * 1000)), e -> evictIdle());
+        evictTimer.start();
+    }
+
+    //This method returns the catalog the lists come from.
+    public TaskListCatalog getCatalog(){
+        return catalog;
+    }
+
+    //This method sets the handler that is told on the event dispatch thread when closing an idle list fails.
+    public void setErrorHandler(Consumer<IOException> handler){
+        this.errorHandler = handler;
+    }
+
+    //This method returns whether a list is in memory, first waiting for it to finish closing if it is being closed.
+    public boolean isOpen(String name){
+        awaitClosing(name);
+        return open.containsKey(name);
+    }
+
+    //This method makes a list the shown one and returns its model, creating it unloaded when it is not open.
+    //With todo.paged set the model reads its rows from a page file next to the list instead of holding every task,
+    //and with todo.compact set it holds the tasks in the arrays of a compact store.
+    public TaskTableModel show(String name){
+        awaitClosing(name);
+        if (current != null){
+            hiddenSince.put(current, System.currentTimeMillis());
+        }
+        hiddenSince.remove(name);
+        current = name;
+        return open.computeIfAbsent(name, this::newModel);
+    }
+
+    //This method creates the unloaded model of a list on the backing chosen at startup.
+    private TaskTableModel newModel(String name){
+        if (PAGED){
+            return new TaskTableModel(new PagedTaskStore(catalog.open(name)));
+        }
+        if (COMPACT){
+            return new TaskTableModel(new CompactTaskStore(catalog.open(name)));
+        }
+        return new TaskTableModel(catalog.open(name));
+    }
+
+    //This method returns the models of every open list.
+    public Collection<TaskTableModel> openModels(){
+        return new ArrayList<>(open.values());
+    }
+
+    //This method returns whether any open list is still loading.
+    public boolean isLoading(){
+        for (TaskTableModel model : open.values()){
+            if (model.isLoading()){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //This method writes the pending changes of every open list and throws the first failure after trying them all.
+    //Lists being closed are waited for first, as their close writes their changes.
+    public void flush() throws IOException{
+        for (String name : new ArrayList<>(closing.keySet())){
+            awaitClosing(name);
+        }
+        IOException failure = null;
+        for (TaskTableModel model : open.values()){
+            try{
+                model.flush();
+            } catch (IOException e){
+                if (failure == null){
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null){
+            throw failure;
+        }
+    }
+
+    //This method starts closing the lists that have been hidden longer than the idle time and are done loading.
+    //Each close writes the list's last changes, so it runs on its own thread and the list leaves the cache once it is
+    //done. A list that cannot write its last changes stays open and is tried again on a later tick.
+    void evictIdle(){
+        long now = System.currentTimeMillis();
+        List<String> idle = new ArrayList<>();
+        for (Map.Entry<String, Long> e : hiddenSince.entrySet()){
+            if (now - e.getValue() >= IDLE_MILLIS && !open.get(e.getKey()).isLoading()){
+                idle.add(e.getKey());
+            }
+        }
+        for (String name : idle){
+            hiddenSince.remove(name);
+            Closing c = new Closing(open.get(name));
+            closing.put(name, c);
+            c.thread = new Thread(() ->{
+                try{
+                    c.model.close();
+                } catch (IOException e){
+                    c.failure = e;
+                }
+                SwingUtilities.invokeLater(() ->{
+                    if (closing.remove(name, c)){
+                        closed(name, c);
+                    }
+                });
+            }, "task-list-closer");
+            c.thread.start();
+        }
+    }
+
+    //This method waits on the event dispatch thread for a list being closed, so it is not opened a second time
+    //while its files are still held.
+    private void awaitClosing(String name){
+        Closing c = closing.remove(name);
+        if (c == null){
+            return;
+        }
+        try{
+            c.thread.join();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            closing.put(name, c);
+            return;
+        }
+        closed(name, c);
+    }
+
+    //This method drops a closed list from the cache, or keeps a list whose close failed to try again later.
+    private void closed(String name, Closing c){
+        if (c.failure == null){
+            open.remove(name, c.model);
+            return;
+        }
+        if (!name.equals(current)){
+            hiddenSince.put(name, System.currentTimeMillis());
+        }
+        errorHandler.accept(new IOException("Failed to close task list " + name + ": " + c.failure.getMessage(), c.failure));
+    }
+
+    //This class is a list being closed on its own thread and the failure of its close, if any.
+    private static final class Closing{
+        final TaskTableModel model;
+        Thread thread;
+        volatile IOException failure;
+
+        //This constructor keeps the model being closed.
+        Closing(TaskTableModel model){
+            this.model = model;
+        }
+    }
+}
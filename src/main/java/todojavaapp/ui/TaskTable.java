@@ -0,0 +1,48 @@
+//This file defines the task table that measures how long it takes to paint.
+package todojavaapp.ui;
+
+import todojavaapp.diagnostics.Metrics;
+import todojavaapp.diagnostics.TableRepaintEvent;
+
+import javax.swing.*;
+import javax.swing.table.TableModel;
+import java.awt.*;
+
+//This class is a JTable that records the time and the number of rows of every paint.
+public class TaskTable extends JTable{
+    //This constructor shows the given model.
+    public TaskTable(TableModel model){
+        super(model);
+    }
+
+    //This method paints the rows inside the clip and records the cost.
+    @Override
+    protected void paintComponent(Graphics g){
+        TableRepaintEvent event = new TableRepaintEvent();
+        event.begin();
+        long start = System.nanoTime();
+        super.paintComponent(g);
+        int rows = paintedRows(g.getClipBounds());
+        Metrics.REPAINT.record(System.nanoTime() - start, rows, 0);
+        event.rows = rows;
+        event.commit();
+    }
+
+    //This method returns how many rows fall inside the painted area.
+    private int paintedRows(Rectangle clip){
+        int count = getRowCount();
+        if (count == 0){
+            return 0;
+        }
+        if (clip == null){
+            return count;
+        }
+        int first = rowAtPoint(new Point(clip.x, clip.y));
+        int last = rowAtPoint(new Point(clip.x, clip.y + clip.height - 1));
+        if (first < 0){
+            //The clip starts below the last row, which only happens when the table fills the viewport.
+            return 0;
+        }
+        return (last < 0 ? count - 1 : last) - first + 1;
+    }
+}
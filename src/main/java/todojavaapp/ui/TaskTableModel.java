@@ -1,73 +1,388 @@
 //This file defines a table model for tasks used by the tasks table.
 package todojavaapp.ui;
 
+import todojavaapp.diagnostics.Metrics;
+import todojavaapp.diagnostics.TaskFilterEvent;
+import todojavaapp.model.DateFilter;
 import todojavaapp.model.Priority;
 import todojavaapp.model.Task;
+import todojavaapp.model.TaskIndex;
+import todojavaapp.model.TaskOrder;
+import todojavaapp.model.TaskTextIndex;
+import todojavaapp.repository.TaskRepository;
+import todojavaapp.storage.CompactTaskStore;
+import todojavaapp.storage.PagedTaskStore;
+import todojavaapp.storage.TaskChange;
 import todojavaapp.storage.TaskStorage;
+import todojavaapp.storage.TaskStore;
 
+import javax.swing.*;
 import javax.swing.table.AbstractTableModel;
+import javax.swing.undo.AbstractUndoableEdit;
+import javax.swing.undo.UndoManager;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 //This class provides a table model with support for filtering and basic operations.
+//The tasks live in a repository that other threads may read and write too; the model follows its updates on the
+//event dispatch thread and keeps its own indexes and rows, so the table only ever sees versions in order.
+//A model over a task store instead keeps neither: its rows are read from the store as the table asks for them,
+//and edits are made on the event dispatch thread straight to the store.
 public class TaskTableModel extends AbstractTableModel{
-    private final List<Task> allTasks = new ArrayList<>();
-    private final List<Task> viewTasks = new ArrayList<>();
-    private final TaskStorage storage = new TaskStorage();
+    public static final int UNDO_LIMIT = Integer.getInteger("todo.undo.limit", 100);
 
+    private final List<Row> viewRows = new ArrayList<>();
+    private final Map<LocalDate, String> dateLabels = new HashMap<>();
+    private final TaskIndex index = new TaskIndex();
+    private final TaskRepository repository;
+    private final TaskRepository.Listener follower;
+    private final Queue<TaskRepository.Update> updates = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainPosted = new AtomicBoolean();
+    private final UndoManager undo = new UndoManager();
+    private final TaskStore store;
+    private final StoreView storeView;
+    private final List<Task> addedWhileLoading = new ArrayList<>();
+
+    private DueDateScheduler.Registration reminders;
+    private BiConsumer<LocalDate, List<Task>> reminderHandler;
+    private volatile Consumer<IOException> errorHandler = e -> System.err.println(e.getMessage());
+    private Task restored;
+    private boolean loading;
+    private int appendedFrom = -1;
     private Priority filterPriority = null;
     private DateFilter filterDate = DateFilter.ALL;
+    private String[] filterTerms = new String[0];
+    private TaskOrder order = TaskOrder.BY_ID;
+    private TaskOrder orderAfterLoad;
+    private LocalDate today = LocalDate.now();
 
     private static final String[] COLS ={"Description", "Priority", "Due Date"};
     private static final DateTimeFormatter DTF = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final int MAX_ROW_EVENTS = 256;
+
+    //This class holds what a view row displays, worked out once when its task enters the view or changes.
+    private static final class Row{
+        final Task task;
+        final String priority;
+        final String due;
+        final DueState dueState;
 
-    //This enum defines the time based filter options.
-    public enum DateFilter{
-        ALL("All"),
-        TODAY("Today"),
-        THIS_WEEK("This week"),
-        OVERDUE("Overdue");
-        private final String label;
-        DateFilter(String label){ this.label = label; }
-        public String getLabel(){ return label; }
-        @Override public String toString(){ return label; }
+        //This constructor keeps the task, its display strings and how its due date relates to today.
+        Row(Task task, String due, DueState dueState){
+            this.task = task;
+            this.priority = task.getPriority().getDisplay();
+            this.due = due;
+            this.dueState = dueState;
+        }
     }
 
-    //This constructor loads tasks from JSON storage.
+    //This constructor shows the tasks of the default data file.
     public TaskTableModel(){
-        loadFromStorage();
+        this(new TaskStorage());
     }
 
-    //This method loads tasks from the JSON file.
-    private void loadFromStorage(){
-        try{
-            List<Task> loaded = storage.loadTasks();
-            allTasks.clear();
-            allTasks.addAll(loaded);
-            applyFilters();
-        } catch (IOException e){
-            System.err.println("Failed to load tasks: " + e.getMessage());
+    //This constructor shows the tasks of the given storage, which are read once load is called.
+    public TaskTableModel(TaskStorage storage){
+        this(new TaskRepository(storage));
+    }
+
+    //This constructor shows the tasks of a repository that has not been loaded yet and takes over closing it.
+    //Updates are queued as they are published and applied together on the event dispatch thread.
+    public TaskTableModel(TaskRepository repository){
+        this.repository = repository;
+        this.store = null;
+        this.storeView = null;
+        this.follower = update ->{
+            updates.add(update);
+            if (drainPosted.compareAndSet(false, true)){
+                SwingUtilities.invokeLater(this::drain);
+            }
+        };
+        undo.setLimit(UNDO_LIMIT);
+        repository.addListener(follower);
+    }
+
+    //This constructor shows the tasks of a paged store that has not been opened yet and takes over closing it.
+    //Only the rows on screen are held in memory; sorting is limited to what PagedTaskView.supported allows.
+    public TaskTableModel(PagedTaskStore store){
+        this(store, new PagedTaskView(store));
+    }
+
+    //This constructor shows the tasks of a compact store that has not been opened yet and takes over closing it.
+    //Every task stays in memory as a few array entries and only the rows on screen become Task objects.
+    public TaskTableModel(CompactTaskStore store){
+        this(store, new CompactTaskView(store));
+    }
+
+    //This constructor shows the tasks of a store through a view of it.
+    private TaskTableModel(TaskStore store, StoreView view){
+        this.repository = null;
+        this.follower = null;
+        this.store = store;
+        this.storeView = view;
+        undo.setLimit(UNDO_LIMIT);
+    }
+
+    //This method returns the repository behind the table, which any thread may read or write, or null for a task store.
+    public TaskRepository getRepository(){
+        return repository;
+    }
+
+    //This class records one add, edit or delete as the task before and after it, so a step costs two task copies.
+    //Undoing or redoing puts back one side through the same path as an edit, which updates one row and saves the change.
+    private final class TaskEdit extends AbstractUndoableEdit{
+        private final String name;
+        private final long id;
+        private final Task before;
+        private final Task after;
+
+        //This constructor keeps copies of the task before and after the change, either of which is null when absent.
+        TaskEdit(String name, long id, Task before, Task after){
+            this.name = name;
+            this.id = id;
+            this.before = before == null ? null : before.copy();
+            this.after = after == null ? null : after.copy();
+        }
+
+        //This method puts back the task as it was before the change.
+        @Override
+        public void undo(){
+            super.undo();
+            restore(id, before);
+        }
+
+        //This method applies the change again.
+        @Override
+        public void redo(){
+            super.redo();
+            restore(id, after);
+        }
+
+        //This method returns the name shown in the undo and redo tooltips.
+        @Override
+        public String getPresentationName(){
+            return name;
         }
     }
 
-    //This method saves tasks to the JSON file.
-    private void saveToStorage(){
-        try{
-            storage.saveTasks(allTasks);
-        } catch (IOException e){
-            System.err.println("Failed to save tasks: " + e.getMessage());
+    //This enum tells renderers how a row's due date relates to today.
+    public enum DueState{ NONE, UPCOMING, TODAY, OVERDUE }
+
+    //This interface receives progress while tasks are loaded in the background.
+    public interface LoadListener{
+        //This method is called on the event dispatch thread after each batch of loaded tasks.
+        void loadProgress(int tasksLoaded);
+
+        //This method is called on the event dispatch thread once loading ends, with the error if it failed.
+        void loadFinished(IOException error);
+    }
+
+    //This method starts loading the repository in the background; its batches stream into the table as updates.
+    //Edits made while loading are applied at once and saved by the repository when loading has finished.
+    public void load(LoadListener listener){
+        loading = true;
+        if (store != null){
+            loadStore(listener);
+            return;
         }
+        repository.load(new TaskRepository.LoadListener(){
+            @Override
+            public void loadProgress(int tasksLoaded){
+                SwingUtilities.invokeLater(() ->{
+                    drain();
+                    listener.loadProgress(tasksLoaded);
+                });
+            }
+
+            @Override
+            public void loadFinished(IOException error){
+                SwingUtilities.invokeLater(() ->{
+                    drain();
+                    finishLoading(error);
+                    listener.loadFinished(error);
+                });
+            }
+        });
+    }
+
+    //This method opens the task store in the background, which reads the list or reuses a copy that is still current.
+    //Tasks added meanwhile are kept and written once it is open, then the first rows are counted.
+    private void loadStore(LoadListener listener){
+        Thread thread = new Thread(() ->{
+            IOException error = null;
+            try{
+                store.open(n -> SwingUtilities.invokeLater(() -> listener.loadProgress(n)));
+            } catch (IOException e){
+                error = e;
+            }
+            IOException opened = error;
+            SwingUtilities.invokeLater(() ->{
+                IOException failure = opened;
+                if (failure == null){
+                    try{
+                        for (Task t : addedWhileLoading){
+                            Task stored = store.add(t);
+                            undo.addEdit(new TaskEdit("Add Task", stored.getId(), null, stored));
+                        }
+                        if (orderAfterLoad != null){
+                            order = orderAfterLoad;
+                            orderAfterLoad = null;
+                        }
+                        today = LocalDate.now();
+                        refreshStore();
+                    } catch (IOException | UncheckedIOException e){
+                        failure = e instanceof IOException ? (IOException) e : ((UncheckedIOException) e).getCause();
+                    }
+                }
+                addedWhileLoading.clear();
+                fireTableDataChanged();
+                finishLoading(failure);
+                listener.loadFinished(failure);
+            });
+        }, "task-loader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    //This method returns whether tasks are still being loaded.
+    public boolean isLoading(){
+        return loading;
+    }
+
+    //This method applies every update published so far, in version order.
+    //It runs when posted by the listener and also straight after the model's own writes, so an added or edited
+    //row is in place before the caller looks for it.
+    private void drain(){
+        drainPosted.set(false);
+        TaskRepository.Update update;
+        while ((update = updates.poll()) != null){
+            //Undo steps refer to tasks by id, so they cannot follow a task that moved to a new one.
+            if (update.isRenumbered()){
+                undo.discardAllEdits();
+            }
+            for (TaskChange c : update.getChanges()){
+                if (c.getKind() == TaskChange.Kind.REMOVE){
+                    dropTask(c.getId());
+                } else{
+                    putTask(c.getTask());
+                }
+            }
+        }
+        flushAppendedRows();
+    }
+
+    //This method applies the sort order chosen while loading and starts the reminders once the tasks are in.
+    private void finishLoading(IOException error){
+        loading = false;
+        if (orderAfterLoad != null){
+            TaskOrder next = orderAfterLoad;
+            orderAfterLoad = null;
+            setSortOrder(next);
+        }
+        if (error == null){
+            startReminders();
+        }
+    }
+
+    //This method asks the shared scheduler to wake the model at midnight and on the next due date.
+    private void startReminders(){
+        reminders = DueDateScheduler.shared().register(new DueDateScheduler.Target(){
+            @Override
+            public void rollOver(){
+                TaskTableModel.this.rollOver();
+            }
+
+            @Override
+            public LocalDate nextDueDate(LocalDate from){
+                if (store == null){
+                    return index.nextDueDate(from);
+                }
+                try{
+                    return store.nextDueDate(from);
+                } catch (IOException e){
+                    errorHandler.accept(new IOException("Failed to read due dates: " + e.getMessage(), e));
+                    return null;
+                }
+            }
+
+            @Override
+            public void remind(LocalDate day){
+                List<Task> due;
+                if (store == null){
+                    due = index.query(null, day, day);
+                } else{
+                    try{
+                        due = store.dueOn(day);
+                    } catch (IOException e){
+                        errorHandler.accept(new IOException("Failed to read due tasks: " + e.getMessage(), e));
+                        return;
+                    }
+                }
+                if (reminderHandler != null && !due.isEmpty()){
+                    reminderHandler.accept(day, due);
+                }
+            }
+        });
+    }
+
+    //This method sets the handler that is told on the event dispatch thread about the tasks due on a day.
+    public void setReminderHandler(BiConsumer<LocalDate, List<Task>> handler){
+        this.reminderHandler = handler;
+    }
+
+    //This method sets the handler that is told on the event dispatch thread when a save fails,
+    //or when the files report another problem such as a damaged record or a failed read of due dates.
+    public void setSaveErrorHandler(Consumer<IOException> handler){
+        Consumer<IOException> onEdt = e -> SwingUtilities.invokeLater(() -> handler.accept(e));
+        errorHandler = onEdt;
+        if (store != null){
+            store.setSaveErrorHandler(onEdt);
+            return;
+        }
+        repository.setSaveErrorHandler(onEdt);
+    }
+
+    //This method writes all accepted changes to disk before returning.
+    public void flush() throws IOException{
+        if (store != null){
+            store.flush();
+            return;
+        }
+        repository.flush();
+    }
+
+    //This method stops following the repository, then writes all accepted changes and closes it.
+    public void close() throws IOException{
+        if (reminders != null){
+            reminders.cancel();
+            reminders = null;
+        }
+        if (store != null){
+            store.close();
+            return;
+        }
+        repository.removeListener(follower);
+        repository.close();
     }
 
     //This method returns the row count in the current view.
     @Override
     public int getRowCount(){
-        return viewTasks.size();
+        return store != null ? storeView.size() : viewRows.size();
     }
 
     //This method returns the number of columns in the table.
@@ -82,47 +397,449 @@ public class TaskTableModel extends AbstractTableModel{
         return COLS[column];
     }
 
-    //This method returns the value to display for a cell.
+    //This method returns the value to display for a cell from the precomputed row without formatting anything.
     @Override
     public Object getValueAt(int rowIndex, int columnIndex){
-        Task t = viewTasks.get(rowIndex);
+        Row r = rowAt(rowIndex);
         switch (columnIndex){
-            case 0: return t.getDescription();
-            case 1: return t.getPriority().getDisplay();
-            case 2: return t.getDueDate() != null ? DTF.format(t.getDueDate()) : "";
+            case 0: return r.task.getDescription();
+            case 1: return r.priority;
+            case 2: return r.due;
             default: return "";
         }
     }
 
-    //This method adds a new task and reapplies filters.
+    //This method adds a new task under a fresh id and inserts its row when it passes the filters.
     public void addTask(Task t){
-        allTasks.add(Objects.requireNonNull(t));
-        saveToStorage();
-        applyFilters();
+        if (store != null){
+            if (loading){
+                addedWhileLoading.add(Objects.requireNonNull(t).copy());
+                return;
+            }
+            try{
+                Task stored = store.add(Objects.requireNonNull(t));
+                undo.addEdit(new TaskEdit("Add Task", stored.getId(), null, stored));
+                moveStoredRow(null, -1, stored);
+            } catch (IOException e){
+                throw new UncheckedIOException(e);
+            }
+            return;
+        }
+        Task stored = repository.add(Objects.requireNonNull(t));
+        undo.addEdit(new TaskEdit("Add Task", stored.getId(), null, stored));
+        drain();
     }
 
-    //This method updates a task at an index and reapplies filters.
+    //This method replaces the task shown in a row, keeping its id, and repaints or drops only that row.
     public void updateTask(int viewRow, Task updated){
-        Task existing = viewTasks.get(viewRow);
-        int realIndex = allTasks.indexOf(existing);
-        if (realIndex >= 0){
-            allTasks.set(realIndex, Objects.requireNonNull(updated));
-            saveToStorage();
-            applyFilters();
+        updateTaskWithId(getTaskAt(viewRow).getId(), updated);
+    }
+
+    //This method replaces the task with an id and repaints or drops only its row; it does nothing once the task is gone.
+    //Callers that wait on the user keep the id rather than the row, which other changes may move in the meantime.
+    //The undo step keeps the version the repository replaced, which another thread may have written since.
+    public void updateTaskWithId(long id, Task updated){
+        replaceTask(id, updated, "Edit Task");
+    }
+
+    //This method replaces the task with an id under an undo step of a name, when the task is still there.
+    private void replaceTask(long id, Task updated, String name){
+        Objects.requireNonNull(updated).setId(id);
+        if (store != null){
+            try{
+                Task old = store.get(id);
+                int row = storedRowOf(old);
+                Task before = store.update(updated);
+                if (before != null){
+                    undo.addEdit(new TaskEdit(name, id, before, updated));
+                    moveStoredRow(old, row, updated);
+                }
+            } catch (IOException e){
+                throw new UncheckedIOException(e);
+            }
+            return;
         }
+        Task before = repository.update(updated);
+        if (before != null){
+            undo.addEdit(new TaskEdit(name, id, before, updated));
+        }
+        drain();
     }
 
-    //This method removes a task at an index and reapplies filters.
+    //This method removes the task shown in a row and deletes only that row.
     public void removeTask(int viewRow){
-        Task existing = viewTasks.get(viewRow);
-        allTasks.remove(existing);
-        saveToStorage();
-        applyFilters();
+        removeTaskWithId(getTaskAt(viewRow).getId());
+    }
+
+    //This method removes the task with an id and deletes only its row; it does nothing once the task is gone.
+    public void removeTaskWithId(long id){
+        deleteTask(id, "Delete Task");
+    }
+
+    //This method marks the task with an id done and returns what is left of it, or null; it does nothing once the
+    //task is gone. A series moves on to its next occurrence, and a task that happens once or the last occurrence of
+    //a series is removed. Either way it is one step to undo.
+    public Task completeTaskWithId(long id){
+        Task current;
+        try{
+            current = store != null ? store.get(id) : index.get(id);
+        } catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
+        if (current == null){
+            return null;
+        }
+        Task next = current.advanced();
+        if (next == null){
+            deleteTask(id, "Complete Task");
+        } else{
+            replaceTask(id, next, "Complete Task");
+        }
+        return next;
+    }
+
+    //This method removes the task with an id under an undo step of a name, when the task is still there.
+    private void deleteTask(long id, String name){
+        if (store != null){
+            try{
+                Task old = store.get(id);
+                int row = storedRowOf(old);
+                Task before = store.remove(id);
+                if (before != null){
+                    undo.addEdit(new TaskEdit(name, id, before, null));
+                    moveStoredRow(old, row, null);
+                }
+            } catch (IOException e){
+                throw new UncheckedIOException(e);
+            }
+            return;
+        }
+        Task before = repository.remove(id);
+        if (before != null){
+            undo.addEdit(new TaskEdit(name, id, before, null));
+        }
+        drain();
+    }
+
+    //This method returns whether there is a change to undo.
+    public boolean canUndo(){
+        return undo.canUndo();
+    }
+
+    //This method returns whether there is an undone change to redo.
+    public boolean canRedo(){
+        return undo.canRedo();
+    }
+
+    //This method returns a label such as Undo Delete Task for the next undo.
+    public String getUndoName(){
+        return undo.getUndoPresentationName();
+    }
+
+    //This method returns a label such as Redo Edit Task for the next redo.
+    public String getRedoName(){
+        return undo.getRedoPresentationName();
+    }
+
+    //This method reverts the latest change and returns the task it brought back, or null when it removed one.
+    public Task undo(){
+        undo.undo();
+        return restored;
+    }
+
+    //This method applies the latest undone change again and returns the task it brought back, or null when it removed one.
+    public Task redo(){
+        undo.redo();
+        return restored;
+    }
+
+    //This method makes the stored task with an id match a recorded version, or removes it for null, and saves that.
+    private void restore(long id, Task version){
+        restored = null;
+        if (store != null){
+            try{
+                Task old = store.get(id);
+                int row = storedRowOf(old);
+                Task t = version == null ? null : version.copy();
+                if (t == null){
+                    store.remove(id);
+                } else{
+                    store.put(t);
+                }
+                moveStoredRow(old, row, t);
+                restored = t;
+            } catch (IOException e){
+                throw new UncheckedIOException(e);
+            }
+            return;
+        }
+        if (version == null){
+            repository.remove(id);
+        } else{
+            Task t = version.copy();
+            repository.put(t);
+            restored = t;
+        }
+        drain();
+    }
+
+    //This method returns the row a task of the store is shown in, or -1; call it before changing the task.
+    private int storedRowOf(Task old) throws IOException{
+        return old != null && storeView.matches(old) ? storeView.rowsBefore(old) : -1;
     }
 
-    //This method returns the task at an index in the view.
+    //This method moves the row of a task the store has just changed from its old row, either of them absent.
+    //As in syncRow, a row that keeps its place is repainted, and otherwise the view drops the old row and announces
+    //that before it takes the new one, so every event describes the rows as they are when it fires.
+    private void moveStoredRow(Task old, int row, Task now) throws IOException{
+        boolean matches = now != null && storeView.matches(now);
+        if (row >= 0){
+            storeView.taskRemoved(old, row);
+            if (matches && storeView.rowsBefore(now) == row){
+                storeView.taskAdded(now);
+                fireTableRowsUpdated(row, row);
+                matches = false;
+            } else{
+                fireTableRowsDeleted(row, row);
+            }
+        }
+        if (matches){
+            storeView.taskAdded(now);
+            int at = storeView.rowsBefore(now);
+            fireTableRowsInserted(at, at);
+        }
+        if (reminders != null && now != null && now.getDueDate() != null){
+            reminders.dueDateChanged(now.nextDue());
+        }
+    }
+
+    //This method returns the display row at an index of the view, building it from the store when there is one.
+    private Row rowAt(int viewRow){
+        if (store == null){
+            return viewRows.get(viewRow);
+        }
+        try{
+            return newRow(storeView.taskAt(viewRow));
+        } catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //This method works out the rows of a store again for the filters, the order and the day.
+    private void refreshStore(){
+        storeView.setFilters(filterPriority, filterDate, filterTerms, today);
+        storeView.setOrder(order);
+        try{
+            storeView.rebuild();
+        } catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //This method indexes a new or replaced task from the repository and updates its view row.
+    private void putTask(Task t){
+        Task old = index.get(t.getId());
+        index.replace(t);
+        syncRow(old, t);
+        if (reminders != null && t.getDueDate() != null){
+            reminders.dueDateChanged(t.nextDue());
+        }
+    }
+
+    //This method removes a task by id from the indexes and the view.
+    private void dropTask(long id){
+        Task old = index.get(id);
+        if (old == null){
+            return;
+        }
+        index.remove(id);
+        int row = rowOf(shown(old));
+        if (row >= 0){
+            flushAppendedRows();
+            viewRows.remove(row);
+            fireTableRowsDeleted(row, row);
+        }
+    }
+
+    //This method inserts, repaints, moves or removes the view row of a task to match the filters and the sort order.
+    //The old version of the task finds its row by binary search and the new version finds where it belongs.
+    //Rows appended at the end while loading are announced together by flushAppendedRows.
+    private void syncRow(Task old, Task t){
+        int row = old == null ? -1 : rowOf(shown(old));
+        boolean matches = matchesFilters(t);
+        t = shown(t);
+        if (row >= 0){
+            flushAppendedRows();
+            if (matches && staysAt(row, t)){
+                viewRows.set(row, newRow(t));
+                fireTableRowsUpdated(row, row);
+                return;
+            }
+            viewRows.remove(row);
+            fireTableRowsDeleted(row, row);
+        }
+        if (matches){
+            int insertAt = -rowOf(t) - 1;
+            if (loading && insertAt == viewRows.size()){
+                if (appendedFrom < 0){
+                    appendedFrom = insertAt;
+                }
+                viewRows.add(newRow(t));
+                return;
+            }
+            flushAppendedRows();
+            viewRows.add(insertAt, newRow(t));
+            fireTableRowsInserted(insertAt, insertAt);
+        }
+    }
+
+    //This method returns whether a changed task still sorts between the neighbours of its row.
+    private boolean staysAt(int row, Task t){
+        return (row == 0 || order.compare(viewRows.get(row - 1).task, t) < 0)
+            && (row == viewRows.size() - 1 || order.compare(t, viewRows.get(row + 1).task) < 0);
+    }
+
+    //This method fires one insert event for rows appended since the last flush.
+    private void flushAppendedRows(){
+        if (appendedFrom >= 0){
+            int from = appendedFrom;
+            appendedFrom = -1;
+            fireTableRowsInserted(from, viewRows.size() - 1);
+        }
+    }
+
+    //This method builds the display row of a task, naming how often a repeating task repeats after its date.
+    private Row newRow(Task t){
+        String due = dateLabel(t.getDueDate());
+        if (t.isRecurring()){
+            due += " (" + t.getRecurrence().getFrequency().name().toLowerCase(Locale.ROOT) + ")";
+        }
+        return new Row(t, due, dueState(t.getDueDate()));
+    }
+
+    //This method returns the task as the view shows it: a repeating task becomes its earliest occurrence not yet
+    //done. The copy comes out the same until the series is changed, so it finds its row again too.
+    private Task shown(Task t){
+        if (!t.isRecurring()){
+            return t;
+        }
+        LocalDate due = t.nextDue();
+        return due.equals(t.getDueDate()) ? t : t.occurrence(due);
+    }
+
+    //This method returns whether a row shows a task, which for a repeating task may be an equal occurrence copy.
+    private static boolean shows(Row row, Task t){
+        return row.task == t || (t.isRecurring() && row.task.equals(t));
+    }
+
+    //This method classifies a due date against the day the view was last filtered for.
+    private DueState dueState(LocalDate d){
+        if (d == null){
+            return DueState.NONE;
+        }
+        int cmp = d.compareTo(today);
+        return cmp < 0 ? DueState.OVERDUE : cmp == 0 ? DueState.TODAY : DueState.UPCOMING;
+    }
+
+    //This method returns the formatted due date, shared by every row with the same date.
+    private String dateLabel(LocalDate d){
+        return d == null ? "" : dateLabels.computeIfAbsent(d, DTF::format);
+    }
+
+    //This method returns the priority of a view row for renderers.
+    public Priority getPriorityAt(int viewRow){
+        return rowAt(viewRow).task.getPriority();
+    }
+
+    //This method returns how the due date of a view row relates to today, worked out when the row was built.
+    public DueState getDueStateAt(int viewRow){
+        return rowAt(viewRow).dueState;
+    }
+
+    //This method returns the stored task behind an index in the view, which for a repeating task is the whole series.
     public Task getTaskAt(int viewRow){
-        return viewTasks.get(viewRow);
+        Task t = rowAt(viewRow).task;
+        if (store != null && t.isRecurring()){
+            try{
+                return store.get(t.getId());
+            } catch (IOException e){
+                throw new UncheckedIOException(e);
+            }
+        }
+        return t.isRecurring() ? index.get(t.getId()) : t;
+    }
+
+    //This method returns the view row of a task or -1 when it is not shown.
+    public int indexOfTask(Task t){
+        if (store != null){
+            try{
+                return loading ? -1 : storedRowOf(t);
+            } catch (IOException e){
+                throw new UncheckedIOException(e);
+            }
+        }
+        int row = rowOf(shown(t));
+        return row >= 0 ? row : -1;
+    }
+
+    //This method binary searches the view in sort order for a task and returns its row or minus the insertion point minus one.
+    private int rowOf(Task t){
+        int lo = 0;
+        int hi = viewRows.size() - 1;
+        while (lo <= hi){
+            int mid = (lo + hi) >>> 1;
+            int cmp = order.compare(viewRows.get(mid).task, t);
+            if (cmp < 0){
+                lo = mid + 1;
+            } else if (cmp > 0){
+                hi = mid - 1;
+            } else{
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    //This method returns the sort column of a table column.
+    public static TaskOrder.Column sortColumnOf(int column){
+        return TaskOrder.Column.values()[column];
+    }
+
+    //This method returns the order rows are shown in.
+    public TaskOrder getSortOrder(){
+        return orderAfterLoad != null ? orderAfterLoad : order;
+    }
+
+    //This method shows the rows in another order.
+    //The view is regrouped from the keys the index keeps sorted rather than sorted with comparisons.
+    //While loading, rows keep arriving in id order so they can be appended, and the new order is applied once loading ends.
+    public void setSortOrder(TaskOrder next){
+        next = next == null ? TaskOrder.BY_ID : next;
+        if (store != null){
+            next = storeView.supportedOrder(next);
+        }
+        if (loading){
+            orderAfterLoad = next;
+            return;
+        }
+        if (sameKeys(order, next)){
+            return;
+        }
+        order = next;
+        if (store != null){
+            refreshStore();
+            fireTableDataChanged();
+            return;
+        }
+        flushAppendedRows();
+        List<Task> tasks = order.arrange(queryFilters(), index);
+        List<Row> rows = new ArrayList<>(tasks.size());
+        for (Task t : tasks){
+            rows.add(newRow(t));
+        }
+        viewRows.clear();
+        viewRows.addAll(rows);
+        fireTableDataChanged();
     }
 
     //This method sets the priority filter and reapplies filters.
@@ -137,34 +854,189 @@ public class TaskTableModel extends AbstractTableModel{
         applyFilters();
     }
 
-    //This method filters all tasks into the view list based on current filters.
+    //This method sets the search text that descriptions must match word by word and reapplies filters.
+    public void setSearchText(String text){
+        String[] terms = TaskTextIndex.parseQuery(text);
+        if (!Arrays.equals(terms, filterTerms)){
+            this.filterTerms = terms;
+            applyFilters();
+        }
+    }
+
+    //This method brings the view up to the current day when the date has changed since it was last shown.
+    public void rollOver(){
+        rollOverTo(LocalDate.now());
+    }
+
+    //This method moves the view to another day by rebuilding only the rows whose date bucket changed.
+    //Tasks and open occurrences of series due between the old and the new day change between upcoming, today and
+    //overdue; every other row looks the same on both days and is left alone, as a series only moves when it is advanced.
+    private void rollOverTo(LocalDate day){
+        if (day.equals(today)){
+            return;
+        }
+        if (store != null){
+            today = day;
+            if (!loading){
+                refreshStore();
+                fireTableDataChanged();
+            }
+            return;
+        }
+        flushAppendedRows();
+        LocalDate before = today;
+        LocalDate lo = before.isBefore(day) ? before : day;
+        LocalDate hi = before.isBefore(day) ? day : before;
+        List<Task> changed = index.dueBetween(lo, hi);
+        boolean bulk = changed.size() > MAX_ROW_EVENTS;
+        today = day;
+        for (Task t : changed){
+            Task s = shown(t);
+            int row = rowOf(s);
+            boolean matches = matchesFilters(t);
+            if (row >= 0 && matches){
+                viewRows.set(row, newRow(s));
+                if (!bulk){
+                    fireTableRowsUpdated(row, row);
+                }
+            } else if (row >= 0){
+                viewRows.remove(row);
+                if (!bulk){
+                    fireTableRowsDeleted(row, row);
+                }
+            } else if (matches){
+                insertRow(-row - 1, s, bulk);
+            }
+        }
+        if (bulk){
+            fireTableDataChanged();
+        }
+        if (filterDate == DateFilter.THIS_WEEK && !DateFilter.weekStart(before).equals(DateFilter.weekStart(day))){
+            updateView(order.arrange(queryFilters(), index));
+        }
+    }
+
+    //This method inserts the row of a task, announcing it unless the caller fires one event for everything.
+    private void insertRow(int at, Task t, boolean quiet){
+        viewRows.add(at, newRow(t));
+        if (!quiet){
+            fireTableRowsInserted(at, at);
+        }
+    }
+
+    //This method fills the view list from the indexes based on current filters.
     private void applyFilters(){
-        List<Task> filtered = allTasks.stream().filter(t ->{
-            boolean okPriority = filterPriority == null || t.getPriority() == filterPriority;
-            boolean okDate = matchesDateFilter(t.getDueDate(), filterDate);
-            return okPriority && okDate;
-        }).collect(Collectors.toList());
-        viewTasks.clear();
-        viewTasks.addAll(filtered);
-        fireTableDataChanged();
+        TaskFilterEvent event = new TaskFilterEvent();
+        event.begin();
+        long start = System.nanoTime();
+        if (store != null){
+            if (loading){
+                return;
+            }
+            today = LocalDate.now();
+            refreshStore();
+            fireTableDataChanged();
+            Metrics.FILTER.record(System.nanoTime() - start, store.size(), storeView.size());
+            event.inputSize = store.size();
+            event.outputSize = storeView.size();
+            event.commit();
+            return;
+        }
+        rollOverTo(LocalDate.now());
+        List<Task> next = order.arrange(queryFilters(), index);
+        updateView(next);
+        Metrics.FILTER.record(System.nanoTime() - start, index.size(), next.size());
+        event.inputSize = index.size();
+        event.outputSize = next.size();
+        event.commit();
     }
 
-    //This method returns whether a date matches the date filter.
-    private boolean matchesDateFilter(LocalDate d, DateFilter f){
-        if (f == DateFilter.ALL) return true;
-        if (d == null) return false;
-        LocalDate today = LocalDate.now();
-        switch (f){
-            case TODAY:
-                return d.isEqual(today);
-            case THIS_WEEK:
-                LocalDate start = today.minusDays(today.getDayOfWeek().getValue() - 1);
-                LocalDate end = start.plusDays(6);
-                return (d.isEqual(start) || d.isAfter(start)) && (d.isEqual(end) || d.isBefore(end));
-            case OVERDUE:
-                return d.isBefore(today);
-            default:
-                return true;
+    //This method returns the tasks that pass the current filters in id order, with repeating tasks as shown.
+    private List<Task> queryFilters(){
+        List<Task> tasks = index.query(filterPriority, filterDate.from(today), filterDate.to(today), filterTerms);
+        for (int i = 0; i < tasks.size(); i++){
+            if (tasks.get(i).isRecurring()){
+                tasks.set(i, shown(tasks.get(i)));
+            }
         }
+        return tasks;
+    }
+
+    //This method turns the current view into the new one in place and fires an event per changed run of rows.
+    //Rows that stay keep their display strings and only tasks entering the view get a new row.
+    private void updateView(List<Task> next){
+        flushAppendedRows();
+        int i = 0;
+        int j = 0;
+        int events = 0;
+        while (i < viewRows.size() || j < next.size()){
+            if (i < viewRows.size() && j < next.size() && shows(viewRows.get(i), next.get(j))){
+                i++;
+                j++;
+                continue;
+            }
+            if (++events > MAX_ROW_EVENTS){
+                replaceView(next);
+                fireTableDataChanged();
+                return;
+            }
+            if (j >= next.size() || (i < viewRows.size() && order.compare(viewRows.get(i).task, next.get(j)) < 0)){
+                int end = i + 1;
+                while (end < viewRows.size() && (j >= next.size() || order.compare(viewRows.get(end).task, next.get(j)) < 0)){
+                    end++;
+                }
+                viewRows.subList(i, end).clear();
+                fireTableRowsDeleted(i, end - 1);
+            } else{
+                int from = j;
+                j++;
+                while (j < next.size() && (i >= viewRows.size() || order.compare(next.get(j), viewRows.get(i).task) < 0)){
+                    j++;
+                }
+                List<Row> inserted = new ArrayList<>(j - from);
+                for (Task t : next.subList(from, j)){
+                    inserted.add(newRow(t));
+                }
+                viewRows.addAll(i, inserted);
+                fireTableRowsInserted(i, i + (j - from) - 1);
+                i += j - from;
+            }
+        }
+    }
+
+    //This method swaps in a whole new view and reuses the rows of tasks that were already shown.
+    //Both lists are in view order so one pass over each finds the rows to keep.
+    private void replaceView(List<Task> next){
+        List<Row> rows = new ArrayList<>(next.size());
+        int i = 0;
+        for (Task t : next){
+            while (i < viewRows.size() && order.compare(viewRows.get(i).task, t) < 0){
+                i++;
+            }
+            rows.add(i < viewRows.size() && shows(viewRows.get(i), t) ? viewRows.get(i) : newRow(t));
+        }
+        viewRows.clear();
+        viewRows.addAll(rows);
+    }
+
+    //This method returns whether two orders sort by the same keys in the same directions.
+    private static boolean sameKeys(TaskOrder a, TaskOrder b){
+        if (a.getKeys().size() != b.getKeys().size()){
+            return false;
+        }
+        for (int i = 0; i < a.getKeys().size(); i++){
+            TaskOrder.Key x = a.getKeys().get(i);
+            TaskOrder.Key y = b.getKeys().get(i);
+            if (x.getColumn() != y.getColumn() || x.isAscending() != y.isAscending()){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //This method returns whether a single task passes the current filters.
+    private boolean matchesFilters(Task t){
+        return (filterPriority == null || t.getPriority() == filterPriority) && filterDate.matches(t.nextDue(), today)
+            && TaskTextIndex.matches(t.getDescription(), filterTerms);
     }
 }
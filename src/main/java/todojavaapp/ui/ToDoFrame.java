@@ -1,32 +1,60 @@
 //This file defines the main window of the to do application.
 package todojavaapp.ui;
 
+import todojavaapp.model.DateFilter;
 import todojavaapp.model.Priority;
 import todojavaapp.model.Task;
-import todojavaapp.ui.TaskTableModel.DateFilter;
+import todojavaapp.model.TaskOrder;
+import todojavaapp.storage.TaskListCatalog;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.event.ListSelectionEvent;
-import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.JTableHeader;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
 
 //This class builds the main frame containing table filters and colored action buttons.
 public class ToDoFrame extends JFrame{
-    private final TaskTableModel model = new TaskTableModel();
-    private final JTable table = new JTable(model);
+    private final TaskListCache lists = new TaskListCache(new TaskListCatalog());
+    private TaskTableModel model = lists.show(TaskListCatalog.DEFAULT_LIST);
+    private final JTable table = new TaskTable(model);
+
+    private final JComboBox<String> listSwitcher = new JComboBox<>();
+    private final JButton newListBtn = new JButton("New List");
 
     private final JComboBox<String> priorityFilter = new JComboBox<>(new String[]{"All", "High", "Medium", "Low"});
     private final JComboBox<DateFilter> dateFilter = new JComboBox<>(DateFilter.values());
+    private final JTextField searchField = new JTextField();
 
     private final JButton addBtn = new JButton("Add Task");
     private final JButton editBtn = new JButton("Edit Task");
     private final JButton deleteBtn = new JButton("Delete Task");
+    private final JButton doneBtn = new JButton("Mark Done");
+    private final JButton undoBtn = new JButton("Undo");
+    private final JButton redoBtn = new JButton("Redo");
+
+    private final JProgressBar loadProgress = new JProgressBar();
+    private final JLabel loadStatus = new JLabel("Loading tasks...");
+    private boolean closeRequested;
+    private boolean saveErrorShown;
+    private DiagnosticsDialog diagnostics;
+
+    private static final int MAX_REMINDER_LINES = 10;
 
     //This constructor lays out the components and wires event handlers.
     public ToDoFrame(){
         super("ToDo Java App: Made by Mridankan Mandal");
-        setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
+        setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
         setLayout(new BorderLayout(12, 12));
 
         JPanel mainPanel = new JPanel(new BorderLayout(12, 12));
@@ -44,6 +72,8 @@ public class ToDoFrame extends JFrame{
         table.setSelectionForeground(Color.WHITE);
 
         alignColumns();
+        //Keep the configured columns when another list's model is swapped in.
+        table.setAutoCreateColumnsFromModel(false);
 
         JTableHeader header = table.getTableHeader();
         header.setFont(new Font("Segoe UI", Font.BOLD, 15));
@@ -52,19 +82,8 @@ public class ToDoFrame extends JFrame{
         header.setPreferredSize(new Dimension(header.getPreferredSize().width, 38));
         header.setReorderingAllowed(false);
         header.setOpaque(true);
-        header.setDefaultRenderer(new DefaultTableCellRenderer(){
-            @Override
-            public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column){
-                JLabel label = new JLabel(value != null ? value.toString() : "");
-                label.setFont(new Font("Segoe UI", Font.BOLD, 15));
-                label.setBackground(new Color(70, 130, 180));
-                label.setForeground(Color.WHITE);
-                label.setOpaque(true);
-                label.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
-                label.setHorizontalAlignment(SwingConstants.CENTER);
-                return label;
-            }
-        });
+        header.setDefaultRenderer(new TaskHeaderRenderer());
+        header.setToolTipText("Click to sort, click again to reverse or clear; the column clicked before breaks ties");
 
         JScrollPane scrollPane = new JScrollPane(table);
         scrollPane.setBorder(BorderFactory.createLineBorder(new Color(200, 200, 210), 1));
@@ -85,22 +104,67 @@ public class ToDoFrame extends JFrame{
         dateFilter.setFont(new Font("Segoe UI", Font.PLAIN, 13));
         dateFilter.setPreferredSize(new Dimension(140, 30));
         filters.add(dateFilter);
+        filters.add(Box.createHorizontalStrut(20));
+        JLabel searchLabel = new JLabel("Search:");
+        searchLabel.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        filters.add(searchLabel);
+        searchField.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        searchField.setPreferredSize(new Dimension(200, 30));
+        searchField.setToolTipText("Show tasks whose description has words starting with every term typed");
+        filters.add(searchField);
+
+        JPanel listBar = new JPanel(new FlowLayout(FlowLayout.LEFT, 12, 0));
+        listBar.setBackground(new Color(245, 245, 250));
+        JLabel listLabel = new JLabel("List:");
+        listLabel.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        listBar.add(listLabel);
+        listSwitcher.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        listSwitcher.setPreferredSize(new Dimension(200, 30));
+        listSwitcher.setToolTipText("Each list is stored in its own file and loaded when first shown");
+        listBar.add(listSwitcher);
+        newListBtn.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        newListBtn.setFocusPainted(false);
+        listBar.add(newListBtn);
+
+        JPanel top = new JPanel(new BorderLayout());
+        top.setBackground(new Color(245, 245, 250));
+        top.add(listBar, BorderLayout.NORTH);
+        top.add(filters, BorderLayout.CENTER);
 
         JPanel actions = new JPanel(new FlowLayout(FlowLayout.RIGHT, 12, 10));
         actions.setBackground(new Color(245, 245, 250));
         styleButtons();
+        actions.add(undoBtn);
+        actions.add(redoBtn);
         actions.add(addBtn);
         actions.add(editBtn);
         actions.add(deleteBtn);
+        actions.add(doneBtn);
+
+        JPanel status = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 16));
+        status.setBackground(new Color(245, 245, 250));
+        loadStatus.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        loadProgress.setIndeterminate(true);
+        loadProgress.setPreferredSize(new Dimension(140, 14));
+        status.add(loadProgress);
+        status.add(loadStatus);
+
+        JPanel bottom = new JPanel(new BorderLayout());
+        bottom.setBackground(new Color(245, 245, 250));
+        bottom.add(status, BorderLayout.WEST);
+        bottom.add(actions, BorderLayout.EAST);
 
-        mainPanel.add(filters, BorderLayout.NORTH);
+        mainPanel.add(top, BorderLayout.NORTH);
         mainPanel.add(scrollPane, BorderLayout.CENTER);
-        mainPanel.add(actions, BorderLayout.SOUTH);
+        mainPanel.add(bottom, BorderLayout.SOUTH);
 
         add(mainPanel);
 
         hookEvents();
-        setSize(900, 600);
+        lists.setErrorHandler(this::onSaveFailed);
+        fillListSwitcher();
+        startLoading(TaskListCatalog.DEFAULT_LIST, model);
+        setSize(1000, 640);
         setLocationRelativeTo(null);
     }
 
@@ -112,18 +176,13 @@ public class ToDoFrame extends JFrame{
         paintButton(addBtn, new Color(46, 204, 113), Color.WHITE, btnFont, btnSize);
         paintButton(editBtn, new Color(52, 152, 219), Color.WHITE, btnFont, btnSize);
         paintButton(deleteBtn, new Color(231, 76, 60), Color.WHITE, btnFont, btnSize);
+        paintButton(doneBtn, new Color(155, 89, 182), Color.WHITE, btnFont, btnSize);
+        paintButton(undoBtn, new Color(127, 140, 141), Color.WHITE, btnFont, new Dimension(90, 38));
+        paintButton(redoBtn, new Color(127, 140, 141), Color.WHITE, btnFont, new Dimension(90, 38));
 
-        DefaultTableCellRenderer centerRenderer = new DefaultTableCellRenderer();
-        centerRenderer.setHorizontalAlignment(SwingConstants.CENTER);
-        centerRenderer.setFont(new Font("Segoe UI", Font.PLAIN, 14));
-
-        DefaultTableCellRenderer leftRenderer = new DefaultTableCellRenderer();
-        leftRenderer.setHorizontalAlignment(SwingConstants.LEFT);
-        leftRenderer.setFont(new Font("Segoe UI", Font.PLAIN, 14));
-
-        table.getColumnModel().getColumn(0).setCellRenderer(leftRenderer);
-        table.getColumnModel().getColumn(1).setCellRenderer(centerRenderer);
-        table.getColumnModel().getColumn(2).setCellRenderer(centerRenderer);
+        table.getColumnModel().getColumn(0).setCellRenderer(new TaskCellRenderer(0, SwingConstants.LEFT));
+        table.getColumnModel().getColumn(1).setCellRenderer(new TaskCellRenderer(1, SwingConstants.CENTER));
+        table.getColumnModel().getColumn(2).setCellRenderer(new TaskCellRenderer(2, SwingConstants.CENTER));
     }
 
     //This method sets background and text color with cross Look and Feel hints.
@@ -147,15 +206,115 @@ public class ToDoFrame extends JFrame{
 
     //This method attaches listeners for filters selection and button clicks.
     private void hookEvents(){
+        listSwitcher.addActionListener(e -> onSwitchList());
+        newListBtn.addActionListener(e -> onNewList());
         priorityFilter.addActionListener(e -> onPriorityFilter());
         dateFilter.addActionListener(e -> onDateFilter());
+        searchField.getDocument().addDocumentListener(new DocumentListener(){
+            @Override
+            public void insertUpdate(DocumentEvent e){
+                onSearch();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e){
+                onSearch();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e){
+                onSearch();
+            }
+        });
         addBtn.addActionListener(e -> onAdd());
         editBtn.addActionListener(e -> onEdit());
         deleteBtn.addActionListener(e -> onDelete());
+        doneBtn.addActionListener(e -> onDone());
+        undoBtn.addActionListener(e -> onUndo());
+        redoBtn.addActionListener(e -> onRedo());
+        bindKey(KeyStroke.getKeyStroke(KeyEvent.VK_Z, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()), "undo", this::onUndo);
+        bindKey(KeyStroke.getKeyStroke(KeyEvent.VK_Y, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()), "redo", this::onRedo);
+        bindKey(KeyStroke.getKeyStroke(KeyEvent.VK_D, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx() | KeyEvent.SHIFT_DOWN_MASK), "diagnostics", this::onDiagnostics);
 
+        table.getTableHeader().addMouseListener(new MouseAdapter(){
+            @Override
+            public void mouseClicked(MouseEvent e){
+                int column = table.columnAtPoint(e.getPoint());
+                if (column >= 0 && SwingUtilities.isLeftMouseButton(e)){
+                    onSort(table.convertColumnIndexToModel(column));
+                }
+            }
+        });
         table.getSelectionModel().addListSelectionListener(this::onSelectionChanged);
+        addWindowListener(new WindowAdapter(){
+            @Override
+            public void windowClosing(WindowEvent e){
+                onClose();
+            }
+
+            //The scheduler's midnight wakeup can be late after the computer sleeps, so coming back also checks the day.
+            @Override
+            public void windowActivated(WindowEvent e){
+                model.rollOver();
+            }
+        });
         editBtn.setEnabled(false);
         deleteBtn.setEnabled(false);
+        doneBtn.setEnabled(false);
+        updateUndoButtons();
+    }
+
+    //This method runs an action for a key pressed anywhere in the window.
+    private void bindKey(KeyStroke key, String name, Runnable action){
+        JComponent root = getRootPane();
+        root.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(key, name);
+        root.getActionMap().put(name, new AbstractAction(){
+            @Override
+            public void actionPerformed(ActionEvent e){
+                action.run();
+            }
+        });
+    }
+
+    //This method enables the undo and redo buttons and names the step they would take.
+    private void updateUndoButtons(){
+        undoBtn.setEnabled(model.canUndo());
+        redoBtn.setEnabled(model.canRedo());
+        undoBtn.setToolTipText(model.getUndoName());
+        redoBtn.setToolTipText(model.getRedoName());
+    }
+
+    //This method reverts the latest change in the shown list and selects the task it brought back.
+    private void onUndo(){
+        if (model.canUndo()){
+            selectTask(model.undo());
+        }
+        updateUndoButtons();
+    }
+
+    //This method applies the latest undone change again and selects the task it brought back.
+    private void onRedo(){
+        if (model.canRedo()){
+            selectTask(model.redo());
+        }
+        updateUndoButtons();
+    }
+
+    //This method shows the diagnostics window, or hides it when it is already shown.
+    private void onDiagnostics(){
+        if (diagnostics == null){
+            diagnostics = new DiagnosticsDialog(this);
+        }
+        diagnostics.setVisible(!diagnostics.isVisible());
+    }
+
+    //This method selects and scrolls to a task when it is shown.
+    private void selectTask(Task task){
+        int row = task == null ? -1 : model.indexOfTask(task);
+        if (row >= 0){
+            table.setRowSelectionInterval(row, row);
+            table.scrollRectToVisible(table.getCellRect(row, 0, true));
+        }
     }
 
     //This method updates enabled state based on selection.
@@ -163,23 +322,213 @@ public class ToDoFrame extends JFrame{
         boolean hasSel = table.getSelectedRow() >= 0;
         editBtn.setEnabled(hasSel);
         deleteBtn.setEnabled(hasSel);
+        doneBtn.setEnabled(hasSel);
+    }
+
+    //This method tells the user that a background save did not reach the disk or the files reported another problem.
+    //Saves are retried while the message is open, so failures of the retries do not stack more messages on it.
+    private void onSaveFailed(IOException e){
+        if (saveErrorShown){
+            return;
+        }
+        saveErrorShown = true;
+        try{
+            JOptionPane.showMessageDialog(this,
+                "There was a problem with the task files:\n" + e.getMessage() + "\nA failed save is retried in the background, less often after each failure, and when you close the window.",
+                "Task File Error",
+                JOptionPane.ERROR_MESSAGE);
+        } finally{
+            saveErrorShown = false;
+        }
+    }
+
+    //This method shows the tasks of a list due on a day in a window that does not block the main one.
+    private void onReminder(String listName, LocalDate day, List<Task> due){
+        StringBuilder text = new StringBuilder();
+        text.append(due.size() == 1 ? "1 task" : due.size() + " tasks").append(" in ").append(listName)
+            .append(day.equals(LocalDate.now()) ? " due today:" : " due on " + day + ":");
+        for (int i = 0; i < Math.min(due.size(), MAX_REMINDER_LINES); i++){
+            text.append("\n- ").append(due.get(i).getDescription());
+        }
+        if (due.size() > MAX_REMINDER_LINES){
+            text.append("\n...and ").append(due.size() - MAX_REMINDER_LINES).append(" more.");
+        }
+        JDialog dialog = new JOptionPane(text.toString(), JOptionPane.INFORMATION_MESSAGE).createDialog(this, "Reminder");
+        dialog.setModal(false);
+        dialog.setVisible(true);
+    }
+
+    //This method fills the list switcher with the lists found on disk without loading any of them.
+    private void fillListSwitcher(){
+        List<String> names;
+        try{
+            names = lists.getCatalog().listNames();
+        } catch (IOException e){
+            JOptionPane.showMessageDialog(this, "The task lists could not be listed:\n" + e.getMessage(), "Load Error", JOptionPane.ERROR_MESSAGE);
+            names = List.of(TaskListCatalog.DEFAULT_LIST);
+        }
+        for (String name : names){
+            listSwitcher.addItem(name);
+        }
+        listSwitcher.setSelectedItem(TaskListCatalog.DEFAULT_LIST);
+    }
+
+    //This method shows the list picked in the switcher and loads it the first time it is shown.
+    private void onSwitchList(){
+        String name = (String) listSwitcher.getSelectedItem();
+        if (name == null){
+            return;
+        }
+        boolean loaded = lists.isOpen(name);
+        TaskTableModel next = lists.show(name);
+        if (next == model){
+            return;
+        }
+        TaskOrder sort = model.getSortOrder();
+        model = next;
+        table.setModel(model);
+        model.setSortOrder(sort);
+        model.setPriorityFilter(selectedPriority());
+        model.setDateFilter((DateFilter) dateFilter.getSelectedItem());
+        model.setSearchText(searchField.getText());
+        if (!loaded){
+            startLoading(name, model);
+        }
+        showLoading(model.isLoading());
+        updateUndoButtons();
+    }
+
+    //This method asks for a name, creates an empty list under it and switches to it.
+    private void onNewList(){
+        String name = JOptionPane.showInputDialog(this, "Name of the new list:", "New List", JOptionPane.PLAIN_MESSAGE);
+        if (name == null){
+            return;
+        }
+        try{
+            String checked = TaskListCatalog.checkName(name);
+            //The list is opened again when it is shown, so its new file is released here.
+            lists.getCatalog().create(checked).close();
+            listSwitcher.addItem(checked);
+            listSwitcher.setSelectedItem(checked);
+        } catch (IllegalArgumentException e){
+            JOptionPane.showMessageDialog(this, e.getMessage(), "Invalid Name", JOptionPane.ERROR_MESSAGE);
+        } catch (IOException e){
+            JOptionPane.showMessageDialog(this, "The list could not be created:\n" + e.getMessage(), "Save Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    //This method loads a list in the background while the window is already usable.
+    private void startLoading(String name, TaskTableModel listModel){
+        listModel.setSaveErrorHandler(this::onSaveFailed);
+        listModel.setReminderHandler((day, due) -> onReminder(name, day, due));
+        showLoading(true);
+        loadStatus.setText("Loading tasks...");
+        listModel.load(new TaskTableModel.LoadListener(){
+            @Override
+            public void loadProgress(int tasksLoaded){
+                if (listModel == model){
+                    loadStatus.setText("Loading tasks... " + tasksLoaded);
+                }
+            }
+
+            @Override
+            public void loadFinished(IOException error){
+                onLoadFinished(name, listModel, error);
+            }
+        });
+    }
+
+    //This method shows or hides the loading indicator.
+    private void showLoading(boolean visible){
+        loadProgress.setVisible(visible);
+        loadStatus.setVisible(visible);
+    }
+
+    //This method hides the loading indicator of the shown list and reports a failed load.
+    private void onLoadFinished(String name, TaskTableModel listModel, IOException error){
+        if (listModel == model){
+            showLoading(false);
+            table.getTableHeader().repaint();
+        }
+        if (closeRequested){
+            onClose();
+            return;
+        }
+        if (error != null){
+            JOptionPane.showMessageDialog(this,
+                "The tasks of \"" + name + "\" could not be loaded:\n" + error.getMessage(),
+                "Load Error",
+                JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    //This method flushes pending saves of every open list before exiting and asks first if they cannot be written.
+    //A close while tasks are loading hides the window and exits once edits made so far are queued.
+    private void onClose(){
+        if (lists.isLoading()){
+            closeRequested = true;
+            setVisible(false);
+            return;
+        }
+        try{
+            lists.flush();
+        } catch (IOException e){
+            String msg = "Your latest changes could not be saved:\n" + e.getMessage() + "\n\nExit anyway and lose them?";
+            int ans = JOptionPane.showConfirmDialog(this, msg, "Save Error", JOptionPane.YES_NO_OPTION, JOptionPane.ERROR_MESSAGE);
+            if (ans != JOptionPane.YES_OPTION){
+                return;
+            }
+        }
+        dispose();
+        System.exit(0);
+    }
+
+    //This method sorts by a column, keeping the previous sort columns as tie breakers.
+    private void onSort(int column){
+        TaskOrder next = model.getSortOrder().toggle(TaskTableModel.sortColumnOf(column));
+        keepSelection(() -> model.setSortOrder(next));
+        table.getTableHeader().repaint();
     }
 
     //This method applies priority filter to the model.
     private void onPriorityFilter(){
-        int idx = priorityFilter.getSelectedIndex();
-        switch (idx){
-            case 1: model.setPriorityFilter(Priority.HIGH); break;
-            case 2: model.setPriorityFilter(Priority.MEDIUM); break;
-            case 3: model.setPriorityFilter(Priority.LOW); break;
-            default: model.setPriorityFilter(null); break;
+        Priority p = selectedPriority();
+        keepSelection(() -> model.setPriorityFilter(p));
+    }
+
+    //This method returns the priority picked in the filter or null for all.
+    private Priority selectedPriority(){
+        switch (priorityFilter.getSelectedIndex()){
+            case 1: return Priority.HIGH;
+            case 2: return Priority.MEDIUM;
+            case 3: return Priority.LOW;
+            default: return null;
         }
     }
 
     //This method applies date filter to the model.
     private void onDateFilter(){
         DateFilter d = (DateFilter) dateFilter.getSelectedItem();
-        model.setDateFilter(d);
+        keepSelection(() -> model.setDateFilter(d));
+    }
+
+    //This method applies the search text to the model as it is typed.
+    private void onSearch(){
+        String text = searchField.getText();
+        keepSelection(() -> model.setSearchText(text));
+    }
+
+    //This method reselects the selected task after a view change if it is still shown.
+    private void keepSelection(Runnable change){
+        int row = table.getSelectedRow();
+        Task selected = row >= 0 ? model.getTaskAt(row) : null;
+        change.run();
+        if (selected != null && table.getSelectedRow() < 0){
+            int newRow = model.indexOfTask(selected);
+            if (newRow >= 0){
+                table.setRowSelectionInterval(newRow, newRow);
+            }
+        }
     }
 
     //This method opens a dialog to add a task and saves it when valid.
@@ -189,23 +538,27 @@ public class ToDoFrame extends JFrame{
         Task t = dlg.getResult();
         if (t != null){
             model.addTask(t);
+            updateUndoButtons();
         }
     }
 
     //This method opens a dialog to edit the selected task and saves it when valid.
+    //The task is kept by id, as its row may move or go while the dialog is open.
     private void onEdit(){
         int row = table.getSelectedRow();
         if (row < 0) return;
         Task current = model.getTaskAt(row);
+        long id = current.getId();
         TaskDialog dlg = new TaskDialog(this, "Edit Task", current);
         dlg.setVisible(true);
         Task updated = dlg.getResult();
         if (updated != null){
-            model.updateTask(row, updated);
+            model.updateTaskWithId(id, updated);
+            updateUndoButtons();
         }
     }
 
-    //This method deletes the selected task after confirmation.
+    //This method deletes the selected task after confirmation, by id as its row may move while the dialog is open.
     private void onDelete(){
         int row = table.getSelectedRow();
         if (row < 0) return;
@@ -213,7 +566,18 @@ public class ToDoFrame extends JFrame{
         String msg = String.format("Delete task:\n\"%s\"?", task.getDescription());
         int ans = JOptionPane.showConfirmDialog(this, msg, "Confirm Delete", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
         if (ans == JOptionPane.YES_OPTION){
-            model.removeTask(row);
+            model.removeTaskWithId(task.getId());
+            updateUndoButtons();
         }
     }
+
+    //This method marks the selected task done: a repeating task moves on to its next occurrence and stays selected,
+    //and a task that happens once or the last occurrence of a series goes, as delete would take it without asking.
+    private void onDone(){
+        int row = table.getSelectedRow();
+        if (row < 0) return;
+        Task next = model.completeTaskWithId(model.getTaskAt(row).getId());
+        selectTask(next);
+        updateUndoButtons();
+    }
 }
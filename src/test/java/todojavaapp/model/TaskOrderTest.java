@@ -0,0 +1,134 @@
+//This file tests that sorting by several columns is stable and that arranging agrees with comparing.
+package todojavaapp.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+//This class sorts tasks full of equal keys by every order of up to three columns and checks ties fall back to the id.
+class TaskOrderTest{
+    private static final String[] TEXTS = {"alpha", "Alpha", "beta", "", "BETA", "gamma"};
+
+    //This test arranges tasks by every order of one to three columns in both directions and checks the result is
+    //what comparing every pair gives.
+    @Test
+    void arrangeAgreesWithCompareForEveryOrder(){
+        TaskIndex index = new TaskIndex();
+        Random random = new Random(42);
+        for (long id = 1; id <= 400; id++){
+            index.add(randomTask(id, random));
+        }
+        List<Task> byId = index.query(null, null, null);
+        for (TaskOrder order : everyOrder()){
+            List<Task> expected = new ArrayList<>(byId);
+            expected.sort(order);
+            assertEquals(ids(expected), ids(order.arrange(byId, index)), () -> describe(order));
+        }
+    }
+
+    //This test sorts by priority and then due date and checks tasks equal on both stay in id order in both directions.
+    @Test
+    void tiesKeepIdOrder(){
+        TaskIndex index = new TaskIndex();
+        LocalDate day = LocalDate.of(2026, 5, 1);
+        index.add(new Task(4, "d", Priority.HIGH, day));
+        index.add(new Task(1, "a", Priority.LOW, null));
+        index.add(new Task(3, "c", Priority.HIGH, day));
+        index.add(new Task(2, "b", Priority.HIGH, day.plusDays(1)));
+        index.add(new Task(5, "e", Priority.LOW, null));
+        List<Task> byId = index.query(null, null, null);
+
+        TaskOrder up = new TaskOrder(List.of(new TaskOrder.Key(TaskOrder.Column.PRIORITY, true), new TaskOrder.Key(TaskOrder.Column.DUE_DATE, true)));
+        assertEquals(List.of(3L, 4L, 2L, 1L, 5L), ids(up.arrange(byId, index)));
+        TaskOrder down = new TaskOrder(List.of(new TaskOrder.Key(TaskOrder.Column.PRIORITY, false), new TaskOrder.Key(TaskOrder.Column.DUE_DATE, false)));
+        assertEquals(List.of(1L, 5L, 2L, 3L, 4L), ids(down.arrange(byId, index)));
+    }
+
+    //This test clicks headers and checks a new column leads, the earlier ones break its ties and a third click drops it.
+    @Test
+    void toggleKeepsEarlierColumnsAsTieBreakers(){
+        TaskOrder order = TaskOrder.BY_ID.toggle(TaskOrder.Column.DUE_DATE).toggle(TaskOrder.Column.PRIORITY);
+        assertEquals("PRIORITY+ DUE_DATE+", describe(order));
+        order = order.toggle(TaskOrder.Column.PRIORITY);
+        assertEquals("PRIORITY- DUE_DATE+", describe(order));
+        order = order.toggle(TaskOrder.Column.PRIORITY);
+        assertEquals("DUE_DATE+", describe(order));
+        order = order.toggle(TaskOrder.Column.DESCRIPTION).toggle(TaskOrder.Column.PRIORITY).toggle(TaskOrder.Column.DUE_DATE);
+        assertEquals("DUE_DATE+ PRIORITY+ DESCRIPTION+", describe(order));
+        assertNull(order.toggle(TaskOrder.Column.DUE_DATE).toggle(TaskOrder.Column.DUE_DATE).keyOf(TaskOrder.Column.DUE_DATE));
+    }
+
+    //This method returns a task drawn from a few descriptions, priorities and dates so most keys are shared, some
+    //without a date and some repeating on a day their start is not on, which puts them on a date of their own.
+    private static Task randomTask(long id, Random random){
+        String text = TEXTS[random.nextInt(TEXTS.length)];
+        Priority priority = Priority.values()[random.nextInt(Priority.values().length)];
+        int day = random.nextInt(8);
+        LocalDate due = day == 0 ? null : LocalDate.of(2026, 3, 1).plusDays(day);
+        Recurrence rule = null;
+        if (due != null && random.nextInt(5) == 0){
+            rule = Recurrence.weekly(EnumSet.of(due.plusDays(1).getDayOfWeek(), DayOfWeek.SUNDAY));
+        }
+        return new Task(id, text, priority, due, rule);
+    }
+
+    //This method returns every order of one to three distinct columns with every mix of directions.
+    private static List<TaskOrder> everyOrder(){
+        List<TaskOrder> orders = new ArrayList<>();
+        addOrders(new ArrayList<>(), orders);
+        return orders;
+    }
+
+    //This method extends a list of keys by every unused column in both directions and collects each result.
+    private static void addOrders(List<TaskOrder.Key> keys, List<TaskOrder> orders){
+        if (!keys.isEmpty()){
+            orders.add(new TaskOrder(keys));
+        }
+        if (keys.size() == TaskOrder.MAX_KEYS){
+            return;
+        }
+        for (TaskOrder.Column column : TaskOrder.Column.values()){
+            boolean used = false;
+            for (TaskOrder.Key k : keys){
+                used |= k.getColumn() == column;
+            }
+            if (used){
+                continue;
+            }
+            for (boolean ascending : new boolean[]{true, false}){
+                List<TaskOrder.Key> next = new ArrayList<>(keys);
+                next.add(new TaskOrder.Key(column, ascending));
+                addOrders(next, orders);
+            }
+        }
+    }
+
+    //This method returns the ids of tasks in order.
+    private static List<Long> ids(List<Task> tasks){
+        List<Long> out = new ArrayList<>();
+        for (Task t : tasks){
+            out.add(t.getId());
+        }
+        return out;
+    }
+
+    //This method returns the keys of an order as text, such as PRIORITY+ DUE_DATE-.
+    private static String describe(TaskOrder order){
+        StringBuilder sb = new StringBuilder();
+        for (TaskOrder.Key k : order.getKeys()){
+            if (sb.length() > 0){
+                sb.append(' ');
+            }
+            sb.append(k.getColumn()).append(k.isAscending() ? '+' : '-');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,123 @@
+//This file tests that edits made in the application survive another program rewriting the task file.
+package todojavaapp.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import todojavaapp.model.Priority;
+import todojavaapp.model.Task;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+//This class journals an edit, lets another program rewrite the snapshot and checks what the merge keeps.
+class TaskFileWatcherTest{
+    @TempDir
+    Path dir;
+
+    private Path data;
+    private TaskStorage storage;
+    private TaskFileWatcher watcher;
+    private final BlockingQueue<List<TaskChange>> found = new LinkedBlockingQueue<>();
+
+    //This method saves two tasks, loads them through a watcher and waits for it to compare against them.
+    @BeforeEach
+    void open() throws IOException{
+        data = dir.resolve("tasks.json");
+        storage = new TaskStorage(data);
+        storage.saveTasks(List.of(new Task(1, "one", Priority.LOW, null), new Task(2, "two", Priority.LOW, null)));
+        watcher = new TaskFileWatcher(storage, new TaskFileWatcher.Listener(){
+            @Override
+            public void beforeReload(){
+            }
+
+            @Override
+            public void changesFound(List<TaskChange> changes, boolean idsAssigned){
+                found.add(changes);
+            }
+        });
+        storage.loadTasks(watcher.recording(new TaskLoadListener(){
+            @Override
+            public void taskLoaded(Task task){
+            }
+
+            @Override
+            public void changeReplayed(TaskChange change){
+            }
+        }));
+        watcher.baselineLoaded();
+    }
+
+    //This method stops the watcher and releases the files.
+    @AfterEach
+    void close() throws IOException{
+        watcher.close();
+        storage.close();
+    }
+
+    //This test edits one task here and another in a rewrite of the stale snapshot, and checks both edits are kept.
+    @Test
+    void editHereSurvivesOutsideRewriteOfOtherTask() throws Exception{
+        storage.appendChanges(List.of(
+            TaskChange.updated(new Task(1, "one edited here", Priority.HIGH, null)),
+            TaskChange.added(new Task(3, "three", Priority.LOW, null))));
+
+        rewriteOutside(new Task(1, "one", Priority.LOW, null), new Task(2, "two edited outside", Priority.LOW, null));
+
+        List<TaskChange> changes = found.poll(10, TimeUnit.SECONDS);
+        assertNotNull(changes, "outside edit was not picked up");
+        assertEquals(1, changes.size());
+        assertEquals(2, changes.get(0).getId());
+        assertEquals(List.of("one edited here", "two edited outside", "three"), descriptionsOnDisk());
+    }
+
+    //This test edits the same task here and outside, and checks the outside edit wins while other edits stay.
+    @Test
+    void outsideRewriteWinsForTaskItChanged() throws Exception{
+        storage.appendChanges(List.of(
+            TaskChange.updated(new Task(1, "one edited here", Priority.HIGH, null)),
+            TaskChange.removed(2)));
+
+        rewriteOutside(new Task(1, "one edited outside", Priority.LOW, null), new Task(2, "two", Priority.LOW, null));
+
+        assertNotNull(found.poll(10, TimeUnit.SECONDS), "outside edit was not picked up");
+        assertEquals(List.of("one edited outside"), descriptionsOnDisk());
+    }
+
+    //This method writes a snapshot the way another program would and moves it over the task file.
+    private void rewriteOutside(Task... tasks) throws IOException{
+        Path other = dir.resolve("other.json");
+        TaskStorage writer = new TaskStorage(other);
+        writer.saveTasks(List.of(tasks));
+        writer.close();
+        Files.move(other, data, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    //This method folds the journal, releases the list and returns the descriptions a fresh load of the task file
+    //finds, in id order.
+    private List<String> descriptionsOnDisk() throws IOException{
+        storage.compact();
+        watcher.close();
+        storage.close();
+        TaskStorage fresh = new TaskStorage(data);
+        List<Task> tasks = new ArrayList<>(fresh.loadTasks());
+        fresh.close();
+        tasks.sort((a, b) -> Long.compare(a.getId(), b.getId()));
+        List<String> out = new ArrayList<>();
+        for (Task t : tasks){
+            out.add(t.getDescription());
+        }
+        return out;
+    }
+}
@@ -0,0 +1,223 @@
+//This file tests journal replay, compaction and recovery from a crash at any step of either.
+package todojavaapp.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import todojavaapp.model.Priority;
+import todojavaapp.model.Task;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+//This class replays and compacts journals, and leaves the files the way a crash at each step would to check that
+//the next load finds every change exactly once.
+class TaskJournalTest{
+    @TempDir
+    Path dir;
+
+    //This test loads a torn journal, appends to it and checks the append is there on the next load.
+    @Test
+    void appendAfterLoadKeepsRecordAfterTornOne() throws IOException{
+        Path data = dir.resolve("tasks.json");
+        writeTornJournal(data);
+
+        TaskStorage storage = new TaskStorage(data);
+        List<String> errors = new ArrayList<>();
+        storage.setErrorHandler(e -> errors.add(e.getMessage()));
+        assertEquals(List.of("first", "second"), descriptions(storage.loadTasks()));
+        storage.appendChanges(List.of(TaskChange.added(new Task(4, "fourth", Priority.LOW, null))));
+        storage.close();
+        assertEquals(List.of("Dropped a torn record at the end of tasks.json.journal"), errors);
+
+        assertEquals(List.of("first", "second", "fourth"), descriptions(new TaskStorage(data).loadTasks()));
+    }
+
+    //This test appends to a torn journal without loading it first and checks the append is there on the next load.
+    @Test
+    void appendWithoutLoadKeepsRecordAfterTornOne() throws IOException{
+        Path data = dir.resolve("tasks.json");
+        writeTornJournal(data);
+
+        TaskStorage storage = new TaskStorage(data);
+        List<String> errors = new ArrayList<>();
+        storage.setErrorHandler(e -> errors.add(e.getMessage()));
+        storage.appendChanges(List.of(TaskChange.added(new Task(4, "fourth", Priority.LOW, null))));
+        storage.close();
+        assertEquals(List.of("Dropped a torn record at the end of tasks.json.journal"), errors);
+
+        assertEquals(List.of("first", "second", "fourth"), descriptions(new TaskStorage(data).loadTasks()));
+    }
+
+    //This test replays adds, updates and removes in order and skips a damaged record between them.
+    @Test
+    void replayAppliesRecordsInOrderAndSkipsDamagedOne() throws IOException{
+        Path data = dir.resolve("tasks.json");
+        TaskStorage storage = new TaskStorage(data);
+        storage.saveTasks(List.of(new Task(1, "first", Priority.HIGH, null)));
+        storage.appendChanges(List.of(
+            TaskChange.added(new Task(2, "second", Priority.MEDIUM, null)),
+            TaskChange.updated(new Task(1, "first again", Priority.HIGH, null))));
+        storage.close();
+        Files.write(data.resolveSibling("tasks.json.journal"), "Z 7\n".getBytes(), StandardOpenOption.APPEND);
+        storage = new TaskStorage(data);
+        storage.appendChanges(List.of(
+            TaskChange.removed(2),
+            TaskChange.added(new Task(3, "third", Priority.LOW, null)),
+            TaskChange.updated(new Task(9, "never added", Priority.LOW, null))));
+        storage.close();
+
+        storage = new TaskStorage(data);
+        List<String> errors = new ArrayList<>();
+        storage.setErrorHandler(e -> errors.add(e.getMessage()));
+        assertEquals(List.of("first again", "third"), descriptions(storage.loadTasks()));
+        storage.close();
+        assertEquals(List.of("Skipped journal record 3 in tasks.json.journal: unknown record kind 'Z'"), errors);
+    }
+
+    //This test compacts a journal that changes, removes and re-adds snapshot tasks and adds new ones, and checks the
+    //new snapshot holds the tasks in the order replaying the journal gave.
+    @Test
+    void compactKeepsReplayOrder() throws IOException{
+        Path data = dir.resolve("tasks.json");
+        TaskStorage storage = new TaskStorage(data);
+        storage.saveTasks(List.of(
+            new Task(1, "one", Priority.HIGH, null),
+            new Task(2, "two", Priority.HIGH, null),
+            new Task(3, "three", Priority.HIGH, null)));
+        storage.appendChanges(List.of(
+            TaskChange.added(new Task(4, "four", Priority.LOW, null)),
+            TaskChange.updated(new Task(2, "two again", Priority.HIGH, null)),
+            TaskChange.removed(1),
+            TaskChange.added(new Task(5, "five", Priority.LOW, null)),
+            TaskChange.added(new Task(1, "one back", Priority.HIGH, null)),
+            TaskChange.updated(new Task(4, "four again", Priority.LOW, null)),
+            TaskChange.removed(5)));
+        List<String> replayed = descriptions(storage.loadTasks());
+        storage.compact();
+        storage.close();
+
+        assertEquals(List.of("two again", "three", "four again", "one back"), replayed);
+        assertFalse(Files.exists(data.resolveSibling("tasks.json.journal")));
+        assertFalse(Files.exists(data.resolveSibling("tasks.json.journal.pending")));
+        assertEquals(replayed, loadAndClose(data));
+    }
+
+    //This test leaves a rotated journal and a half written new snapshot, as a crash while folding would, and checks
+    //the next load drops the new snapshot and replays both journals over the old one.
+    @Test
+    void crashWhileWritingSnapshotReplaysPendingJournal() throws IOException{
+        Path data = dir.resolve("tasks.json");
+        writeRotatedJournal(data);
+        Files.write(data.resolveSibling("tasks.json.tmp"), "[{\"id\": 1, \"desc".getBytes());
+
+        assertEquals(List.of("first", "second again", "third"), loadAndClose(data));
+        assertFalse(Files.exists(data.resolveSibling("tasks.json.tmp")));
+        assertFalse(Files.exists(data.resolveSibling("tasks.json.journal.pending")));
+    }
+
+    //This test leaves the folded journal and the finished new snapshot not yet moved into place, as a crash between
+    //the two moves would, and checks the next load puts the new snapshot in place and does not replay the folded one.
+    @Test
+    void crashBeforeSnapshotMoveFinishesCompaction() throws IOException{
+        Path data = dir.resolve("tasks.json");
+        writeRotatedJournal(data);
+        writeSnapshot(data.resolveSibling("tasks.json.tmp"), List.of(
+            new Task(1, "first", Priority.HIGH, null),
+            new Task(2, "second", Priority.MEDIUM, null)));
+        Files.move(data.resolveSibling("tasks.json.journal.pending"), data.resolveSibling("tasks.json.journal.folded"));
+
+        assertEquals(List.of("first", "second again", "third"), loadAndClose(data));
+        assertFalse(Files.exists(data.resolveSibling("tasks.json.tmp")));
+        assertFalse(Files.exists(data.resolveSibling("tasks.json.journal.folded")));
+    }
+
+    //This test leaves the folded journal after the new snapshot is in place, as a crash before deleting it would,
+    //and checks the next load does not replay it over the snapshot that already holds its records.
+    @Test
+    void crashAfterSnapshotMoveDropsFoldedJournal() throws IOException{
+        Path data = dir.resolve("tasks.json");
+        TaskStorage storage = new TaskStorage(data);
+        storage.saveTasks(List.of(
+            new Task(1, "first", Priority.HIGH, null),
+            new Task(2, "second", Priority.MEDIUM, null)));
+        storage.appendChanges(List.of(
+            TaskChange.updated(new Task(2, "second again", Priority.MEDIUM, null)),
+            TaskChange.added(new Task(3, "third", Priority.LOW, null))));
+        storage.close();
+        Files.write(data.resolveSibling("tasks.json.journal.folded"), List.of("R 1", "R 2"));
+
+        assertEquals(List.of("first", "second again", "third"), loadAndClose(data));
+        assertFalse(Files.exists(data.resolveSibling("tasks.json.journal.folded")));
+    }
+
+    //This method saves a snapshot, journals adding a task, rotates that journal out to be folded as a full journal
+    //is, and journals more changes after it.
+    private static void writeRotatedJournal(Path data) throws IOException{
+        TaskStorage storage = new TaskStorage(data);
+        storage.saveTasks(List.of(new Task(1, "first", Priority.HIGH, null)));
+        storage.appendChanges(List.of(TaskChange.added(new Task(2, "second", Priority.MEDIUM, null))));
+        storage.close();
+        Files.move(data.resolveSibling("tasks.json.journal"), data.resolveSibling("tasks.json.journal.pending"));
+        storage = new TaskStorage(data);
+        storage.setBackgroundCompaction(false);
+        storage.appendChanges(List.of(
+            TaskChange.updated(new Task(2, "second again", Priority.MEDIUM, null)),
+            TaskChange.added(new Task(3, "third", Priority.LOW, null))));
+        storage.close();
+    }
+
+    //This method writes a snapshot file the way a compaction writes its new snapshot before moving it into place.
+    private void writeSnapshot(Path file, List<Task> tasks) throws IOException{
+        Path scratch = dir.resolve("scratch").resolve("tasks.json");
+        Files.createDirectories(scratch.getParent());
+        TaskStorage storage = new TaskStorage(scratch);
+        storage.saveTasks(tasks);
+        storage.close();
+        Files.copy(scratch, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    //This method loads the tasks of a file through a new storage and closes it.
+    private static List<String> loadAndClose(Path data) throws IOException{
+        TaskStorage storage = new TaskStorage(data);
+        try{
+            return descriptions(storage.loadTasks());
+        } finally{
+            storage.close();
+        }
+    }
+
+    //This method saves a snapshot and a journal record, then adds half of a second record as a crash would leave it.
+    private static void writeTornJournal(Path data) throws IOException{
+        TaskStorage storage = new TaskStorage(data);
+        storage.saveTasks(List.of(new Task(1, "first", Priority.HIGH, null)));
+        storage.appendChanges(List.of(
+            TaskChange.added(new Task(2, "second", Priority.MEDIUM, null)),
+            TaskChange.added(new Task(3, "third", Priority.MEDIUM, null))));
+        storage.close();
+
+        Path journal = data.resolveSibling("tasks.json.journal");
+        byte[] bytes = Files.readAllBytes(journal);
+        int cut = bytes.length - 10;
+        assertNotEquals('\n', bytes[cut - 1]);
+        Files.write(journal, Arrays.copyOf(bytes, cut), StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    //This method returns the descriptions of tasks in the order given.
+    private static List<String> descriptions(List<Task> tasks){
+        List<String> out = new ArrayList<>();
+        for (Task t : tasks){
+            out.add(t.getDescription());
+        }
+        return out;
+    }
+}
@@ -0,0 +1,113 @@
+//This file tests that task JSON escapes what it must and reads back what it wrote.
+package todojavaapp.storage;
+
+import org.junit.jupiter.api.Test;
+import todojavaapp.model.Priority;
+import todojavaapp.model.Recurrence;
+import todojavaapp.model.Task;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//This class writes tasks with awkward descriptions and every field set or not, and checks the text and the tasks read back.
+class TaskJsonTest{
+    private static final String AWKWARD = "say \"hi\" to C:\\temp\nthen\ttab\r\u0001\u001f caf\u00e9 \ud83d\ude00 </script>";
+
+    //This test checks quotes, backslashes and control characters are escaped and other characters are written as they are.
+    @Test
+    void writerEscapesOnlyWhatJsonRequires(){
+        String line = TaskJsonWriter.toJsonLine(new Task(7, AWKWARD, Priority.HIGH, null));
+        assertTrue(line.contains("\"say \\\"hi\\\" to C:\\\\temp\\nthen\\ttab\\r\\u0001\\u001f caf\u00e9 \ud83d\ude00 </script>\""), line);
+        assertEquals(-1, line.indexOf('\n'));
+    }
+
+    //This test reads a line written for each kind of task back into an equal task.
+    @Test
+    void lineRoundTrips() throws IOException{
+        for (Task t : samples()){
+            assertEquals(t, TaskJsonReader.forLine(TaskJsonWriter.toJsonLine(t), 1).readTask());
+        }
+    }
+
+    //This test writes whole documents compact and indented and reads the same tasks back in order.
+    @Test
+    void documentRoundTrips() throws IOException{
+        List<Task> tasks = samples();
+        tasks.add(new Task(99, longDescription(), Priority.LOW, LocalDate.of(2026, 1, 1)));
+        for (boolean pretty : new boolean[]{false, true}){
+            StringWriter text = new StringWriter();
+            TaskJsonWriter writer = new TaskJsonWriter(text, pretty);
+            writer.beginArray();
+            for (Task t : tasks){
+                writer.writeTask(t);
+            }
+            writer.endArray();
+            writer.flush();
+            assertEquals(tasks, readAll(text.toString()));
+        }
+    }
+
+    //This test reads every escape JSON has, including a character outside the basic plane written as two escapes.
+    @Test
+    void readerDecodesEveryEscape() throws IOException{
+        String json = "{\"id\": 3, \"description\": \"\\\" \\\\ \\/ \\b \\f \\n \\r \\t \\u0041\\u00e9 \\ud83d\\ude00\", \"priority\": \"LOW\", \"dueDate\": null}";
+        assertEquals("\" \\ / \b \f \n \r \t A\u00e9 \ud83d\ude00", TaskJsonReader.forLine(json, 1).readTask().getDescription());
+    }
+
+    //This test checks an unknown escape and a short unicode escape are refused with the reason.
+    @Test
+    void readerRefusesBadEscapes(){
+        IOException unknown = assertThrows(IOException.class,
+            () -> TaskJsonReader.forLine("{\"id\": 3, \"description\": \"a\\qb\"}", 1).readTask());
+        assertTrue(unknown.getMessage().contains("Invalid escape"), unknown.getMessage());
+        IOException shortHex = assertThrows(IOException.class,
+            () -> TaskJsonReader.forLine("{\"id\": 3, \"description\": \"a\\u12g4\"}", 1).readTask());
+        assertTrue(shortHex.getMessage().contains("Invalid unicode escape"), shortHex.getMessage());
+    }
+
+    //This method returns tasks covering every priority, with and without a due date and a repeat rule, up to the
+    //largest id the reader takes.
+    private static List<Task> samples(){
+        List<Task> tasks = new ArrayList<>();
+        tasks.add(new Task(1, AWKWARD, Priority.HIGH, null));
+        tasks.add(new Task(2, "", Priority.MEDIUM, LocalDate.of(2025, 12, 31)));
+        tasks.add(new Task(3, "weekly", Priority.LOW, LocalDate.of(2026, 2, 2),
+            Recurrence.weekly(EnumSet.of(DayOfWeek.MONDAY, DayOfWeek.THURSDAY)).times(10)));
+        tasks.add(new Task(4, "monthly", Priority.MEDIUM, LocalDate.of(2026, 2, 28),
+            Recurrence.monthly().onMonthDay(31).until(LocalDate.of(2026, 12, 31))));
+        tasks.add(new Task(999_999_999_999_999_999L, "daily", Priority.HIGH, LocalDate.of(1999, 1, 1), Recurrence.daily()));
+        return tasks;
+    }
+
+    //This method returns a description longer than the reader's buffer, so escapes fall across its refills.
+    private static String longDescription(){
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 40000){
+            sb.append("a\"b\\c\nd\u0002e\u00e9");
+        }
+        return sb.toString();
+    }
+
+    //This method reads every task of a document.
+    private static List<Task> readAll(String json) throws IOException{
+        List<Task> tasks = new ArrayList<>();
+        try (TaskJsonReader reader = new TaskJsonReader(new StringReader(json))){
+            if (reader.beginArray()){
+                while (reader.hasNext()){
+                    tasks.add(reader.nextTask());
+                }
+            }
+        }
+        return tasks;
+    }
+}
@@ -0,0 +1,130 @@
+//This file tests how loading a snapshot gives ids to tasks that have none or share one.
+package todojavaapp.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import todojavaapp.model.Task;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//This class loads hand written snapshots with ids missing, repeated or all present and checks the ids and the order.
+class TaskStorageTest{
+    @TempDir
+    Path dir;
+
+    //This test loads a file from before tasks had ids and checks they are numbered from 1 in file order.
+    @Test
+    void fileWithoutIdsIsNumberedInOrder() throws IOException{
+        Path data = write("[{\"description\": \"a\", \"priority\": \"LOW\"},"
+            + "{\"description\": \"b\", \"priority\": \"LOW\"},"
+            + "{\"description\": \"c\", \"priority\": \"LOW\"}]");
+
+        List<Task> tasks = new ArrayList<>();
+        assertTrue(load(data, tasks));
+        assertEquals(List.of("1 a", "2 b", "3 c"), idsAndDescriptions(tasks));
+    }
+
+    //This test loads tasks with ids, without and with a repeated one mixed together and checks every task keeps its
+    //place in the file, the first holder of an id keeps it and the others get ids after the largest one.
+    @Test
+    void mixedFileKeepsFileOrder() throws IOException{
+        Path data = write("[{\"id\": 5, \"description\": \"a\", \"priority\": \"LOW\"},"
+            + "{\"description\": \"b\", \"priority\": \"LOW\"},"
+            + "{\"id\": 2, \"description\": \"c\", \"priority\": \"LOW\"},"
+            + "{\"id\": 5, \"description\": \"d\", \"priority\": \"LOW\"},"
+            + "{\"id\": 9, \"description\": \"e\", \"priority\": \"LOW\"},"
+            + "{\"id\": 0, \"description\": \"f\", \"priority\": \"LOW\"}]");
+
+        List<Task> tasks = new ArrayList<>();
+        assertTrue(load(data, tasks));
+        assertEquals(List.of("5 a", "10 b", "2 c", "11 d", "9 e", "12 f"), idsAndDescriptions(tasks));
+    }
+
+    //This test loads a file whose tasks all have unique ids and checks nothing is renumbered or reported.
+    @Test
+    void uniqueIdsAreKept() throws IOException{
+        Path data = write("[{\"id\": 3, \"description\": \"a\", \"priority\": \"LOW\"},"
+            + "{\"id\": 1, \"description\": \"b\", \"priority\": \"LOW\"}]");
+
+        List<Task> tasks = new ArrayList<>();
+        assertFalse(load(data, tasks));
+        assertEquals(List.of("3 a", "1 b"), idsAndDescriptions(tasks));
+    }
+
+    //This test loads a file large enough to be parsed in pieces on more than one core, with a task without an id
+    //near the start, and checks the order and the new id are the same as for a small file.
+    @Test
+    void largeMixedFileKeepsFileOrder() throws IOException{
+        Path data = dir.resolve("tasks.json");
+        int count = 0;
+        try (BufferedWriter out = Files.newBufferedWriter(data, StandardCharsets.UTF_8)){
+            out.write("[\n");
+            while (Files.size(data) <= ParallelJsonLoader.THRESHOLD_BYTES){
+                for (int i = 0; i < 1000; i++){
+                    count++;
+                    if (count > 1){
+                        out.write(",\n");
+                    }
+                    String id = count == 500 ? "" : "\"id\": " + count + ", ";
+                    out.write("{" + id + "\"description\": \"task number " + count + " with some padding text\", \"priority\": \"MEDIUM\"}");
+                }
+                out.flush();
+            }
+            out.write("\n]\n");
+        }
+
+        List<Task> tasks = new ArrayList<>();
+        assertTrue(load(data, tasks));
+        assertEquals(count, tasks.size());
+        for (int i = 0; i < count; i++){
+            Task t = tasks.get(i);
+            assertEquals("task number " + (i + 1) + " with some padding text", t.getDescription());
+            assertEquals(i == 499 ? count + 1 : i + 1, t.getId());
+        }
+    }
+
+    //This method writes a snapshot file with the given text.
+    private Path write(String json) throws IOException{
+        Path data = dir.resolve("tasks.json");
+        Files.write(data, json.getBytes(StandardCharsets.UTF_8));
+        return data;
+    }
+
+    //This method loads a file through a new storage into a list and returns whether any task was given an id.
+    private static boolean load(Path data, List<Task> tasks) throws IOException{
+        TaskStorage storage = new TaskStorage(data);
+        try{
+            return storage.loadTasks(new TaskLoadListener(){
+                @Override
+                public void taskLoaded(Task task){
+                    tasks.add(task);
+                }
+
+                @Override
+                public void changeReplayed(TaskChange change){
+                }
+            });
+        } finally{
+            storage.close();
+        }
+    }
+
+    //This method returns each task as its id and description.
+    private static List<String> idsAndDescriptions(List<Task> tasks){
+        List<String> out = new ArrayList<>();
+        for (Task t : tasks){
+            out.add(t.getId() + " " + t.getDescription());
+        }
+        return out;
+    }
+}